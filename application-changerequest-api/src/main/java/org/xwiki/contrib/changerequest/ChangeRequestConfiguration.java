@@ -223,4 +223,91 @@ public interface ChangeRequestConfiguration
     {
         return false;
     }
+
+    /**
+     * Define the duration without any new request after which the ready for merging status of a change request is
+     * actually computed: all requests received in between are coalesced in a single computation.
+     * Note that {@code 0} means the status is computed immediately.
+     *
+     * @return a duration in milliseconds before computing the ready for merging status.
+     * @since 1.16
+     */
+    @Unstable
+    default long getReadyForMergingStatusComputationDelay()
+    {
+        return 0;
+    }
+
+    /**
+     * Define the maximum duration after a first request during which the computation of the ready for merging status
+     * of a change request might be delayed by {@link #getReadyForMergingStatusComputationDelay()}.
+     *
+     * @return a duration in milliseconds after which the ready for merging status is always computed.
+     * @since 1.16
+     */
+    @Unstable
+    default long getReadyForMergingStatusComputationMaxDelay()
+    {
+        return 0;
+    }
+
+    /**
+     * Define the duration during which the replication messages of a change request are gathered before being sent
+     * to the replicated instances: messages of the same type for the same change request are coalesced in a single
+     * message when possible. Note that {@code 0} means the messages are sent immediately. Since the replication is
+     * performed for the whole farm, this value is defined with the {@code changerequest.replicationMessagesBatchWindow}
+     * property of {@code xwiki.properties}.
+     *
+     * @return a duration in milliseconds during which the replication messages are batched.
+     * @since 1.16
+     */
+    @Unstable
+    default long getReplicationMessagesBatchWindow()
+    {
+        return 0;
+    }
+
+    /**
+     * Define the number of threads dedicated to the background work of change request (status computations, stale
+     * change requests handling, ...). Since those threads are shared by all wikis, this value is defined for the whole
+     * farm with the {@code changerequest.backgroundWorkThreads} property of {@code xwiki.properties}, and it's only
+     * read once when the first background work is submitted.
+     *
+     * @return the number of threads used to perform background work.
+     * @since 1.16
+     */
+    @Unstable
+    default int getBackgroundWorkThreads()
+    {
+        return 2;
+    }
+
+    /**
+     * Define the maximum number of background works waiting to be performed for each priority: any new background
+     * work is rejected when this limit is reached. Since the waiting works of all wikis are counted together, this
+     * value is defined for the whole farm with the {@code changerequest.backgroundWorkQueueSize} property of
+     * {@code xwiki.properties}.
+     *
+     * @return the maximum number of background works waiting for each priority.
+     * @since 1.16
+     */
+    @Unstable
+    default int getBackgroundWorkQueueSize()
+    {
+        return 1000;
+    }
+
+    /**
+     * Define the maximum number of users whose delegate approvers are kept in cache. Since the cache is shared by all
+     * wikis, this value is defined for the whole farm with the {@code changerequest.delegateCacheSize} property of
+     * {@code xwiki.properties}, and it's only read once when the cache is created.
+     *
+     * @return the maximum number of entries of the delegate approvers cache.
+     * @since 1.16
+     */
+    @Unstable
+    default int getDelegateCacheSize()
+    {
+        return 1000;
+    }
 }
@@ -74,6 +74,8 @@ public interface ChangeRequestManager
 
     /**
      * Check if the given change request is ready for merging, and change its status accordingly.
+     * Note that implementations might delay the actual computation, see
+     * {@link #flushReadyForMergingStatus(ChangeRequest)} to obtain an up-to-date status.
      *
      * @param changeRequest the change request to be checked
      * @throws ChangeRequestException in case of problem during the checks.
@@ -83,6 +85,37 @@ public interface ChangeRequestManager
     {
     }
 
+    /**
+     * Check right away if the given change request is ready for merging, and change its status accordingly.
+     * Contrarily to {@link #computeReadyForMergingStatus(ChangeRequest)}, which implementations might delay to coalesce
+     * several subsequent requests, this method performs the computation immediately and discards any pending one: it
+     * should be used whenever the up-to-date status is needed.
+     *
+     * @param changeRequest the change request to be checked
+     * @throws ChangeRequestException in case of problem during the checks.
+     * @since 1.16
+     */
+    @Unstable
+    default void flushReadyForMergingStatus(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        computeReadyForMergingStatus(changeRequest);
+    }
+
+    /**
+     * Check if a computation of the ready for merging status of the given change request has been requested with
+     * {@link #computeReadyForMergingStatus(ChangeRequest)} but not performed yet: in such case the current status of
+     * the change request might be outdated until the computation is performed.
+     *
+     * @param changeRequest the change request for which to check if a computation is pending
+     * @return {@code true} if a computation of the status is pending
+     * @since 1.16
+     */
+    @Unstable
+    default boolean isReadyForMergingStatusPending(ChangeRequest changeRequest)
+    {
+        return false;
+    }
+
     /**
      * Update the status of the given change request with the new status, only if it's not set yet.
      * This method also triggers {@link #computeReadyForMergingStatus(ChangeRequest)} after the status change and
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.xwiki.stability.Unstable;
+import org.xwiki.user.UserReference;
+
+/**
+ * Read-only summary of a change request: it only contains the main information of a change request, and can be
+ * obtained without loading its file changes and reviews.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Unstable
+public class ChangeRequestSummary
+{
+    private final String id;
+    private final String title;
+    private final ChangeRequestStatus status;
+    private final Set<UserReference> authors;
+    private final Date creationDate;
+    private final Date staleDate;
+    private final int documentCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param id the identifier of the change request
+     * @param title the title of the change request
+     * @param status the status of the change request
+     * @param authors the authors of the change request
+     * @param creationDate the creation date of the change request
+     * @param staleDate the date when the change request has been flagged as stale, or {@code null}
+     * @param documentCount the number of documents modified by the change request
+     */
+    public ChangeRequestSummary(String id, String title, ChangeRequestStatus status, Set<UserReference> authors,
+        Date creationDate, Date staleDate, int documentCount)
+    {
+        this.id = id;
+        this.title = title;
+        this.status = status;
+        this.authors = Collections.unmodifiableSet(new LinkedHashSet<>(authors));
+        this.creationDate = creationDate;
+        this.staleDate = staleDate;
+        this.documentCount = documentCount;
+    }
+
+    /**
+     * Create a summary of the given change request.
+     *
+     * @param changeRequest the change request to summarize
+     */
+    public ChangeRequestSummary(ChangeRequest changeRequest)
+    {
+        this(changeRequest.getId(), changeRequest.getTitle(), changeRequest.getStatus(), changeRequest.getAuthors(),
+            changeRequest.getCreationDate(), changeRequest.getStaleDate(),
+            changeRequest.getModifiedDocuments().size());
+    }
+
+    /**
+     * @return the identifier of the change request.
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return the title of the change request.
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * @return the status of the change request.
+     */
+    public ChangeRequestStatus getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return the authors of the change request.
+     */
+    public Set<UserReference> getAuthors()
+    {
+        return authors;
+    }
+
+    /**
+     * @return the creation date of the change request.
+     */
+    public Date getCreationDate()
+    {
+        return creationDate;
+    }
+
+    /**
+     * @return the date when the change request has been flagged as stale, or {@code null} if it's not stale.
+     */
+    public Date getStaleDate()
+    {
+        return staleDate;
+    }
+
+    /**
+     * @return the number of documents modified by the change request.
+     */
+    public int getDocumentCount()
+    {
+        return documentCount;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ChangeRequestSummary that = (ChangeRequestSummary) o;
+
+        return new EqualsBuilder()
+            .append(documentCount, that.documentCount)
+            .append(id, that.id)
+            .append(title, that.title)
+            .append(status, that.status)
+            .append(authors, that.authors)
+            .append(creationDate, that.creationDate)
+            .append(staleDate, that.staleDate)
+            .isEquals();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder(17, 61)
+            .append(id)
+            .append(title)
+            .append(status)
+            .append(authors)
+            .append(creationDate)
+            .append(staleDate)
+            .append(documentCount)
+            .toHashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this)
+            .append("id", id)
+            .append("title", title)
+            .append("status", status)
+            .append("authors", authors)
+            .append("creationDate", creationDate)
+            .append("staleDate", staleDate)
+            .append("documentCount", documentCount)
+            .toString();
+    }
+}
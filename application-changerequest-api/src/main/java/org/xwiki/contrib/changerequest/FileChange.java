@@ -84,6 +84,8 @@ public class FileChange
     private DocumentModelBridge modifiedDocument;
     private boolean saved;
     private final FileChangeType type;
+    private String contentFingerprint;
+    private String renderedTitle;
 
     /**
      * Creates a new file change edition related to the given change request.
@@ -245,6 +247,52 @@ public class FileChange
         return this;
     }
 
+    /**
+     * @return the fingerprint of the content of the modified document as it was computed when the file change was
+     *         saved, or {@code null} if it's not known
+     * @since 1.16
+     */
+    @Unstable
+    public String getContentFingerprint()
+    {
+        return contentFingerprint;
+    }
+
+    /**
+     * @param contentFingerprint the fingerprint of the content of the modified document
+     * @return the current instance.
+     * @since 1.16
+     */
+    @Unstable
+    public FileChange setContentFingerprint(String contentFingerprint)
+    {
+        this.contentFingerprint = contentFingerprint;
+        return this;
+    }
+
+    /**
+     * @return the rendered title of the document concerned by this file change as it was computed when the file
+     *         change was saved, or {@code null} if it's not known
+     * @since 1.16
+     */
+    @Unstable
+    public String getRenderedTitle()
+    {
+        return renderedTitle;
+    }
+
+    /**
+     * @param renderedTitle the rendered title of the document concerned by this file change
+     * @return the current instance.
+     * @since 1.16
+     */
+    @Unstable
+    public FileChange setRenderedTitle(String renderedTitle)
+    {
+        this.renderedTitle = renderedTitle;
+        return this;
+    }
+
     /**
      * @return the change request this file change belongs to.
      */
@@ -425,6 +473,8 @@ public class FileChange
             .append("modifiedDocument", modifiedDocument)
             .append("saved", saved)
             .append("type", type)
+            .append("contentFingerprint", contentFingerprint)
+            .append("renderedTitle", renderedTitle)
             .toString();
     }
 }
@@ -31,7 +31,8 @@ import org.xwiki.stability.Unstable;
  * existing change request, or changes when a change request is about to be created.
  * Note that any checker can use a {@code javax.annotation.Priority} to define the order of execution of the checker,
  * knowing that in case of failure the reason of the first one failing will be displayed. The lower the priority value,
- * the higher the priority of execution.
+ * the higher the priority of execution. Checkers with the same priority are executed from the cheapest to the most
+ * expensive according to their {@link #getCost()}, and the execution stops at the first failing checker.
  *
  * @version $Id$
  * @since 0.9
@@ -124,6 +125,31 @@ public interface FileChangeSavingChecker
     }
 
 
+    /**
+     * Hint about the cost of the checks performed by a checker.
+     *
+     * @version $Id$
+     * @since 1.16
+     */
+    @Unstable
+    enum CheckerCost
+    {
+        /**
+         * The checks only rely on data already loaded, e.g. the status of the change request.
+         */
+        LOW,
+
+        /**
+         * The checks might perform some lookups, e.g. a few rights checks.
+         */
+        MEDIUM,
+
+        /**
+         * The checks perform expensive computations, e.g. recursive approvers resolution.
+         */
+        HIGH
+    }
+
     /**
      * Check if the given document reference can be added to the given change request.
      *
@@ -157,4 +183,17 @@ public interface FileChangeSavingChecker
      * @return {@code true} iff the change request can be created with the given filechange.
      */
     SavingCheckerResult canChangeRequestBeCreatedWith(FileChange fileChange);
+
+    /**
+     * Hint about the cost of this checker, used to execute the cheapest checkers first among checkers having the same
+     * priority.
+     *
+     * @return the cost of the checks performed by this checker
+     * @since 1.16
+     */
+    @Unstable
+    default CheckerCost getCost()
+    {
+        return CheckerCost.MEDIUM;
+    }
 }
@@ -19,15 +19,19 @@
  */
 package org.xwiki.contrib.changerequest.storage;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.stability.Unstable;
@@ -71,6 +75,22 @@ public interface ChangeRequestStorageManager
      */
     Optional<ChangeRequest> load(String changeRequestId) throws ChangeRequestException;
 
+    /**
+     * Load the summary of a change request based on the given identifier. This method should be preferred over
+     * {@link #load(String)} whenever only the main information of the change request are needed, since it doesn't
+     * load the file changes and reviews.
+     *
+     * @param changeRequestId the id of a change request to find.
+     * @return the summary of the change request or an empty optional if it cannot be found.
+     * @throws ChangeRequestException in case of errors while loading.
+     * @since 1.16
+     */
+    @Unstable
+    default Optional<ChangeRequestSummary> loadSummary(String changeRequestId) throws ChangeRequestException
+    {
+        return load(changeRequestId).map(ChangeRequestSummary::new);
+    }
+
     /**
      * Merge the given change request changes.
      * Note that merging a change request will trigger
@@ -96,6 +116,43 @@ public interface ChangeRequestStorageManager
         return Collections.emptyList();
     }
 
+    /**
+     * Find the open change requests (i.e. not merged, or closed) that contains a file change for any of the given
+     * references. Contrarily to {@link #findChangeRequestTargeting(DocumentReference)} this method performs a single
+     * query whatever the number of given references, and doesn't load the change requests but only returns summaries.
+     *
+     * @param documentReferences the references of the documents subject of a change
+     * @return a map whose keys are the given references and values the summaries of the open change requests
+     *         targeting them: references not targeted by any open change request are not part of the map
+     * @throws ChangeRequestException in case of problem to execute the query
+     * @since 1.16
+     */
+    @Unstable
+    default Map<DocumentReference, List<ChangeRequestSummary>> findOpenChangeRequestSummariesTargeting(
+        Collection<DocumentReference> documentReferences) throws ChangeRequestException
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Check if there is any open change request (i.e. not merged, or closed) other than the given one that contains a
+     * file change for any of the documents modified by the given change request. Contrarily to
+     * {@link #findOpenChangeRequestSummariesTargeting(Collection)} this method stops at the first found change
+     * request.
+     *
+     * @param changeRequest the change request from which to take the modified documents
+     * @return {@code true} if at least another open change request targets one of the same documents
+     * @throws ChangeRequestException in case of problem to execute the query
+     * @since 1.16
+     */
+    @Unstable
+    default boolean hasOtherOpenChangeRequestTargetingSame(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        return !findOpenChangeRequestSummariesTargeting(changeRequest.getModifiedDocuments()).values().stream()
+            .flatMap(List::stream)
+            .allMatch(summary -> summary.getId().equals(changeRequest.getId()));
+    }
+
     /**
      * Find all change requests that contains a file change inside the given reference.
      *
@@ -144,6 +201,26 @@ public interface ChangeRequestStorageManager
         return Collections.emptyList();
     }
 
+    /**
+     * Same as {@link #findOpenChangeRequestsByDate(Date, boolean)} but only returns the summaries of the change
+     * requests, without loading them.
+     *
+     * @param limitDate the date to consider in the query for getting change requests.
+     * @param considerCreationDate {@code true} to use the creation date in the query, {@code false} to use the update
+     *                             date.
+     * @return a list of summaries of the change requests matching the criteria.
+     * @throws ChangeRequestException in case of problem to find the change requests.
+     * @since 1.16
+     */
+    @Unstable
+    default List<ChangeRequestSummary> findOpenChangeRequestSummariesByDate(Date limitDate,
+        boolean considerCreationDate) throws ChangeRequestException
+    {
+        return findOpenChangeRequestsByDate(limitDate, considerCreationDate).stream()
+            .map(ChangeRequestSummary::new)
+            .collect(Collectors.toList());
+    }
+
     /***
      * Count the total number of change requests: this method mainly aims at being used when getting the change requests
      * with {@link #getChangeRequests(boolean, int, int)}.
@@ -66,6 +66,12 @@ public class DefaultChangeRequestConfiguration implements ChangeRequestConfigura
     public static final String DELEGATE_ENABLED_PROPERTY = "delegateEnabled";
 
     static final String DEFAULT_APPROVAL_STRATEGY = AcceptAllMergeApprovalStrategy.NAME;
+
+    /**
+     * Prefix of the farm-wide properties read from xwiki.properties.
+     */
+    static final String XWIKI_PROPERTIES_PREFIX = "changerequest.";
+
     private static final List<String> CHANGE_REQUEST_SPACE_LOCATION = Arrays.asList("ChangeRequest", "Data");
 
     @Inject
@@ -75,6 +81,10 @@ public class DefaultChangeRequestConfiguration implements ChangeRequestConfigura
     @Named("changerequest")
     private ConfigurationSource configurationSource;
 
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource xwikiPropertiesSource;
+
     @Inject
     private SpaceReferenceResolver<String> spaceReferenceResolver;
 
@@ -232,4 +242,41 @@ public class DefaultChangeRequestConfiguration implements ChangeRequestConfigura
     {
         return this.configurationSource.getProperty("acceptOnlyAllowedApprovers", false);
     }
+
+    @Override
+    public long getReadyForMergingStatusComputationDelay()
+    {
+        return this.configurationSource.getProperty("readyForMergingStatusComputationDelay", 1000L);
+    }
+
+    @Override
+    public long getReadyForMergingStatusComputationMaxDelay()
+    {
+        return this.configurationSource.getProperty("readyForMergingStatusComputationMaxDelay", 10000L);
+    }
+
+    @Override
+    public long getReplicationMessagesBatchWindow()
+    {
+        return this.xwikiPropertiesSource.getProperty(XWIKI_PROPERTIES_PREFIX + "replicationMessagesBatchWindow",
+            2000L);
+    }
+
+    @Override
+    public int getBackgroundWorkThreads()
+    {
+        return this.xwikiPropertiesSource.getProperty(XWIKI_PROPERTIES_PREFIX + "backgroundWorkThreads", 2);
+    }
+
+    @Override
+    public int getBackgroundWorkQueueSize()
+    {
+        return this.xwikiPropertiesSource.getProperty(XWIKI_PROPERTIES_PREFIX + "backgroundWorkQueueSize", 1000);
+    }
+
+    @Override
+    public int getDelegateCacheSize()
+    {
+        return this.xwikiPropertiesSource.getProperty(XWIKI_PROPERTIES_PREFIX + "delegateCacheSize", 1000);
+    }
 }
@@ -106,6 +106,12 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
     @Inject
     private ContextualLocalizationManager localizationManager;
 
+    @Inject
+    private ReadyForMergingStatusDebouncer readyForMergingStatusDebouncer;
+
+    @Inject
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     private XarExtensionScriptService xarExtensionScriptService;
 
     @Override
@@ -136,10 +142,30 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
 
     @Override
     public void computeReadyForMergingStatus(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        long delay = this.configuration.getReadyForMergingStatusComputationDelay();
+        // There's no need to delay anything if the status cannot change.
+        if (delay > 0 && changeRequest.getId() != null && isReadyForMergingStatusComputable(changeRequest)) {
+            this.readyForMergingStatusDebouncer.schedule(changeRequest, delay,
+                this.configuration.getReadyForMergingStatusComputationMaxDelay());
+        } else {
+            this.flushReadyForMergingStatus(changeRequest);
+        }
+    }
+
+    private boolean isReadyForMergingStatusComputable(ChangeRequest changeRequest)
     {
+        ChangeRequestStatus status = changeRequest.getStatus();
+        return status == ChangeRequestStatus.READY_FOR_REVIEW || status == ChangeRequestStatus.READY_FOR_MERGING;
+    }
+
+    @Override
+    public void flushReadyForMergingStatus(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        this.readyForMergingStatusDebouncer.cancel(changeRequest);
         ChangeRequestStatus status = changeRequest.getStatus();
         boolean readyForMerging = false;
-        if (status == ChangeRequestStatus.READY_FOR_REVIEW || status == ChangeRequestStatus.READY_FOR_MERGING) {
+        if (isReadyForMergingStatusComputable(changeRequest)) {
             MergeApprovalStrategy mergeApprovalStrategy = getMergeApprovalStrategy();
             if (mergeApprovalStrategy.canBeMerged(changeRequest)) {
                 readyForMerging = !this.changeRequestMergeManager.hasConflict(changeRequest);
@@ -164,6 +190,12 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
         }
     }
 
+    @Override
+    public boolean isReadyForMergingStatusPending(ChangeRequest changeRequest)
+    {
+        return changeRequest.getId() != null && this.readyForMergingStatusDebouncer.isPending(changeRequest);
+    }
+
     @Override
     public boolean canBeMerged(ChangeRequest changeRequest) throws ChangeRequestException
     {
@@ -252,7 +284,7 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
                 break;
 
             case DELETION:
-                result = currentDocument.isNew() || this.isVersionOutdated(fileChange, currentDocument);
+                result = currentDocument.isNew() || this.isContentOutdated(fileChange, currentDocument);
                 break;
 
             case NO_CHANGE:
@@ -267,7 +299,7 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
                 break;
 
             case EDITION:
-                result = this.isVersionOutdated(fileChange, currentDocument);
+                result = this.isContentOutdated(fileChange, currentDocument);
                 break;
 
             default:
@@ -284,7 +316,14 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
         switch (fileChangeWithChanges.getType()) {
             case CREATION:
             case EDITION:
-                result = this.isVersionOutdated(originalFileChange, currentDocument);
+                // The file change contains the published content at the time it was created: no need to load the
+                // previous published version to know if the content changed.
+                if (this.isVersionOutdated(originalFileChange, currentDocument)) {
+                    String fingerprint = this.fileChangeFingerprintManager.getFingerprint(originalFileChange);
+                    String currentFingerprint =
+                        this.fileChangeFingerprintManager.getPublishedFingerprint(currentDocument);
+                    result = fingerprint == null || !fingerprint.equals(currentFingerprint);
+                }
                 break;
 
             case DELETION:
@@ -315,6 +354,15 @@ public class DefaultChangeRequestManager implements ChangeRequestManager, Initia
         return result;
     }
 
+    private boolean isContentOutdated(FileChange fileChange, XWikiDocument currentDocument)
+        throws ChangeRequestException
+    {
+        // A new published version which didn't change the content of the document does not make the file change
+        // outdated: the fingerprints are cached so this check does not require to load the old revision each time.
+        return this.isVersionOutdated(fileChange, currentDocument)
+            && !this.fileChangeFingerprintManager.isPreviousPublishedContent(fileChange, currentDocument);
+    }
+
     @Override
     public boolean isTemplateProviderSupported(DocumentReference templateProviderReference)
         throws ChangeRequestException
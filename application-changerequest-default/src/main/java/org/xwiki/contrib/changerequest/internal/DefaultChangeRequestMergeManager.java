@@ -113,6 +113,9 @@ public class DefaultChangeRequestMergeManager implements ChangeRequestMergeManag
     @Inject
     private ContextualLocalizationManager contextualLocalizationManager;
 
+    @Inject
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     @Inject
     private Logger logger;
 
@@ -168,11 +171,21 @@ public class DefaultChangeRequestMergeManager implements ChangeRequestMergeManag
 
     private boolean editionHasConflict(FileChange fileChange) throws ChangeRequestException
     {
-        DocumentModelBridge modifiedDoc =
-            this.fileChangeStorageManager.getModifiedDocumentFromFileChange(fileChange);
         DocumentModelBridge originalDoc =
             this.fileChangeStorageManager.getCurrentDocumentFromFileChange(fileChange);
 
+        // If the published content didn't change since the file change has been created, there cannot be any
+        // conflict: we avoid loading the previous version and performing the merge.
+        return !this.fileChangeFingerprintManager.isPreviousPublishedContent(fileChange, originalDoc)
+            && this.editionMergeHasConflict(fileChange, originalDoc);
+    }
+
+    private boolean editionMergeHasConflict(FileChange fileChange, DocumentModelBridge originalDoc)
+        throws ChangeRequestException
+    {
+        DocumentModelBridge modifiedDoc =
+            this.fileChangeStorageManager.getModifiedDocumentFromFileChange(fileChange);
+
         DocumentModelBridge previousDoc;
         Optional<DocumentModelBridge> optionalPreviousDoc =
             this.fileChangeStorageManager.getPreviousDocumentFromFileChange(fileChange);
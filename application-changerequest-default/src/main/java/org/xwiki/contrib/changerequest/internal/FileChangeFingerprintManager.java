@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.syntax.Syntax;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.PropertyInterface;
+
+/**
+ * Component in charge of computing fingerprints of the content of the documents stored in file changes.
+ * The fingerprint only takes into account the actual content of the document (title, content, syntax, objects and
+ * attachments metadata) and not the metadata that are changed each time a file change is saved (authors, dates,
+ * versions): two file changes containing the same changes have the same fingerprint.
+ * The fingerprints of the published versions of the documents are kept in cache, so that checking if a published
+ * document changed since a file change has been created does not require to load again the old revisions.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = FileChangeFingerprintManager.class)
+@Singleton
+public class FileChangeFingerprintManager implements Initializable, Disposable
+{
+    private static final char SEPARATOR = '\0';
+
+    /**
+     * Value put in cache when the published version cannot be found, since the cache does not accept null values.
+     */
+    private static final String NO_FINGERPRINT = "";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private Provider<FileChangeStorageManager> fileChangeStorageManagerProvider;
+
+    private Cache<String> publishedFingerprintCache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.publishedFingerprintCache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration("changerequest.publishedFingerprints", 1000));
+        } catch (CacheException e) {
+            throw new InitializationException("Error when initializing the cache for published fingerprints.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.publishedFingerprintCache.dispose();
+    }
+
+    /**
+     * Compute the fingerprint of the given document.
+     *
+     * @param document the document for which to compute a fingerprint
+     * @return the fingerprint of the document content or {@code null} if the document is {@code null}
+     */
+    public String computeFingerprint(DocumentModelBridge document)
+    {
+        String result = null;
+        if (document instanceof XWikiDocument) {
+            XWikiDocument xwikiDocument = (XWikiDocument) document;
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            update(digest, "title", xwikiDocument.getTitle());
+            update(digest, "content", xwikiDocument.getContent());
+            Syntax syntax = xwikiDocument.getSyntax();
+            update(digest, "syntax", (syntax != null) ? syntax.toIdString() : null);
+            update(digest, "parent", xwikiDocument.getParent());
+            update(digest, "hidden", xwikiDocument.isHidden());
+            this.updateObjects(digest, xwikiDocument);
+            this.updateAttachments(digest, xwikiDocument);
+            result = Hex.encodeHexString(digest.digest());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve the fingerprint of the given file change: the stored fingerprint is used if available, else it's
+     * computed from the modified document.
+     *
+     * @param fileChange the file change for which to get the fingerprint
+     * @return the fingerprint of the file change content, or {@code null} if the file change does not hold any document
+     */
+    public String getFingerprint(FileChange fileChange)
+    {
+        String result = fileChange.getContentFingerprint();
+        if (StringUtils.isEmpty(result)) {
+            result = this.computeFingerprint(fileChange.getModifiedDocument());
+        }
+        return result;
+    }
+
+    /**
+     * Check if both file changes contain the exact same changes, by comparing their types and fingerprints.
+     *
+     * @param fileChange a file change
+     * @param otherFileChange another file change
+     * @return {@code true} if both file changes have the same type and contain the same document content
+     */
+    public boolean hasSameContent(FileChange fileChange, FileChange otherFileChange)
+    {
+        boolean result = false;
+        if (fileChange.getType() != null && fileChange.getType() == otherFileChange.getType()) {
+            if (fileChange.getModifiedDocument() == null && otherFileChange.getModifiedDocument() == null) {
+                result = true;
+            } else {
+                String fingerprint = this.getFingerprint(fileChange);
+                result = fingerprint != null && fingerprint.equals(this.getFingerprint(otherFileChange));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve the fingerprint of the given published document. The fingerprint is cached based on the reference,
+     * the version and the date of the document, so that it's only computed once for each published version.
+     *
+     * @param document a published document
+     * @return the fingerprint of the document content, or {@code null} if the document does not exist
+     */
+    public String getPublishedFingerprint(DocumentModelBridge document)
+    {
+        String result = null;
+        if (document instanceof XWikiDocument && !((XWikiDocument) document).isNew()) {
+            XWikiDocument xwikiDocument = (XWikiDocument) document;
+            String cacheKey = this.getPublishedCacheKey(xwikiDocument.getDocumentReferenceWithLocale(),
+                xwikiDocument.getVersion(), xwikiDocument.getDate());
+            result = this.publishedFingerprintCache.get(cacheKey);
+            if (result == null) {
+                result = this.computeFingerprint(xwikiDocument);
+                this.publishedFingerprintCache.set(cacheKey, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve the fingerprint of the published version of the document on which the given file change is based.
+     * The old revision of the document is only loaded if the fingerprint is not already in cache.
+     *
+     * @param fileChange the file change for which to get the fingerprint of the previous published version
+     * @return the fingerprint of the previous published version, or {@code null} if this version cannot be found
+     * @throws ChangeRequestException in case of problem when loading the previous published version
+     */
+    public String getPreviousPublishedFingerprint(FileChange fileChange) throws ChangeRequestException
+    {
+        String result = null;
+        if (fileChange.getPreviousPublishedVersion() != null && fileChange.getPreviousPublishedVersionDate() != null) {
+            String cacheKey = this.getPublishedCacheKey(fileChange.getTargetEntity(),
+                fileChange.getPreviousPublishedVersion(), fileChange.getPreviousPublishedVersionDate());
+            result = this.publishedFingerprintCache.get(cacheKey);
+            if (result == null) {
+                Optional<DocumentModelBridge> previousDocument =
+                    this.fileChangeStorageManagerProvider.get().getPreviousDocumentFromFileChange(fileChange);
+                result = previousDocument.map(this::computeFingerprint).orElse(NO_FINGERPRINT);
+                this.publishedFingerprintCache.set(cacheKey, result);
+            }
+        }
+        return StringUtils.defaultIfEmpty(result, null);
+    }
+
+    /**
+     * Check if the given published document has the same content as the published version on which the given file
+     * change is based.
+     *
+     * @param fileChange the file change for which to check the previous published version
+     * @param currentDocument the current published version of the document
+     * @return {@code true} if both published versions have the same fingerprint
+     * @throws ChangeRequestException in case of problem when loading the previous published version
+     */
+    public boolean isPreviousPublishedContent(FileChange fileChange, DocumentModelBridge currentDocument)
+        throws ChangeRequestException
+    {
+        String fingerprint = this.getPublishedFingerprint(currentDocument);
+        return fingerprint != null && fingerprint.equals(this.getPreviousPublishedFingerprint(fileChange));
+    }
+
+    private String getPublishedCacheKey(DocumentReference documentReference, String version, Date date)
+    {
+        return String.format("%s_%s_%s_%s", this.entityReferenceSerializer.serialize(documentReference),
+            documentReference.getLocale(), version, (date != null) ? date.getTime() : null);
+    }
+
+    private void updateObjects(MessageDigest digest, XWikiDocument document)
+    {
+        // We rely on the local reference of the classes since the wiki is not necessarily kept when serializing.
+        Map<String, List<BaseObject>> sortedObjects = new TreeMap<>();
+        for (Map.Entry<DocumentReference, List<BaseObject>> entry : document.getXObjects().entrySet()) {
+            List<BaseObject> objects = new ArrayList<>(entry.getValue());
+            objects.removeIf(Objects::isNull);
+            if (!objects.isEmpty()) {
+                sortedObjects.put(objects.get(0).getRelativeXClassReference().toString(), objects);
+            }
+        }
+        for (Map.Entry<String, List<BaseObject>> entry : sortedObjects.entrySet()) {
+            List<BaseObject> objects = entry.getValue();
+            objects.sort(Comparator.comparingInt(BaseObject::getNumber));
+            for (BaseObject object : objects) {
+                update(digest, "object", entry.getKey() + "/" + object.getNumber());
+                for (String propertyName : new TreeSet<>(object.getPropertyList())) {
+                    PropertyInterface property = object.safeget(propertyName);
+                    Object value = (property instanceof BaseProperty) ? ((BaseProperty) property).getValue() : null;
+                    if (value instanceof Date) {
+                        value = ((Date) value).getTime();
+                    }
+                    update(digest, propertyName, value);
+                }
+            }
+        }
+    }
+
+    private void updateAttachments(MessageDigest digest, XWikiDocument document)
+    {
+        List<XWikiAttachment> attachments = new ArrayList<>(document.getAttachmentList());
+        attachments.sort(Comparator.comparing(XWikiAttachment::getFilename));
+        for (XWikiAttachment attachment : attachments) {
+            update(digest, "attachment", attachment.getFilename());
+            update(digest, "size", attachment.getLongSize());
+            update(digest, "date", (attachment.getDate() != null) ? attachment.getDate().getTime() : null);
+        }
+    }
+
+    private static void update(MessageDigest digest, String key, Object value)
+    {
+        // The key and separators avoid collisions between different values concatenated the same way.
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) SEPARATOR);
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) SEPARATOR);
+    }
+}
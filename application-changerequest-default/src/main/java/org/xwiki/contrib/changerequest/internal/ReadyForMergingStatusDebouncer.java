@@ -0,0 +1,284 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.ChangeRequestManager;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler.WorkPriority;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Component in charge of coalescing the computations of the ready for merging status of change requests.
+ * Each request for a computation is recorded per change request and is only performed once no other request occurred
+ * for the given delay, or once the given maximum delay is reached since the first request, whichever comes first.
+ * Pending computations can also be performed right away with
+ * {@link ChangeRequestManager#flushReadyForMergingStatus(ChangeRequest)}. Expired computations are performed by the
+ * {@link ChangeRequestWorkScheduler} as interactive works.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ReadyForMergingStatusDebouncer.class)
+@Singleton
+public class ReadyForMergingStatusDebouncer implements Initializable, Disposable
+{
+    /**
+     * Interval in milliseconds between two checks of the pending computations.
+     */
+    private static final long TICK_INTERVAL = 200;
+
+    @Inject
+    private Provider<ChangeRequestManager> changeRequestManagerProvider;
+
+    @Inject
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ChangeRequestWorkScheduler workScheduler;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<DocumentReference, PendingComputation> pendingComputations = new ConcurrentHashMap<>();
+
+    private Clock clock = Clock.systemUTC();
+
+    private ScheduledExecutorService executorService;
+
+    private static final class PendingComputation
+    {
+        private final String changeRequestId;
+
+        private final long firstRequestTime;
+
+        private final long maxDelay;
+
+        private volatile long lastRequestTime;
+
+        private volatile long delay;
+
+        private volatile DocumentReference userReference;
+
+        PendingComputation(String changeRequestId, long requestTime, long maxDelay)
+        {
+            this.changeRequestId = changeRequestId;
+            this.firstRequestTime = requestTime;
+            this.maxDelay = maxDelay;
+        }
+
+        boolean isExpired(long now)
+        {
+            return (now - this.lastRequestTime >= this.delay) || (now - this.firstRequestTime >= this.maxDelay);
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("changerequest-status-computation-%d")
+            .daemon(true)
+            .build());
+        this.executorService.scheduleWithFixedDelay(() -> {
+            // Any exception thrown here would cancel the next executions.
+            try {
+                this.processExpiredComputations();
+            } catch (Exception e) {
+                this.logger.error("Unexpected error while processing the ready for merging status computations", e);
+            }
+        }, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executorService.shutdownNow();
+    }
+
+    /**
+     * Only meant for tests: allow to control the time used to decide if pending computations are expired.
+     *
+     * @param clock the clock to use
+     */
+    void setClock(Clock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Record a request for computing the ready for merging status of the given change request. If a computation is
+     * already pending for this change request, it is postponed by the given delay, without exceeding the maximum delay
+     * computed from the first pending request.
+     *
+     * @param changeRequest the change request for which to compute the status
+     * @param delay the duration in milliseconds without other request before performing the computation
+     * @param maxDelay the maximum duration in milliseconds before performing the computation
+     */
+    public void schedule(ChangeRequest changeRequest, long delay, long maxDelay)
+    {
+        long now = this.clock.millis();
+        DocumentReference userReference = this.contextProvider.get().getUserReference();
+        this.pendingComputations.compute(getKey(changeRequest), (key, pending) -> {
+            PendingComputation result = pending;
+            if (result == null) {
+                result = new PendingComputation(changeRequest.getId(), now, Math.max(delay, maxDelay));
+            }
+            result.lastRequestTime = now;
+            result.delay = delay;
+            result.userReference = userReference;
+            return result;
+        });
+    }
+
+    /**
+     * Check if a computation is currently pending for the given change request.
+     *
+     * @param changeRequest the change request for which to check if a computation is pending
+     * @return {@code true} if a computation has been scheduled and not performed yet
+     */
+    public boolean isPending(ChangeRequest changeRequest)
+    {
+        return this.pendingComputations.containsKey(getKey(changeRequest));
+    }
+
+    /**
+     * Remove any pending computation for the given change request. This method should be called right before
+     * performing the computation.
+     *
+     * @param changeRequest the change request for which to remove pending computations
+     */
+    public void cancel(ChangeRequest changeRequest)
+    {
+        this.pendingComputations.remove(getKey(changeRequest));
+    }
+
+    /**
+     * Perform all pending computations whose delay or maximum delay are expired.
+     * This method is called periodically by a dedicated thread.
+     */
+    public void processExpiredComputations()
+    {
+        long now = this.clock.millis();
+        List<Map.Entry<DocumentReference, PendingComputation>> expiredComputations = new ArrayList<>();
+        for (Map.Entry<DocumentReference, PendingComputation> entry : this.pendingComputations.entrySet()) {
+            if (entry.getValue().isExpired(now)) {
+                expiredComputations.add(entry);
+            }
+        }
+        for (Map.Entry<DocumentReference, PendingComputation> expiredComputation : expiredComputations) {
+            // Only process the computation if no one removed it in between.
+            if (this.pendingComputations.remove(expiredComputation.getKey(), expiredComputation.getValue())) {
+                this.submit(expiredComputation.getKey(), expiredComputation.getValue());
+            }
+        }
+    }
+
+    private void submit(DocumentReference changeRequestReference, PendingComputation pendingComputation)
+    {
+        boolean submitted = this.workScheduler.submit(changeRequestReference.getWikiReference().getName(),
+            pendingComputation.userReference, WorkPriority.INTERACTIVE,
+            String.format("ready for merging status computation of [%s]", pendingComputation.changeRequestId),
+            () -> this.process(pendingComputation));
+        // If too many works are waiting, we perform the computation right away since it cannot be postponed.
+        if (!submitted) {
+            this.processInContext(changeRequestReference, pendingComputation);
+        }
+    }
+
+    private void processInContext(DocumentReference changeRequestReference, PendingComputation pendingComputation)
+    {
+        // The computations are performed in a dedicated thread, so we need to create the context.
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            XWikiContext context = this.contextProvider.get();
+            context.setWikiReference(changeRequestReference.getWikiReference());
+            context.setUserReference(pendingComputation.userReference);
+            this.process(pendingComputation);
+        } catch (ExecutionContextException e) {
+            this.logger.error("Error while initializing context for computing status of change request [{}]",
+                changeRequestReference, e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private void process(PendingComputation pendingComputation)
+    {
+        String changeRequestId = pendingComputation.changeRequestId;
+        try {
+            // We reload the change request since it might have been updated since the computation was requested.
+            Optional<ChangeRequest> changeRequestOpt =
+                this.changeRequestStorageManagerProvider.get().load(changeRequestId);
+            if (changeRequestOpt.isPresent()) {
+                this.changeRequestManagerProvider.get().flushReadyForMergingStatus(changeRequestOpt.get());
+            }
+        } catch (ChangeRequestException e) {
+            this.logger.error("Error while computing ready for merging status of [{}]", changeRequestId, e);
+        }
+    }
+
+    private DocumentReference getKey(ChangeRequest changeRequest)
+    {
+        return this.changeRequestDocumentReferenceResolver.resolve(changeRequest);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.approvers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.internal.listeners.DelegateApproversXObjectUpdatedListener;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Reverse index of the delegate approvers stored in the users documents: for each delegate it gives the users they
+ * can act for. The index of a wiki is loaded with a single query the first time it's needed, and then kept up to date
+ * by {@link DelegateApproversXObjectUpdatedListener} each time the delegate approvers of a user are updated, and
+ * dropped when the wiki is deleted. The index is registered before being loaded so that the updates performed during
+ * the load are not lost: they take precedence over the values retrieved by the query.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = DelegateApproversIndex.class)
+@Singleton
+public class DelegateApproversIndex
+{
+    private static final String DELEGATE_INDEX_QUERY = "select doc.fullName, prop.value from XWikiDocument as doc, "
+        + "BaseObject as obj, LargeStringProperty as prop where doc.fullName = obj.name and obj.className = :className "
+        + "and prop.id.id = obj.id and prop.id.name = :propertyName";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    @Named("document")
+    private UserReferenceResolver<DocumentReference> userReferenceResolver;
+
+    @Inject
+    @Named("current")
+    private UserReferenceResolver<String> stringUserReferenceResolver;
+
+    private final Map<WikiReference, WikiIndex> wikiIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * The delegates of the users of a wiki, along with the reverse index.
+     */
+    private static final class WikiIndex
+    {
+        private final Map<UserReference, Set<UserReference>> delegatesByUser = new HashMap<>();
+
+        private final Map<UserReference, Set<UserReference>> usersByDelegate = new HashMap<>();
+
+        /**
+         * The users updated while the index is loading, whose loaded values are outdated.
+         */
+        private final Set<UserReference> updatedDuringLoad = new HashSet<>();
+
+        private boolean loading = true;
+
+        private boolean failed;
+
+        synchronized void updateDelegates(UserReference user, Set<UserReference> delegates)
+        {
+            if (this.loading) {
+                this.updatedDuringLoad.add(user);
+            }
+            this.setDelegates(user, delegates);
+        }
+
+        synchronized void loadDelegates(UserReference user, Set<UserReference> delegates)
+        {
+            if (!this.updatedDuringLoad.contains(user)) {
+                this.setDelegates(user, delegates);
+            }
+        }
+
+        synchronized void endLoad(boolean success)
+        {
+            this.loading = false;
+            this.failed = !success;
+            this.updatedDuringLoad.clear();
+            this.notifyAll();
+        }
+
+        synchronized void waitForLoad(WikiReference wiki) throws ChangeRequestException
+        {
+            try {
+                while (this.loading) {
+                    this.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChangeRequestException(
+                    String.format("Interrupted while waiting for the delegate approvers of wiki [%s]", wiki), e);
+            }
+            if (this.failed) {
+                throw new ChangeRequestException(
+                    String.format("Error while loading the delegate approvers of wiki [%s]", wiki));
+            }
+        }
+
+        private void setDelegates(UserReference user, Set<UserReference> delegates)
+        {
+            Set<UserReference> previousDelegates = this.delegatesByUser.remove(user);
+            if (previousDelegates != null) {
+                for (UserReference previousDelegate : previousDelegates) {
+                    Set<UserReference> users = this.usersByDelegate.get(previousDelegate);
+                    users.remove(user);
+                    if (users.isEmpty()) {
+                        this.usersByDelegate.remove(previousDelegate);
+                    }
+                }
+            }
+            if (!delegates.isEmpty()) {
+                this.delegatesByUser.put(user, delegates);
+                for (UserReference delegate : delegates) {
+                    this.usersByDelegate.computeIfAbsent(delegate, key -> new HashSet<>()).add(user);
+                }
+            }
+        }
+
+        synchronized void addUsersOfDelegate(UserReference delegate, Set<UserReference> result)
+        {
+            result.addAll(this.usersByDelegate.getOrDefault(delegate, Collections.emptySet()));
+        }
+    }
+
+    /**
+     * Retrieve the users for whom the given user is a delegate approver.
+     *
+     * @param delegate the delegate approver
+     * @param wikis the wikis in which to look for the users for whom the given user is delegate
+     * @return the users of the given wikis who have the given user as delegate approver
+     * @throws ChangeRequestException in case of problem for loading the index of a wiki
+     */
+    public Set<UserReference> getUsersOfDelegate(UserReference delegate, Collection<WikiReference> wikis)
+        throws ChangeRequestException
+    {
+        Set<UserReference> result = new HashSet<>();
+        for (WikiReference wiki : wikis) {
+            this.getWikiIndex(wiki).addUsersOfDelegate(delegate, result);
+        }
+        return result;
+    }
+
+    /**
+     * Update the index with the delegate approvers stored in the given user document. Nothing is done if the index of
+     * the user wiki is not loaded nor being loaded.
+     *
+     * @param userDoc a user document whose delegate approvers have been updated
+     */
+    public void update(XWikiDocument userDoc)
+    {
+        DocumentReference userDocReference = userDoc.getDocumentReference();
+        WikiIndex wikiIndex = this.wikiIndexes.get(userDocReference.getWikiReference());
+        if (wikiIndex != null) {
+            String serializedDelegates = null;
+            BaseObject delegateObject =
+                userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS);
+            if (delegateObject != null) {
+                serializedDelegates =
+                    delegateObject.getLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY);
+            }
+            wikiIndex.updateDelegates(this.userReferenceResolver.resolve(userDocReference),
+                this.parseDelegates(serializedDelegates, userDocReference.getWikiReference()));
+        }
+    }
+
+    /**
+     * Drop the index of the given wiki.
+     *
+     * @param wiki a wiki which has been deleted
+     */
+    public void removeWiki(WikiReference wiki)
+    {
+        this.wikiIndexes.remove(wiki);
+    }
+
+    private WikiIndex getWikiIndex(WikiReference wiki) throws ChangeRequestException
+    {
+        WikiIndex result = this.wikiIndexes.get(wiki);
+        if (result == null) {
+            WikiIndex newIndex = new WikiIndex();
+            result = this.wikiIndexes.putIfAbsent(wiki, newIndex);
+            if (result == null) {
+                result = newIndex;
+                this.loadWikiIndex(wiki, newIndex);
+            }
+        }
+        result.waitForLoad(wiki);
+        return result;
+    }
+
+    private void loadWikiIndex(WikiReference wiki, WikiIndex wikiIndex) throws ChangeRequestException
+    {
+        boolean success = false;
+        try {
+            Query query = this.queryManager.createQuery(DELEGATE_INDEX_QUERY, Query.HQL);
+            query.setWiki(wiki.getName());
+            query.bindValue("className",
+                this.entityReferenceSerializer.serialize(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS));
+            query.bindValue("propertyName", DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY);
+            List<Object[]> rows = query.execute();
+            for (Object[] row : rows) {
+                UserReference user =
+                    this.userReferenceResolver.resolve(this.documentReferenceResolver.resolve((String) row[0], wiki));
+                wikiIndex.loadDelegates(user, this.parseDelegates((String) row[1], wiki));
+            }
+            success = true;
+        } catch (QueryException e) {
+            throw new ChangeRequestException(
+                String.format("Error while loading the delegate approvers of wiki [%s]", wiki), e);
+        } finally {
+            if (!success) {
+                // Let the next call retry the load.
+                this.wikiIndexes.remove(wiki, wikiIndex);
+            }
+            wikiIndex.endLoad(success);
+        }
+    }
+
+    private Set<UserReference> parseDelegates(String serializedDelegates, WikiReference wiki)
+    {
+        Set<UserReference> result = Collections.emptySet();
+        if (!StringUtils.isEmpty(serializedDelegates)) {
+            result = Arrays.stream(StringUtils.split(serializedDelegates,
+                    ApproversXClassInitializer.SEPARATOR_CHARACTER))
+                .map(delegate -> this.stringUserReferenceResolver.resolve(delegate, wiki))
+                .collect(Collectors.toSet());
+        }
+        return result;
+    }
+}
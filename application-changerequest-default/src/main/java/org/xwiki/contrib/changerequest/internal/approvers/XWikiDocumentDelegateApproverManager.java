@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -32,21 +33,15 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.manager.ComponentLifecycleException;
-import org.xwiki.component.phase.Disposable;
-import org.xwiki.component.phase.Initializable;
-import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.ApproversManager;
 import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.DelegateApproverManager;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.user.CurrentUserReference;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceResolver;
@@ -69,8 +64,7 @@ import com.xpn.xwiki.objects.PropertyInterface;
  */
 @Component
 @Singleton
-public class XWikiDocumentDelegateApproverManager implements DelegateApproverManager<XWikiDocument>, Initializable,
-    Disposable
+public class XWikiDocumentDelegateApproverManager implements DelegateApproverManager<XWikiDocument>
 {
     @Inject
     private ChangeRequestConfiguration configuration;
@@ -95,25 +89,10 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
     private Provider<ApproversManager<XWikiDocument>> approversManagerProvider;
 
     @Inject
-    private CacheManager cacheManager;
+    private DelegateApproversCacheManager delegateApproversCacheManager;
 
-    private Cache<Set<UserReference>> delegateCache;
-
-    @Override
-    public void initialize() throws InitializationException
-    {
-        try {
-            this.delegateCache = this.cacheManager.createNewCache(new LRUCacheConfiguration("changerequest.delegate"));
-        } catch (CacheException e) {
-            throw new InitializationException("Error while initializing delegate cache", e);
-        }
-    }
-
-    @Override
-    public void dispose() throws ComponentLifecycleException
-    {
-        this.delegateCache.dispose();
-    }
+    @Inject
+    private DelegateApproversIndex delegateApproversIndex;
 
     private boolean hasDelegatePropertiesConfigured()
     {
@@ -131,27 +110,47 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
                 XWikiDocument userDoc = context.getWiki().getDocument(userDocReference, context);
                 if (!userDoc.isNew()) {
                     result = this.getDelegatesFromProperties(userDoc);
-                    userDoc.removeXObjects(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS);
-                    int objectNumber =
-                        userDoc.createXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS, context);
-                    BaseObject delegateObject =
-                        userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS, objectNumber);
-                    List<String> serializedList = result.stream()
-                        .map(this.userReferenceSerializer::serialize)
-                        .collect(Collectors.toList());
-                    delegateObject.setLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY,
-                        StringUtils.join(serializedList, ApproversXClassInitializer.SEPARATOR_CHARACTER));
-                    context.getWiki().saveDocument(userDoc, "Computation of delegate approvers", context);
+                    // Avoid saving the user document when the delegates did not change, since it would create a new
+                    // version of the user document for nothing.
+                    if (!this.isAlreadyStored(userDoc, result)) {
+                        this.storeDelegates(userDoc, result, context);
+                    }
                 }
             } catch (XWikiException e) {
                 throw new ChangeRequestException(
                     String.format("Error when reading user document of [%s] to compute delegate", userReference), e);
             }
-            this.delegateCache.set(this.userReferenceSerializer.serialize(userReference), result);
+            // The stored delegates are shared by all wikis: the entries cached in the other wikis are outdated.
+            this.delegateApproversCacheManager.invalidate(userReference);
+            this.delegateApproversCacheManager.set(userReference, result);
         }
         return result;
     }
 
+    private boolean isAlreadyStored(XWikiDocument userDoc, Set<UserReference> delegates)
+    {
+        long delegateObjectsNumber = userDoc.getXObjects(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)
+            .stream()
+            .filter(Objects::nonNull)
+            .count();
+        return delegateObjectsNumber <= 1 && this.getStoredDelegates(userDoc).equals(delegates);
+    }
+
+    private void storeDelegates(XWikiDocument userDoc, Set<UserReference> delegates, XWikiContext context)
+        throws XWikiException
+    {
+        userDoc.removeXObjects(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS);
+        int objectNumber = userDoc.createXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS, context);
+        BaseObject delegateObject =
+            userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS, objectNumber);
+        List<String> serializedList = delegates.stream()
+            .map(this.userReferenceSerializer::serialize)
+            .collect(Collectors.toList());
+        delegateObject.setLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY,
+            StringUtils.join(serializedList, ApproversXClassInitializer.SEPARATOR_CHARACTER));
+        context.getWiki().saveDocument(userDoc, "Computation of delegate approvers", context);
+    }
+
     private Set<UserReference> getDelegatesFromProperties(XWikiDocument userDoc) throws ChangeRequestException
     {
         Set<UserReference> result = new HashSet<>();
@@ -189,11 +188,10 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
     {
         Set<UserReference> result = Collections.emptySet();
         if (configuration.isDelegateEnabled()) {
-            String serializedReference = this.userReferenceSerializer.serialize(userReference);
-            result = this.delegateCache.get(serializedReference);
+            result = this.delegateApproversCacheManager.get(userReference);
             if (result == null) {
                 result = getDelegateWithoutCache(userReference);
-                this.delegateCache.set(serializedReference, result);
+                this.delegateApproversCacheManager.set(userReference, result);
             }
         }
         return result;
@@ -206,19 +204,7 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
         XWikiContext context = this.contextProvider.get();
         try {
             XWikiDocument userDoc = context.getWiki().getDocument(userDocReference, context);
-            BaseObject delegateObject =
-                userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS);
-            if (delegateObject != null) {
-                String value =
-                    delegateObject.getLargeStringValue(
-                        DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY);
-                if (!StringUtils.isEmpty(value)) {
-                    result =
-                        Arrays.stream(StringUtils.split(value, ApproversXClassInitializer.SEPARATOR_CHARACTER))
-                            .map(this.stringUserReferenceResolver::resolve)
-                            .collect(Collectors.toSet());
-                }
-            }
+            result = this.getStoredDelegates(userDoc);
         } catch (XWikiException e) {
             throw new ChangeRequestException(
                 String.format("Error when reading document of user [%s] to retrieve delegate", userDocReference), e);
@@ -226,6 +212,22 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
         return result;
     }
 
+    private Set<UserReference> getStoredDelegates(XWikiDocument userDoc)
+    {
+        Set<UserReference> result = Collections.emptySet();
+        BaseObject delegateObject = userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS);
+        if (delegateObject != null) {
+            String value =
+                delegateObject.getLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY);
+            if (!StringUtils.isEmpty(value)) {
+                result = Arrays.stream(StringUtils.split(value, ApproversXClassInitializer.SEPARATOR_CHARACTER))
+                    .map(this.stringUserReferenceResolver::resolve)
+                    .collect(Collectors.toSet());
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean isDelegateApproverOf(UserReference userReference, XWikiDocument entity)
         throws ChangeRequestException
@@ -239,11 +241,7 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
             } else {
                 user = userReference;
             }
-            for (UserReference approver : allApprovers) {
-                if (this.getDelegates(approver).contains(user)) {
-                    return true;
-                }
-            }
+            return !this.getApproversOfDelegate(user, allApprovers).isEmpty();
         }
         return false;
     }
@@ -269,12 +267,27 @@ public class XWikiDocumentDelegateApproverManager implements DelegateApproverMan
         Set<UserReference> result = new HashSet<>();
         if (this.configuration.isDelegateEnabled()) {
             Set<UserReference> allApprovers = this.approversManagerProvider.get().getAllApprovers(entity, false);
+            result.addAll(this.getApproversOfDelegate(userReference, allApprovers));
+        }
+        return result;
+    }
 
-            for (UserReference approver : allApprovers) {
-                if (this.getDelegates(approver).contains(userReference)) {
-                    result.add(approver);
-                }
-            }
+    /**
+     * Use the reverse index of the delegates to retrieve among the given approvers those for whom the given user is a
+     * delegate, instead of retrieving the delegates of each approver.
+     */
+    private Set<UserReference> getApproversOfDelegate(UserReference delegate, Set<UserReference> approvers)
+        throws ChangeRequestException
+    {
+        Set<UserReference> result = Collections.emptySet();
+        if (!approvers.isEmpty()) {
+            Set<WikiReference> wikis = approvers.stream()
+                .map(this.userReferenceConverter::convert)
+                .filter(Objects::nonNull)
+                .map(DocumentReference::getWikiReference)
+                .collect(Collectors.toSet());
+            result = this.delegateApproversIndex.getUsersOfDelegate(delegate, wikis);
+            result.retainAll(approvers);
         }
         return result;
     }
@@ -34,9 +34,12 @@ import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 
 /**
  * Dedicated cache for change request, to avoid having to reload them from xobjects all the time.
+ * The summaries of the change requests are cached separately: they are much lighter than the change requests, so
+ * many more of them are kept.
  *
  * @version $Id$
  * @since 0.11
@@ -51,12 +54,16 @@ public class ChangeRequestStorageCacheManager implements Initializable, Disposab
 
     private Cache<ChangeRequest> changeRequestCache;
 
+    private Cache<ChangeRequestSummary> summaryCache;
+
     @Override
     public void initialize() throws InitializationException
     {
         try {
             this.changeRequestCache =
                 this.cacheManager.createNewCache(new LRUCacheConfiguration("changerequest.changerequests", 100));
+            this.summaryCache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration("changerequest.summaries", 10000));
         } catch (CacheException e) {
             throw new InitializationException("Error when initializing the cache for change requests.");
         }
@@ -66,6 +73,7 @@ public class ChangeRequestStorageCacheManager implements Initializable, Disposab
     public void dispose() throws ComponentLifecycleException
     {
         this.changeRequestCache.dispose();
+        this.summaryCache.dispose();
     }
 
     /**
@@ -95,13 +103,37 @@ public class ChangeRequestStorageCacheManager implements Initializable, Disposab
     }
 
     /**
-     * Clear the change request value from the cache.
+     * Retrieve a change request summary from the cache with the change request identifier.
+     *
+     * @param id the identifier of the change request
+     * @return a {@link Optional#empty()} if the summary is not cached, else an optional containing the summary.
+     * @since 1.16
+     */
+    public Optional<ChangeRequestSummary> getSummary(String id)
+    {
+        return Optional.ofNullable(this.summaryCache.get(id));
+    }
+
+    /**
+     * Cache the given change request summary so that it's quickly loaded later.
+     *
+     * @param summary the summary to be cached.
+     * @since 1.16
+     */
+    public void cacheSummary(ChangeRequestSummary summary)
+    {
+        this.summaryCache.set(summary.getId(), summary);
+    }
+
+    /**
+     * Clear the change request value and its summary from the cache.
      *
      * @param id the identifier of the change request to be cleared from the cache.
      */
     public void invalidate(String id)
     {
         this.changeRequestCache.remove(id);
+        this.summaryCache.remove(id);
     }
 
     /**
@@ -110,5 +142,6 @@ public class ChangeRequestStorageCacheManager implements Initializable, Disposab
     public void invalidateAll()
     {
         this.changeRequestCache.removeAll();
+        this.summaryCache.removeAll();
     }
 }
@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.changerequest.internal.cache;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -42,6 +43,7 @@ import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.internal.storage.FileChangeRenderedTitleLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
 import org.xwiki.text.StringUtils;
@@ -74,6 +76,9 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private Provider<FileChangeRenderedTitleLoader> renderedTitleLoaderProvider;
+
     private Cache<Map<String, String>> titleCache;
 
     @Override
@@ -95,7 +100,10 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
 
     /**
      * Compute and return the title for the given change request and file change.
-     * If it's not already in cache, this method will put the computed title in cache.
+     * Only the titles rendered and stored when the latest file change was saved are kept in cache: those titles are
+     * static, so they don't depend on the viewer nor on any other document. Other titles (e.g. titles containing
+     * scripts, or titles of deleted documents which depend on the published document) are rendered on each call with
+     * the rights of the current user.
      *
      * @param changeRequestId the identifier of the change request for which to retrieve a document title
      * @param fileChangeId the identifier of the file change for which to retrieve a document title
@@ -103,48 +111,42 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
      */
     public String getTitle(String changeRequestId, String fileChangeId)
     {
-        String result;
         Map<String, String> mapTitle = this.titleCache.get(changeRequestId);
-        if (mapTitle == null) {
-            mapTitle = new HashMap<>();
-            this.titleCache.set(changeRequestId, mapTitle);
+        if (mapTitle == null || !mapTitle.containsKey(fileChangeId)) {
+            Map<String, String> storedTitles = this.loadStoredTitles(changeRequestId, fileChangeId);
+            if (storedTitles.containsKey(fileChangeId)) {
+                if (mapTitle == null) {
+                    mapTitle = new HashMap<>();
+                    this.titleCache.set(changeRequestId, mapTitle);
+                }
+                // A null value is kept for the titles that need to be rendered on display.
+                mapTitle.putAll(storedTitles);
+            }
         }
-        if (!mapTitle.containsKey(fileChangeId)) {
-            result = loadTitle(changeRequestId, fileChangeId);
-            mapTitle.put(fileChangeId, result);
-        } else {
-            result = mapTitle.get(fileChangeId);
+        String result = (mapTitle != null) ? mapTitle.get(fileChangeId) : null;
+        if (result == null) {
+            result = this.loadTitle(changeRequestId, fileChangeId);
         }
         return result;
     }
 
     /**
-     * Invalidate cache entry for the given change request and for the document related to the given filechange.
-     * This method will retrieve the previous filechange concerning same doc to invalidate this previous entry.
+     * Invalidate cache entries for the given change request and for the document related to the given filechange.
+     * The entries of all filechanges concerning the same document are directly replaced by the title stored with the
+     * given filechange, or marked to be rendered on display if there's no such title.
      *
      * @param changeRequestId the identifier of the change request for which to invalidate an entry
      * @param newFileChange the filechange for which to invalidate an entry
      */
     public void invalidate(String changeRequestId, FileChange newFileChange)
-    {
-        this.invalidate(changeRequestId, newFileChange, null);
-    }
-
-    private void invalidate(String changeRequestId, FileChange newFileChange, String newTitle)
     {
         Map<String, String> mapTitle = this.titleCache.get(changeRequestId);
         if (mapTitle != null) {
-            ChangeRequest changeRequest = newFileChange.getChangeRequest();
-            if (!StringUtils.isBlank(newTitle)) {
-                changeRequest.getFileChangeImmediatelyBefore(newFileChange)
-                    .ifPresent(oldFileChange -> mapTitle.put(oldFileChange.getId(), newTitle));
-            } else {
-                changeRequest.getFileChangeImmediatelyBefore(newFileChange)
-                    .ifPresent(oldFileChange -> mapTitle.remove(oldFileChange.getId()));
-            }
-            if (mapTitle.isEmpty()) {
-                this.titleCache.remove(changeRequestId);
-            }
+            String newTitle = StringUtils.defaultIfBlank(newFileChange.getRenderedTitle(), null);
+            newFileChange.getChangeRequest().getAllFileChanges().stream()
+                .filter(fileChange -> newFileChange.getTargetEntity().equals(fileChange.getTargetEntity()))
+                .forEach(fileChange -> mapTitle.put(fileChange.getId(), newTitle));
+            mapTitle.put(newFileChange.getId(), newTitle);
         }
     }
 
@@ -166,6 +168,19 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
         this.titleCache.removeAll();
     }
 
+    private Map<String, String> loadStoredTitles(String changeRequestId, String fileChangeId)
+    {
+        Map<String, String> result = Collections.emptyMap();
+        try {
+            result = this.renderedTitleLoaderProvider.get().getLatestRenderedTitles(changeRequestId, fileChangeId);
+        } catch (ChangeRequestException e) {
+            this.logger.warn("Error while retrieving stored title for filechange [{}] in change request [{}]: [{}]",
+                fileChangeId, changeRequestId, ExceptionUtils.getRootCauseMessage(e));
+            this.logger.debug("Full stack trace of the stored title retrieval error: ", e);
+        }
+        return result;
+    }
+
     private String loadTitle(String changeRequestId, String fileChangeId)
     {
         String result = null;
@@ -207,7 +222,6 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
     private String loadTitle(FileChange fileChange)
     {
         String result = null;
-        ChangeRequest changeRequest = fileChange.getChangeRequest();
         try {
             DocumentModelBridge document;
             if (fileChange.getModifiedDocument() != null) {
@@ -216,8 +230,6 @@ public class ChangeRequestTitleCacheManager implements Initializable, Disposable
                 document = this.fileChangeStorageManagerProvider.get().getCurrentDocumentFromFileChange(fileChange);
             }
             result = ((XWikiDocument) document).getRenderedTitle(this.contextProvider.get());
-            // We invalidate previous entry by replacing its title value.
-            this.invalidate(changeRequest.getId(), fileChange, result);
         } catch (ChangeRequestException e) {
             this.logger.error("Error when loading the current document from filechange [{}] to get title: [{}]",
                 fileChange,
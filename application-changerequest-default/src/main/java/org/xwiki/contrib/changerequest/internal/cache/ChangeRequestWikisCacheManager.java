@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestWikisCacheInvalidationListener;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+/**
+ * Cache of the identifiers of the wikis where the change request UI extension is installed, to avoid checking the
+ * installed extensions of all wikis of the farm each time this information is needed.
+ * The cache is invalidated by {@link ChangeRequestWikisCacheInvalidationListener} whenever the change request UI
+ * extension is installed or uninstalled, and whenever a wiki is created or deleted.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ChangeRequestWikisCacheManager.class)
+@Singleton
+public class ChangeRequestWikisCacheManager
+{
+    /**
+     * Identifier of the change request UI extension.
+     */
+    public static final String CHANGE_REQUEST_UI_MODULE_ID =
+        "org.xwiki.contrib.changerequest:application-changerequest-ui";
+
+    private static final String WIKI_NAMESPACE_PREFIX = "wiki:";
+
+    @Inject
+    private InstalledExtensionRepository installedExtensionRepository;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    private volatile Set<String> wikisWithChangeRequest;
+
+    /**
+     * Retrieve the identifiers of the wikis where the change request UI extension is installed. Wikis where the
+     * extension is only available because it's installed on the farm are not part of the result.
+     *
+     * @return the identifiers of the wikis, in the order given by {@link WikiDescriptorManager#getAllIds()}
+     * @throws WikiManagerException in case of problem to list the wikis
+     */
+    public Set<String> getWikisWithChangeRequest() throws WikiManagerException
+    {
+        Set<String> result = this.wikisWithChangeRequest;
+        if (result == null) {
+            synchronized (this) {
+                result = this.wikisWithChangeRequest;
+                if (result == null) {
+                    result = this.computeWikisWithChangeRequest();
+                    this.wikisWithChangeRequest = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check if the change request UI extension is installed on the given wiki.
+     *
+     * @param wikiId the identifier of the wiki
+     * @return {@code true} if the extension is installed on the wiki, {@code false} if it's not installed or only
+     *         installed on the farm
+     * @throws WikiManagerException in case of problem to list the wikis
+     */
+    public boolean isChangeRequestInstalledOnWiki(String wikiId) throws WikiManagerException
+    {
+        return this.getWikisWithChangeRequest().contains(wikiId);
+    }
+
+    /**
+     * Invalidate the cached wikis so that they are computed again on next call.
+     */
+    public synchronized void invalidate()
+    {
+        this.wikisWithChangeRequest = null;
+    }
+
+    private Set<String> computeWikisWithChangeRequest() throws WikiManagerException
+    {
+        Set<String> result = new LinkedHashSet<>();
+        for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+            if (this.isInstalledOnNamespace(WIKI_NAMESPACE_PREFIX + wikiId)) {
+                result.add(wikiId);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * This method specifically check if the extension is installed on the wiki namespace: it returns {@code false}
+     * if it's installed on the farm, but not on the wiki.
+     */
+    private boolean isInstalledOnNamespace(String wikiNamespace)
+    {
+        InstalledExtension installedExtension = this.installedExtensionRepository
+            .getInstalledExtension(CHANGE_REQUEST_UI_MODULE_ID, wikiNamespace);
+
+        boolean isInstalled = false;
+        if (installedExtension != null) {
+            isInstalled = installedExtension.getNamespaces().contains(wikiNamespace);
+        }
+        return isInstalled;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Cache of the delegate approvers of the users.
+ * Since the delegate approvers depend on the configuration of the wiki where they are computed, the entries are
+ * scoped by the current wiki: each wiki has a generation number which is part of the keys, so that invalidating the
+ * entries of a wiki only consists in incrementing its generation, the outdated entries being then evicted by the LRU.
+ * The entries of a single user are invalidated in all the wikis where entries have been cached, since the stored
+ * delegates of the user are shared by all the wikis.
+ * The size of the cache is defined by {@link ChangeRequestConfiguration#getDelegateCacheSize()}.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = DelegateApproversCacheManager.class)
+@Singleton
+public class DelegateApproversCacheManager implements Initializable, Disposable
+{
+    private static final char KEY_SEPARATOR = '/';
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ChangeRequestConfiguration configuration;
+
+    @Inject
+    private UserReferenceSerializer<String> userReferenceSerializer;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Logger logger;
+
+    private Cache<Set<UserReference>> delegateCache;
+
+    private final Map<String, Long> wikiGenerations = new ConcurrentHashMap<>();
+
+    private final Set<String> cachedWikis = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.delegateCache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("changerequest.delegate", this.configuration.getDelegateCacheSize()));
+        } catch (CacheException e) {
+            throw new InitializationException("Error while initializing delegate cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.delegateCache.dispose();
+    }
+
+    /**
+     * Retrieve the cached delegate approvers of the given user for the current wiki.
+     *
+     * @param userReference the user for whom to retrieve the delegate approvers
+     * @return the cached delegate approvers, or {@code null} if they are not in cache
+     */
+    public Set<UserReference> get(UserReference userReference)
+    {
+        Set<UserReference> result = this.delegateCache.get(this.getKey(this.getCurrentWikiId(), userReference));
+        if (result == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Put in cache the delegate approvers of the given user for the current wiki.
+     *
+     * @param userReference the user for whom to cache the delegate approvers
+     * @param delegates the delegate approvers of the user
+     */
+    public void set(UserReference userReference, Set<UserReference> delegates)
+    {
+        String wikiId = this.getCurrentWikiId();
+        this.cachedWikis.add(wikiId);
+        this.delegateCache.set(this.getKey(wikiId, userReference), delegates);
+    }
+
+    /**
+     * Invalidate the entries cached for the given user in all wikis.
+     *
+     * @param userReference the user for whom to invalidate the entries
+     */
+    public void invalidate(UserReference userReference)
+    {
+        for (String wikiId : this.cachedWikis) {
+            this.delegateCache.remove(this.getKey(wikiId, userReference));
+        }
+    }
+
+    /**
+     * Invalidate all the entries cached for the given wiki.
+     *
+     * @param wikiReference the wiki for which to invalidate the entries
+     */
+    public void invalidate(WikiReference wikiReference)
+    {
+        this.wikiGenerations.merge(wikiReference.getName(), 1L, Long::sum);
+        this.logger.debug("Delegate approvers cache invalidated for wiki [{}]: [{}] hits and [{}] misses so far.",
+            wikiReference, this.getHitCount(), this.getMissCount());
+    }
+
+    /**
+     * @return the number of times delegate approvers have been found in cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of times delegate approvers have been looked up in cache without being found
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    private String getCurrentWikiId()
+    {
+        return this.contextProvider.get().getWikiId();
+    }
+
+    private String getKey(String wikiId, UserReference userReference)
+    {
+        return wikiId + KEY_SEPARATOR + this.wikiGenerations.getOrDefault(wikiId, 0L) + KEY_SEPARATOR
+            + this.userReferenceSerializer.serialize(userReference);
+    }
+}
@@ -38,7 +38,6 @@ import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.contrib.changerequest.rights.ChangeRequestApproveRight;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
 import org.xwiki.user.UserReference;
 
@@ -63,7 +62,7 @@ public class ApproversRightChecker implements FileChangeSavingChecker
     private ApproversManager<XWikiDocument> fileChangeApproversManager;
 
     @Inject
-    private AuthorizationManager authorizationManager;
+    private FileChangeSavingCheckersContext checkersContext;
 
     @Inject
     private UserReferenceConverter userReferenceConverter;
@@ -108,11 +107,10 @@ public class ApproversRightChecker implements FileChangeSavingChecker
             XWikiDocument modifiedDocument = (XWikiDocument) fileChange.getModifiedDocument();
             try {
                 Right approveRight = ChangeRequestApproveRight.getRight();
-                Set<UserReference> userApprovers =
-                    this.fileChangeApproversManager.getAllApprovers(modifiedDocument, false);
+                Set<UserReference> userApprovers = this.checkersContext.getAllApprovers(modifiedDocument);
                 for (UserReference userApprover : userApprovers) {
                     DocumentReference userDoc = this.userReferenceConverter.convert(userApprover);
-                    if (!this.authorizationManager.hasAccess(approveRight, userDoc,
+                    if (!this.checkersContext.hasAccess(approveRight, userDoc,
                         modifiedDocument.getDocumentReference())) {
                         return false;
                     }
@@ -121,7 +119,7 @@ public class ApproversRightChecker implements FileChangeSavingChecker
                 Set<DocumentReference> groupsApprovers =
                     this.fileChangeApproversManager.getGroupsApprovers(modifiedDocument);
                 for (DocumentReference groupsApprover : groupsApprovers) {
-                    if (!this.authorizationManager.hasAccess(approveRight, groupsApprover,
+                    if (!this.checkersContext.hasAccess(approveRight, groupsApprover,
                         modifiedDocument.getDocumentReference())) {
                         return false;
                     }
@@ -134,4 +132,10 @@ public class ApproversRightChecker implements FileChangeSavingChecker
         }
         return result;
     }
+
+    @Override
+    public CheckerCost getCost()
+    {
+        return CheckerCost.HIGH;
+    }
 }
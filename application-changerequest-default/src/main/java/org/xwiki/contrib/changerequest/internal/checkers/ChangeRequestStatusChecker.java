@@ -59,4 +59,10 @@ public class ChangeRequestStatusChecker implements FileChangeSavingChecker
     {
         return new SavingCheckerResult();
     }
+
+    @Override
+    public CheckerCost getCost()
+    {
+        return CheckerCost.LOW;
+    }
 }
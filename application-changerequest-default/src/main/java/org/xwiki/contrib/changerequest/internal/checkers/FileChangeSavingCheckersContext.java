@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.checkers;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.contrib.changerequest.ApproversManager;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.user.UserReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Context shared by the {@link FileChangeSavingChecker} during the evaluation of a save, so that the approvers and the
+ * rights results computed by a checker are reused by the next ones. The data are only kept between calls of
+ * {@link #start()} and {@link #stop()}: outside of those calls, the results are computed each time.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = FileChangeSavingCheckersContext.class)
+@Singleton
+public class FileChangeSavingCheckersContext
+{
+    private static final String CONTEXT_KEY = "changerequest.savingCheckers.data";
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ApproversManager<XWikiDocument> documentApproversManager;
+
+    @Inject
+    private AuthorizationManager authorizationManager;
+
+    private static final class SavingData
+    {
+        // The modified documents are compared by identity since they're not necessarily saved yet.
+        private final Map<XWikiDocument, Set<UserReference>> approvers = new IdentityHashMap<>();
+
+        private final Map<Triple<Right, DocumentReference, EntityReference>, Boolean> accesses = new HashMap<>();
+    }
+
+    /**
+     * Start keeping the data computed by the checkers.
+     *
+     * @return {@code true} if the context has been started, {@code false} if it was already started by a caller
+     */
+    public boolean start()
+    {
+        boolean result = false;
+        ExecutionContext context = this.execution.getContext();
+        if (context != null && !context.hasProperty(CONTEXT_KEY)) {
+            context.setProperty(CONTEXT_KEY, new SavingData());
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Stop keeping the data computed by the checkers and discard them.
+     */
+    public void stop()
+    {
+        ExecutionContext context = this.execution.getContext();
+        if (context != null) {
+            context.removeProperty(CONTEXT_KEY);
+        }
+    }
+
+    private SavingData getData()
+    {
+        ExecutionContext context = this.execution.getContext();
+        return (context != null) ? (SavingData) context.getProperty(CONTEXT_KEY) : null;
+    }
+
+    /**
+     * Retrieve all the approvers of the given document, without taking into account the delegates.
+     *
+     * @param document the document for which to retrieve the approvers
+     * @return the approvers of the document
+     * @throws ChangeRequestException in case of problem when retrieving the approvers
+     * @see ApproversManager#getAllApprovers(Object, boolean)
+     */
+    public Set<UserReference> getAllApprovers(XWikiDocument document) throws ChangeRequestException
+    {
+        SavingData data = this.getData();
+        Set<UserReference> result = (data != null) ? data.approvers.get(document) : null;
+        if (result == null) {
+            result = this.documentApproversManager.getAllApprovers(document, false);
+            if (data != null) {
+                data.approvers.put(document, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check if the given user or group has the given right on the given entity.
+     *
+     * @param right the right to check
+     * @param userOrGroup the reference of the user or the group
+     * @param entityReference the entity on which to check the right
+     * @return {@code true} if the right is granted
+     * @see AuthorizationManager#hasAccess(Right, DocumentReference, EntityReference)
+     */
+    public boolean hasAccess(Right right, DocumentReference userOrGroup, EntityReference entityReference)
+    {
+        SavingData data = this.getData();
+        Triple<Right, DocumentReference, EntityReference> key = Triple.of(right, userOrGroup, entityReference);
+        Boolean result = (data != null) ? data.accesses.get(key) : null;
+        if (result == null) {
+            result = this.authorizationManager.hasAccess(right, userOrGroup, entityReference);
+            if (data != null) {
+                data.accesses.put(key, result);
+            }
+        }
+        return result;
+    }
+}
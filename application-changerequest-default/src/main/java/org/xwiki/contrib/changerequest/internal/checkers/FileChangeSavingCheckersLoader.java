@@ -19,55 +19,246 @@
  */
 package org.xwiki.contrib.changerequest.internal.checkers;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker.SavingCheckerResult;
+import org.xwiki.contrib.changerequest.internal.listeners.FileChangeSavingCheckersInvalidationListener;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
 
 /**
- * Helper for loading the {@link FileChangeSavingChecker} components with respect of their priority.
+ * Helper for loading the {@link FileChangeSavingChecker} components with respect of their priority and cost, and
+ * for evaluating them.
+ * The ordered chain of checkers is kept in cache for each wiki and user, since checkers might be registered at wiki
+ * or user level: the singleton checkers are cached as instances, while only the hint of the other checkers is cached
+ * so that a new instance is looked up for each use and is never shared. The cache is invalidated by
+ * {@link FileChangeSavingCheckersInvalidationListener} whenever a checker is registered or unregistered.
  *
  * @version $Id$
  * @since 1.6
  */
 @Component(roles = FileChangeSavingCheckersLoader.class)
 @Singleton
-public class FileChangeSavingCheckersLoader
+public class FileChangeSavingCheckersLoader implements Initializable, Disposable
 {
+    private static final int CACHE_SIZE = 1000;
+
     @Inject
     @Named("context")
     private ComponentManager componentManager;
 
+    @Inject
+    private FileChangeSavingCheckersContext checkersContext;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<List<CachedChecker>> checkersCache;
+
+    /**
+     * A checker of the cached chain: either the instance of a singleton checker, or the hint of a checker that needs
+     * to be looked up for each use.
+     */
+    private static final class CachedChecker
+    {
+        private final String hint;
+
+        private final FileChangeSavingChecker instance;
+
+        private final int priority;
+
+        private final FileChangeSavingChecker.CheckerCost cost;
+
+        CachedChecker(String hint, FileChangeSavingChecker instance, FileChangeSavingChecker checker)
+        {
+            this.hint = hint;
+            this.instance = instance;
+            this.priority = getPriority(checker);
+            this.cost = checker.getCost();
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.checkersCache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("changerequest.savingCheckers", CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating the cache of saving checkers", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.checkersCache.dispose();
+    }
+
     /**
-     * Retrieve the list of {@link FileChangeSavingChecker} ordered by their {@link Priority}.
+     * Retrieve the list of {@link FileChangeSavingChecker} ordered by their {@link Priority}, and then by their
+     * {@link FileChangeSavingChecker#getCost()}.
      *
      * @return the ordered list of instances.
      * @throws ChangeRequestException in case of problem for loading the components
      */
     public List<FileChangeSavingChecker> getCheckers() throws ChangeRequestException
     {
+        XWikiContext context = this.contextProvider.get();
+        String cacheKey = String.format("%s:%s", context.getWikiId(), context.getUserReference());
+        List<CachedChecker> cachedCheckers = this.checkersCache.get(cacheKey);
+        if (cachedCheckers == null) {
+            cachedCheckers = this.loadCheckers();
+            this.checkersCache.set(cacheKey, cachedCheckers);
+        }
+
         try {
-            List<FileChangeSavingChecker> checkers =
-                this.componentManager.getInstanceList(FileChangeSavingChecker.class);
+            List<FileChangeSavingChecker> result = new ArrayList<>(cachedCheckers.size());
+            for (CachedChecker cachedChecker : cachedCheckers) {
+                result.add((cachedChecker.instance != null) ? cachedChecker.instance
+                    : this.componentManager.getInstance(FileChangeSavingChecker.class, cachedChecker.hint));
+            }
+            return result;
+        } catch (ComponentLookupException e) {
+            throw new ChangeRequestException("Error when trying to retrieve the list of FileChangeSavingChecker", e);
+        }
+    }
 
-            checkers.sort((checker1, checker2) -> {
-                Priority priority1 = checker1.getClass().getAnnotation(Priority.class);
-                Priority priority2 = checker2.getClass().getAnnotation(Priority.class);
+    /**
+     * Invalidate the cached chains of checkers so that they are loaded again on next call of {@link #getCheckers()}.
+     *
+     * @since 1.16
+     */
+    public void invalidate()
+    {
+        this.checkersCache.removeAll();
+    }
+
+    /**
+     * Check if the given file change can be added to the given change request, by evaluating all checkers in order
+     * until the first failure.
+     *
+     * @param changeRequest the change request in which to add new changes
+     * @param fileChange the file change that might be added
+     * @return the result of the first failing checker, or a successful result
+     * @throws ChangeRequestException in case of problem for loading the checkers
+     * @since 1.16
+     */
+    public SavingCheckerResult canChangeOnDocumentBeAdded(ChangeRequest changeRequest, FileChange fileChange)
+        throws ChangeRequestException
+    {
+        return this.evaluate(checker -> checker.canChangeOnDocumentBeAdded(changeRequest, fileChange));
+    }
+
+    /**
+     * Check if changes on the given document reference can be added to the given change request, by evaluating all
+     * checkers in order until the first failure.
+     *
+     * @param changeRequest the change request in which to add new changes
+     * @param documentReference the reference of the document with new changes
+     * @param changeType the type of change to be added in the change request
+     * @return the result of the first failing checker, or a successful result
+     * @throws ChangeRequestException in case of problem for loading the checkers
+     * @since 1.16
+     */
+    public SavingCheckerResult canChangeOnDocumentBeAdded(ChangeRequest changeRequest,
+        DocumentReference documentReference, FileChange.FileChangeType changeType) throws ChangeRequestException
+    {
+        return this.evaluate(checker -> checker.canChangeOnDocumentBeAdded(changeRequest, documentReference,
+            changeType));
+    }
+
+    /**
+     * Check if a change request can be created with the given file change, by evaluating all checkers in order until
+     * the first failure.
+     *
+     * @param fileChange the file change about to be saved for creating the change request
+     * @return the result of the first failing checker, or a successful result
+     * @throws ChangeRequestException in case of problem for loading the checkers
+     * @since 1.16
+     */
+    public SavingCheckerResult canChangeRequestBeCreatedWith(FileChange fileChange) throws ChangeRequestException
+    {
+        return this.evaluate(checker -> checker.canChangeRequestBeCreatedWith(fileChange));
+    }
+
+    private SavingCheckerResult evaluate(Function<FileChangeSavingChecker, SavingCheckerResult> check)
+        throws ChangeRequestException
+    {
+        SavingCheckerResult result = new SavingCheckerResult();
+        List<FileChangeSavingChecker> checkers = this.getCheckers();
+        // The approvers and rights computed by a checker are kept for the next checkers of the same evaluation.
+        boolean started = this.checkersContext.start();
+        try {
+            for (FileChangeSavingChecker checker : checkers) {
+                result = check.apply(checker);
+                if (!result.canBeSaved()) {
+                    break;
+                }
+            }
+        } finally {
+            if (started) {
+                this.checkersContext.stop();
+            }
+        }
+        return result;
+    }
+
+    private static int getPriority(FileChangeSavingChecker checker)
+    {
+        Priority priority = checker.getClass().getAnnotation(Priority.class);
+        return (priority != null) ? priority.value() : Integer.MAX_VALUE;
+    }
+
+    private List<CachedChecker> loadCheckers() throws ChangeRequestException
+    {
+        try {
+            List<ComponentDescriptor<FileChangeSavingChecker>> descriptors =
+                this.componentManager.getComponentDescriptorList((Type) FileChangeSavingChecker.class);
 
-                int priorityValue1 = (priority1 != null) ? priority1.value() : Integer.MAX_VALUE;
-                int priorityValue2 = (priority2 != null) ? priority2.value() : Integer.MAX_VALUE;
-                return priorityValue1 - priorityValue2;
-            });
+            List<CachedChecker> checkers = new ArrayList<>(descriptors.size());
+            for (ComponentDescriptor<FileChangeSavingChecker> descriptor : descriptors) {
+                FileChangeSavingChecker checker =
+                    this.componentManager.getInstance(FileChangeSavingChecker.class, descriptor.getRoleHint());
+                boolean isSingleton =
+                    descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.PER_LOOKUP;
+                checkers.add(new CachedChecker(descriptor.getRoleHint(), (isSingleton) ? checker : null, checker));
+            }
+            checkers.sort(Comparator.<CachedChecker>comparingInt(cachedChecker -> cachedChecker.priority)
+                .thenComparing(cachedChecker -> cachedChecker.cost));
 
-            return checkers;
+            return List.copyOf(checkers);
         } catch (ComponentLookupException e) {
             throw new ChangeRequestException("Error when trying to retrieve the list of FileChangeSavingChecker", e);
         }
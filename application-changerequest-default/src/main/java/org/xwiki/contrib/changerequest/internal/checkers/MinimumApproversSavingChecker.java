@@ -62,7 +62,7 @@ public class MinimumApproversSavingChecker implements FileChangeSavingChecker
     private ApproversManager<ChangeRequest> changeRequestApproversManager;
 
     @Inject
-    private ApproversManager<XWikiDocument> documentApproversManager;
+    private FileChangeSavingCheckersContext checkersContext;
 
     @Inject
     private Logger logger;
@@ -116,10 +116,9 @@ public class MinimumApproversSavingChecker implements FileChangeSavingChecker
         if (modifiedDocument != null && previousModifiedDocument != null) {
             try {
                 int minimumApprovers = configuration.getMinimumApprovers();
-                int previousNumberApprovers = this.documentApproversManager
-                    .getAllApprovers((XWikiDocument) previousModifiedDocument, false).size();
-                int numberApprovers = this.documentApproversManager
-                    .getAllApprovers((XWikiDocument) modifiedDocument, false).size();
+                int previousNumberApprovers =
+                    this.checkersContext.getAllApprovers((XWikiDocument) previousModifiedDocument).size();
+                int numberApprovers = this.checkersContext.getAllApprovers((XWikiDocument) modifiedDocument).size();
                 if (numberApprovers >= minimumApprovers || previousNumberApprovers <= numberApprovers) {
                     result = new SavingCheckerResult();
                 } else {
@@ -141,8 +140,8 @@ public class MinimumApproversSavingChecker implements FileChangeSavingChecker
         int minimumApprovers = configuration.getMinimumApprovers();
         if (minimumApprovers > 0 && fileChange.getModifiedDocument() != null) {
             try {
-                int numberApprovers = this.documentApproversManager
-                    .getAllApprovers((XWikiDocument) fileChange.getModifiedDocument(), false).size();
+                int numberApprovers =
+                    this.checkersContext.getAllApprovers((XWikiDocument) fileChange.getModifiedDocument()).size();
                 result = numberApprovers >= minimumApprovers;
             } catch (ChangeRequestException e) {
                 this.logger.warn("Error while trying to retrieve the approvers of filechange [{}] for creation check: "
@@ -157,4 +156,10 @@ public class MinimumApproversSavingChecker implements FileChangeSavingChecker
             return new SavingCheckerResult(FAILURE_REASON);
         }
     }
+
+    @Override
+    public CheckerCost getCost()
+    {
+        return CheckerCost.HIGH;
+    }
 }
@@ -76,4 +76,10 @@ public class RightSavingChecker implements FileChangeSavingChecker
     {
         return new SavingCheckerResult();
     }
+
+    @Override
+    public CheckerCost getCost()
+    {
+        return CheckerCost.MEDIUM;
+    }
 }
@@ -21,7 +21,6 @@ package org.xwiki.contrib.changerequest.internal.handlers;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.List;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -41,6 +40,7 @@ import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.events.ChangeRequestFileChangeAddedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestUpdatedFileChangeEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestUpdatingFileChangeEvent;
+import org.xwiki.contrib.changerequest.internal.FileChangeFingerprintManager;
 import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.store.merge.MergeDocumentResult;
@@ -74,6 +74,9 @@ public class AddChangesChangeRequestHandler extends AbstractChangeRequestActionH
     @Inject
     private ChangeRequestMergeManager changeRequestMergeManager;
 
+    @Inject
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     @Override
     public void handle(ChangeRequestReference changeRequestReference) throws ChangeRequestException, IOException
     {
@@ -98,7 +101,10 @@ public class AddChangesChangeRequestHandler extends AbstractChangeRequestActionH
             FileChange fileChange =
                 this.createFileChange(fileChangeType, changeRequest, modifiedDocument, documentReference, request,
                     currentUser);
-            if (fileChange != null && this.checkDocumentCompatibility(changeRequest, fileChange)) {
+            if (fileChange != null && this.isIdenticalToLatestFileChange(changeRequest, fileChange)) {
+                // Nothing new to record: avoid creating an empty revision of the file change.
+                this.responseSuccess(changeRequest);
+            } else if (fileChange != null && this.checkDocumentCompatibility(changeRequest, fileChange)) {
                 this.observationManager.notify(new ChangeRequestUpdatingFileChangeEvent(), changeRequest.getId(),
                     changeRequest);
                 changeRequest
@@ -118,17 +124,18 @@ public class AddChangesChangeRequestHandler extends AbstractChangeRequestActionH
         }
     }
 
+    private boolean isIdenticalToLatestFileChange(ChangeRequest changeRequest, FileChange fileChange)
+    {
+        Optional<FileChange> latestFileChange = changeRequest.getLatestFileChangeFor(fileChange.getTargetEntity());
+        return latestFileChange.isPresent()
+            && this.fileChangeFingerprintManager.hasSameContent(latestFileChange.get(), fileChange);
+    }
+
     private boolean checkDocumentCompatibility(ChangeRequest changeRequest, FileChange fileChange)
         throws ChangeRequestException, IOException
     {
-        FileChangeSavingChecker.SavingCheckerResult result = new FileChangeSavingChecker.SavingCheckerResult();
-        List<FileChangeSavingChecker> checkers = this.fileChangeSavingCheckersLoader.getCheckers();
-        for (FileChangeSavingChecker checker : checkers) {
-            result = checker.canChangeOnDocumentBeAdded(changeRequest, fileChange);
-            if (!result.canBeSaved()) {
-                break;
-            }
-        }
+        FileChangeSavingChecker.SavingCheckerResult result =
+            this.fileChangeSavingCheckersLoader.canChangeOnDocumentBeAdded(changeRequest, fileChange);
         if (!result.canBeSaved()) {
             this.reportError(HttpStatus.SC_PRECONDITION_FAILED, result.getReason());
         }
@@ -21,7 +21,6 @@ package org.xwiki.contrib.changerequest.internal.handlers;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 import javax.inject.Inject;
@@ -133,15 +132,7 @@ public class CreateChangeRequestHandler extends AbstractChangeRequestActionHandl
     private FileChangeSavingChecker.SavingCheckerResult canChangeRequestBeCreated(FileChange fileChange)
         throws ChangeRequestException
     {
-        FileChangeSavingChecker.SavingCheckerResult result = new FileChangeSavingChecker.SavingCheckerResult();
-        List<FileChangeSavingChecker> checkers = this.fileChangeSavingCheckersLoader.getCheckers();
-        for (FileChangeSavingChecker checker : checkers) {
-            result = checker.canChangeRequestBeCreatedWith(fileChange);
-            if (!result.canBeSaved()) {
-                break;
-            }
-        }
-        return result;
+        return this.fileChangeSavingCheckersLoader.canChangeRequestBeCreatedWith(fileChange);
     }
 
     private FileChange getFileChange(HttpServletRequest request) throws ChangeRequestException
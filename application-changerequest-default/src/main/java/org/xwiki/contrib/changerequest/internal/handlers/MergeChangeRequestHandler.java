@@ -59,6 +59,10 @@ public class MergeChangeRequestHandler extends AbstractChangeRequestActionHandle
     {
         ChangeRequest changeRequest = this.loadChangeRequest(changeRequestReference);
         if (changeRequest != null) {
+            // Ensure we don't rely on an outdated status if a computation is pending.
+            if (this.changeRequestManager.isReadyForMergingStatusPending(changeRequest)) {
+                this.changeRequestManager.flushReadyForMergingStatus(changeRequest);
+            }
             UserReference currentUser = this.userReferenceResolver.resolve(CurrentUserReference.INSTANCE);
             if (!this.changeRequestRightsManager.isAuthorizedToMerge(currentUser, changeRequest)) {
                 this.contextProvider.get().getResponse().sendError(HttpServletResponse.SC_FORBIDDEN,
@@ -22,6 +22,7 @@ package org.xwiki.contrib.changerequest.internal.jobs;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -34,6 +35,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestManager;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.events.StaleChangeRequestEvent;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
@@ -44,7 +46,8 @@ import org.xwiki.user.UserReference;
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Component in charge of the execution of the different jobs.
+ * Component in charge of the execution of the different jobs. The change requests found by the jobs are handled as
+ * batch works of the {@link ChangeRequestWorkScheduler}.
  * @see CloseStaleChangeRequestsJob
  * @see NotifyStaleChangeRequestsJob
  *
@@ -73,6 +76,9 @@ public class ChangeRequestSchedulerJobManager
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private ChangeRequestWorkScheduler workScheduler;
+
     @Inject
     private Logger logger;
 
@@ -97,7 +103,11 @@ public class ChangeRequestSchedulerJobManager
                 if (!changeRequests.isEmpty()) {
                     this.setContextUser();
                     for (ChangeRequest changeRequest : changeRequests) {
-                        this.changeRequestManager.updateStatus(changeRequest, ChangeRequestStatus.STALE);
+                        String changeRequestId = changeRequest.getId();
+                        if (!this.submit(String.format("closing of stale change request [%s]", changeRequestId),
+                            () -> this.closeChangeRequest(changeRequestId))) {
+                            break;
+                        }
                     }
                 }
             } catch (ChangeRequestException e) {
@@ -112,22 +122,55 @@ public class ChangeRequestSchedulerJobManager
     public void notifyStaleChangeRequests()
     {
         long durationLimit = this.configuration.getStaleChangeRequestDurationForNotifying();
-        List<ChangeRequest> changeRequests = null;
+        List<ChangeRequestSummary> summaries = null;
         try {
-            changeRequests = this.retrieveStaleChangeRequests(durationLimit);
+            summaries = this.retrieveStaleChangeRequestSummaries(durationLimit);
         } catch (ChangeRequestException e) {
             this.logger.error("Error while retrieving stale change requests.", e);
-            changeRequests = Collections.emptyList();
+            summaries = Collections.emptyList();
         }
 
-        if (!changeRequests.isEmpty()) {
+        if (!summaries.isEmpty()) {
             this.setContextUser();
-            for (ChangeRequest changeRequest : changeRequests) {
-                this.handleChangeRequestNotification(changeRequest);
+            for (ChangeRequestSummary summary : summaries) {
+                // Only the change requests which have not been notified yet need to be fully loaded.
+                if (summary.getStaleDate() == null && !this.submit(
+                    String.format("notification of stale change request [%s]", summary.getId()),
+                    () -> this.handleChangeRequestNotification(summary.getId()))) {
+                    break;
+                }
             }
         }
     }
 
+    /**
+     * Submit the given work as a batch work: if it's rejected, the remaining change requests are handled on next
+     * execution of the job.
+     */
+    private boolean submit(String description, Runnable work)
+    {
+        boolean result = this.workScheduler.submit(this.contextProvider.get().getWikiId(),
+            ChangeRequestWorkScheduler.WorkPriority.BATCH, description, work);
+        if (!result) {
+            this.logger.warn("Too many background works are waiting: the remaining stale change requests will be "
+                + "handled on next execution.");
+        }
+        return result;
+    }
+
+    private void closeChangeRequest(String changeRequestId)
+    {
+        try {
+            // The change request is loaded again since it might have been modified while the work was waiting.
+            Optional<ChangeRequest> changeRequestOpt = this.changeRequestStorageManager.load(changeRequestId);
+            if (changeRequestOpt.isPresent() && changeRequestOpt.get().getStatus().isOpen()) {
+                this.changeRequestManager.updateStatus(changeRequestOpt.get(), ChangeRequestStatus.STALE);
+            }
+        } catch (ChangeRequestException e) {
+            this.logger.error("Error while trying to close stale change request [{}].", changeRequestId, e);
+        }
+    }
+
     private void setContextUser()
     {
         UserReference schedulerContextUser = this.configuration.getSchedulerContextUser();
@@ -139,16 +182,18 @@ public class ChangeRequestSchedulerJobManager
         }
     }
 
-    private void handleChangeRequestNotification(ChangeRequest changeRequest)
+    private void handleChangeRequestNotification(String changeRequestId)
     {
-        if (changeRequest.getStaleDate() == null) {
-            this.observationManager.notify(new StaleChangeRequestEvent(), changeRequest.getId(), changeRequest);
-            changeRequest.setStaleDate(new Date());
-            try {
+        try {
+            Optional<ChangeRequest> changeRequestOpt = this.changeRequestStorageManager.load(changeRequestId);
+            if (changeRequestOpt.isPresent() && changeRequestOpt.get().getStaleDate() == null) {
+                ChangeRequest changeRequest = changeRequestOpt.get();
+                this.observationManager.notify(new StaleChangeRequestEvent(), changeRequest.getId(), changeRequest);
+                changeRequest.setStaleDate(new Date());
                 this.changeRequestStorageManager.saveStaleDate(changeRequest);
-            } catch (ChangeRequestException e) {
-                this.logger.error("Error while saving the change request stale date", e);
             }
+        } catch (ChangeRequestException e) {
+            this.logger.error("Error while saving the change request stale date", e);
         }
     }
 
@@ -168,4 +213,16 @@ public class ChangeRequestSchedulerJobManager
             return Collections.emptyList();
         }
     }
+
+    private List<ChangeRequestSummary> retrieveStaleChangeRequestSummaries(long durationLimit)
+        throws ChangeRequestException
+    {
+        if (durationLimit > 0) {
+            boolean useCreationDate = this.configuration.useCreationDateForStaleDurations();
+            return this.changeRequestStorageManager
+                .findOpenChangeRequestSummariesByDate(getLimitDate(durationLimit), useCreationDate);
+        } else {
+            return Collections.emptyList();
+        }
+    }
 }
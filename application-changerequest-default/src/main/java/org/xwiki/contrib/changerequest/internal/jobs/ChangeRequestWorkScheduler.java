@@ -0,0 +1,397 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.jobs;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Component in charge of performing the background work of change request with a shared and bounded concurrency.
+ * <ul>
+ *     <li>works are performed by a fixed number of threads defined by
+ *     {@link ChangeRequestConfiguration#getBackgroundWorkThreads()};</li>
+ *     <li>{@link WorkPriority#INTERACTIVE} works are always performed before {@link WorkPriority#BATCH} works, and
+ *     batch works never use all threads when more than one thread is available, so that interactive works don't wait
+ *     for long batch works to finish;</li>
+ *     <li>works of a same priority are performed in turn for each wiki, so that a wiki with a lot of works doesn't
+ *     starve the other wikis;</li>
+ *     <li>the number of waiting works is bounded for each priority by
+ *     {@link ChangeRequestConfiguration#getBackgroundWorkQueueSize()}: new works are rejected when the limit is
+ *     reached, and callers are responsible for handling the rejection.</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ChangeRequestWorkScheduler.class)
+@Singleton
+public class ChangeRequestWorkScheduler implements Disposable
+{
+    /**
+     * The priorities of the works, from the highest to the lowest.
+     */
+    public enum WorkPriority
+    {
+        /**
+         * Work whose result is expected by users, e.g. a status computation after a user action.
+         */
+        INTERACTIVE,
+
+        /**
+         * Work not directly expected by users, e.g. handling of stale change requests.
+         */
+        BATCH
+    }
+
+    @Inject
+    private ChangeRequestConfiguration configuration;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition workAvailable = this.lock.newCondition();
+
+    // For each priority, the waiting works are stored by wiki: the wiki of the last performed work is always moved
+    // at the end of the map so that wikis are served in turn.
+    private final Map<WorkPriority, Map<String, Deque<ScheduledWork>>> waitingWorks =
+        new EnumMap<>(WorkPriority.class);
+
+    private final Map<WorkPriority, Integer> waitingWorksCount = new EnumMap<>(WorkPriority.class);
+
+    private int threads;
+
+    private int runningBatchWorks;
+
+    private ExecutorService workers;
+
+    private boolean disposed;
+
+    /**
+     * A work waiting to be performed or currently performed.
+     */
+    static final class ScheduledWork
+    {
+        private final String wikiId;
+
+        private final DocumentReference userReference;
+
+        private final WorkPriority priority;
+
+        private final String description;
+
+        private final Runnable work;
+
+        ScheduledWork(String wikiId, DocumentReference userReference, WorkPriority priority, String description,
+            Runnable work)
+        {
+            this.wikiId = wikiId;
+            this.userReference = userReference;
+            this.priority = priority;
+            this.description = description;
+            this.work = work;
+        }
+
+        String getWikiId()
+        {
+            return this.wikiId;
+        }
+
+        WorkPriority getPriority()
+        {
+            return this.priority;
+        }
+
+        String getDescription()
+        {
+            return this.description;
+        }
+    }
+
+    /**
+     * Default constructor.
+     */
+    public ChangeRequestWorkScheduler()
+    {
+        for (WorkPriority priority : WorkPriority.values()) {
+            this.waitingWorks.put(priority, new LinkedHashMap<>());
+            this.waitingWorksCount.put(priority, 0);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.lock.lock();
+        try {
+            this.disposed = true;
+            if (this.workers != null) {
+                this.workers.shutdownNow();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Submit a work to be performed in background, with the current user.
+     *
+     * @param wikiId the wiki in which the work should be performed
+     * @param priority the priority of the work
+     * @param description a description of the work used in the logs
+     * @param work the actual work to perform
+     * @return {@code true} if the work has been accepted, {@code false} if the limit of waiting works for the given
+     *         priority is reached: in such case the work won't be performed
+     */
+    public boolean submit(String wikiId, WorkPriority priority, String description, Runnable work)
+    {
+        XWikiContext context = this.contextProvider.get();
+        DocumentReference userReference = (context != null) ? context.getUserReference() : null;
+        return this.submit(wikiId, userReference, priority, description, work);
+    }
+
+    /**
+     * Submit a work to be performed in background.
+     *
+     * @param wikiId the wiki in which the work should be performed
+     * @param userReference the user to set in the context when performing the work
+     * @param priority the priority of the work
+     * @param description a description of the work used in the logs
+     * @param work the actual work to perform
+     * @return {@code true} if the work has been accepted, {@code false} if the limit of waiting works for the given
+     *         priority is reached: in such case the work won't be performed
+     */
+    public boolean submit(String wikiId, DocumentReference userReference, WorkPriority priority, String description,
+        Runnable work)
+    {
+        boolean result = false;
+        this.lock.lock();
+        try {
+            int count = this.waitingWorksCount.get(priority);
+            if (count < this.configuration.getBackgroundWorkQueueSize()) {
+                this.waitingWorks.get(priority).computeIfAbsent(wikiId, key -> new ArrayDeque<>())
+                    .add(new ScheduledWork(wikiId, userReference, priority, description, work));
+                this.waitingWorksCount.put(priority, count + 1);
+                this.startWorkers();
+                this.workAvailable.signalAll();
+                result = true;
+            } else {
+                this.logger.warn("Too many change request works with priority [{}] are waiting: [{}] is rejected.",
+                    priority, description);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @param priority the priority for which to count the works
+     * @return the number of works with the given priority waiting to be performed
+     */
+    public int getWaitingWorksCount(WorkPriority priority)
+    {
+        this.lock.lock();
+        try {
+            return this.waitingWorksCount.get(priority);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieve the next work to perform, and consider it as running until {@link #complete(ScheduledWork)} is called.
+     *
+     * @return the next work to perform, or {@code null} if no work can be performed right now
+     */
+    ScheduledWork next()
+    {
+        this.lock.lock();
+        try {
+            ScheduledWork result = null;
+            for (WorkPriority priority : WorkPriority.values()) {
+                if (priority != WorkPriority.BATCH || this.runningBatchWorks < this.getBatchConcurrency()) {
+                    result = this.pollNextWork(priority);
+                }
+                if (result != null) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Notify that the given work is finished.
+     *
+     * @param scheduledWork a work previously returned by {@link #next()}
+     */
+    void complete(ScheduledWork scheduledWork)
+    {
+        this.lock.lock();
+        try {
+            if (scheduledWork.getPriority() == WorkPriority.BATCH) {
+                this.runningBatchWorks--;
+                // A batch work might have been waiting for a free slot.
+                this.workAvailable.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private ScheduledWork pollNextWork(WorkPriority priority)
+    {
+        ScheduledWork result = null;
+        Map<String, Deque<ScheduledWork>> worksByWiki = this.waitingWorks.get(priority);
+        Iterator<Map.Entry<String, Deque<ScheduledWork>>> iterator = worksByWiki.entrySet().iterator();
+        if (iterator.hasNext()) {
+            Map.Entry<String, Deque<ScheduledWork>> entry = iterator.next();
+            iterator.remove();
+            Deque<ScheduledWork> wikiWorks = entry.getValue();
+            result = wikiWorks.poll();
+            // Put back the wiki at the end so that the other wikis are served first.
+            if (!wikiWorks.isEmpty()) {
+                worksByWiki.put(entry.getKey(), wikiWorks);
+            }
+            this.waitingWorksCount.put(priority, this.waitingWorksCount.get(priority) - 1);
+            if (priority == WorkPriority.BATCH) {
+                this.runningBatchWorks++;
+            }
+        }
+        return result;
+    }
+
+    private int getThreads()
+    {
+        if (this.threads == 0) {
+            this.threads = Math.max(1, this.configuration.getBackgroundWorkThreads());
+        }
+        return this.threads;
+    }
+
+    private int getBatchConcurrency()
+    {
+        // Always keep a thread available for the interactive works when possible.
+        return Math.max(1, this.getThreads() - 1);
+    }
+
+    private void startWorkers()
+    {
+        if (this.workers == null && !this.disposed) {
+            int workersNumber = this.getThreads();
+            this.workers = Executors.newFixedThreadPool(workersNumber, new BasicThreadFactory.Builder()
+                .namingPattern("changerequest-background-work-%d")
+                .daemon(true)
+                .build());
+            for (int i = 0; i < workersNumber; i++) {
+                this.workers.execute(this::processWorks);
+            }
+        }
+    }
+
+    private ScheduledWork take() throws InterruptedException
+    {
+        this.lock.lock();
+        try {
+            ScheduledWork result = this.next();
+            while (result == null) {
+                this.workAvailable.await();
+                result = this.next();
+            }
+            return result;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void processWorks()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ScheduledWork scheduledWork = this.take();
+                try {
+                    this.processInContext(scheduledWork);
+                } finally {
+                    this.complete(scheduledWork);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void processInContext(ScheduledWork scheduledWork)
+    {
+        // The works are performed in dedicated threads, so we need to create the context.
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            XWikiContext context = this.contextProvider.get();
+            context.setWikiId(scheduledWork.wikiId);
+            context.setUserReference(scheduledWork.userReference);
+            scheduledWork.work.run();
+        } catch (ExecutionContextException e) {
+            this.logger.error("Error while initializing context for performing [{}]", scheduledWork.description, e);
+        } catch (Exception e) {
+            // Any exception thrown here would stop the worker thread.
+            this.logger.error("Unexpected error while performing [{}]", scheduledWork.description, e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+}
@@ -32,12 +32,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.DelegateApproverManager;
 import org.xwiki.contrib.changerequest.internal.ChangeRequestConfigurationSource;
 import org.xwiki.contrib.changerequest.internal.DefaultChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
 import org.xwiki.contrib.changerequest.internal.cache.DiffCacheManager;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler;
 import org.xwiki.contrib.changerequest.internal.jobs.DelegateApproversComputationRequest;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.RegexEntityReference;
@@ -47,6 +52,7 @@ import org.xwiki.observation.event.Event;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryManager;
+import org.xwiki.user.UserReferenceResolver;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
@@ -55,9 +61,12 @@ import com.xpn.xwiki.objects.BaseObjectReference;
 
 /**
  * Listener in charge of triggering a global computation of delegate approvers if the configuration change to enable
- * the mechanism, or to update the list of fields to take into account in XWikiUser.
+ * the mechanism, or to update the list of fields to take into account in XWikiUser. The computation is performed as a
+ * batch work of the {@link ChangeRequestWorkScheduler}, and only falls back on a dedicated job if the scheduler
+ * rejects it.
  * This listener also invalidate the {@link DiffCacheManager} as a configuration change might mean an update in the
- * {@link ChangeRequestConfiguration#getRenderedDiffComponent()}.
+ * {@link ChangeRequestConfiguration#getRenderedDiffComponent()}, and the {@link DelegateApproversCacheManager} entries
+ * of the wiki whenever {@link ChangeRequestConfiguration#getDelegateClassPropertyList()} is updated.
  *
  * @version $Id$
  * @since 0.13
@@ -86,9 +95,22 @@ public class ChangeRequestConfigurationUpdatedListener extends AbstractLocalEven
     @Inject
     private Provider<JobExecutor> jobExecutorProvider;
 
+    @Inject
+    private Provider<ChangeRequestWorkScheduler> workSchedulerProvider;
+
+    @Inject
+    private Provider<DelegateApproverManager<DocumentReference>> delegateApproverManagerProvider;
+
+    @Inject
+    @Named("document")
+    private Provider<UserReferenceResolver<DocumentReference>> documentReferenceUserReferenceResolverProvider;
+
     @Inject
     private Provider<DiffCacheManager> diffCacheManagerProvider;
 
+    @Inject
+    private Provider<DelegateApproversCacheManager> delegateApproversCacheManagerProvider;
+
     @Inject
     private Logger logger;
 
@@ -112,9 +134,8 @@ public class ChangeRequestConfigurationUpdatedListener extends AbstractLocalEven
                 originalConfigurationDoc.getXObject(ChangeRequestConfigurationSource.CLASS_REFERENCE);
 
             if (this.shouldRecomputeDelegate(currentObj, previousObj)) {
-                List<EntityReference> allUsers =
-                    this.getAllUsers(configurationDoc.getDocumentReference().getWikiReference());
-                this.startComputationJob(allUsers);
+                WikiReference wikiReference = configurationDoc.getDocumentReference().getWikiReference();
+                this.startComputation(wikiReference, this.getAllUsers(wikiReference));
             }
         }
     }
@@ -129,26 +150,71 @@ public class ChangeRequestConfigurationUpdatedListener extends AbstractLocalEven
         if (configurationDoc.getDocumentReference().getLocalDocumentReference()
             .equals(ChangeRequestConfigurationSource.DOC_REFERENCE)) {
             this.diffCacheManagerProvider.get().invalidateAll();
+
+            // Same for the cached delegates, which depend on the configured fields of the wiki.
+            BaseObject currentObj = configurationDoc.getXObject(ChangeRequestConfigurationSource.CLASS_REFERENCE);
+            BaseObject previousObj = configurationDoc.getOriginalDocument()
+                .getXObject(ChangeRequestConfigurationSource.CLASS_REFERENCE);
+            if (this.isDelegateClassPropertyListUpdated(currentObj, previousObj)) {
+                this.delegateApproversCacheManagerProvider.get()
+                    .invalidate(configurationDoc.getDocumentReference().getWikiReference());
+            }
         }
     }
 
-    private void startComputationJob(List<EntityReference> userList)
+    private boolean isDelegateClassPropertyListUpdated(BaseObject currentObj, BaseObject previousObj)
+    {
+        String currentValue = (currentObj != null)
+            ? currentObj.getStringValue(DefaultChangeRequestConfiguration.DELEGATE_CLASS_PROPERTY_LIST_PROPERTY) : null;
+        String previousValue = (previousObj != null)
+            ? previousObj.getStringValue(DefaultChangeRequestConfiguration.DELEGATE_CLASS_PROPERTY_LIST_PROPERTY)
+            : null;
+        return !StringUtils.equals(StringUtils.defaultString(currentValue), StringUtils.defaultString(previousValue));
+    }
+
+    private void startComputation(WikiReference wikiReference, List<EntityReference> userList)
     {
         if (!userList.isEmpty()) {
-            DelegateApproversComputationRequest computationRequest = new DelegateApproversComputationRequest();
-            computationRequest.setEntityReferences(userList);
-            computationRequest.setDeep(false);
-            computationRequest.setInteractive(false);
+            boolean submitted = this.workSchedulerProvider.get().submit(wikiReference.getName(),
+                ChangeRequestWorkScheduler.WorkPriority.BATCH,
+                String.format("computation of delegate approvers in wiki [%s]", wikiReference.getName()),
+                () -> this.computeDelegates(userList));
+            // The computation should never be lost.
+            if (!submitted) {
+                this.startComputationJob(userList);
+            }
+        }
+    }
+
+    private void computeDelegates(List<EntityReference> userList)
+    {
+        DelegateApproverManager<DocumentReference> delegateApproverManager =
+            this.delegateApproverManagerProvider.get();
+        UserReferenceResolver<DocumentReference> userReferenceResolver =
+            this.documentReferenceUserReferenceResolverProvider.get();
+        for (EntityReference user : userList) {
             try {
-                this.jobExecutorProvider.get()
-                    .execute(DelegateApproversComputationRequest.DELEGATE_APPROVERS_COMPUTATION_JOB,
-                        computationRequest);
-            } catch (JobException e) {
-                logger.error("Error when executing the computation job for delegates", e);
+                delegateApproverManager.computeDelegates(userReferenceResolver.resolve((DocumentReference) user));
+            } catch (ChangeRequestException e) {
+                this.logger.error("Error while computing delegate for [{}]", user, e);
             }
         }
     }
 
+    private void startComputationJob(List<EntityReference> userList)
+    {
+        DelegateApproversComputationRequest computationRequest = new DelegateApproversComputationRequest();
+        computationRequest.setEntityReferences(userList);
+        computationRequest.setDeep(false);
+        computationRequest.setInteractive(false);
+        try {
+            this.jobExecutorProvider.get()
+                .execute(DelegateApproversComputationRequest.DELEGATE_APPROVERS_COMPUTATION_JOB, computationRequest);
+        } catch (JobException e) {
+            logger.error("Error when executing the computation job for delegates", e);
+        }
+    }
+
     // FIXME: might not be good for subwikis depending on the members config
     private List<EntityReference> getAllUsers(WikiReference wikiReference)
     {
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestWikisCacheManager;
+import org.xwiki.extension.event.ExtensionEvent;
+import org.xwiki.extension.event.ExtensionInstalledEvent;
+import org.xwiki.extension.event.ExtensionUninstalledEvent;
+import org.xwiki.extension.event.ExtensionUpgradedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener whose role is to invalidate {@link ChangeRequestWikisCacheManager} whenever the change request UI
+ * extension is installed, upgraded or uninstalled, or whenever a wiki is created or deleted.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Named(ChangeRequestWikisCacheInvalidationListener.NAME)
+@Singleton
+public class ChangeRequestWikisCacheInvalidationListener extends AbstractEventListener
+{
+    static final String NAME =
+        "org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestWikisCacheInvalidationListener";
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new ExtensionInstalledEvent(),
+        new ExtensionUninstalledEvent(),
+        new ExtensionUpgradedEvent(),
+        new WikiCreatedEvent(),
+        new WikiDeletedEvent()
+    );
+
+    @Inject
+    private Provider<ChangeRequestWikisCacheManager> wikisCacheManagerProvider;
+
+    /**
+     * Default constructor.
+     */
+    public ChangeRequestWikisCacheInvalidationListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // Other extensions are installed far more often than change request: we only care about the UI extension.
+        if (!(event instanceof ExtensionEvent) || isChangeRequestUIExtension((ExtensionEvent) event)) {
+            this.wikisCacheManagerProvider.get().invalidate();
+        }
+    }
+
+    private boolean isChangeRequestUIExtension(ExtensionEvent event)
+    {
+        return event.getExtensionId() != null && StringUtils.equals(
+            ChangeRequestWikisCacheManager.CHANGE_REQUEST_UI_MODULE_ID, event.getExtensionId().getId());
+    }
+}
@@ -19,7 +19,6 @@
  */
 package org.xwiki.contrib.changerequest.internal.listeners;
 
-import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -27,6 +26,8 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
 import org.xwiki.contrib.changerequest.internal.storage.ChangeRequestXClassInitializer;
@@ -40,7 +41,9 @@ import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
 import com.xpn.xwiki.objects.BaseObjectReference;
 
 /**
- * Listener dedicated to invalidate the change request cache entry whenever the xobject is updated.
+ * Listener dedicated to invalidate the change request cache entry whenever the xobject is updated, or whenever the
+ * change request document is updated or deleted: the title of the change request, also part of its summary, is the
+ * title of the document and its modification is not an xobject update.
  *
  * @version $Id$
  * @since 0.14
@@ -55,8 +58,10 @@ public class ChangeRequestXObjectUpdatedListener extends AbstractEventListener
     static final RegexEntityReference REFERENCE =
         BaseObjectReference.any(ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS.toString());
 
-    static final List<Event> EVENT_LIST = Collections.singletonList(
-        new XObjectUpdatedEvent(REFERENCE)
+    static final List<Event> EVENT_LIST = List.of(
+        new XObjectUpdatedEvent(REFERENCE),
+        new DocumentUpdatedEvent(),
+        new DocumentDeletedEvent()
     );
 
     @Inject
@@ -78,8 +83,17 @@ public class ChangeRequestXObjectUpdatedListener extends AbstractEventListener
     public void onEvent(Event event, Object source, Object data)
     {
         XWikiDocument updatedDoc = (XWikiDocument) source;
-        String changeRequestId =
-            this.entityReferenceSerializerProvider.get().serialize(updatedDoc.getDocumentReference());
-        this.cacheManagerProvider.get().invalidate(changeRequestId);
+        boolean isChangeRequest = true;
+        if (event instanceof DocumentUpdatedEvent) {
+            isChangeRequest = updatedDoc.getXObject(ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS) != null;
+        } else if (event instanceof DocumentDeletedEvent) {
+            isChangeRequest = updatedDoc.getOriginalDocument()
+                .getXObject(ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS) != null;
+        }
+        if (isChangeRequest) {
+            String changeRequestId =
+                this.entityReferenceSerializerProvider.get().serialize(updatedDoc.getDocumentReference());
+            this.cacheManagerProvider.get().invalidate(changeRequestId);
+        }
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.internal.approvers.DelegateApproversIndex;
+import org.xwiki.contrib.changerequest.internal.approvers.DelegateApproversXClassInitializer;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.RegexEntityReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.user.UserReferenceResolver;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Listener in charge of keeping {@link DelegateApproversIndex} up to date and of invalidating the
+ * {@link DelegateApproversCacheManager} entries whenever the stored delegate approvers of a user are added, updated or
+ * removed, and whenever a wiki is deleted.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Named(DelegateApproversXObjectUpdatedListener.NAME)
+@Singleton
+public class DelegateApproversXObjectUpdatedListener extends AbstractEventListener
+{
+    static final String NAME =
+        "org.xwiki.contrib.changerequest.internal.listeners.DelegateApproversXObjectUpdatedListener";
+
+    private static final RegexEntityReference REFERENCE =
+        BaseObjectReference.any(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS.toString());
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new XObjectAddedEvent(REFERENCE),
+        new XObjectUpdatedEvent(REFERENCE),
+        new XObjectDeletedEvent(REFERENCE),
+        new WikiDeletedEvent()
+    );
+
+    @Inject
+    private Provider<DelegateApproversIndex> delegateApproversIndexProvider;
+
+    @Inject
+    private Provider<DelegateApproversCacheManager> delegateApproversCacheManagerProvider;
+
+    @Inject
+    @Named("document")
+    private Provider<UserReferenceResolver<DocumentReference>> userReferenceResolverProvider;
+
+    /**
+     * Default constructor.
+     */
+    public DelegateApproversXObjectUpdatedListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WikiDeletedEvent) {
+            WikiReference wikiReference = new WikiReference(((WikiDeletedEvent) event).getWikiId());
+            this.delegateApproversIndexProvider.get().removeWiki(wikiReference);
+            this.delegateApproversCacheManagerProvider.get().invalidate(wikiReference);
+        } else {
+            XWikiDocument userDoc = (XWikiDocument) source;
+            this.delegateApproversIndexProvider.get().update(userDoc);
+            this.delegateApproversCacheManagerProvider.get()
+                .invalidate(this.userReferenceResolverProvider.get().resolve(userDoc.getDocumentReference()));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
+import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
+import org.xwiki.observation.event.AbstractLocalEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener in charge of invalidating the cached list of {@link FileChangeSavingChecker} whenever a checker is
+ * registered or unregistered, so that checkers provided by extensions are taken into account at runtime.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Singleton
+@Named(FileChangeSavingCheckersInvalidationListener.NAME)
+public class FileChangeSavingCheckersInvalidationListener extends AbstractLocalEventListener
+{
+    static final String NAME =
+        "org.xwiki.contrib.changerequest.internal.listeners.FileChangeSavingCheckersInvalidationListener";
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new ComponentDescriptorAddedEvent(FileChangeSavingChecker.class),
+        new ComponentDescriptorRemovedEvent(FileChangeSavingChecker.class)
+    );
+
+    @Inject
+    private Provider<FileChangeSavingCheckersLoader> fileChangeSavingCheckersLoaderProvider;
+
+    /**
+     * Default constructor.
+     */
+    public FileChangeSavingCheckersInvalidationListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void processLocalEvent(Event event, Object source, Object data)
+    {
+        this.fileChangeSavingCheckersLoaderProvider.get().invalidate();
+    }
+}
@@ -34,6 +34,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.events.ChangeRequestUpdatingFileChangeEvent;
 import org.xwiki.contrib.changerequest.events.SplitBeginChangeRequestEvent;
 import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestTitleCacheManager;
 import org.xwiki.contrib.changerequest.internal.cache.MergeCacheManager;
 import org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
@@ -84,6 +85,9 @@ public class FileChangeXObjectUpdatedListener extends AbstractEventListener
     @Inject
     private Provider<MergeCacheManager> mergeCacheManagerProvider;
 
+    @Inject
+    private Provider<ChangeRequestTitleCacheManager> titleCacheManagerProvider;
+
     @Inject
     private Logger logger;
 
@@ -122,6 +126,8 @@ public class FileChangeXObjectUpdatedListener extends AbstractEventListener
             }
 
             this.storageCacheManagerProvider.get().invalidate(changeRequestId);
+            // The titles are rendered and stored in the xobjects: they might have been changed too.
+            this.titleCacheManagerProvider.get().invalidate(changeRequestId);
 
         }
     }
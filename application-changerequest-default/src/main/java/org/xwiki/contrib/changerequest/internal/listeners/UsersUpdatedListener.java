@@ -21,6 +21,7 @@ package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -42,11 +43,15 @@ import org.xwiki.user.UserReferenceResolver;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
 import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
+import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseObjectReference;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.PropertyInterface;
 
 /**
  * Listener in charge of updating the delegate approvers when the mechanism is enabled and some properties are set up
- * to compute the delegate approvers.
+ * to compute the delegate approvers. The delegate approvers are only computed again when one of those properties
+ * has been updated.
  *
  * @version $Id$
  * @since 0.13
@@ -92,12 +97,50 @@ public class UsersUpdatedListener extends AbstractLocalEventListener
         if (this.configuration.isDelegateEnabled()
             && !this.configuration.getDelegateClassPropertyList().isEmpty()) {
             XWikiDocument userDoc = (XWikiDocument) source;
-            UserReference userReference = this.userReferenceResolver.resolve(userDoc.getDocumentReference());
-            try {
-                this.delegateApproverManagerProvider.get().computeDelegates(userReference);
-            } catch (ChangeRequestException e) {
-                logger.error("Error while computing delegate approvers for [{}]", userReference, e);
+            if (this.areDelegatePropertiesUpdated(userDoc)) {
+                UserReference userReference = this.userReferenceResolver.resolve(userDoc.getDocumentReference());
+                try {
+                    this.delegateApproverManagerProvider.get().computeDelegates(userReference);
+                } catch (ChangeRequestException e) {
+                    logger.error("Error while computing delegate approvers for [{}]", userReference, e);
+                }
             }
         }
     }
+
+    /**
+     * Check if one of the properties used to compute the delegate approvers has been updated: other updates of the
+     * user object (e.g. the last name or the avatar) don't impact the delegate approvers.
+     */
+    private boolean areDelegatePropertiesUpdated(XWikiDocument userDoc)
+    {
+        boolean result = true;
+        XWikiDocument originalDoc = userDoc.getOriginalDocument();
+        if (originalDoc != null) {
+            BaseObject currentObject = userDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE);
+            BaseObject originalObject =
+                originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE);
+            result = false;
+            for (String property : this.configuration.getDelegateClassPropertyList()) {
+                if (!Objects.equals(getPropertyValue(currentObject, property),
+                    getPropertyValue(originalObject, property))) {
+                    result = true;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object getPropertyValue(BaseObject xObject, String property)
+    {
+        Object result = null;
+        if (xObject != null) {
+            PropertyInterface propertyInterface = xObject.safeget(property);
+            if (propertyInterface instanceof BaseProperty) {
+                result = ((BaseProperty<?>) propertyInterface).getValue();
+            }
+        }
+        return result;
+    }
 }
@@ -40,6 +40,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestReview;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.events.ApproversUpdatedEvent;
+import org.xwiki.contrib.changerequest.events.ChangeRequestConflictsFixedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestCreatedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestFileChangeAddedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestMergeFailedEvent;
@@ -89,7 +90,8 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
     // List of events where the source is the change request identifier, and the data a file change.
     private static final List<Class<?>> FILE_CHANGE_DATA_EVENTS = List.of(
         ChangeRequestFileChangeAddedEvent.class,
-        FileChangeRebasedEvent.class
+        FileChangeRebasedEvent.class,
+        ChangeRequestConflictsFixedEvent.class
     );
 
     // List of events for which we don't convert the data (those are BeginEvent we need to comply with their respective
@@ -113,14 +115,20 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
     public boolean toRemote(LocalEventData localEvent, RemoteEventData remoteEvent)
     {
         boolean result = false;
-        if (CR_DATA_EVENTS.contains(localEvent.getEvent().getClass())
-             || NO_DATA_EVENTS.contains(localEvent.getEvent().getClass())) {
+        if (CR_DATA_EVENTS.contains(localEvent.getEvent().getClass())) {
+            this.copyEventAndSource(localEvent, remoteEvent);
+            // the data is the change request: we only send what might have changed in it.
+            if (localEvent.getData() instanceof ChangeRequest) {
+                remoteEvent.setData(ChangeRequestRemoteDelta.of((ChangeRequest) localEvent.getData()));
+            }
+            result = true;
+        } else if (NO_DATA_EVENTS.contains(localEvent.getEvent().getClass())) {
             this.copyEventAndSource(localEvent, remoteEvent);
             result = true;
         } else if (FILE_CHANGE_DATA_EVENTS.contains(localEvent.getEvent().getClass())) {
             this.copyEventAndSource(localEvent, remoteEvent);
-            // the data is a filechange we set the data as the identifier.
-            remoteEvent.setData(((FileChange) localEvent.getData()).getId());
+            // the data is a filechange we send its identifier along with the state of its change request.
+            remoteEvent.setData(this.getFileChangeDelta((FileChange) localEvent.getData()));
             result = true;
         } else {
             result = this.toRemoteSpecificEvents(localEvent, remoteEvent);
@@ -145,8 +153,8 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
         } else if (localEvent.getEvent() instanceof ChangeRequestReviewAddedEvent) {
             this.copyEventAndSource(localEvent, remoteEvent);
             ChangeRequestReview review = (ChangeRequestReview) localEvent.getData();
-            // We set the identifier of the review as data of the remote event
-            remoteEvent.setData(review.getId());
+            // We send the identifier of the review along with the state of its change request
+            remoteEvent.setData(ChangeRequestRemoteDelta.of(review.getChangeRequest()).setReviewId(review.getId()));
             result = true;
         } else if (localEvent.getEvent() instanceof ChangeRequestStatusChangedEvent) {
             result = this.toRemoteChangeRequestStatusChangedEvent(localEvent, remoteEvent);
@@ -176,14 +184,19 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
     private boolean toRemoteUpdatedFileChangeEvent(LocalEventData localEvent, RemoteEventData remoteEvent)
     {
         this.copyEventAndSource(localEvent, remoteEvent);
-        // if the data is a filechange we set the data as the identifier.
-        // if it's not a filechange, then it's a full change request, and we'll retrieve it from the source.
+        // if the data is a filechange we send its identifier along with the state of its change request.
+        // if it's not a filechange, then it's a full change request, and we'll fully reload it from the source.
         if (localEvent.getData() instanceof FileChange) {
-            remoteEvent.setData(((FileChange) localEvent.getData()).getId());
+            remoteEvent.setData(this.getFileChangeDelta((FileChange) localEvent.getData()));
         }
         return true;
     }
 
+    private ChangeRequestRemoteDelta getFileChangeDelta(FileChange fileChange)
+    {
+        return ChangeRequestRemoteDelta.of(fileChange.getChangeRequest()).setFileChangeId(fileChange.getId());
+    }
+
     private boolean toRemoteFileChangeDocumentSavedEvent(LocalEventData localEvent, RemoteEventData remoteEvent)
     {
         // fill the remote event
@@ -234,15 +247,13 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
             localEvent.setEvent((Event) remoteEvent.getEvent());
             String changeRequestId = (String) remoteEvent.getSource();
             localEvent.setSource(changeRequestId);
-            localEvent.setData(this.changeRequestEventsConverterHelperProvider.get()
-                .getChangeRequest(changeRequestId, remoteEvent));
+            localEvent.setData(this.getChangeRequest(changeRequestId, remoteEvent));
             result = true;
         } else if (FILE_CHANGE_DATA_EVENTS.contains(remoteEvent.getEvent().getClass())) {
             localEvent.setEvent((Event) remoteEvent.getEvent());
             String changeRequestId = (String) remoteEvent.getSource();
             localEvent.setSource(changeRequestId);
-            localEvent.setData(this.changeRequestEventsConverterHelperProvider.get()
-                .getFileChange(changeRequestId, remoteEvent.getData(), remoteEvent));
+            localEvent.setData(this.getFileChange(changeRequestId, remoteEvent));
             result = true;
         } else if (NO_DATA_EVENTS.contains(remoteEvent.getEvent().getClass())) {
             localEvent.setEvent((Event) remoteEvent.getEvent());
@@ -255,6 +266,32 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
         return result;
     }
 
+    private ChangeRequest getChangeRequest(String changeRequestId, RemoteEventData remoteEvent)
+        throws ChangeRequestEventsConverterException
+    {
+        ChangeRequestEventsConverterHelper helper = this.changeRequestEventsConverterHelperProvider.get();
+        // Events sent by older versions don't contain any delta: in that case we fully reload the change request.
+        if (remoteEvent.getData() instanceof ChangeRequestRemoteDelta) {
+            return helper.getChangeRequest(changeRequestId, (ChangeRequestRemoteDelta) remoteEvent.getData(),
+                remoteEvent);
+        } else {
+            return helper.getChangeRequest(changeRequestId, remoteEvent);
+        }
+    }
+
+    private FileChange getFileChange(String changeRequestId, RemoteEventData remoteEvent)
+        throws ChangeRequestEventsConverterException
+    {
+        ChangeRequestEventsConverterHelper helper = this.changeRequestEventsConverterHelperProvider.get();
+        // Events sent by older versions only contain the file change identifier.
+        if (remoteEvent.getData() instanceof ChangeRequestRemoteDelta) {
+            ChangeRequestRemoteDelta delta = (ChangeRequestRemoteDelta) remoteEvent.getData();
+            return helper.getFileChange(changeRequestId, delta.getFileChangeId(), delta, remoteEvent);
+        } else {
+            return helper.getFileChange(changeRequestId, remoteEvent.getData(), remoteEvent);
+        }
+    }
+
     private boolean handleFromRemoteSpecificEvents(RemoteEventData remoteEvent, LocalEventData localEvent)
         throws ChangeRequestEventsConverterException, XWikiException
     {
@@ -312,8 +349,10 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
         Pair<String, String> source = (Pair<String, String>) remoteEvent.getSource();
         String changeRequestId = source.getLeft();
         String fileChangeId = source.getRight();
+        // The file change document has been saved: the change request only needs to be reloaded if the file change
+        // is not already known.
         FileChange fileChange = this.changeRequestEventsConverterHelperProvider.get()
-            .getFileChange(changeRequestId, fileChangeId, remoteEvent);
+            .getFileChange(changeRequestId, fileChangeId, null, remoteEvent);
         localEvent.setSource(fileChange);
         localEvent.setData(this.xWikiDocumentEventConverterSerializerProvider.get()
             .unserializeDocument(remoteEvent.getData()));
@@ -328,9 +367,13 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
         String changeRequestId = (String) remoteEvent.getSource();
         localEvent.setSource(changeRequestId);
 
-        ChangeRequest changeRequest = this.changeRequestEventsConverterHelperProvider.get()
-            .getChangeRequest(changeRequestId, remoteEvent);
-        String reviewId = (String) remoteEvent.getData();
+        ChangeRequest changeRequest = this.getChangeRequest(changeRequestId, remoteEvent);
+        String reviewId;
+        if (remoteEvent.getData() instanceof ChangeRequestRemoteDelta) {
+            reviewId = ((ChangeRequestRemoteDelta) remoteEvent.getData()).getReviewId();
+        } else {
+            reviewId = (String) remoteEvent.getData();
+        }
         Optional<ChangeRequestReview> reviewOptional = changeRequest.getReviews().stream()
             .filter(changeRequestReview -> changeRequestReview.getId().equals(reviewId))
             .findFirst();
@@ -352,8 +395,7 @@ public class ChangeRequestEventsConverter extends AbstractEventConverter
         String changeRequestId = (String) remoteEvent.getSource();
         localEvent.setSource(changeRequestId);
         if (remoteEvent.getData() != null) {
-            localEvent.setData(this.changeRequestEventsConverterHelperProvider.get()
-                .getFileChange(changeRequestId, remoteEvent.getData(), remoteEvent));
+            localEvent.setData(this.getFileChange(changeRequestId, remoteEvent));
         } else {
             localEvent.setData(this.changeRequestEventsConverterHelperProvider.get()
                 .getChangeRequest(changeRequestId, remoteEvent));
@@ -25,9 +25,12 @@ import java.util.Optional;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
@@ -65,7 +68,43 @@ public class ChangeRequestEventsConverterHelper
     {
         // We'll need to reload the change request from DB so first invalidate the cache value for it.
         this.changeRequestCacheManager.invalidate(changeRequestId);
+        return this.loadChangeRequest(changeRequestId, remoteEvent);
+    }
+
+    /**
+     * Retrieve a change request based on the given information and on the given delta describing what changed in it.
+     * Contrary to {@link #getChangeRequest(String, RemoteEventData)} this method tries to reuse the cached value of the
+     * change request by patching it with the delta: the change request is only fully reloaded if it's not cached, if
+     * the delta cannot be applied (e.g. a file change or a review is missing) or if the delta is not supported.
+     *
+     * @param changeRequestId the identifier of the change request to load.
+     * @param delta the description of what changed in the change request, might be {@code null} in which case the
+     *              change request is fully reloaded.
+     * @param remoteEvent the event which triggered that call.
+     * @return the change request instance with the matching identifier.
+     * @throws ChangeRequestEventsConverterException if the change request cannot be found or if there is a problem
+     *                                               when loading it
+     * @since 1.16
+     */
+    public ChangeRequest getChangeRequest(String changeRequestId, ChangeRequestRemoteDelta delta,
+        RemoteEventData remoteEvent) throws ChangeRequestEventsConverterException
+    {
+        if (delta != null && delta.isSupported()) {
+            Optional<ChangeRequest> cachedChangeRequest =
+                this.changeRequestCacheManager.getChangeRequest(changeRequestId);
+            if (cachedChangeRequest.isEmpty()) {
+                // Nothing to invalidate: the change request will be loaded from DB.
+                return this.loadChangeRequest(changeRequestId, remoteEvent);
+            } else if (this.applyDelta(cachedChangeRequest.get(), delta)) {
+                return cachedChangeRequest.get();
+            }
+        }
+        return this.getChangeRequest(changeRequestId, remoteEvent);
+    }
 
+    private ChangeRequest loadChangeRequest(String changeRequestId, RemoteEventData remoteEvent)
+        throws ChangeRequestEventsConverterException
+    {
         try {
             Optional<ChangeRequest> optionalChangeRequest =
                 this.changeRequestStorageManager.load(changeRequestId);
@@ -83,6 +122,48 @@ public class ChangeRequestEventsConverterHelper
         }
     }
 
+    /**
+     * Patch the given cached change request with the delta.
+     *
+     * @param changeRequest the cached change request to patch
+     * @param delta the description of the changes
+     * @return {@code false} if the delta cannot be applied and the change request needs to be fully reloaded
+     */
+    private boolean applyDelta(ChangeRequest changeRequest, ChangeRequestRemoteDelta delta)
+    {
+        // A missing file change requires to reload the file changes and their documents: only a full reload does it.
+        if (delta.getFileChangeId() != null && changeRequest.getFileChangeById(delta.getFileChangeId()).isEmpty()) {
+            return false;
+        }
+
+        // The cached instance is shared with concurrent readers: we never reload its reviews in place, but rely on a
+        // full reload to obtain a new instance with the missing review.
+        if (delta.getReviewId() != null && !this.hasReview(changeRequest, delta.getReviewId())) {
+            return false;
+        }
+
+        if (delta.getStatus() != null) {
+            ChangeRequestStatus status = EnumUtils.getEnum(ChangeRequestStatus.class, delta.getStatus());
+            if (status == null) {
+                return false;
+            } else if (status != changeRequest.getStatus()) {
+                changeRequest.setStatus(status);
+            }
+        }
+
+        if (delta.getUpdateDate() != null
+            && (changeRequest.getUpdateDate() == null || changeRequest.getUpdateDate().before(delta.getUpdateDate()))) {
+            changeRequest.setUpdateDate(delta.getUpdateDate());
+        }
+        return true;
+    }
+
+    private boolean hasReview(ChangeRequest changeRequest, String reviewId)
+    {
+        return changeRequest.getReviews().stream()
+            .anyMatch(review -> StringUtils.equals(review.getId(), reviewId));
+    }
+
     /**
      * Load a filechange based on the given information or throw a {@link ChangeRequestEventsConverterException}.
      *
@@ -97,6 +178,37 @@ public class ChangeRequestEventsConverterHelper
         throws ChangeRequestEventsConverterException
     {
         ChangeRequest changeRequest = this.getChangeRequest(changeRequestId, remoteEvent);
+        return this.getFileChange(changeRequestId, changeRequest, fileChangeId, remoteEvent);
+    }
+
+    /**
+     * Load a filechange based on the given information and on the given delta describing what changed in the change
+     * request, or throw a {@link ChangeRequestEventsConverterException}. The identifier of the file change is always
+     * added to the delta, so that the change request is fully reloaded if the file change is not found in the cached
+     * change request.
+     *
+     * @param changeRequestId the identifier of the change request where to find the file change
+     * @param fileChangeId the identifier of the file change to load
+     * @param delta the description of what changed in the change request, might be {@code null}
+     * @param remoteEvent the event which triggered that call
+     * @return the filechange instance matching the information
+     * @throws ChangeRequestEventsConverterException if the change request or the file change cannot be found, or in
+     *                                               case of problem when loading the change request.
+     * @see #getChangeRequest(String, ChangeRequestRemoteDelta, RemoteEventData)
+     * @since 1.16
+     */
+    public FileChange getFileChange(String changeRequestId, String fileChangeId, ChangeRequestRemoteDelta delta,
+        RemoteEventData remoteEvent) throws ChangeRequestEventsConverterException
+    {
+        ChangeRequestRemoteDelta fileChangeDelta = (delta != null) ? delta : new ChangeRequestRemoteDelta();
+        fileChangeDelta.setFileChangeId(fileChangeId);
+        ChangeRequest changeRequest = this.getChangeRequest(changeRequestId, fileChangeDelta, remoteEvent);
+        return this.getFileChange(changeRequestId, changeRequest, fileChangeId, remoteEvent);
+    }
+
+    private FileChange getFileChange(String changeRequestId, ChangeRequest changeRequest, Serializable fileChangeId,
+        RemoteEventData remoteEvent) throws ChangeRequestEventsConverterException
+    {
         Optional<FileChange> optionalFileChange = changeRequest.getFileChangeById((String) fileChangeId);
         if (optionalFileChange.isPresent()) {
             return optionalFileChange.get();
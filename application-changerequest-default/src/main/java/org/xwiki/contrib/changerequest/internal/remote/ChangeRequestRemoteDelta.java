@@ -0,0 +1,227 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.remote;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+
+/**
+ * Compact description of what changed in a change request, sent as data of the remote events so that the receiving
+ * nodes can patch their cached change request instead of fully reloading it.
+ * The description is versioned: a node receiving a delta with a version it doesn't know should fall back on a full
+ * reload of the change request.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+public class ChangeRequestRemoteDelta implements Serializable
+{
+    /**
+     * The version of the delta format produced by this class.
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    private static final long serialVersionUID = 1L;
+
+    private final int version;
+
+    private String status;
+
+    private Date updateDate;
+
+    private String reviewId;
+
+    private String fileChangeId;
+
+    /**
+     * Default constructor, using the {@link #CURRENT_VERSION}.
+     */
+    public ChangeRequestRemoteDelta()
+    {
+        this(CURRENT_VERSION);
+    }
+
+    /**
+     * Constructor with a specific version.
+     *
+     * @param version the version of the delta format
+     */
+    public ChangeRequestRemoteDelta(int version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * Create a delta containing the status and the update date of the given change request.
+     *
+     * @param changeRequest the change request from which to take the values
+     * @return a new delta with the status and update date of the change request
+     */
+    public static ChangeRequestRemoteDelta of(ChangeRequest changeRequest)
+    {
+        ChangeRequestRemoteDelta result = new ChangeRequestRemoteDelta();
+        if (changeRequest != null) {
+            if (changeRequest.getStatus() != null) {
+                result.setStatus(changeRequest.getStatus().name());
+            }
+            result.setUpdateDate(changeRequest.getUpdateDate());
+        }
+        return result;
+    }
+
+    /**
+     * @return the version of the format of this delta
+     */
+    public int getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return {@code true} if this delta can be interpreted by this version of the code
+     */
+    public boolean isSupported()
+    {
+        return this.version > 0 && this.version <= CURRENT_VERSION;
+    }
+
+    /**
+     * @return the name of the status of the change request, or {@code null} if unknown
+     */
+    public String getStatus()
+    {
+        return this.status;
+    }
+
+    /**
+     * @param status see {@link #getStatus()}
+     * @return the current instance
+     */
+    public ChangeRequestRemoteDelta setStatus(String status)
+    {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * @return the update date of the change request, or {@code null} if unknown
+     */
+    public Date getUpdateDate()
+    {
+        return this.updateDate;
+    }
+
+    /**
+     * @param updateDate see {@link #getUpdateDate()}
+     * @return the current instance
+     */
+    public ChangeRequestRemoteDelta setUpdateDate(Date updateDate)
+    {
+        this.updateDate = updateDate;
+        return this;
+    }
+
+    /**
+     * @return the identifier of the review added to the change request, or {@code null} if none was added
+     */
+    public String getReviewId()
+    {
+        return this.reviewId;
+    }
+
+    /**
+     * @param reviewId see {@link #getReviewId()}
+     * @return the current instance
+     */
+    public ChangeRequestRemoteDelta setReviewId(String reviewId)
+    {
+        this.reviewId = reviewId;
+        return this;
+    }
+
+    /**
+     * @return the identifier of the file change added or concerned by the event, or {@code null} if none
+     */
+    public String getFileChangeId()
+    {
+        return this.fileChangeId;
+    }
+
+    /**
+     * @param fileChangeId see {@link #getFileChangeId()}
+     * @return the current instance
+     */
+    public ChangeRequestRemoteDelta setFileChangeId(String fileChangeId)
+    {
+        this.fileChangeId = fileChangeId;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ChangeRequestRemoteDelta that = (ChangeRequestRemoteDelta) o;
+
+        return new EqualsBuilder()
+            .append(version, that.version)
+            .append(status, that.status)
+            .append(updateDate, that.updateDate)
+            .append(reviewId, that.reviewId)
+            .append(fileChangeId, that.fileChangeId)
+            .isEquals();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder(17, 37)
+            .append(version)
+            .append(status)
+            .append(updateDate)
+            .append(reviewId)
+            .append(fileChangeId)
+            .toHashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this)
+            .append("version", version)
+            .append("status", status)
+            .append("updateDate", updateDate)
+            .append("reviewId", reviewId)
+            .append("fileChangeId", fileChangeId)
+            .toString();
+    }
+}
@@ -21,10 +21,14 @@ package org.xwiki.contrib.changerequest.internal.storage;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -49,6 +53,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestReview;
 import org.xwiki.contrib.changerequest.ChangeRequestRightsManager;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
 import org.xwiki.contrib.changerequest.events.ChangeRequestCreatedEvent;
@@ -111,6 +116,9 @@ import static org.xwiki.contrib.changerequest.internal.storage.ChangeRequestXCla
 public class DefaultChangeRequestStorageManager implements ChangeRequestStorageManager
 {
     private static final String REFERENCE = "reference";
+    private static final String REFERENCES = "references";
+
+    private static final int MOVE_DISCUSSIONS_ATTEMPTS = 3;
 
     @Inject
     private Provider<XWikiContext> contextProvider;
@@ -135,6 +143,9 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
     @Inject
     private UserReferenceSerializer<String> userReferenceSerializer;
 
+    @Inject
+    private UserReferenceResolver<String> stringUserReferenceResolver;
+
     @Inject
     private ChangeRequestIDGenerator defaultIDGenerator;
 
@@ -358,6 +369,61 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
         return result;
     }
 
+    @Override
+    public Optional<ChangeRequestSummary> loadSummary(String changeRequestId) throws ChangeRequestException
+    {
+        Optional<ChangeRequestSummary> result = this.changeRequestStorageCacheManager.getSummary(changeRequestId);
+
+        if (result.isEmpty()) {
+            Optional<ChangeRequest> cachedChangeRequest =
+                this.changeRequestStorageCacheManager.getChangeRequest(changeRequestId);
+            if (cachedChangeRequest.isPresent()) {
+                result = cachedChangeRequest.map(ChangeRequestSummary::new);
+            } else {
+                result = this.loadSummaryFromDocument(changeRequestId);
+            }
+            result.ifPresent(this.changeRequestStorageCacheManager::cacheSummary);
+        }
+        return result;
+    }
+
+    private Optional<ChangeRequestSummary> loadSummaryFromDocument(String changeRequestId)
+        throws ChangeRequestException
+    {
+        Optional<ChangeRequestSummary> result = Optional.empty();
+        ChangeRequest changeRequest = new ChangeRequest();
+        changeRequest.setId(changeRequestId);
+        DocumentReference reference = this.changeRequestDocumentReferenceResolver.resolve(changeRequest);
+        XWikiContext context = this.contextProvider.get();
+        try {
+            // Only the change request document is read: file changes and reviews are not loaded.
+            XWikiDocument document = context.getWiki().getDocument(reference, context);
+            BaseObject xObject = document.getXObject(CHANGE_REQUEST_XCLASS);
+            if (!document.isNew() && xObject != null) {
+                result = Optional.of(this.createSummary(changeRequestId, document.getTitle(),
+                    xObject.getStringValue(STATUS_FIELD), xObject.getLargeStringValue(AUTHORS_FIELD),
+                    document.getCreationDate(), xObject.getDateValue(STALE_DATE_FIELD),
+                    xObject.getListValue(CHANGED_DOCUMENTS_FIELD).size()));
+            }
+        } catch (XWikiException e) {
+            throw new ChangeRequestException(
+                String.format("Error while trying to load summary of change request [%s]", changeRequestId), e);
+        }
+        return result;
+    }
+
+    private ChangeRequestSummary createSummary(String changeRequestId, String title, String status, String authors,
+        Date creationDate, Date staleDate, int documentCount)
+    {
+        Set<UserReference> authorReferences = new LinkedHashSet<>();
+        for (String author : UsersClass.getListFromString(authors)) {
+            authorReferences.add(this.stringUserReferenceResolver.resolve(author));
+        }
+        return new ChangeRequestSummary(changeRequestId, title,
+            ChangeRequestStatus.valueOf(status.toUpperCase(Locale.ROOT)), authorReferences, creationDate, staleDate,
+            documentCount);
+    }
+
     @Override
     public void merge(ChangeRequest changeRequest) throws ChangeRequestException
     {
@@ -454,6 +520,95 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
         return result;
     }
 
+    @Override
+    public Map<DocumentReference, List<ChangeRequestSummary>> findOpenChangeRequestSummariesTargeting(
+        Collection<DocumentReference> documentReferences) throws ChangeRequestException
+    {
+        Map<DocumentReference, List<ChangeRequestSummary>> result = new LinkedHashMap<>();
+        if (!documentReferences.isEmpty()) {
+            // Several references might be serialized the same way, e.g. if they only differ by their locale.
+            Map<String, List<DocumentReference>> serializedReferences = new LinkedHashMap<>();
+            for (DocumentReference documentReference : documentReferences) {
+                serializedReferences
+                    .computeIfAbsent(this.localEntityReferenceSerializer.serialize(documentReference),
+                        key -> new ArrayList<>())
+                    .add(documentReference);
+            }
+            // All the information of the summaries is retrieved by the query so that no document is loaded.
+            String statement = String.format("select doc.fullName, changedDocument, doc.title, doc.creationDate, "
+                + "obj_status.value, "
+                + "(select authors.value from LargeStringProperty as authors "
+                + "where authors.id.id=obj.id and authors.id.name='%s'), "
+                + "(select stale.value from DateProperty as stale where stale.id.id=obj.id and stale.id.name='%s'), "
+                + "(select count(*) from DBStringListProperty as countProp join countProp.list countedDocument "
+                + "where countProp.id.id=obj.id and countProp.id.name='%s') %s order by doc.creationDate desc",
+                AUTHORS_FIELD, STALE_DATE_FIELD, CHANGED_DOCUMENTS_FIELD, getOpenChangeRequestTargetingStatement());
+            try {
+                Query query = this.queryManager.createQuery(statement, Query.HQL);
+                query.bindValue(REFERENCES, new ArrayList<>(serializedReferences.keySet()));
+                List<Object[]> rows = query.execute();
+                Map<String, ChangeRequestSummary> summaries = new HashMap<>();
+                for (Object[] row : rows) {
+                    String changeRequestId = getChangeRequestId((String) row[0]);
+                    ChangeRequestSummary summary = summaries.computeIfAbsent(changeRequestId,
+                        key -> this.createSummary(key, (String) row[2], (String) row[4], (String) row[5],
+                            (Date) row[3], (Date) row[6], ((Number) row[7]).intValue()));
+                    for (DocumentReference documentReference : serializedReferences.get((String) row[1])) {
+                        result.computeIfAbsent(documentReference, key -> new ArrayList<>()).add(summary);
+                    }
+                }
+            } catch (QueryException e) {
+                throw new ChangeRequestException(
+                    String.format("Error while trying to get open change requests for documents [%s]",
+                        documentReferences), e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasOtherOpenChangeRequestTargetingSame(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        boolean result = false;
+        Set<DocumentReference> modifiedDocuments = changeRequest.getModifiedDocuments();
+        if (!modifiedDocuments.isEmpty()) {
+            String statement = String.format("select doc.fullName %s and doc.fullName <> :changeRequestDocument",
+                getOpenChangeRequestTargetingStatement());
+            try {
+                Query query = this.queryManager.createQuery(statement, Query.HQL);
+                query.bindValue(REFERENCES, modifiedDocuments.stream()
+                    .map(this.localEntityReferenceSerializer::serialize)
+                    .distinct()
+                    .collect(Collectors.toList()));
+                query.bindValue("changeRequestDocument", this.localEntityReferenceSerializer.serialize(
+                    this.changeRequestDocumentReferenceResolver.resolve(changeRequest)));
+                query.setLimit(1);
+                result = !query.execute().isEmpty();
+            } catch (QueryException e) {
+                throw new ChangeRequestException(
+                    String.format("Error while checking for other open change requests targeting documents of [%s]",
+                        changeRequest.getId()), e);
+            }
+        }
+        return result;
+    }
+
+    private String getOpenChangeRequestTargetingStatement()
+    {
+        return String.format("from XWikiDocument as doc, BaseObject as obj, StringProperty as obj_status, "
+            + "DBStringListProperty as prop join prop.list changedDocument "
+            + "where doc.fullName=obj.name and obj.className='%s' "
+            + "and obj_status.id.id=obj.id and obj_status.id.name='%s' and obj_status.value in %s "
+            + "and prop.id.id=obj.id and prop.id.name='%s' and changedDocument in (:references)",
+            this.entityReferenceSerializer.serialize(CHANGE_REQUEST_XCLASS), STATUS_FIELD,
+            getInOpenStatusesStatement(), CHANGED_DOCUMENTS_FIELD);
+    }
+
+    private String getChangeRequestId(String changeRequestDocument)
+    {
+        return this.documentReferenceResolver.resolve(changeRequestDocument).getLastSpaceReference().getName();
+    }
+
     @Override
     public List<ChangeRequest> findChangeRequestTargeting(SpaceReference spaceReference)
         throws ChangeRequestException
@@ -505,15 +660,19 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
     @Override
     public List<ChangeRequest> findOpenChangeRequestsByDate(Date limitDate, boolean considerCreationDate)
         throws ChangeRequestException
+    {
+        return this.findChangeRequestWithStatementAndLimitDate(
+            getOpenChangeRequestsByDateStatement(considerCreationDate), limitDate);
+    }
+
+    private String getOpenChangeRequestsByDateStatement(boolean considerCreationDate)
     {
         String columnDate = (considerCreationDate) ? "creationDate" : "date";
-        String statement = String.format(", BaseObject as obj , StringProperty as obj_status where "
+        return String.format(", BaseObject as obj , StringProperty as obj_status where "
             + "doc.%s < :limitDate and obj_status.value in %s and "
             + "doc.fullName=obj.name and obj.className='%s' and obj_status.id.id=obj.id and obj_status.id.name='%s'",
             columnDate, getInOpenStatusesStatement(), this.entityReferenceSerializer.serialize(CHANGE_REQUEST_XCLASS),
             STATUS_FIELD);
-
-        return this.findChangeRequestWithStatementAndLimitDate(statement, limitDate);
     }
 
     @Override
@@ -531,25 +690,41 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
         return this.findChangeRequestWithStatementAndLimitDate(statement, limitDate);
     }
 
+    @Override
+    public List<ChangeRequestSummary> findOpenChangeRequestSummariesByDate(Date limitDate,
+        boolean considerCreationDate) throws ChangeRequestException
+    {
+        List<ChangeRequestSummary> result = new ArrayList<>();
+        for (String changeRequestId : this.findChangeRequestIdsWithStatementAndLimitDate(
+            getOpenChangeRequestsByDateStatement(considerCreationDate), limitDate)) {
+            this.loadSummary(changeRequestId).ifPresent(result::add);
+        }
+        return result;
+    }
+
     private List<ChangeRequest> findChangeRequestWithStatementAndLimitDate(String statement, Date limitDate)
         throws ChangeRequestException
     {
         List<ChangeRequest> result = new ArrayList<>();
+        for (String changeRequestId : this.findChangeRequestIdsWithStatementAndLimitDate(statement, limitDate)) {
+            this.load(changeRequestId).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    private List<String> findChangeRequestIdsWithStatementAndLimitDate(String statement, Date limitDate)
+        throws ChangeRequestException
+    {
         try {
             Query query = this.queryManager.createQuery(statement, Query.HQL);
             query.bindValue("limitDate", limitDate);
             List<String> changeRequestDocuments = query.execute();
-            for (String changeRequestDocument : changeRequestDocuments) {
-                DocumentReference crReference = this.documentReferenceResolver.resolve(changeRequestDocument);
-                this.load(crReference.getLastSpaceReference().getName()).ifPresent(result::add);
-            }
+            return changeRequestDocuments.stream().map(this::getChangeRequestId).collect(Collectors.toList());
         } catch (QueryException e) {
             throw new ChangeRequestException(
                 String.format("Error while querying change requests with statement [%s] and limitDate [%s]",
                     statement, limitDate), e);
         }
-
-        return result;
     }
 
     @Override
@@ -594,14 +769,37 @@ public class DefaultChangeRequestStorageManager implements ChangeRequestStorageM
             // Handle the approvers
             this.handleApproversInSplittedCR(changeRequest, result);
 
-            // Handle discussions last to not break the CR in case of problem there.
-            this.discussionService.moveDiscussions(changeRequest, result);
+            // Handle discussions last to not break the CR in case of problem there: the original change request is
+            // only deleted once all its discussions are moved.
+            this.moveDiscussions(changeRequest, result);
             this.delete(changeRequest);
             this.observationManager.notify(new SplitEndChangeRequestEvent(), changeRequest.getId(), result);
         }
         return result;
     }
 
+    private void moveDiscussions(ChangeRequest changeRequest, List<ChangeRequest> splittedChangeRequests)
+        throws ChangeRequestException
+    {
+        // The move of the discussions can be restarted: a new attempt resumes it where it stopped without
+        // duplicating the messages already moved.
+        boolean moved = false;
+        for (int attempt = 1; !moved; attempt++) {
+            try {
+                this.discussionService.moveDiscussions(changeRequest, splittedChangeRequests);
+                moved = true;
+            } catch (ChangeRequestException e) {
+                if (attempt == MOVE_DISCUSSIONS_ATTEMPTS) {
+                    throw new ChangeRequestException(String.format("Error while moving the discussions of change "
+                        + "request [%s]: it is kept until all its discussions are moved.", changeRequest.getId()), e);
+                }
+                this.logger.warn("Error while moving the discussions of change request [{}], the move will be "
+                    + "resumed: [{}]", changeRequest.getId(), ExceptionUtils.getRootCauseMessage(e));
+                this.logger.debug("Full stack trace of the move error: ", e);
+            }
+        }
+    }
+
     private List<ChangeRequest> performFileChangeSplit(ChangeRequest changeRequest, Set<DocumentReference> refToKeep)
         throws ChangeRequestException
     {
@@ -32,6 +32,7 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.bridge.DocumentModelBridge;
 import org.xwiki.component.annotation.Component;
@@ -41,6 +42,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.events.FileChangeDocumentSavedEvent;
 import org.xwiki.contrib.changerequest.events.FileChangeDocumentSavingEvent;
+import org.xwiki.contrib.changerequest.internal.FileChangeFingerprintManager;
 import org.xwiki.contrib.changerequest.internal.FileChangeVersionManager;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
@@ -71,6 +73,7 @@ import com.xpn.xwiki.util.Util;
 
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.AUTHOR_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.CHANGE_REQUEST_ID;
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.CONTENT_FINGERPRINT_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.CREATION_DATE_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.FILECHANGE_XCLASS;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.FILENAME_PROPERTY;
@@ -79,6 +82,7 @@ import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassI
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.PREVIOUS_VERSION_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.REFERENCE_LOCALE_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.REFERENCE_PROPERTY;
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.TYPE_PROPERTY;
 import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.VERSION_PROPERTY;
 
@@ -93,7 +97,9 @@ import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassI
 @Singleton
 public class DefaultFileChangeStorageManager implements FileChangeStorageManager
 {
-    private static final String ATTACHMENT_EXTENSION = "xml";
+    static final String ATTACHMENT_EXTENSION = "xml";
+
+    private static final String VELOCITY_CHARACTERS = "$#";
 
     @Inject
     private Provider<XWikiContext> contextProvider;
@@ -124,6 +130,9 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
     @Inject
     private FileChangeVersionManager fileChangeVersionManager;
 
+    @Inject
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     @Inject
     private MergeManager mergeManager;
 
@@ -185,6 +194,11 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
                     modifiedDocument
                         .setRCSVersion(this.fileChangeVersionManager.getDocumentVersion(fileChange.getVersion()));
                 }
+                // Always recompute the fingerprint since the modified document might have been changed.
+                fileChange.setContentFingerprint(
+                    this.fileChangeFingerprintManager.computeFingerprint(fileChange.getModifiedDocument()));
+                // Render static titles once so that they can be displayed later without any rendering.
+                fileChange.setRenderedTitle(this.renderStaticTitle(fileChange));
                 String fileChangeId = String.format("%s-%s",
                     fileChange.getVersion(),
                     Util.getHash(this.uidReferenceSerializer.serialize(fileChange.getTargetEntity())));
@@ -229,6 +243,20 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
         }
     }
 
+    private String renderStaticTitle(FileChange fileChange)
+    {
+        // Only a title without any script can be stored: it doesn't depend on the current user nor on any other
+        // document. Titles of deleted documents, empty titles (computed from the content) and titles containing
+        // scripts are always rendered on display.
+        String result = null;
+        XWikiDocument document = (XWikiDocument) fileChange.getModifiedDocument();
+        if (document != null && !StringUtils.isEmpty(document.getTitle())
+            && !StringUtils.containsAny(document.getTitle(), VELOCITY_CHARACTERS)) {
+            result = document.getRenderedTitle(this.contextProvider.get());
+        }
+        return result;
+    }
+
     private void createAttachment(FileChange fileChange, XWikiDocument fileChangeDocument, String filename)
         throws IOException, XWikiException
     {
@@ -272,6 +300,12 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
         fileChangeObject.set(REFERENCE_LOCALE_PROPERTY, locale, context);
         fileChangeObject.set(TYPE_PROPERTY, fileChange.getType().name().toLowerCase(), context);
         fileChangeObject.set(CHANGE_REQUEST_ID, fileChange.getChangeRequest().getId(), context);
+        if (fileChange.getContentFingerprint() != null) {
+            fileChangeObject.set(CONTENT_FINGERPRINT_PROPERTY, fileChange.getContentFingerprint(), context);
+        }
+        if (fileChange.getRenderedTitle() != null) {
+            fileChangeObject.setLargeStringValue(RENDERED_TITLE_PROPERTY, fileChange.getRenderedTitle());
+        }
     }
 
     @Override
@@ -345,6 +379,8 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
         String localeString = fileChangeObject.getStringValue(REFERENCE_LOCALE_PROPERTY);
         Locale locale = LocaleUtils.toLocale(localeString);
         documentReference = new DocumentReference(documentReference, locale);
+        String contentFingerprint = fileChangeObject.getStringValue(CONTENT_FINGERPRINT_PROPERTY);
+        String renderedTitle = fileChangeObject.getLargeStringValue(RENDERED_TITLE_PROPERTY);
 
         return fileChange
             .setId(this.getIdFromFilename(filename))
@@ -354,6 +390,8 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
             .setVersion(version)
             .setCreationDate(creationDate)
             .setAuthor(author)
+            .setContentFingerprint(StringUtils.defaultIfEmpty(contentFingerprint, null))
+            .setRenderedTitle(StringUtils.defaultIfEmpty(renderedTitle, null))
             .setSaved(true);
     }
 
@@ -526,7 +564,13 @@ public class DefaultFileChangeStorageManager implements FileChangeStorageManager
         if (mergeDocumentResult.hasConflicts()) {
             throw new ChangeRequestException("Cannot perform a rebase due to conflicts.");
         } else {
-            if (mergeDocumentResult.equals(newDoc)) {
+            // The merge result is compared with the published document through their fingerprints, to know if the
+            // file change still contains any change.
+            String mergeFingerprint =
+                this.fileChangeFingerprintManager.computeFingerprint(mergeDocumentResult.getMergeResult());
+            if (mergeFingerprint != null
+                && mergeFingerprint.equals(this.fileChangeFingerprintManager.getPublishedFingerprint(currentDocument)))
+            {
                 result = clone.cloneWithType(FileChange.FileChangeType.NO_CHANGE);
             } else {
                 result = clone;
@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.storage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.CHANGE_REQUEST_ID;
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.FILECHANGE_XCLASS;
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.FILENAME_PROPERTY;
+import static org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY;
+
+/**
+ * Component in charge of retrieving the rendered titles stored along with the file changes, without loading the
+ * change request nor parsing the modified documents.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = FileChangeRenderedTitleLoader.class)
+@Singleton
+public class FileChangeRenderedTitleLoader
+{
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    /**
+     * Retrieve the stored rendered title of the latest file change targeting the same document as the given file
+     * change, and associate it to the identifiers of all file changes of the change request targeting that document.
+     *
+     * @param changeRequestId the identifier of the change request
+     * @param fileChangeId the identifier of the file change for which to retrieve a title
+     * @return a map whose keys are file change identifiers and values the latest stored rendered title, or
+     *         {@code null} values if the latest file change does not have any stored title because it needs to be
+     *         rendered on display, or an empty map if the file change cannot be found
+     * @throws ChangeRequestException in case of problem for querying or loading the file change storage document
+     */
+    public Map<String, String> getLatestRenderedTitles(String changeRequestId, String fileChangeId)
+        throws ChangeRequestException
+    {
+        Map<String, String> result = Collections.emptyMap();
+        String statement = String.format("select doc.fullName from Document doc, doc.object(%s) as fileChange "
+            + "where fileChange.%s = :changeRequestId and fileChange.%s = :filename",
+            this.entityReferenceSerializer.serialize(FILECHANGE_XCLASS), CHANGE_REQUEST_ID, FILENAME_PROPERTY);
+        try {
+            Query query = this.queryManager.createQuery(statement, Query.XWQL);
+            query.bindValue("changeRequestId", changeRequestId);
+            query.bindValue("filename", getFilename(fileChangeId));
+            query.setLimit(1);
+            List<String> storageDocuments = query.execute();
+            if (!storageDocuments.isEmpty()) {
+                XWikiContext context = this.contextProvider.get();
+                XWikiDocument storageDocument = context.getWiki()
+                    .getDocument(this.documentReferenceResolver.resolve(storageDocuments.get(0)), context);
+                result = getLatestRenderedTitles(storageDocument);
+            }
+        } catch (QueryException | XWikiException e) {
+            throw new ChangeRequestException(
+                String.format("Error while retrieving the stored title of filechange [%s] in change request [%s]",
+                    fileChangeId, changeRequestId), e);
+        }
+        return result;
+    }
+
+    private Map<String, String> getLatestRenderedTitles(XWikiDocument storageDocument)
+    {
+        Map<String, String> result = Collections.emptyMap();
+        // File changes are stored in the order they have been created: the latest one is the last xobject.
+        List<BaseObject> fileChangeObjects = storageDocument.getXObjects(FILECHANGE_XCLASS).stream()
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        if (!fileChangeObjects.isEmpty()) {
+            BaseObject latestObject = fileChangeObjects.get(fileChangeObjects.size() - 1);
+            String latestTitle =
+                StringUtils.defaultIfEmpty(latestObject.getLargeStringValue(RENDERED_TITLE_PROPERTY), null);
+            result = new HashMap<>();
+            for (BaseObject fileChangeObject : fileChangeObjects) {
+                String filename = fileChangeObject.getStringValue(FILENAME_PROPERTY);
+                result.put(getFileChangeId(filename), latestTitle);
+            }
+        }
+        return result;
+    }
+
+    private String getFilename(String fileChangeId)
+    {
+        return String.format("%s.%s", fileChangeId, DefaultFileChangeStorageManager.ATTACHMENT_EXTENSION);
+    }
+
+    private String getFileChangeId(String filename)
+    {
+        return StringUtils.removeEnd(filename, "." + DefaultFileChangeStorageManager.ATTACHMENT_EXTENSION);
+    }
+}
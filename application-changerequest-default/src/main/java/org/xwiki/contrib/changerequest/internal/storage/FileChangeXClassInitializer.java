@@ -71,6 +71,8 @@ public class FileChangeXClassInitializer implements MandatoryDocumentInitializer
     static final String TYPE_PROPERTY = "type";
     static final String AUTHOR_PROPERTY = "author";
     static final String CREATION_DATE_PROPERTY = "creationDate";
+    static final String CONTENT_FINGERPRINT_PROPERTY = "contentFingerprint";
+    static final String RENDERED_TITLE_PROPERTY = "renderedTitle";
 
     @Inject
     private Provider<XWikiContext> contextProvider;
@@ -110,6 +112,8 @@ public class FileChangeXClassInitializer implements MandatoryDocumentInitializer
                 .map(value -> value.name().toLowerCase(Locale.ROOT))
                 .collect(Collectors.joining()));
         result |= xClass.addTextField(CHANGE_REQUEST_ID, CHANGE_REQUEST_ID, 100);
+        result |= xClass.addTextField(CONTENT_FINGERPRINT_PROPERTY, CONTENT_FINGERPRINT_PROPERTY, 64);
+        result |= xClass.addTextAreaField(RENDERED_TITLE_PROPERTY, RENDERED_TITLE_PROPERTY, 40, 1);
 
         return result;
     }
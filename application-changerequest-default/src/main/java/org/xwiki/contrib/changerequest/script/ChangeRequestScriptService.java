@@ -49,16 +49,17 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestManager;
 import org.xwiki.contrib.changerequest.ChangeRequestReference;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.DelegateApproverManager;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.MergeApprovalStrategy;
 import org.xwiki.contrib.changerequest.diff.ChangeRequestDiffRenderContent;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestWikisCacheManager;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
 import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
-import org.xwiki.extension.InstalledExtension;
-import org.xwiki.extension.repository.InstalledExtensionRepository;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.WikiReference;
@@ -94,9 +95,6 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class ChangeRequestScriptService implements ScriptService
 {
-    private static final String CHANGE_REQUEST_UI_MODULE_ID =
-        "org.xwiki.contrib.changerequest:application-changerequest-ui";
-
     @Inject
     private ChangeRequestManager changeRequestManager;
 
@@ -153,7 +151,10 @@ public class ChangeRequestScriptService implements ScriptService
     private UserReferenceConverter userReferenceConverter;
 
     @Inject
-    private InstalledExtensionRepository installedExtensionRepository;
+    private ChangeRequestWikisCacheManager wikisCacheManager;
+
+    @Inject
+    private DelegateApproversCacheManager delegateApproversCacheManager;
 
     @Inject
     @Named("changerequestid")
@@ -182,6 +183,22 @@ public class ChangeRequestScriptService implements ScriptService
         return this.changeRequestStorageManager.load(changeRequestId);
     }
 
+    /**
+     * Retrieve the summary of the change request identified with the given id. This method should be preferred over
+     * {@link #getChangeRequest(String)} when only the main information of the change request are needed.
+     *
+     * @param changeRequestId the identifier of a change request.
+     * @return an optional containing the change request summary if it can be found, else an empty optional.
+     * @throws ChangeRequestException in case of problem when retrieving the change request.
+     * @since 1.16
+     */
+    @Unstable
+    public Optional<ChangeRequestSummary> getChangeRequestSummary(String changeRequestId)
+        throws ChangeRequestException
+    {
+        return this.changeRequestStorageManager.loadSummary(changeRequestId);
+    }
+
     /**
      * Resolve the reference of a change request document identified by the given id.
      * @param changeRequestId a change request id
@@ -206,6 +223,21 @@ public class ChangeRequestScriptService implements ScriptService
         return this.changeRequestManager.canBeMerged(changeRequest);
     }
 
+    /**
+     * Check if the ready for merging status of the given change request is about to be recomputed: the computation is
+     * delayed by the configured duration to coalesce subsequent changes, and the displayed status might be outdated
+     * until then.
+     *
+     * @param changeRequest the change request to check
+     * @return {@code true} if a computation of the ready for merging status is pending
+     * @since 1.16
+     */
+    @Unstable
+    public boolean isReadyForMergingStatusPending(ChangeRequest changeRequest)
+    {
+        return this.changeRequestManager.isReadyForMergingStatusPending(changeRequest);
+    }
+
     /**
      * Retrieve the modified document containing in the given change request and identified by the given reference.
      *
@@ -259,25 +291,84 @@ public class ChangeRequestScriptService implements ScriptService
      *          change request is found for a given reference, the entry is not added.
      * @throws ChangeRequestException in case of problem for loading other change requests.
      * @since 0.7
+     * @deprecated since 1.16 use {@link #getOpenChangeRequestSummariesTargetingSame(ChangeRequest)} which doesn't
+     *             load the found change requests
      */
+    @Deprecated(since = "1.16")
     public Map<DocumentReference, List<ChangeRequest>> getOpenChangeRequestsTargetingSame(ChangeRequest changeRequest)
         throws ChangeRequestException
     {
         Map<DocumentReference, List<ChangeRequest>> result = new HashMap<>();
+        Map<String, Optional<ChangeRequest>> loadedChangeRequests = new HashMap<>();
+
+        for (Map.Entry<DocumentReference, List<ChangeRequestSummary>> entry
+            : getOpenChangeRequestSummariesTargetingSame(changeRequest).entrySet()) {
+            List<ChangeRequest> changeRequests = new ArrayList<>();
+            for (ChangeRequestSummary summary : entry.getValue()) {
+                Optional<ChangeRequest> foundChangeRequest = loadedChangeRequests.get(summary.getId());
+                if (foundChangeRequest == null) {
+                    foundChangeRequest = this.changeRequestStorageManager.load(summary.getId());
+                    loadedChangeRequests.put(summary.getId(), foundChangeRequest);
+                }
+                foundChangeRequest.ifPresent(changeRequests::add);
+            }
+            if (!changeRequests.isEmpty()) {
+                result.put(entry.getKey(), changeRequests);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieve the summaries of the change requests different from the given change request, that are not closed or
+     * merged and which contains a change for one of the document reference modified by the given change request.
+     * The change requests are found with a single query and are not loaded.
+     *
+     * @param changeRequest the change request from which to take the modified documents.
+     * @return a map whose keys are the given document references and values the summaries of found change requests.
+     *          If no change request is found for a given reference, the entry is not added.
+     * @throws ChangeRequestException in case of problem for finding other change requests.
+     * @since 1.16
+     */
+    @Unstable
+    public Map<DocumentReference, List<ChangeRequestSummary>> getOpenChangeRequestSummariesTargetingSame(
+        ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        Map<DocumentReference, List<ChangeRequestSummary>> result = new HashMap<>();
 
-        for (DocumentReference modifiedDocument : changeRequest.getModifiedDocuments()) {
-            List<ChangeRequest> changeRequests = getOpenChangeRequestWithChangesFor(modifiedDocument)
+        Map<DocumentReference, List<ChangeRequestSummary>> summaries = this.changeRequestStorageManager
+            .findOpenChangeRequestSummariesTargeting(changeRequest.getModifiedDocuments());
+        for (Map.Entry<DocumentReference, List<ChangeRequestSummary>> entry : summaries.entrySet()) {
+            List<ChangeRequestSummary> otherSummaries = entry.getValue()
                 .stream()
-                .filter(foundCR -> !foundCR.getId().equals(changeRequest.getId()))
+                .filter(summary -> !summary.getId().equals(changeRequest.getId()))
                 .collect(Collectors.toList());
-            if (!changeRequests.isEmpty()) {
-                result.put(modifiedDocument, changeRequests);
+            if (!otherSummaries.isEmpty()) {
+                result.put(entry.getKey(), otherSummaries);
             }
         }
 
         return result;
     }
 
+    /**
+     * Check if there is any change request different from the given change request, that is not closed or merged and
+     * which contains a change for one of the document reference modified by the given change request. Contrarily to
+     * {@link #getOpenChangeRequestSummariesTargetingSame(ChangeRequest)} this method stops at the first found change
+     * request.
+     *
+     * @param changeRequest the change request from which to take the modified documents.
+     * @return {@code true} if at least another open change request targets one of the same documents.
+     * @throws ChangeRequestException in case of problem for finding other change requests.
+     * @since 1.16
+     */
+    @Unstable
+    public boolean hasOtherOpenChangeRequestTargetingSame(ChangeRequest changeRequest) throws ChangeRequestException
+    {
+        return this.changeRequestStorageManager.hasOtherOpenChangeRequestTargetingSame(changeRequest);
+    }
+
     /**
      * Find all change request documents whose title is matching the given title.
      *
@@ -316,16 +407,8 @@ public class ChangeRequestScriptService implements ScriptService
             result = new FileChangeSavingChecker.SavingCheckerResult(
                 "changerequest.script.compatibility.changeRequestNotFound");
         } else {
-            ChangeRequest changeRequest = changeRequestOptional.get();
-            List<FileChangeSavingChecker> checkerList = this.fileChangeSavingCheckersLoader.getCheckers();
-
-            for (FileChangeSavingChecker fileChangeSavingChecker : checkerList) {
-                result = fileChangeSavingChecker.canChangeOnDocumentBeAdded(changeRequest, newDocumentChange,
-                    changeType);
-                if (!result.canBeSaved()) {
-                    break;
-                }
-            }
+            result = this.fileChangeSavingCheckersLoader.canChangeOnDocumentBeAdded(changeRequestOptional.get(),
+                newDocumentChange, changeType);
         }
         return result;
     }
@@ -593,16 +676,20 @@ public class ChangeRequestScriptService implements ScriptService
         WikiDescriptor currentWikiDescriptor = wikiDescriptorManager.getCurrentWikiDescriptor();
         String currentWikiId = currentWikiDescriptor.getId();
 
+        Set<String> wikisWithChangeRequest = this.wikisCacheManager.getWikisWithChangeRequest();
+
         // We check immediately current wiki as we want it to be the first one displayed.
-        if (this.isChangeRequestInstalledOnWiki(currentWikiId)
+        if (wikisWithChangeRequest.contains(currentWikiId)
             && this.doesUserBelongToWiki(userReference, userWiki, currentWikiId, mainWikiId)) {
             result.add(currentWikiDescriptor);
         }
-        for (WikiDescriptor wikiDescriptor : wikiDescriptorManager.getAll()) {
-            String wikiId = wikiDescriptor.getId();
-            if (!StringUtils.equals(currentWikiId, wikiId) && this.isChangeRequestInstalledOnWiki(wikiId)
+        for (String wikiId : wikisWithChangeRequest) {
+            if (!StringUtils.equals(currentWikiId, wikiId)
                 && this.doesUserBelongToWiki(userReference, userWiki, wikiId, mainWikiId)) {
-                result.add(wikiDescriptor);
+                WikiDescriptor wikiDescriptor = this.wikiDescriptorManager.getById(wikiId);
+                if (wikiDescriptor != null) {
+                    result.add(wikiDescriptor);
+                }
             }
         }
 
@@ -626,27 +713,6 @@ public class ChangeRequestScriptService implements ScriptService
         return result;
     }
 
-    /**
-     * Check if the change request UI extension is installed on the given wiki.
-     * This method specifically check if the extension is installed on the wiki: it returns {@code false} if it's
-     * installed on the farm, but not on the wiki.
-     *
-     * @param wikiId the identifier of the wiki
-     * @return {@code true} if the extension is installed on the wiki
-     */
-    private boolean isChangeRequestInstalledOnWiki(String wikiId)
-    {
-        String wikiNamespace = String.format("wiki:%s", wikiId);
-        InstalledExtension installedExtension = this.installedExtensionRepository
-            .getInstalledExtension(CHANGE_REQUEST_UI_MODULE_ID, wikiNamespace);
-
-        boolean isInstalled = false;
-        if (installedExtension != null) {
-            isInstalled = installedExtension.getNamespaces().contains(wikiNamespace);
-        }
-        return isInstalled;
-    }
-
     /**
      * @return the list of all merge approval strategies component.
      * @throws ComponentLookupException in case of problem to list the instances
@@ -681,4 +747,20 @@ public class ChangeRequestScriptService implements ScriptService
     {
         return this.changeRequestManager.getTitle(changeRequestId, fileChangeId);
     }
+
+    /**
+     * Retrieve the statistics of the delegate approvers cache, to check whether its size is appropriate.
+     *
+     * @return a map containing the number of cache hits under the {@code hits} key and the number of cache misses
+     *          under the {@code misses} key
+     * @since 1.16
+     */
+    @Unstable
+    public Map<String, Long> getDelegateApproversCacheStatistics()
+    {
+        Map<String, Long> result = new HashMap<>();
+        result.put("hits", this.delegateApproversCacheManager.getHitCount());
+        result.put("misses", this.delegateApproversCacheManager.getMissCount());
+        return result;
+    }
 }
@@ -40,7 +40,13 @@ import org.xwiki.test.junit5.mockito.MockComponent;
 import com.xpn.xwiki.XWikiContext;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -62,6 +68,10 @@ class DefaultChangeRequestConfigurationTest
     @Named("changerequest")
     private ConfigurationSource configurationSource;
 
+    @MockComponent
+    @Named("xwikiproperties")
+    private ConfigurationSource xwikiPropertiesSource;
+
     @RegisterExtension
     LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
 
@@ -105,4 +115,38 @@ class DefaultChangeRequestConfigurationTest
         when(this.configurationSource.getProperty("durationUnit")).thenReturn("hours");
         assertEquals(ChronoUnit.HOURS, this.configuration.getDurationUnit());
     }
+
+    @Test
+    void getDelegateCacheSize()
+    {
+        when(this.xwikiPropertiesSource.getProperty("changerequest.delegateCacheSize", 1000)).thenReturn(42);
+        assertEquals(42, this.configuration.getDelegateCacheSize());
+        verify(this.configurationSource, never()).getProperty(eq("delegateCacheSize"), anyInt());
+    }
+
+    @Test
+    void getBackgroundWorkSettings()
+    {
+        // The default values are used when the properties are not set in xwiki.properties.
+        when(this.xwikiPropertiesSource.getProperty(anyString(), anyInt()))
+            .then(invocation -> invocation.getArgument(1));
+        assertEquals(2, this.configuration.getBackgroundWorkThreads());
+        assertEquals(1000, this.configuration.getBackgroundWorkQueueSize());
+
+        when(this.xwikiPropertiesSource.getProperty("changerequest.backgroundWorkThreads", 2)).thenReturn(8);
+        when(this.xwikiPropertiesSource.getProperty("changerequest.backgroundWorkQueueSize", 1000)).thenReturn(50);
+        assertEquals(8, this.configuration.getBackgroundWorkThreads());
+        assertEquals(50, this.configuration.getBackgroundWorkQueueSize());
+        verify(this.configurationSource, never()).getProperty(eq("backgroundWorkThreads"), anyInt());
+        verify(this.configurationSource, never()).getProperty(eq("backgroundWorkQueueSize"), anyInt());
+    }
+
+    @Test
+    void getReplicationMessagesBatchWindow()
+    {
+        when(this.xwikiPropertiesSource.getProperty("changerequest.replicationMessagesBatchWindow", 2000L))
+            .thenReturn(500L);
+        assertEquals(500L, this.configuration.getReplicationMessagesBatchWindow());
+        verify(this.configurationSource, never()).getProperty(eq("replicationMessagesBatchWindow"), anyLong());
+    }
 }
@@ -71,6 +71,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -134,6 +135,12 @@ class DefaultChangeRequestManagerTest
     @MockComponent
     private ContextualLocalizationManager contextualLocalizationManager;
 
+    @MockComponent
+    private ReadyForMergingStatusDebouncer readyForMergingStatusDebouncer;
+
+    @MockComponent
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     private XarExtensionScriptService xarExtensionScriptService;
 
     private XWikiContext context;
@@ -217,6 +224,62 @@ class DefaultChangeRequestManagerTest
         verify(changeRequest, times(2)).updateDate();
     }
 
+    @Test
+    void computeReadyForMergingStatusWithDelay() throws Exception
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn("someId");
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_REVIEW);
+        when(this.configuration.getReadyForMergingStatusComputationDelay()).thenReturn(1000L);
+        when(this.configuration.getReadyForMergingStatusComputationMaxDelay()).thenReturn(5000L);
+
+        this.manager.computeReadyForMergingStatus(changeRequest);
+        verify(this.readyForMergingStatusDebouncer).schedule(changeRequest, 1000L, 5000L);
+        verify(this.configuration, never()).getMergeApprovalStrategy();
+        verifyNoInteractions(this.changeRequestStorageManager);
+
+        // The status of a draft cannot change, so the computation is not delayed.
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.DRAFT);
+        this.manager.computeReadyForMergingStatus(changeRequest);
+        verify(this.readyForMergingStatusDebouncer).cancel(changeRequest);
+        verify(this.readyForMergingStatusDebouncer).schedule(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void flushReadyForMergingStatus() throws Exception
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn("someId");
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_REVIEW);
+        when(this.configuration.getReadyForMergingStatusComputationDelay()).thenReturn(1000L);
+        String approvalStrategyHint = "approve";
+        when(this.configuration.getMergeApprovalStrategy()).thenReturn(approvalStrategyHint);
+        MergeApprovalStrategy strategy =
+            this.componentManager.registerMockComponent(MergeApprovalStrategy.class, approvalStrategyHint);
+        when(strategy.canBeMerged(changeRequest)).thenReturn(true);
+        when(changeRequest.setStatus(ChangeRequestStatus.READY_FOR_MERGING)).thenReturn(changeRequest);
+
+        this.manager.flushReadyForMergingStatus(changeRequest);
+        verify(this.readyForMergingStatusDebouncer).cancel(changeRequest);
+        verify(this.readyForMergingStatusDebouncer, never()).schedule(any(), anyLong(), anyLong());
+        verify(changeRequest).setStatus(ChangeRequestStatus.READY_FOR_MERGING);
+        verify(this.changeRequestStorageManager).save(changeRequest, "Update status");
+    }
+
+    @Test
+    void isReadyForMergingStatusPending()
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        assertFalse(this.manager.isReadyForMergingStatusPending(changeRequest));
+        verify(this.readyForMergingStatusDebouncer, never()).isPending(any());
+
+        when(changeRequest.getId()).thenReturn("someId");
+        assertFalse(this.manager.isReadyForMergingStatusPending(changeRequest));
+
+        when(this.readyForMergingStatusDebouncer.isPending(changeRequest)).thenReturn(true);
+        assertTrue(this.manager.isReadyForMergingStatusPending(changeRequest));
+    }
+
     @Test
     void updateStatus() throws ChangeRequestException
     {
@@ -299,6 +362,42 @@ class DefaultChangeRequestManagerTest
         assertFalse(this.manager.isFileChangeOutdated(fileChange));
     }
 
+    @Test
+    void isFileChangeOutdatedWithSameContent() throws ChangeRequestException
+    {
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getType()).thenReturn(FileChange.FileChangeType.EDITION);
+        XWikiDocument currentDoc = mock(XWikiDocument.class);
+        when(this.fileChangeStorageManager.getCurrentDocumentFromFileChange(fileChange)).thenReturn(currentDoc);
+        when(fileChange.getPreviousPublishedVersion()).thenReturn("1.2");
+        when(currentDoc.getVersion()).thenReturn("1.3");
+
+        // A new version has been published, but it didn't change the content of the document.
+        when(this.fileChangeFingerprintManager.isPreviousPublishedContent(fileChange, currentDoc)).thenReturn(true);
+        assertFalse(this.manager.isFileChangeOutdated(fileChange));
+
+        when(this.fileChangeFingerprintManager.isPreviousPublishedContent(fileChange, currentDoc)).thenReturn(false);
+        assertTrue(this.manager.isFileChangeOutdated(fileChange));
+
+        // The no change file change holds the content published when it was created.
+        FileChange noChangeFileChange = mock(FileChange.class);
+        when(noChangeFileChange.getType()).thenReturn(FileChange.FileChangeType.NO_CHANGE);
+        when(this.fileChangeStorageManager.getCurrentDocumentFromFileChange(noChangeFileChange))
+            .thenReturn(currentDoc);
+        when(noChangeFileChange.getPreviousPublishedVersion()).thenReturn("1.2");
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(noChangeFileChange.getChangeRequest()).thenReturn(changeRequest);
+        when(changeRequest.getFileChangeWithChangeBefore(noChangeFileChange)).thenReturn(Optional.of(fileChange));
+
+        when(this.fileChangeFingerprintManager.getFingerprint(noChangeFileChange)).thenReturn("fingerprint");
+        when(this.fileChangeFingerprintManager.getPublishedFingerprint(currentDoc)).thenReturn("fingerprint");
+        assertFalse(this.manager.isFileChangeOutdated(noChangeFileChange));
+
+        when(this.fileChangeFingerprintManager.getPublishedFingerprint(currentDoc)).thenReturn("other");
+        assertTrue(this.manager.isFileChangeOutdated(noChangeFileChange));
+        verify(this.fileChangeFingerprintManager, never()).getPreviousPublishedFingerprint(noChangeFileChange);
+    }
+
     @Test
     void canDeletionBeRequested() throws Exception
     {
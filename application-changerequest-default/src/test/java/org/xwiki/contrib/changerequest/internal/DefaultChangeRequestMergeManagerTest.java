@@ -59,6 +59,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -105,6 +106,9 @@ class DefaultChangeRequestMergeManagerTest
     @MockComponent
     private ContextualLocalizationManager contextualLocalizationManager;
 
+    @MockComponent
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     private XWikiContext context;
     private ChangeRequestManager changeRequestManager;
 
@@ -161,6 +165,22 @@ class DefaultChangeRequestMergeManagerTest
         verify(this.mergeCacheManager).setConflictStatus(fileChange, true);
     }
 
+    @Test
+    void hasConflictWithEditionAndSamePublishedContent() throws ChangeRequestException
+    {
+        FileChange fileChange = mock(FileChange.class);
+        when(this.mergeCacheManager.hasConflict(fileChange)).thenReturn(Optional.empty());
+        when(fileChange.getType()).thenReturn(FileChange.FileChangeType.EDITION);
+        DocumentModelBridge currentDoc = mock(DocumentModelBridge.class);
+        when(this.fileChangeStorageManager.getCurrentDocumentFromFileChange(fileChange)).thenReturn(currentDoc);
+        when(this.fileChangeFingerprintManager.isPreviousPublishedContent(fileChange, currentDoc)).thenReturn(true);
+
+        assertFalse(this.crMergeManager.hasConflict(fileChange));
+        verify(this.fileChangeStorageManager, never()).getPreviousDocumentFromFileChange(fileChange);
+        verifyNoInteractions(this.mergeManager);
+        verify(this.mergeCacheManager).setConflictStatus(fileChange, false);
+    }
+
     @Test
     void getMergeDocumentResult() throws Exception
     {
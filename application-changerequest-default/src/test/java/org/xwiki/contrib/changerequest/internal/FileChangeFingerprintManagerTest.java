@@ -0,0 +1,282 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link FileChangeFingerprintManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FileChangeFingerprintManagerTest
+{
+    @InjectMockComponents
+    private FileChangeFingerprintManager fingerprintManager;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private Provider<FileChangeStorageManager> fileChangeStorageManagerProvider;
+
+    private FileChangeStorageManager fileChangeStorageManager;
+
+    private final Map<String, String> cacheContent = new HashMap<>();
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        Cache<String> cache = mock(Cache.class);
+        when(this.cacheManager.createNewCache(any())).thenReturn((Cache) cache);
+        when(cache.get(anyString())).then(invocationOnMock -> this.cacheContent.get(invocationOnMock.getArgument(0)));
+        doAnswer(invocationOnMock -> this.cacheContent.put(invocationOnMock.getArgument(0),
+            invocationOnMock.getArgument(1))).when(cache).set(anyString(), anyString());
+    }
+
+    @BeforeEach
+    void setup()
+    {
+        this.fileChangeStorageManager = mock(FileChangeStorageManager.class);
+        when(this.fileChangeStorageManagerProvider.get()).thenReturn(this.fileChangeStorageManager);
+        when(this.entityReferenceSerializer.serialize(any())).then(invocationOnMock ->
+            String.valueOf((Object) invocationOnMock.getArgument(0)));
+    }
+
+    private BaseObject mockObject(String className, int number, Map<String, Object> properties)
+    {
+        BaseObject object = mock(BaseObject.class);
+        when(object.getRelativeXClassReference()).thenReturn(new LocalDocumentReference("XWiki", className));
+        when(object.getNumber()).thenReturn(number);
+        when(object.getPropertyList()).thenReturn(properties.keySet());
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            BaseProperty property = mock(BaseProperty.class);
+            when(property.getValue()).thenReturn(entry.getValue());
+            when(object.safeget(entry.getKey())).thenReturn(property);
+        }
+        return object;
+    }
+
+    private XWikiDocument mockDocument(String content, Map<DocumentReference, List<BaseObject>> objects,
+        List<XWikiAttachment> attachments)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getTitle()).thenReturn("Some title");
+        when(document.getContent()).thenReturn(content);
+        when(document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        when(document.isHidden()).thenReturn(false);
+        when(document.getXObjects()).thenReturn(objects);
+        when(document.getAttachmentList()).thenReturn(attachments);
+        return document;
+    }
+
+    private XWikiAttachment mockAttachment(String filename, long size)
+    {
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        when(attachment.getFilename()).thenReturn(filename);
+        when(attachment.getLongSize()).thenReturn(size);
+        when(attachment.getDate()).thenReturn(new Date(42));
+        return attachment;
+    }
+
+    @Test
+    void computeFingerprint()
+    {
+        assertNull(this.fingerprintManager.computeFingerprint(null));
+
+        DocumentReference classA = new DocumentReference("xwiki", "XWiki", "ClassA");
+        DocumentReference classB = new DocumentReference("xwiki", "XWiki", "ClassB");
+
+        Map<DocumentReference, List<BaseObject>> objects1 = new LinkedHashMap<>();
+        objects1.put(classA, List.of(mockObject("ClassA", 0, Map.of("foo", "bar", "date", new Date(12)))));
+        objects1.put(classB, List.of(mockObject("ClassB", 0, Map.of("number", 3))));
+        XWikiDocument document1 = mockDocument("Some content", objects1,
+            List.of(mockAttachment("image.png", 12), mockAttachment("file.txt", 3)));
+
+        // Same document, but with objects and attachments in different orders.
+        Map<DocumentReference, List<BaseObject>> objects2 = new LinkedHashMap<>();
+        objects2.put(classB, List.of(mockObject("ClassB", 0, Map.of("number", 3))));
+        objects2.put(classA, List.of(mockObject("ClassA", 0, Map.of("date", new Date(12), "foo", "bar"))));
+        XWikiDocument document2 = mockDocument("Some content", objects2,
+            List.of(mockAttachment("file.txt", 3), mockAttachment("image.png", 12)));
+        when(document2.getVersion()).thenReturn("4.2");
+
+        String fingerprint = this.fingerprintManager.computeFingerprint(document1);
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, this.fingerprintManager.computeFingerprint(document2));
+
+        XWikiDocument otherContent = mockDocument("Other content", objects1,
+            List.of(mockAttachment("image.png", 12), mockAttachment("file.txt", 3)));
+        assertNotEquals(fingerprint, this.fingerprintManager.computeFingerprint(otherContent));
+
+        Map<DocumentReference, List<BaseObject>> otherObjects = new LinkedHashMap<>();
+        otherObjects.put(classA, List.of(mockObject("ClassA", 0, Map.of("foo", "buz", "date", new Date(12)))));
+        otherObjects.put(classB, List.of(mockObject("ClassB", 0, Map.of("number", 3))));
+        XWikiDocument otherObjectValue = mockDocument("Some content", otherObjects,
+            List.of(mockAttachment("image.png", 12), mockAttachment("file.txt", 3)));
+        assertNotEquals(fingerprint, this.fingerprintManager.computeFingerprint(otherObjectValue));
+
+        XWikiDocument otherAttachment = mockDocument("Some content", objects1,
+            List.of(mockAttachment("image.png", 13), mockAttachment("file.txt", 3)));
+        assertNotEquals(fingerprint, this.fingerprintManager.computeFingerprint(otherAttachment));
+    }
+
+    @Test
+    void getFingerprint()
+    {
+        XWikiDocument document = mockDocument("Content", Map.of(), List.of());
+        FileChange fileChange = new FileChange(mock(ChangeRequest.class))
+            .setModifiedDocument(document)
+            .setContentFingerprint("storedFingerprint");
+        assertEquals("storedFingerprint", this.fingerprintManager.getFingerprint(fileChange));
+        verify(document, never()).getContent();
+
+        fileChange.setContentFingerprint(null);
+        assertEquals(this.fingerprintManager.computeFingerprint(document),
+            this.fingerprintManager.getFingerprint(fileChange));
+    }
+
+    @Test
+    void hasSameContent()
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        XWikiDocument document1 = mockDocument("Content", Map.of(), List.of());
+        XWikiDocument document2 = mockDocument("Content", Map.of(), List.of());
+        XWikiDocument document3 = mockDocument("Other content", Map.of(), List.of());
+
+        FileChange fileChange1 = new FileChange(changeRequest).setModifiedDocument(document1);
+        FileChange fileChange2 = new FileChange(changeRequest).setModifiedDocument(document2);
+        FileChange fileChange3 = new FileChange(changeRequest).setModifiedDocument(document3);
+        FileChange creation = new FileChange(changeRequest, FileChange.FileChangeType.CREATION)
+            .setModifiedDocument(document1);
+
+        assertTrue(this.fingerprintManager.hasSameContent(fileChange1, fileChange2));
+        assertFalse(this.fingerprintManager.hasSameContent(fileChange1, fileChange3));
+        assertFalse(this.fingerprintManager.hasSameContent(fileChange1, creation));
+
+        FileChange deletion1 = new FileChange(changeRequest, FileChange.FileChangeType.DELETION);
+        FileChange deletion2 = new FileChange(changeRequest, FileChange.FileChangeType.DELETION);
+        assertTrue(this.fingerprintManager.hasSameContent(deletion1, deletion2));
+        assertFalse(this.fingerprintManager.hasSameContent(deletion1, fileChange1));
+    }
+
+    @Test
+    void getPublishedFingerprint()
+    {
+        XWikiDocument document = mockDocument("Content", Map.of(), List.of());
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        when(document.getDocumentReferenceWithLocale()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn("2.1");
+        when(document.getDate()).thenReturn(new Date(42));
+
+        String fingerprint = this.fingerprintManager.computeFingerprint(document);
+        assertEquals(fingerprint, this.fingerprintManager.getPublishedFingerprint(document));
+        assertEquals(fingerprint, this.fingerprintManager.getPublishedFingerprint(document));
+        // The content is only read once, then the fingerprint of this version is taken from the cache.
+        verify(document, times(2)).getContent();
+
+        when(document.isNew()).thenReturn(true);
+        assertNull(this.fingerprintManager.getPublishedFingerprint(document));
+    }
+
+    @Test
+    void getPreviousPublishedFingerprint() throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        FileChange fileChange = new FileChange(mock(ChangeRequest.class))
+            .setTargetEntity(documentReference)
+            .setPreviousPublishedVersion("2.1", new Date(42));
+        XWikiDocument previousDocument = mockDocument("Content", Map.of(), List.of());
+        when(this.fileChangeStorageManager.getPreviousDocumentFromFileChange(fileChange))
+            .thenReturn(Optional.of(previousDocument));
+
+        String fingerprint = this.fingerprintManager.computeFingerprint(previousDocument);
+        assertEquals(fingerprint, this.fingerprintManager.getPreviousPublishedFingerprint(fileChange));
+        assertEquals(fingerprint, this.fingerprintManager.getPreviousPublishedFingerprint(fileChange));
+        // The old revision is only loaded once.
+        verify(this.fileChangeStorageManager).getPreviousDocumentFromFileChange(fileChange);
+
+        XWikiDocument currentDocument = mockDocument("Content", Map.of(), List.of());
+        when(currentDocument.getDocumentReferenceWithLocale()).thenReturn(documentReference);
+        when(currentDocument.getVersion()).thenReturn("2.2");
+        when(currentDocument.getDate()).thenReturn(new Date(43));
+        assertTrue(this.fingerprintManager.isPreviousPublishedContent(fileChange, currentDocument));
+
+        when(currentDocument.getVersion()).thenReturn("2.3");
+        when(currentDocument.getContent()).thenReturn("Other content");
+        assertFalse(this.fingerprintManager.isPreviousPublishedContent(fileChange, currentDocument));
+
+        // The previous published version cannot be found anymore: nothing can be compared.
+        FileChange otherFileChange = new FileChange(mock(ChangeRequest.class))
+            .setTargetEntity(documentReference)
+            .setPreviousPublishedVersion("1.1", new Date(12));
+        when(this.fileChangeStorageManager.getPreviousDocumentFromFileChange(otherFileChange))
+            .thenReturn(Optional.empty());
+        assertNull(this.fingerprintManager.getPreviousPublishedFingerprint(otherFileChange));
+        assertNull(this.fingerprintManager.getPreviousPublishedFingerprint(otherFileChange));
+        verify(this.fileChangeStorageManager).getPreviousDocumentFromFileChange(otherFileChange);
+    }
+}
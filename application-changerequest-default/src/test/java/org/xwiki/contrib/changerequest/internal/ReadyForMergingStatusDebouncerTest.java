@@ -0,0 +1,230 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.time.Clock;
+import java.util.Optional;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestManager;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler.WorkPriority;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ReadyForMergingStatusDebouncer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ReadyForMergingStatusDebouncerTest
+{
+    private static final long DELAY = 500;
+
+    private static final long MAX_DELAY = 2000;
+
+    @InjectMockComponents
+    private ReadyForMergingStatusDebouncer debouncer;
+
+    @MockComponent
+    private Provider<ChangeRequestManager> changeRequestManagerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @MockComponent
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ChangeRequestWorkScheduler workScheduler;
+
+    private ChangeRequestManager changeRequestManager;
+
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    private XWikiContext context;
+
+    private Clock clock;
+
+    private ChangeRequest changeRequest;
+
+    private DocumentReference changeRequestReference;
+
+    private DocumentReference userReference;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        // Stop the periodic processing so that the test fully controls when pending computations are processed.
+        this.debouncer.dispose();
+        this.clock = mock(Clock.class);
+        this.debouncer.setClock(this.clock);
+
+        this.changeRequestManager = mock(ChangeRequestManager.class);
+        when(this.changeRequestManagerProvider.get()).thenReturn(this.changeRequestManager);
+        this.changeRequestStorageManager = mock(ChangeRequestStorageManager.class);
+        when(this.changeRequestStorageManagerProvider.get()).thenReturn(this.changeRequestStorageManager);
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        this.userReference = new DocumentReference("xwiki", "XWiki", "Foo");
+        when(this.context.getUserReference()).thenReturn(this.userReference);
+
+        this.changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequest.getId()).thenReturn("cr1");
+        this.changeRequestReference = new DocumentReference("subwiki", "ChangeRequest", "cr1");
+        when(this.changeRequestDocumentReferenceResolver.resolve(this.changeRequest))
+            .thenReturn(this.changeRequestReference);
+        when(this.changeRequestStorageManager.load("cr1")).thenReturn(Optional.of(this.changeRequest));
+    }
+
+    private void scheduleAt(long time)
+    {
+        when(this.clock.millis()).thenReturn(time);
+        this.debouncer.schedule(this.changeRequest, DELAY, MAX_DELAY);
+    }
+
+    private void processAt(long time)
+    {
+        when(this.clock.millis()).thenReturn(time);
+        this.debouncer.processExpiredComputations();
+    }
+
+    @Test
+    void processCoalescesRequests() throws Exception
+    {
+        for (long time = 0; time < 1000; time += 100) {
+            scheduleAt(time);
+            processAt(time);
+        }
+        assertTrue(this.debouncer.isPending(this.changeRequest));
+
+        // Last request was performed at 900: nothing happens before 1400.
+        processAt(1399);
+        verify(this.changeRequestManager, never()).flushReadyForMergingStatus(any());
+
+        processAt(1400);
+        verify(this.changeRequestStorageManager).load("cr1");
+        verify(this.changeRequestManager).flushReadyForMergingStatus(this.changeRequest);
+        assertFalse(this.debouncer.isPending(this.changeRequest));
+
+        processAt(3000);
+        verify(this.changeRequestManager).flushReadyForMergingStatus(this.changeRequest);
+    }
+
+    @Test
+    void processRespectsMaxDelay() throws Exception
+    {
+        // Requests keep coming before the delay expires: the computation is only performed because of the max delay.
+        for (long time = 0; time < MAX_DELAY; time += 300) {
+            scheduleAt(time);
+            processAt(time);
+        }
+        verify(this.changeRequestManager, never()).flushReadyForMergingStatus(any());
+
+        processAt(MAX_DELAY);
+        verify(this.changeRequestManager).flushReadyForMergingStatus(this.changeRequest);
+
+        // A new request after the computation starts a new window.
+        scheduleAt(MAX_DELAY + 100);
+        processAt(MAX_DELAY + 100 + DELAY);
+        verify(this.changeRequestManager, times(2)).flushReadyForMergingStatus(this.changeRequest);
+    }
+
+    @Test
+    void processInContext() throws Exception
+    {
+        scheduleAt(0);
+        processAt(DELAY);
+
+        verify(this.executionContextManager).initialize(any(ExecutionContext.class));
+        verify(this.context).setWikiReference(this.changeRequestReference.getWikiReference());
+        verify(this.context).setUserReference(this.userReference);
+        verify(this.changeRequestManager).flushReadyForMergingStatus(this.changeRequest);
+        verify(this.execution).removeContext();
+    }
+
+    @Test
+    void processWithWorkScheduler() throws Exception
+    {
+        when(this.workScheduler.submit(eq("subwiki"), eq(this.userReference), eq(WorkPriority.INTERACTIVE),
+            anyString(), any())).thenReturn(true);
+        scheduleAt(0);
+        processAt(DELAY);
+
+        // The computation is performed by the scheduler and not right away.
+        ArgumentCaptor<Runnable> workCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.workScheduler).submit(eq("subwiki"), eq(this.userReference), eq(WorkPriority.INTERACTIVE),
+            anyString(), workCaptor.capture());
+        assertFalse(this.debouncer.isPending(this.changeRequest));
+        verify(this.executionContextManager, never()).initialize(any());
+        verify(this.changeRequestManager, never()).flushReadyForMergingStatus(any());
+
+        workCaptor.getValue().run();
+        verify(this.changeRequestManager).flushReadyForMergingStatus(this.changeRequest);
+    }
+
+    @Test
+    void cancel() throws Exception
+    {
+        scheduleAt(0);
+        assertTrue(this.debouncer.isPending(this.changeRequest));
+
+        this.debouncer.cancel(this.changeRequest);
+        assertFalse(this.debouncer.isPending(this.changeRequest));
+
+        processAt(MAX_DELAY);
+        verify(this.changeRequestManager, never()).flushReadyForMergingStatus(any());
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.approvers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DelegateApproversIndex}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DelegateApproversIndexTest
+{
+    private static final WikiReference WIKI = new WikiReference("xwiki");
+
+    @InjectMockComponents
+    private DelegateApproversIndex delegateApproversIndex;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    @Named("current")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @MockComponent
+    @Named("document")
+    private UserReferenceResolver<DocumentReference> userReferenceResolver;
+
+    @MockComponent
+    @Named("current")
+    private UserReferenceResolver<String> stringUserReferenceResolver;
+
+    private Query query;
+
+    private UserReference foo;
+
+    private UserReference bar;
+
+    private UserReference buz;
+
+    private UserReference delegate1;
+
+    private UserReference delegate2;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.query = mock(Query.class);
+        when(this.queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(this.query);
+
+        this.foo = mockUser("Foo");
+        this.bar = mockUser("Bar");
+        this.buz = mockUser("Buz");
+        this.delegate1 = mockDelegate("Delegate1");
+        this.delegate2 = mockDelegate("Delegate2");
+    }
+
+    private UserReference mockUser(String name)
+    {
+        UserReference userReference = mock(UserReference.class, name);
+        DocumentReference documentReference = new DocumentReference(WIKI.getName(), "XWiki", name);
+        when(this.documentReferenceResolver.resolve("XWiki." + name, WIKI)).thenReturn(documentReference);
+        when(this.userReferenceResolver.resolve(documentReference)).thenReturn(userReference);
+        return userReference;
+    }
+
+    private UserReference mockDelegate(String name)
+    {
+        UserReference userReference = mock(UserReference.class, name);
+        when(this.stringUserReferenceResolver.resolve("xwiki:XWiki." + name, WIKI)).thenReturn(userReference);
+        return userReference;
+    }
+
+    private XWikiDocument mockUserDocument(String name, String delegates)
+    {
+        XWikiDocument userDoc = mock(XWikiDocument.class);
+        when(userDoc.getDocumentReference()).thenReturn(new DocumentReference(WIKI.getName(), "XWiki", name));
+        if (delegates != null) {
+            BaseObject delegateObject = mock(BaseObject.class);
+            when(userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS))
+                .thenReturn(delegateObject);
+            when(delegateObject.getLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY))
+                .thenReturn(delegates);
+        }
+        return userDoc;
+    }
+
+    /**
+     * Compute the users of the delegate by looping over the delegates of each user, as it was done before using the
+     * index.
+     */
+    private Set<UserReference> getUsersOfDelegateWithLoop(Map<UserReference, Set<UserReference>> delegatesByUser,
+        UserReference delegate)
+    {
+        Set<UserReference> result = new HashSet<>();
+        for (Map.Entry<UserReference, Set<UserReference>> entry : delegatesByUser.entrySet()) {
+            if (entry.getValue().contains(delegate)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void getUsersOfDelegate() throws Exception
+    {
+        when(this.query.execute()).thenReturn(List.of(
+            new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1,xwiki:XWiki.Delegate2" },
+            new Object[] { "XWiki.Bar", "xwiki:XWiki.Delegate2" },
+            new Object[] { "XWiki.Buz", "" }
+        ));
+
+        Map<UserReference, Set<UserReference>> delegatesByUser = Map.of(
+            this.foo, Set.of(this.delegate1, this.delegate2),
+            this.bar, Set.of(this.delegate2),
+            this.buz, Set.of()
+        );
+        for (UserReference delegate : List.of(this.delegate1, this.delegate2, this.foo)) {
+            assertEquals(getUsersOfDelegateWithLoop(delegatesByUser, delegate),
+                this.delegateApproversIndex.getUsersOfDelegate(delegate, Set.of(WIKI)));
+        }
+
+        // The index of the wiki is only loaded once.
+        verify(this.query).setWiki("xwiki");
+        verify(this.query).execute();
+    }
+
+    @Test
+    void update() throws Exception
+    {
+        when(this.query.execute()).thenReturn(List.of(
+            new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1" },
+            new Object[] { "XWiki.Bar", "xwiki:XWiki.Delegate1" }
+        ));
+        assertEquals(Set.of(this.foo, this.bar),
+            this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+
+        // Foo changes of delegate.
+        this.delegateApproversIndex.update(mockUserDocument("Foo", "xwiki:XWiki.Delegate2"));
+        // The delegates of Bar are removed.
+        this.delegateApproversIndex.update(mockUserDocument("Bar", null));
+        // Buz gets a delegate.
+        this.delegateApproversIndex.update(mockUserDocument("Buz", "xwiki:XWiki.Delegate1,xwiki:XWiki.Delegate2"));
+
+        Map<UserReference, Set<UserReference>> delegatesByUser = Map.of(
+            this.foo, Set.of(this.delegate2),
+            this.bar, Set.of(),
+            this.buz, Set.of(this.delegate1, this.delegate2)
+        );
+        for (UserReference delegate : List.of(this.delegate1, this.delegate2)) {
+            assertEquals(getUsersOfDelegateWithLoop(delegatesByUser, delegate),
+                this.delegateApproversIndex.getUsersOfDelegate(delegate, Set.of(WIKI)));
+        }
+        verify(this.query, times(1)).execute();
+    }
+
+    @Test
+    void updateWithoutLoadedIndex() throws Exception
+    {
+        when(this.query.execute()).thenReturn(List.of(
+            new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1" }
+        ));
+        // The index is not loaded yet so the update is ignored: the stored values are retrieved when loading it.
+        this.delegateApproversIndex.update(mockUserDocument("Bar", "xwiki:XWiki.Delegate1"));
+
+        assertEquals(Set.of(this.foo), this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+    }
+
+    @Test
+    void updateDuringLoad() throws Exception
+    {
+        when(this.query.execute()).then(invocationOnMock -> {
+            // Foo and Buz are updated while the query is running: the query result for Foo is outdated.
+            this.delegateApproversIndex.update(mockUserDocument("Foo", "xwiki:XWiki.Delegate2"));
+            this.delegateApproversIndex.update(mockUserDocument("Buz", "xwiki:XWiki.Delegate1"));
+            return List.of(
+                new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1" },
+                new Object[] { "XWiki.Bar", "xwiki:XWiki.Delegate1" }
+            );
+        });
+
+        assertEquals(Set.of(this.bar, this.buz),
+            this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+        assertEquals(Set.of(this.foo), this.delegateApproversIndex.getUsersOfDelegate(this.delegate2, Set.of(WIKI)));
+    }
+
+    @Test
+    void getUsersOfDelegateWhenLoadFails() throws Exception
+    {
+        when(this.query.execute())
+            .thenThrow(new QueryException("error", this.query, null))
+            .thenReturn(List.of(new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1" }));
+
+        ChangeRequestException exception = assertThrows(ChangeRequestException.class,
+            () -> this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+        assertEquals(String.format("Error while loading the delegate approvers of wiki [%s]", WIKI),
+            exception.getMessage());
+
+        // The failed load is not kept: the next call loads the index again.
+        assertEquals(Set.of(this.foo), this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+        verify(this.query, times(2)).execute();
+    }
+
+    @Test
+    void removeWiki() throws Exception
+    {
+        when(this.query.execute()).thenReturn(List.of(new Object[] { "XWiki.Foo", "xwiki:XWiki.Delegate1" }));
+        assertEquals(Set.of(this.foo), this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+
+        this.delegateApproversIndex.removeWiki(WIKI);
+        // Updates of a dropped index are ignored.
+        this.delegateApproversIndex.update(mockUserDocument("Bar", "xwiki:XWiki.Delegate1"));
+
+        when(this.query.execute()).thenReturn(List.of());
+        assertEquals(Set.of(), this.delegateApproversIndex.getUsersOfDelegate(this.delegate1, Set.of(WIKI)));
+        verify(this.query, times(2)).execute();
+    }
+}
@@ -30,16 +30,14 @@ import javax.inject.Provider;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.config.CacheConfiguration;
-import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.ApproversManager;
 import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -64,6 +62,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -99,15 +98,17 @@ class XWikiDocumentDelegateApproverManagerTest
     private Provider<ApproversManager<XWikiDocument>> approversManagerProvider;
 
     @MockComponent
-    private CacheManager cacheManager;
+    private DelegateApproversCacheManager delegateCache;
+
+    @MockComponent
+    private DelegateApproversIndex delegateApproversIndex;
 
     private XWikiContext context;
     private XWiki wiki;
     private ApproversManager<XWikiDocument> approversManager;
-    private Cache<Set<UserReference>> delegateCache;
 
     @BeforeEach
-    void beforeEach() throws CacheException, InitializationException
+    void beforeEach()
     {
         this.context = mock(XWikiContext.class);
         when(this.contextProvider.get()).thenReturn(this.context);
@@ -117,14 +118,6 @@ class XWikiDocumentDelegateApproverManagerTest
 
         this.approversManager = mock(ApproversManager.class);
         when(this.approversManagerProvider.get()).thenReturn(this.approversManager);
-
-        this.delegateCache = mock(Cache.class);
-        when(this.cacheManager.createNewCache(any())).then(invocation -> {
-            CacheConfiguration cacheConfiguration = invocation.getArgument(0);
-            assertEquals("changerequest.delegate", cacheConfiguration.getConfigurationId());
-            return this.delegateCache;
-        });
-        this.delegateApproverManager.initialize();
     }
 
     @Test
@@ -197,7 +190,57 @@ class XWikiDocumentDelegateApproverManagerTest
         verify(delegateObj).setLargeStringValue(eq(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY),
             anyString());
         verify(wiki).saveDocument(userDoc, "Computation of delegate approvers", context);
-        verify(delegateCache).set("XWiki.Current", expectedResult);
+        verify(delegateCache).invalidate(inputReference);
+        verify(delegateCache).set(inputReference, expectedResult);
+    }
+
+    @Test
+    void computeDelegatesWithoutChange() throws ChangeRequestException, XWikiException
+    {
+        UserReference inputReference = mock(UserReference.class);
+        when(this.configuration.isDelegateEnabled()).thenReturn(true);
+        when(this.configuration.getDelegateClassPropertyList()).thenReturn(List.of("delegate"));
+        DocumentReference userDocRef = mock(DocumentReference.class);
+        when(this.userReferenceConverter.convert(inputReference)).thenReturn(userDocRef);
+        when(this.userReferenceSerializer.serialize(inputReference)).thenReturn("XWiki.Current");
+
+        XWikiDocument userDoc = mock(XWikiDocument.class);
+        when(this.wiki.getDocument(userDocRef, this.context)).thenReturn(userDoc);
+        BaseObject userObj = mock(BaseObject.class);
+        when(userDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE)).thenReturn(userObj);
+        ListProperty delegateProp = mock(ListProperty.class);
+        when(userObj.get("delegate")).thenReturn(delegateProp);
+        when(delegateProp.getList()).thenReturn(List.of("XWiki.Foo", "XWiki.Bar"));
+
+        UserReference fooRef = mock(UserReference.class);
+        UserReference barRef = mock(UserReference.class);
+        when(this.stringUserReferenceResolver.resolve("XWiki.Foo")).thenReturn(fooRef);
+        when(this.stringUserReferenceResolver.resolve("XWiki.Bar")).thenReturn(barRef);
+
+        // The same delegates are already stored, in a different order.
+        BaseObject delegateObj = mock(BaseObject.class);
+        when(userDoc.getXObjects(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS))
+            .thenReturn(List.of(delegateObj));
+        when(userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)).thenReturn(delegateObj);
+        when(delegateObj.getLargeStringValue(DelegateApproversXClassInitializer.DELEGATED_USERS_PROPERTY))
+            .thenReturn("XWiki.Bar,XWiki.Foo");
+
+        Set<UserReference> expectedResult = Set.of(fooRef, barRef);
+        assertEquals(expectedResult, this.delegateApproverManager.computeDelegates(inputReference));
+
+        // Nothing is written.
+        verify(userDoc, never()).removeXObjects(any(EntityReference.class));
+        verify(userDoc, never()).createXObject(any(), any());
+        verify(delegateObj, never()).setLargeStringValue(any(), any());
+        verify(this.wiki, never()).saveDocument(any(), any(), any());
+        verify(this.delegateCache).set(inputReference, expectedResult);
+
+        // No delegate computed and none stored: nothing is written either.
+        when(delegateProp.getList()).thenReturn(List.of());
+        when(userDoc.getXObjects(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)).thenReturn(List.of());
+        when(userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)).thenReturn(null);
+        assertEquals(Set.of(), this.delegateApproverManager.computeDelegates(inputReference));
+        verify(this.wiki, never()).saveDocument(any(), any(), any());
     }
 
     @Test
@@ -228,10 +271,10 @@ class XWikiDocumentDelegateApproverManagerTest
         when(this.userReferenceSerializer.serialize(inputReference)).thenReturn("XWiki.Current");
 
         Set<UserReference> expectedSet = new HashSet<>(List.of(fooRef, barRef));
-        when(this.delegateCache.get("XWiki.Current")).thenReturn(expectedSet);
+        when(this.delegateCache.get(inputReference)).thenReturn(expectedSet);
         assertEquals(expectedSet, this.delegateApproverManager.getDelegates(inputReference));
 
-        when(this.delegateCache.get("XWiki.Current")).thenReturn(null);
+        when(this.delegateCache.get(inputReference)).thenReturn(null);
         DocumentReference userDocRef = mock(DocumentReference.class);
         when(this.userReferenceConverter.convert(inputReference)).thenReturn(userDocRef);
 
@@ -239,7 +282,7 @@ class XWikiDocumentDelegateApproverManagerTest
         when(this.wiki.getDocument(userDocRef, this.context)).thenReturn(userDoc);
         when(userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)).thenReturn(null);
         assertEquals(Collections.emptySet(), this.delegateApproverManager.getDelegates(inputReference));
-        verify(this.delegateCache).set("XWiki.Current", Collections.emptySet());
+        verify(this.delegateCache).set(inputReference, Collections.emptySet());
 
         BaseObject delegateObj = mock(BaseObject.class);
         when(userDoc.getXObject(DelegateApproversXClassInitializer.DELEGATE_APPROVERS_XCLASS)).thenReturn(delegateObj);
@@ -248,7 +291,7 @@ class XWikiDocumentDelegateApproverManagerTest
         expectedSet = new HashSet<>(List.of(fooRef, buzRef));
 
         assertEquals(expectedSet, this.delegateApproverManager.getDelegates(inputReference));
-        verify(this.delegateCache).set("XWiki.Current", expectedSet);
+        verify(this.delegateCache).set(inputReference, expectedSet);
     }
 
     @Test
@@ -275,13 +318,20 @@ class XWikiDocumentDelegateApproverManagerTest
 
         when(this.approversManager.getAllApprovers(document, false))
             .thenReturn(new HashSet<>(List.of(fooRef, barRef, buzRef)));
-        when(this.delegateCache.get(foo)).thenReturn(Collections.singleton(mock(UserReference.class)));
-        when(this.delegateCache.get(bar)).thenReturn(Collections.singleton(mock(UserReference.class)));
-        when(this.delegateCache.get(buz)).thenReturn(Collections.singleton(mock(UserReference.class)));
-
+        WikiReference mainWiki = new WikiReference("xwiki");
+        WikiReference subWiki = new WikiReference("subwiki");
+        when(this.userReferenceConverter.convert(fooRef)).thenReturn(new DocumentReference("xwiki", "XWiki", "Foo"));
+        when(this.userReferenceConverter.convert(barRef)).thenReturn(new DocumentReference("xwiki", "XWiki", "Bar"));
+        when(this.userReferenceConverter.convert(buzRef))
+            .thenReturn(new DocumentReference("subwiki", "XWiki", "Buz"));
+
+        // The input user is delegate of a user who is not an approver.
+        when(this.delegateApproversIndex.getUsersOfDelegate(inputReference, Set.of(mainWiki, subWiki)))
+            .thenReturn(new HashSet<>(List.of(mock(UserReference.class))));
         assertFalse(this.delegateApproverManager.isDelegateApproverOf(inputReference, document));
 
-        when(this.delegateCache.get(bar)).thenReturn(Collections.singleton(inputReference));
+        when(this.delegateApproversIndex.getUsersOfDelegate(inputReference, Set.of(mainWiki, subWiki)))
+            .thenReturn(new HashSet<>(List.of(mock(UserReference.class), barRef)));
         assertTrue(this.delegateApproverManager.isDelegateApproverOf(inputReference, document));
     }
 
@@ -310,8 +360,8 @@ class XWikiDocumentDelegateApproverManagerTest
 
         when(this.approversManager.getAllApprovers(document, false))
             .thenReturn(new HashSet<>(List.of(fooRef, barRef)));
-        when(this.delegateCache.get(foo)).thenReturn(Collections.singleton(mock(UserReference.class)));
-        when(this.delegateCache.get(bar)).thenReturn(Collections.singleton(inputReference));
+        when(this.delegateCache.get(fooRef)).thenReturn(Collections.singleton(mock(UserReference.class)));
+        when(this.delegateCache.get(barRef)).thenReturn(Collections.singleton(inputReference));
 
         assertFalse(this.delegateApproverManager.isDelegateApproverOf(inputReference, document, fooRef));
         assertFalse(this.delegateApproverManager.isDelegateApproverOf(inputReference, document, buzRef));
@@ -343,9 +393,11 @@ class XWikiDocumentDelegateApproverManagerTest
 
         when(this.approversManager.getAllApprovers(document, false))
             .thenReturn(new HashSet<>(List.of(fooRef, barRef, buzRef)));
-        when(this.delegateCache.get(foo)).thenReturn(Collections.emptySet());
-        when(this.delegateCache.get(bar)).thenReturn(Collections.singleton(inputReference));
-        when(this.delegateCache.get(buz)).thenReturn(new HashSet<>(List.of(mock(UserReference.class), inputReference)));
+        when(this.userReferenceConverter.convert(fooRef)).thenReturn(new DocumentReference("xwiki", "XWiki", "Foo"));
+        when(this.userReferenceConverter.convert(barRef)).thenReturn(new DocumentReference("xwiki", "XWiki", "Bar"));
+        when(this.userReferenceConverter.convert(buzRef)).thenReturn(new DocumentReference("xwiki", "XWiki", "Buz"));
+        when(this.delegateApproversIndex.getUsersOfDelegate(inputReference, Set.of(new WikiReference("xwiki"))))
+            .thenReturn(new HashSet<>(List.of(mock(UserReference.class), barRef, buzRef)));
 
         assertEquals(new HashSet<>(List.of(barRef, buzRef)),
             this.delegateApproverManager.getOriginalApprovers(inputReference, document));
@@ -35,6 +35,7 @@ import org.xwiki.cache.CacheManager;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.internal.storage.FileChangeRenderedTitleLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
 import org.xwiki.model.reference.DocumentReference;
@@ -78,6 +79,9 @@ public class ChangeRequestTitleCacheManagerTest
     @MockComponent
     private CacheManager cacheManager;
 
+    @MockComponent
+    private FileChangeRenderedTitleLoader renderedTitleLoader;
+
     private Cache<Map<String, String>> titleCache;
     private XWikiContext context;
 
@@ -136,20 +140,120 @@ public class ChangeRequestTitleCacheManagerTest
         when(this.titleCache.get(crId)).thenReturn(myMap);
         assertEquals(expectedTitle, this.changeRequestTitleCacheManager.getTitle(crId, fileChangeId));
 
-        Map<String, String> expectedMap = new HashMap<>();
-        expectedMap.put(olderFileChangeId, expectedTitle);
-        expectedMap.put(fileChangeId, expectedTitle);
-        assertEquals(expectedMap, myMap);
+        // Titles without any stored value are rendered with the current user rights and never kept in cache.
+        assertEquals(Map.of(olderFileChangeId, olderTitle), myMap);
         verifyNoInteractions(this.fileChangeStorageManager);
 
         when(this.titleCache.get(crId)).thenReturn(null);
-        expectedMap = new HashMap<>();
-        expectedMap.put(olderFileChangeId, expectedTitle);
 
         when(latestFileChange.getModifiedDocument()).thenReturn(null);
         when(this.fileChangeStorageManager.getCurrentDocumentFromFileChange(latestFileChange)).thenReturn(document);
         assertEquals(expectedTitle, this.changeRequestTitleCacheManager.getTitle(crId, olderFileChangeId));
         verify(olderFileChange, never()).getModifiedDocument();
-        verify(titleCache).set(crId, expectedMap);
+        verify(this.titleCache, never()).set(any(), any());
+    }
+
+    @Test
+    void getTitleRenderedOnDisplayWhenDependencyChanges() throws ChangeRequestException
+    {
+        String crId = "crId";
+        String fileChangeId = "fileChangeId";
+
+        Map<String, String> myMap = new HashMap<>();
+        when(this.titleCache.get(crId)).thenReturn(myMap);
+        Map<String, String> storedTitles = new HashMap<>();
+        storedTitles.put(fileChangeId, null);
+        when(this.renderedTitleLoader.getLatestRenderedTitles(crId, fileChangeId)).thenReturn(storedTitles);
+
+        // The title of a deletion depends on the published document.
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getId()).thenReturn(fileChangeId);
+        DocumentReference ref = mock(DocumentReference.class);
+        when(fileChange.getTargetEntity()).thenReturn(ref);
+        when(changeRequest.getAllFileChanges()).thenReturn(List.of(fileChange));
+        when(changeRequest.getLatestFileChangeFor(ref)).thenReturn(Optional.of(fileChange));
+        when(this.changeRequestStorageManager.load(crId)).thenReturn(Optional.of(changeRequest));
+        XWikiDocument publishedDocument = mock(XWikiDocument.class);
+        when(this.fileChangeStorageManager.getCurrentDocumentFromFileChange(fileChange))
+            .thenReturn(publishedDocument);
+        when(publishedDocument.getRenderedTitle(this.context)).thenReturn("Published title");
+
+        assertEquals("Published title", this.changeRequestTitleCacheManager.getTitle(crId, fileChangeId));
+        assertEquals(storedTitles, myMap);
+
+        // The published document title changed: the new title is displayed without any invalidation.
+        when(publishedDocument.getRenderedTitle(this.context)).thenReturn("Updated title");
+        assertEquals("Updated title", this.changeRequestTitleCacheManager.getTitle(crId, fileChangeId));
+
+        // The stored titles are only looked up once.
+        verify(this.renderedTitleLoader).getLatestRenderedTitles(crId, fileChangeId);
+    }
+
+    @Test
+    void getTitleFromStoredTitle() throws ChangeRequestException
+    {
+        String crId = "crId";
+        String fileChangeId = "fileChangeId";
+        String olderFileChangeId = "olderId";
+        String storedTitle = "Stored title";
+
+        Map<String, String> myMap = new HashMap<>();
+        when(this.titleCache.get(crId)).thenReturn(myMap);
+        when(this.renderedTitleLoader.getLatestRenderedTitles(crId, olderFileChangeId))
+            .thenReturn(Map.of(olderFileChangeId, storedTitle, fileChangeId, storedTitle));
+
+        assertEquals(storedTitle, this.changeRequestTitleCacheManager.getTitle(crId, olderFileChangeId));
+        assertEquals(Map.of(olderFileChangeId, storedTitle, fileChangeId, storedTitle), myMap);
+        verifyNoInteractions(this.changeRequestStorageManager);
+        verifyNoInteractions(this.fileChangeStorageManager);
+
+        // Both entries are now in cache.
+        assertEquals(storedTitle, this.changeRequestTitleCacheManager.getTitle(crId, fileChangeId));
+        verify(this.renderedTitleLoader, never()).getLatestRenderedTitles(crId, fileChangeId);
+    }
+
+    @Test
+    void invalidateWithRenderedTitle()
+    {
+        String crId = "crId";
+        String olderFileChangeId = "olderId";
+        String otherFileChangeId = "otherId";
+        String newFileChangeId = "newId";
+
+        Map<String, String> myMap = new HashMap<>();
+        myMap.put(olderFileChangeId, "Old title");
+        myMap.put(otherFileChangeId, "Other title");
+        when(this.titleCache.get(crId)).thenReturn(myMap);
+
+        DocumentReference ref = new DocumentReference("xwiki", "Space", "Page");
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        FileChange olderFileChange = mock(FileChange.class, "older");
+        when(olderFileChange.getId()).thenReturn(olderFileChangeId);
+        when(olderFileChange.getTargetEntity()).thenReturn(ref);
+        FileChange otherFileChange = mock(FileChange.class, "other");
+        when(otherFileChange.getId()).thenReturn(otherFileChangeId);
+        when(otherFileChange.getTargetEntity()).thenReturn(new DocumentReference("xwiki", "Space", "Other"));
+        FileChange newFileChange = mock(FileChange.class, "new");
+        when(newFileChange.getId()).thenReturn(newFileChangeId);
+        when(newFileChange.getTargetEntity()).thenReturn(ref);
+        when(newFileChange.getChangeRequest()).thenReturn(changeRequest);
+        when(changeRequest.getAllFileChanges()).thenReturn(List.of(olderFileChange, otherFileChange, newFileChange));
+
+        // The title of the new filechange has been updated: it replaces the previous one without any rendering.
+        when(newFileChange.getRenderedTitle()).thenReturn("New title");
+        this.changeRequestTitleCacheManager.invalidate(crId, newFileChange);
+        assertEquals(Map.of(olderFileChangeId, "New title", otherFileChangeId, "Other title",
+            newFileChangeId, "New title"), myMap);
+
+        // Without any rendered title the entries are marked to be rendered on display.
+        when(newFileChange.getRenderedTitle()).thenReturn(null);
+        this.changeRequestTitleCacheManager.invalidate(crId, newFileChange);
+        Map<String, String> expectedMap = new HashMap<>();
+        expectedMap.put(olderFileChangeId, null);
+        expectedMap.put(otherFileChangeId, "Other title");
+        expectedMap.put(newFileChangeId, null);
+        assertEquals(expectedMap, myMap);
+        verifyNoInteractions(this.renderedTitleLoader);
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestWikisCacheManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestWikisCacheManagerTest
+{
+    private static final String UI_MODULE_ID = "org.xwiki.contrib.changerequest:application-changerequest-ui";
+
+    @InjectMockComponents
+    private ChangeRequestWikisCacheManager cacheManager;
+
+    @MockComponent
+    private InstalledExtensionRepository installedExtensionRepository;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    private final List<String> wikis = new ArrayList<>();
+
+    private final Set<String> installedNamespaces = new HashSet<>();
+
+    @BeforeEach
+    void setup() throws WikiManagerException
+    {
+        // Stub of the extension repository only containing the change request UI extension.
+        InstalledExtension installedExtension = mock(InstalledExtension.class);
+        when(installedExtension.getNamespaces()).thenReturn(this.installedNamespaces);
+        when(this.installedExtensionRepository.getInstalledExtension(any(), any())).thenAnswer(invocationOnMock -> {
+            String namespace = invocationOnMock.getArgument(1);
+            boolean isInstalled =
+                this.installedNamespaces.contains(namespace) || this.installedNamespaces.contains(null);
+            return (UI_MODULE_ID.equals(invocationOnMock.getArgument(0)) && isInstalled) ? installedExtension : null;
+        });
+        when(this.wikiDescriptorManager.getAllIds()).thenAnswer(invocationOnMock -> new ArrayList<>(this.wikis));
+
+        this.wikis.addAll(List.of("xwiki", "wiki1", "wiki2", "wiki3"));
+        this.installedNamespaces.addAll(List.of("wiki:wiki1", "wiki:wiki3"));
+    }
+
+    @Test
+    void getWikisWithChangeRequest() throws WikiManagerException
+    {
+        assertEquals(List.of("wiki1", "wiki3"), new ArrayList<>(this.cacheManager.getWikisWithChangeRequest()));
+        assertTrue(this.cacheManager.isChangeRequestInstalledOnWiki("wiki1"));
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki2"));
+
+        // The wikis are only checked once.
+        verify(this.wikiDescriptorManager).getAllIds();
+        verify(this.installedExtensionRepository, times(4)).getInstalledExtension(anyString(), anyString());
+    }
+
+    @Test
+    void getWikisWithChangeRequestInstalledOnFarm() throws WikiManagerException
+    {
+        this.installedNamespaces.clear();
+        this.installedNamespaces.add(null);
+
+        assertEquals(Collections.emptySet(), this.cacheManager.getWikisWithChangeRequest());
+    }
+
+    @Test
+    void invalidateOnExtensionInstalled() throws WikiManagerException
+    {
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki2"));
+
+        this.installedNamespaces.add("wiki:wiki2");
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki2"));
+
+        this.cacheManager.invalidate();
+        assertTrue(this.cacheManager.isChangeRequestInstalledOnWiki("wiki2"));
+        assertEquals(List.of("wiki1", "wiki2", "wiki3"),
+            new ArrayList<>(this.cacheManager.getWikisWithChangeRequest()));
+    }
+
+    @Test
+    void invalidateOnExtensionUninstalled() throws WikiManagerException
+    {
+        assertTrue(this.cacheManager.isChangeRequestInstalledOnWiki("wiki1"));
+
+        this.installedNamespaces.remove("wiki:wiki1");
+        this.cacheManager.invalidate();
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki1"));
+        assertEquals(Set.of("wiki3"), this.cacheManager.getWikisWithChangeRequest());
+    }
+
+    @Test
+    void invalidateOnWikiCreated() throws WikiManagerException
+    {
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki4"));
+
+        // The new wiki is created from a template where change request is installed.
+        this.wikis.add("wiki4");
+        this.installedNamespaces.add("wiki:wiki4");
+        this.cacheManager.invalidate();
+        assertTrue(this.cacheManager.isChangeRequestInstalledOnWiki("wiki4"));
+    }
+
+    @Test
+    void invalidateOnWikiDeleted() throws WikiManagerException
+    {
+        assertTrue(this.cacheManager.isChangeRequestInstalledOnWiki("wiki3"));
+
+        this.wikis.remove("wiki3");
+        this.cacheManager.invalidate();
+        assertFalse(this.cacheManager.isChangeRequestInstalledOnWiki("wiki3"));
+        verify(this.wikiDescriptorManager, times(2)).getAllIds();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DelegateApproversCacheManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DelegateApproversCacheManagerTest
+{
+    @InjectMockComponents
+    private DelegateApproversCacheManager cacheManager;
+
+    @MockComponent
+    private CacheManager xwikiCacheManager;
+
+    @MockComponent
+    private ChangeRequestConfiguration configuration;
+
+    @MockComponent
+    private UserReferenceSerializer<String> userReferenceSerializer;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    private XWikiContext context;
+
+    private final Map<String, Set<UserReference>> cacheContent = new HashMap<>();
+
+    private UserReference foo;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.configuration.getDelegateCacheSize()).thenReturn(42);
+
+        // Stub of the cache backed by a map.
+        Cache<Set<UserReference>> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        doAnswer(invocation -> this.cacheContent.remove(invocation.<String>getArgument(0)))
+            .when(cache).remove(anyString());
+        when(this.xwikiCacheManager.<Set<UserReference>>createNewCache(any())).then(invocation -> {
+            LRUCacheConfiguration cacheConfiguration = invocation.getArgument(0);
+            assertEquals("changerequest.delegate", cacheConfiguration.getConfigurationId());
+            assertEquals(42, cacheConfiguration.getLRUEvictionConfiguration().getMaxEntries());
+            return cache;
+        });
+        this.cacheManager.initialize();
+
+        this.foo = mock(UserReference.class);
+        when(this.userReferenceSerializer.serialize(this.foo)).thenReturn("xwiki:XWiki.Foo");
+    }
+
+    @Test
+    void getAndSetWithWikiIsolation()
+    {
+        Set<UserReference> mainWikiDelegates = Set.of(mock(UserReference.class));
+        Set<UserReference> subWikiDelegates = Set.of(mock(UserReference.class), mock(UserReference.class));
+
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        assertNull(this.cacheManager.get(this.foo));
+        this.cacheManager.set(this.foo, mainWikiDelegates);
+        assertEquals(mainWikiDelegates, this.cacheManager.get(this.foo));
+
+        // The delegates of the same user computed in another wiki are not shared.
+        when(this.context.getWikiId()).thenReturn("subwiki");
+        assertNull(this.cacheManager.get(this.foo));
+        this.cacheManager.set(this.foo, subWikiDelegates);
+        assertEquals(subWikiDelegates, this.cacheManager.get(this.foo));
+
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        assertEquals(mainWikiDelegates, this.cacheManager.get(this.foo));
+
+        assertEquals(3, this.cacheManager.getHitCount());
+        assertEquals(2, this.cacheManager.getMissCount());
+    }
+
+    @Test
+    void invalidate()
+    {
+        Set<UserReference> mainWikiDelegates = Set.of(mock(UserReference.class));
+        Set<UserReference> subWikiDelegates = Set.of(mock(UserReference.class));
+
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        this.cacheManager.set(this.foo, mainWikiDelegates);
+        when(this.context.getWikiId()).thenReturn("subwiki");
+        this.cacheManager.set(this.foo, subWikiDelegates);
+
+        this.cacheManager.invalidate(new WikiReference("subwiki"));
+
+        // Only the entries of the invalidated wiki are impacted.
+        assertNull(this.cacheManager.get(this.foo));
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        assertEquals(mainWikiDelegates, this.cacheManager.get(this.foo));
+
+        // New entries can be cached again for the invalidated wiki.
+        when(this.context.getWikiId()).thenReturn("subwiki");
+        this.cacheManager.set(this.foo, subWikiDelegates);
+        assertEquals(subWikiDelegates, this.cacheManager.get(this.foo));
+    }
+
+    @Test
+    void invalidateUser()
+    {
+        UserReference bar = mock(UserReference.class);
+        when(this.userReferenceSerializer.serialize(bar)).thenReturn("xwiki:XWiki.Bar");
+        Set<UserReference> delegates = Set.of(mock(UserReference.class));
+
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        this.cacheManager.set(this.foo, delegates);
+        this.cacheManager.set(bar, delegates);
+        when(this.context.getWikiId()).thenReturn("subwiki");
+        this.cacheManager.set(this.foo, delegates);
+        this.cacheManager.set(bar, delegates);
+
+        // The entries of the user are invalidated in all wikis, whatever the current wiki.
+        this.cacheManager.invalidate(this.foo);
+
+        assertNull(this.cacheManager.get(this.foo));
+        assertEquals(delegates, this.cacheManager.get(bar));
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        assertNull(this.cacheManager.get(this.foo));
+        assertEquals(delegates, this.cacheManager.get(bar));
+    }
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
 import org.xwiki.contrib.changerequest.ApproversManager;
 import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
@@ -34,6 +35,7 @@ import org.xwiki.contrib.changerequest.rights.ChangeRequestApproveRight;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -54,6 +56,8 @@ import static org.mockito.Mockito.when;
  * @version $Id$
  */
 @ComponentTest
+// The actual context is used so that the results are retrieved from the mocked managers.
+@ComponentList(FileChangeSavingCheckersContext.class)
 class ApproversRightCheckerTest
 {
     private static final String FAILURE_REASON = "changerequest.checkers.approversright.incompatibilityReason";
@@ -66,6 +70,9 @@ class ApproversRightCheckerTest
     @MockComponent
     private ChangeRequestConfiguration configuration;
 
+    @MockComponent
+    private Execution execution;
+
     @MockComponent
     private ApproversManager<XWikiDocument> fileChangeApproversManager;
 
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.checkers;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.contrib.changerequest.ApproversManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link FileChangeSavingCheckersContext}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FileChangeSavingCheckersContextTest
+{
+    @InjectMockComponents
+    private FileChangeSavingCheckersContext checkersContext;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ApproversManager<XWikiDocument> documentApproversManager;
+
+    @MockComponent
+    private AuthorizationManager authorizationManager;
+
+    @BeforeEach
+    void setup()
+    {
+        when(this.execution.getContext()).thenReturn(new ExecutionContext());
+    }
+
+    @Test
+    void getAllApprovers() throws Exception
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        Set<UserReference> approvers = Set.of(mock(UserReference.class));
+        when(this.documentApproversManager.getAllApprovers(document, false)).thenReturn(approvers);
+
+        // Without started context, the approvers are retrieved each time.
+        assertEquals(approvers, this.checkersContext.getAllApprovers(document));
+        assertEquals(approvers, this.checkersContext.getAllApprovers(document));
+        verify(this.documentApproversManager, times(2)).getAllApprovers(document, false);
+
+        assertTrue(this.checkersContext.start());
+        assertFalse(this.checkersContext.start());
+        assertEquals(approvers, this.checkersContext.getAllApprovers(document));
+        assertEquals(approvers, this.checkersContext.getAllApprovers(document));
+        verify(this.documentApproversManager, times(3)).getAllApprovers(document, false);
+
+        this.checkersContext.stop();
+        assertEquals(approvers, this.checkersContext.getAllApprovers(document));
+        verify(this.documentApproversManager, times(4)).getAllApprovers(document, false);
+    }
+
+    @Test
+    void hasAccess()
+    {
+        DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "User");
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        when(this.authorizationManager.hasAccess(Right.EDIT, userReference, documentReference)).thenReturn(true);
+
+        assertTrue(this.checkersContext.start());
+        assertTrue(this.checkersContext.hasAccess(Right.EDIT, userReference, documentReference));
+        assertTrue(this.checkersContext.hasAccess(Right.EDIT, userReference, documentReference));
+        assertFalse(this.checkersContext.hasAccess(Right.VIEW, userReference, documentReference));
+        verify(this.authorizationManager).hasAccess(Right.EDIT, userReference, documentReference);
+        this.checkersContext.stop();
+    }
+}
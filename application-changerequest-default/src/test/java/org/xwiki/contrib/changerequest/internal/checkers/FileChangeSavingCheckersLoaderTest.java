@@ -19,11 +19,19 @@
  */
 package org.xwiki.contrib.changerequest.internal.checkers;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Priority;
+import javax.inject.Provider;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.FileChange;
@@ -33,9 +41,19 @@ import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectComponentManager;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
 import org.xwiki.test.mockito.MockitoComponentManager;
 
+import com.xpn.xwiki.XWikiContext;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link FileChangeSavingCheckersLoader}.
@@ -51,10 +69,52 @@ class FileChangeSavingCheckersLoaderTest
     @InjectComponentManager
     private MockitoComponentManager componentManager;
 
+    @MockComponent
+    private FileChangeSavingCheckersContext checkersContext;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    private XWikiContext context;
+
+    private final Map<String, Object> cacheContent = new HashMap<>();
+
     @BeforeComponent
     void setup() throws Exception
     {
         this.componentManager.registerComponent(ComponentManager.class, "context", this.componentManager);
+
+        // Stub of the cache backed by a map.
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        doAnswer(invocation -> {
+            this.cacheContent.clear();
+            return null;
+        }).when(cache).removeAll();
+        when(this.cacheManager.createNewCache(any())).thenReturn(cache);
+    }
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        when(this.checkersContext.start()).thenReturn(true);
+    }
+
+    private FileChangeSavingChecker mockChecker(String name, FileChangeSavingChecker.CheckerCost cost)
+        throws Exception
+    {
+        FileChangeSavingChecker checker = mock(FileChangeSavingChecker.class, name);
+        when(checker.getCost()).thenReturn(cost);
+        this.componentManager.registerComponent(FileChangeSavingChecker.class, name, checker);
+        return checker;
     }
 
     @Priority(10)
@@ -91,6 +151,31 @@ class FileChangeSavingCheckersLoaderTest
         }
     }
 
+    /**
+     * Checker instantiated for each lookup.
+     */
+    public static class PerLookupChecker implements FileChangeSavingChecker
+    {
+        @Override
+        public SavingCheckerResult canChangeOnDocumentBeAdded(ChangeRequest changeRequest,
+            DocumentReference documentReference, FileChange.FileChangeType changeType)
+        {
+            return null;
+        }
+
+        @Override
+        public SavingCheckerResult canChangeRequestBeCreatedWith(FileChange fileChange)
+        {
+            return null;
+        }
+
+        @Override
+        public CheckerCost getCost()
+        {
+            return CheckerCost.HIGH;
+        }
+    }
+
     class Checker3 implements FileChangeSavingChecker
     {
         @Override
@@ -121,4 +206,81 @@ class FileChangeSavingCheckersLoaderTest
         List<FileChangeSavingChecker> checkers = this.loader.getCheckers();
         assertEquals(List.of(checker2, checker1, checker3), checkers);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getCheckersCached() throws Exception
+    {
+        FileChangeSavingChecker checker1 = mockChecker("checker1", FileChangeSavingChecker.CheckerCost.MEDIUM);
+        assertEquals(List.of(checker1), this.loader.getCheckers());
+
+        // The chain is not looked up again as long as the cache is not invalidated: a checker registered without
+        // invalidation is not seen, and the sort key of the cached checker is not computed again.
+        FileChangeSavingChecker checker2 = mockChecker("checker2", FileChangeSavingChecker.CheckerCost.LOW);
+        assertEquals(List.of(checker1), this.loader.getCheckers());
+        verify(checker1).getCost();
+        verify(checker2, never()).getCost();
+
+        // Each wiki and user has its own chain, since checkers might be registered at wiki or user level.
+        when(this.context.getUserReference()).thenReturn(new DocumentReference("xwiki", "XWiki", "User"));
+        assertEquals(List.of(checker2, checker1), this.loader.getCheckers());
+
+        // A newly registered checker is taken into account after the invalidation.
+        FileChangeSavingChecker checker3 = mockChecker("checker3", FileChangeSavingChecker.CheckerCost.HIGH);
+        this.loader.invalidate();
+        assertEquals(List.of(checker2, checker1, checker3), this.loader.getCheckers());
+    }
+
+    @Test
+    void getCheckersWithPerLookupChecker() throws Exception
+    {
+        DefaultComponentDescriptor<FileChangeSavingChecker> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(FileChangeSavingChecker.class);
+        descriptor.setRoleHint("perLookup");
+        descriptor.setImplementation(PerLookupChecker.class);
+        descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        this.componentManager.registerComponent(descriptor);
+        FileChangeSavingChecker checker1 = mockChecker("checker1", FileChangeSavingChecker.CheckerCost.MEDIUM);
+
+        List<FileChangeSavingChecker> checkers = this.loader.getCheckers();
+        List<FileChangeSavingChecker> otherCheckers = this.loader.getCheckers();
+        assertEquals(2, checkers.size());
+        assertSame(checker1, checkers.get(0));
+        assertSame(checker1, otherCheckers.get(0));
+
+        // Non singleton checkers are never shared between two uses.
+        assertTrue(checkers.get(1) instanceof PerLookupChecker);
+        assertTrue(otherCheckers.get(1) instanceof PerLookupChecker);
+        assertNotSame(checkers.get(1), otherCheckers.get(1));
+    }
+
+    @Test
+    void canChangeOnDocumentBeAddedStopsAtFirstRejection() throws Exception
+    {
+        FileChangeSavingChecker expensiveChecker = mockChecker("expensive", FileChangeSavingChecker.CheckerCost.HIGH);
+        FileChangeSavingChecker cheapChecker = mockChecker("cheap", FileChangeSavingChecker.CheckerCost.LOW);
+        FileChangeSavingChecker mediumChecker = mockChecker("medium", FileChangeSavingChecker.CheckerCost.MEDIUM);
+
+        // All checkers have the same priority: the cheapest ones are evaluated first.
+        assertEquals(List.of(cheapChecker, mediumChecker, expensiveChecker), this.loader.getCheckers());
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        FileChange fileChange = mock(FileChange.class);
+        when(cheapChecker.canChangeOnDocumentBeAdded(changeRequest, fileChange))
+            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
+        when(mediumChecker.canChangeOnDocumentBeAdded(changeRequest, fileChange))
+            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult("rejected"));
+
+        assertEquals(new FileChangeSavingChecker.SavingCheckerResult("rejected"),
+            this.loader.canChangeOnDocumentBeAdded(changeRequest, fileChange));
+        verify(expensiveChecker, never()).canChangeOnDocumentBeAdded(any(ChangeRequest.class), any(FileChange.class));
+        verify(this.checkersContext).start();
+        verify(this.checkersContext).stop();
+
+        when(cheapChecker.canChangeRequestBeCreatedWith(fileChange))
+            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult("creation rejected"));
+        assertEquals(new FileChangeSavingChecker.SavingCheckerResult("creation rejected"),
+            this.loader.canChangeRequestBeCreatedWith(fileChange));
+        verify(mediumChecker, never()).canChangeRequestBeCreatedWith(any());
+        verify(expensiveChecker, never()).canChangeRequestBeCreatedWith(any());
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
 import org.xwiki.contrib.changerequest.ApproversManager;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
@@ -31,6 +32,8 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.localization.ContextualLocalizationManager;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -53,6 +56,8 @@ import static org.mockito.Mockito.when;
  * @since 1.2
  */
 @ComponentTest
+// The actual context is used so that the results are retrieved from the mocked managers.
+@ComponentList(FileChangeSavingCheckersContext.class)
 class MinimumApproversCompatibilityCheckerTest
 {
     @InjectMockComponents
@@ -61,6 +66,12 @@ class MinimumApproversCompatibilityCheckerTest
     @MockComponent
     private ChangeRequestConfiguration configuration;
 
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private AuthorizationManager authorizationManager;
+
     @MockComponent
     private ApproversManager<ChangeRequest> changeRequestApproversManager;
 
@@ -36,8 +36,11 @@ import org.xwiki.contrib.changerequest.ChangeRequestMergeManager;
 import org.xwiki.contrib.changerequest.ChangeRequestReference;
 import org.xwiki.contrib.changerequest.ChangeRequestRightsManager;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.events.ChangeRequestFileChangeAddedEvent;
+import org.xwiki.contrib.changerequest.internal.FileChangeFingerprintManager;
 import org.xwiki.contrib.changerequest.internal.FileChangeVersionManager;
+import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.localization.ContextualLocalizationManager;
 import org.xwiki.model.reference.DocumentReference;
@@ -66,8 +69,10 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -125,12 +130,18 @@ class AddChangesChangeRequestHandlerTest
     @MockComponent
     private ContextualLocalizationManager contextualLocalizationManager;
 
+    @MockComponent
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
+    @MockComponent
+    private FileChangeSavingCheckersLoader fileChangeSavingCheckersLoader;
+
     private XWikiContext context;
     private XWiki wiki;
     private XWikiVersioningStoreInterface versioningStore;
 
     @BeforeEach
-    void setup()
+    void setup() throws Exception
     {
         this.context = mock(XWikiContext.class);
         when(contextProvider.get()).thenReturn(context);
@@ -140,6 +151,9 @@ class AddChangesChangeRequestHandlerTest
 
         this.versioningStore = mock(XWikiVersioningStoreInterface.class);
         when(this.wiki.getVersioningStore()).thenReturn(this.versioningStore);
+
+        when(this.fileChangeSavingCheckersLoader.canChangeOnDocumentBeAdded(any(ChangeRequest.class),
+            any(FileChange.class))).thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
     }
 
     @Test
@@ -303,4 +317,78 @@ class AddChangesChangeRequestHandlerTest
         verify(response).sendRedirect(url);
         verify(changeRequest).updateDate();
     }
+
+    @Test
+    void handleFileChangeIdenticalToLatest() throws Exception
+    {
+        XWikiRequest request = mock(XWikiRequest.class);
+        when(context.getRequest()).thenReturn(request);
+        XWikiResponse response = mock(XWikiResponse.class);
+        when(context.getResponse()).thenReturn(response);
+        when(this.requestParameterConverter.convert(request, response)).thenReturn(Optional.of(request));
+        String docReference = "XWiki.Doc.Reference";
+        when(request.getParameter("docReference")).thenReturn(docReference);
+        DocumentReference documentReference = mock(DocumentReference.class, "editedDoc");
+        when(this.documentReferenceResolver.resolve(docReference)).thenReturn(documentReference);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(wiki.getDocument(documentReference, context)).thenReturn(document);
+        when(document.clone()).thenReturn(document);
+        when(document.getDocumentReferenceWithLocale()).thenReturn(documentReference);
+        ChangeRequestReference changeRequestReference = mock(ChangeRequestReference.class);
+        String changeRequestId = "some id";
+        when(changeRequestReference.getId()).thenReturn(changeRequestId);
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.storageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+        when(changeRequest.getId()).thenReturn(changeRequestId);
+        UserReference userReference = mock(UserReference.class, "currentUser");
+        when(this.userReferenceResolver.resolve(CurrentUserReference.INSTANCE)).thenReturn(userReference);
+        when(request.getParameter(AddChangesChangeRequestHandler.PREVIOUS_VERSION_PARAMETER)).thenReturn("2.1");
+        when(this.changeRequestRightsManager.isEditWithChangeRequestAllowed(userReference, documentReference))
+            .thenReturn(true);
+
+        XWikiDocumentArchive documentArchive = mock(XWikiDocumentArchive.class);
+        when(versioningStore.getXWikiDocumentArchive(document, context)).thenReturn(documentArchive);
+        XWikiDocument previousVersionDoc = mock(XWikiDocument.class);
+        when(documentArchive.loadDocument(new Version("2.1"), context)).thenReturn(previousVersionDoc);
+
+        FileChange existingFileChange = mock(FileChange.class);
+        when(changeRequest.getLatestFileChangeFor(documentReference)).thenReturn(Optional.of(existingFileChange));
+        when(existingFileChange.getPreviousPublishedVersion()).thenReturn("1.1");
+        when(existingFileChange.getPreviousPublishedVersionDate()).thenReturn(new Date(58));
+        MergeDocumentResult mergeDocumentResult = mock(MergeDocumentResult.class);
+        when(this.changeRequestMergeManager.mergeDocumentChanges(document, "2.1", changeRequest))
+            .thenReturn(Optional.of(mergeDocumentResult));
+        when(this.fileChangeVersionManager.getNextFileChangeVersion("2.1", true)).thenReturn("filechange-2.2");
+        XWikiDocument mergedDocument = mock(XWikiDocument.class);
+        when(mergeDocumentResult.getMergeResult()).thenReturn(mergedDocument);
+        FileChange expectedFileChange = new FileChange(changeRequest)
+            .setAuthor(userReference)
+            .setTargetEntity(documentReference)
+            .setPreviousVersion("2.1")
+            .setPreviousPublishedVersion("1.1", new Date(58))
+            .setVersion("filechange-2.2")
+            .setModifiedDocument(mergedDocument);
+        when(this.fileChangeFingerprintManager.hasSameContent(eq(existingFileChange), any(FileChange.class)))
+            .then(invocationOnMock -> {
+                FileChange fileChange = invocationOnMock.getArgument(1);
+                expectedFileChange.setCreationDate(fileChange.getCreationDate());
+                return expectedFileChange.equals(fileChange);
+            });
+
+        DocumentReference changeRequestDocReference = mock(DocumentReference.class);
+        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(changeRequestDocReference);
+        String url = "some url";
+        when(wiki.getURL(changeRequestDocReference, "view", context)).thenReturn(url);
+
+        this.handler.handle(changeRequestReference);
+
+        // The resubmission is a no-op: nothing is added, saved or notified.
+        verify(changeRequest, never()).addFileChange(any());
+        verify(changeRequest, never()).updateDate();
+        verify(this.storageManager, never()).save(any(), any());
+        verify(this.storageManager, never()).save(any());
+        verifyNoInteractions(this.observationManager);
+        verifyNoInteractions(this.changeRequestApproversManager);
+        verify(response).sendRedirect(url);
+    }
 }
@@ -34,7 +34,9 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestRightsManager;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.events.ChangeRequestCreatedEvent;
+import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.localization.ContextualLocalizationManager;
 import org.xwiki.model.reference.DocumentReference;
@@ -105,6 +107,9 @@ class CreateChangeRequestHandlerTest
     @MockComponent
     private ContextualLocalizationManager contextualLocalizationManager;
 
+    @MockComponent
+    private FileChangeSavingCheckersLoader fileChangeSavingCheckersLoader;
+
     private XWikiContext context;
     private XWikiRequest httpServletRequest;
     private XWikiResponse httpServletResponse;
@@ -112,7 +117,7 @@ class CreateChangeRequestHandlerTest
     private XWikiVersioningStoreInterface versioningStore;
 
     @BeforeEach
-    void setup()
+    void setup() throws Exception
     {
         this.context = mock(XWikiContext.class);
         when(contextProvider.get()).thenReturn(context);
@@ -122,6 +127,9 @@ class CreateChangeRequestHandlerTest
 
         this.versioningStore = mock(XWikiVersioningStoreInterface.class);
         when(this.xWiki.getVersioningStore()).thenReturn(this.versioningStore);
+
+        when(this.fileChangeSavingCheckersLoader.canChangeRequestBeCreatedWith(any()))
+            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
     }
 
     @Test
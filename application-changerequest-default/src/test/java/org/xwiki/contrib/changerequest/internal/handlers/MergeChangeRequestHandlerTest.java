@@ -46,7 +46,9 @@ import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.web.XWikiRequest;
 import com.xpn.xwiki.web.XWikiResponse;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -133,5 +135,26 @@ class MergeChangeRequestHandlerTest
         this.handler.handle(changeRequestReference);
         verify(this.storageManager).merge(changeRequest);
         verify(this.response).sendRedirect("/my/change/request");
+        // Nothing is computed if no computation of the status is pending.
+        verify(this.changeRequestManager, never()).flushReadyForMergingStatus(any());
+    }
+
+    @Test
+    void handleWithPendingStatusComputation() throws Exception
+    {
+        ChangeRequestReference changeRequestReference = mock(ChangeRequestReference.class);
+        String id = "cr43";
+        when(changeRequestReference.getId()).thenReturn(id);
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.storageManager.load(id)).thenReturn(Optional.of(changeRequest));
+        UserReference userReference = mock(UserReference.class);
+        when(this.userReferenceResolver.resolve(CurrentUserReference.INSTANCE)).thenReturn(userReference);
+        when(this.changeRequestRightsManager.isAuthorizedToMerge(userReference, changeRequest)).thenReturn(true);
+        when(this.changeRequestManager.isReadyForMergingStatusPending(changeRequest)).thenReturn(true);
+        when(this.changeRequestManager.canBeMerged(changeRequest)).thenReturn(false);
+
+        this.handler.handle(changeRequestReference);
+        verify(this.changeRequestManager).flushReadyForMergingStatus(changeRequest);
+        verify(this.response).sendError(409, "The change request [cr43] cannot be merged.");
     }
 }
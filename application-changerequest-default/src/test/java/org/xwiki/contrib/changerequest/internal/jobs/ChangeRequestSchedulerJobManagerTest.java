@@ -23,6 +23,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -34,6 +35,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestManager;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.events.StaleChangeRequestEvent;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
@@ -50,6 +52,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -87,6 +90,9 @@ class ChangeRequestSchedulerJobManagerTest
     @MockComponent
     private Provider<XWikiContext> contextProvider;
 
+    @MockComponent
+    private ChangeRequestWorkScheduler workScheduler;
+
     private XWikiContext context;
 
     @BeforeEach
@@ -95,6 +101,14 @@ class ChangeRequestSchedulerJobManagerTest
         this.context = mock(XWikiContext.class);
         when(this.contextProvider.get()).thenReturn(this.context);
         when(configuration.getDurationUnit()).thenReturn(ChronoUnit.DAYS);
+        when(this.context.getWikiId()).thenReturn("wiki");
+
+        // Works are performed right away.
+        when(this.workScheduler.submit(eq("wiki"), eq(ChangeRequestWorkScheduler.WorkPriority.BATCH), anyString(),
+            any())).thenAnswer(invocationOnMock -> {
+                invocationOnMock.<Runnable>getArgument(3).run();
+                return true;
+            });
     }
 
     @Test
@@ -104,7 +118,7 @@ class ChangeRequestSchedulerJobManagerTest
         this.schedulerJobManager.notifyStaleChangeRequests();
 
         // when duration is set to 0 the feature is entirely disabled
-        verify(this.changeRequestStorageManager, never()).findOpenChangeRequestsByDate(any(), anyBoolean());
+        verify(this.changeRequestStorageManager, never()).findOpenChangeRequestSummariesByDate(any(), anyBoolean());
 
         when(this.configuration.getStaleChangeRequestDurationForNotifying()).thenReturn(2L);
         when(this.configuration.useCreationDateForStaleDurations()).thenReturn(true);
@@ -117,9 +131,9 @@ class ChangeRequestSchedulerJobManagerTest
         Instant beforeExpectedDate = now.toInstant().minus(2L, ChronoUnit.DAYS);
         Instant afterExpectedDate = now.toInstant().minus(1L, ChronoUnit.DAYS);
 
-        ChangeRequest changeRequest1 = mock(ChangeRequest.class);
-        ChangeRequest changeRequest2 = mock(ChangeRequest.class);
-        when(this.changeRequestStorageManager.findOpenChangeRequestsByDate(any(Date.class), eq(true)))
+        ChangeRequestSummary summary1 = mock(ChangeRequestSummary.class);
+        ChangeRequestSummary summary2 = mock(ChangeRequestSummary.class);
+        when(this.changeRequestStorageManager.findOpenChangeRequestSummariesByDate(any(Date.class), eq(true)))
             .thenAnswer(invocationOnMock -> {
                 Date requestedDate = invocationOnMock.getArgument(0);
                 Instant requestedInstant = requestedDate.toInstant();
@@ -129,20 +143,24 @@ class ChangeRequestSchedulerJobManagerTest
                         String.format("%s should be after %s", requestedInstant, beforeExpectedDate));
                 }
                 assertTrue(requestedInstant.isBefore(afterExpectedDate));
-                return Arrays.asList(changeRequest1, changeRequest2);
+                return Arrays.asList(summary1, summary2);
         });
 
-        when(changeRequest1.getStaleDate()).thenReturn(new Date(42));
+        when(summary1.getStaleDate()).thenReturn(new Date(42));
+        when(summary2.getId()).thenReturn("CR2");
+        ChangeRequest changeRequest2 = mock(ChangeRequest.class);
         when(changeRequest2.getId()).thenReturn("CR2");
+        when(this.changeRequestStorageManager.load("CR2")).thenReturn(Optional.of(changeRequest2));
         this.schedulerJobManager.notifyStaleChangeRequests();
 
         verify(this.context).setUserReference(userDocReference);
         verify(this.observationManager).notify(any(StaleChangeRequestEvent.class), eq("CR2"), eq(changeRequest2));
-        verify(changeRequest1, never()).getId();
         verify(changeRequest2).setStaleDate(any(Date.class));
-        verify(changeRequest1, never()).setStaleDate(any(Date.class));
         verify(this.changeRequestStorageManager).saveStaleDate(changeRequest2);
-        verify(this.changeRequestStorageManager, never()).saveStaleDate(changeRequest1);
+        // Already notified change requests are not loaded.
+        verify(summary1, never()).getId();
+        verify(this.changeRequestStorageManager, times(1)).load(any());
+        verify(this.changeRequestStorageManager, times(1)).saveStaleDate(any());
     }
 
     @Test
@@ -167,8 +185,19 @@ class ChangeRequestSchedulerJobManagerTest
         Instant beforeExpectedDate = now.toInstant().minus(5L, ChronoUnit.DAYS);
         Instant afterExpectedDate = now.toInstant().minus(4L, ChronoUnit.DAYS);
 
-        ChangeRequest changeRequest1 = mock(ChangeRequest.class);
-        ChangeRequest changeRequest2 = mock(ChangeRequest.class);
+        ChangeRequest changeRequest1 = mock(ChangeRequest.class, "cr1");
+        when(changeRequest1.getId()).thenReturn("CR1");
+        ChangeRequest changeRequest2 = mock(ChangeRequest.class, "cr2");
+        when(changeRequest2.getId()).thenReturn("CR2");
+
+        // The change requests are loaded again when performing the work.
+        ChangeRequest reloadedChangeRequest1 = mock(ChangeRequest.class, "reloadedCR1");
+        when(reloadedChangeRequest1.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_REVIEW);
+        when(this.changeRequestStorageManager.load("CR1")).thenReturn(Optional.of(reloadedChangeRequest1));
+        // The change request has been merged while the work was waiting.
+        ChangeRequest reloadedChangeRequest2 = mock(ChangeRequest.class, "reloadedCR2");
+        when(reloadedChangeRequest2.getStatus()).thenReturn(ChangeRequestStatus.MERGED);
+        when(this.changeRequestStorageManager.load("CR2")).thenReturn(Optional.of(reloadedChangeRequest2));
         when(this.changeRequestStorageManager.findChangeRequestsStaledBefore(any(Date.class)))
             .thenAnswer(invocationOnMock -> {
                 Date requestedDate = invocationOnMock.getArgument(0);
@@ -184,8 +213,9 @@ class ChangeRequestSchedulerJobManagerTest
         this.schedulerJobManager.closeStaleChangeRequests();
 
         verify(this.context).setUserReference(userDocReference);
-        verify(this.changeRequestManager).updateStatus(changeRequest1, ChangeRequestStatus.STALE);
-        verify(this.changeRequestManager).updateStatus(changeRequest2, ChangeRequestStatus.STALE);
+        verify(this.changeRequestManager).updateStatus(reloadedChangeRequest1, ChangeRequestStatus.STALE);
+        verify(this.changeRequestManager, never()).updateStatus(eq(reloadedChangeRequest2), any());
+        verify(this.changeRequestManager, never()).updateStatus(eq(changeRequest1), any());
 
         // When notification duration is set to 0, we directly close the change requests based on their inactivity
         when(this.configuration.getStaleChangeRequestDurationForNotifying()).thenReturn(0L);
@@ -194,8 +224,14 @@ class ChangeRequestSchedulerJobManagerTest
         Instant beforeExpectedDate2 = now.toInstant().minus(5L, ChronoUnit.DAYS);
         Instant afterExpectedDate2 = now.toInstant().minus(4L, ChronoUnit.DAYS);
 
-        ChangeRequest changeRequest3 = mock(ChangeRequest.class);
-        ChangeRequest changeRequest4 = mock(ChangeRequest.class);
+        ChangeRequest changeRequest3 = mock(ChangeRequest.class, "cr3");
+        when(changeRequest3.getId()).thenReturn("CR3");
+        when(changeRequest3.getStatus()).thenReturn(ChangeRequestStatus.DRAFT);
+        when(this.changeRequestStorageManager.load("CR3")).thenReturn(Optional.of(changeRequest3));
+        ChangeRequest changeRequest4 = mock(ChangeRequest.class, "cr4");
+        when(changeRequest4.getId()).thenReturn("CR4");
+        when(changeRequest4.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_MERGING);
+        when(this.changeRequestStorageManager.load("CR4")).thenReturn(Optional.of(changeRequest4));
         when(this.changeRequestStorageManager.findOpenChangeRequestsByDate(any(Date.class), eq(false)))
             .thenAnswer(invocationOnMock -> {
                 Date requestedDate = invocationOnMock.getArgument(0);
@@ -215,4 +251,25 @@ class ChangeRequestSchedulerJobManagerTest
         verify(this.changeRequestStorageManager).findChangeRequestsStaledBefore(any());
         verify(this.changeRequestStorageManager).findOpenChangeRequestsByDate(any(), anyBoolean());
     }
+
+    @Test
+    void closeStaleChangeRequestsWithRejectedWork() throws ChangeRequestException
+    {
+        when(this.configuration.getStaleChangeRequestDurationForClosing()).thenReturn(5L);
+        when(this.configuration.getStaleChangeRequestDurationForNotifying()).thenReturn(2L);
+
+        ChangeRequest changeRequest1 = mock(ChangeRequest.class);
+        ChangeRequest changeRequest2 = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.findChangeRequestsStaledBefore(any(Date.class)))
+            .thenReturn(Arrays.asList(changeRequest1, changeRequest2));
+        when(this.workScheduler.submit(eq("wiki"), eq(ChangeRequestWorkScheduler.WorkPriority.BATCH), anyString(),
+            any())).thenReturn(false);
+
+        this.schedulerJobManager.closeStaleChangeRequests();
+
+        // The remaining change requests are not submitted once a work is rejected.
+        verify(this.workScheduler).submit(eq("wiki"), eq(ChangeRequestWorkScheduler.WorkPriority.BATCH),
+            anyString(), any());
+        verify(this.changeRequestManager, never()).updateStatus(any(), any());
+    }
 }
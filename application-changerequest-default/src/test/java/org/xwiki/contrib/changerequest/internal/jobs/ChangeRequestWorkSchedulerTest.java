@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler.ScheduledWork;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler.WorkPriority;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestWorkScheduler}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestWorkSchedulerTest
+{
+    @InjectMockComponents
+    private ChangeRequestWorkScheduler scheduler;
+
+    @MockComponent
+    private ChangeRequestConfiguration configuration;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @MockComponent
+    private Execution execution;
+
+    private XWikiContext context;
+
+    private DocumentReference userReference;
+
+    @BeforeEach
+    void setup()
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        this.userReference = new DocumentReference("xwiki", "XWiki", "Foo");
+        when(this.context.getUserReference()).thenReturn(this.userReference);
+
+        when(this.configuration.getBackgroundWorkThreads()).thenReturn(3);
+        when(this.configuration.getBackgroundWorkQueueSize()).thenReturn(4);
+    }
+
+    private void submit(String wikiId, WorkPriority priority, String description)
+    {
+        assertTrue(this.scheduler.submit(wikiId, priority, description, () -> { }));
+    }
+
+    private List<String> nextDescriptions()
+    {
+        List<String> result = new ArrayList<>();
+        ScheduledWork scheduledWork = this.scheduler.next();
+        while (scheduledWork != null) {
+            result.add(scheduledWork.getDescription());
+            this.scheduler.complete(scheduledWork);
+            scheduledWork = this.scheduler.next();
+        }
+        return result;
+    }
+
+    @Test
+    void interactiveWorksFirst() throws Exception
+    {
+        // Stop the workers so that the test fully controls when the works are retrieved.
+        this.scheduler.dispose();
+
+        submit("wiki1", WorkPriority.BATCH, "batch1");
+        submit("wiki1", WorkPriority.INTERACTIVE, "interactive1");
+        submit("wiki1", WorkPriority.BATCH, "batch2");
+        submit("wiki1", WorkPriority.INTERACTIVE, "interactive2");
+
+        assertEquals(List.of("interactive1", "interactive2", "batch1", "batch2"), nextDescriptions());
+    }
+
+    @Test
+    void wikisServedInTurn() throws Exception
+    {
+        this.scheduler.dispose();
+
+        submit("wiki1", WorkPriority.BATCH, "wiki1-1");
+        submit("wiki1", WorkPriority.BATCH, "wiki1-2");
+        submit("wiki1", WorkPriority.BATCH, "wiki1-3");
+        submit("wiki2", WorkPriority.BATCH, "wiki2-1");
+        submit("wiki3", WorkPriority.INTERACTIVE, "wiki3-1");
+        submit("wiki3", WorkPriority.INTERACTIVE, "wiki3-2");
+        submit("wiki2", WorkPriority.INTERACTIVE, "wiki2-2");
+
+        assertEquals(List.of("wiki3-1", "wiki2-2", "wiki3-2", "wiki1-1", "wiki2-1", "wiki1-2", "wiki1-3"),
+            nextDescriptions());
+    }
+
+    @Test
+    void queueBounds() throws Exception
+    {
+        this.scheduler.dispose();
+
+        for (int i = 0; i < 4; i++) {
+            submit("wiki" + i, WorkPriority.BATCH, "batch" + i);
+        }
+        assertEquals(4, this.scheduler.getWaitingWorksCount(WorkPriority.BATCH));
+
+        // The batch queue is full, but it doesn't prevent interactive works to be accepted.
+        assertFalse(this.scheduler.submit("wiki1", WorkPriority.BATCH, "rejected", () -> { }));
+        submit("wiki1", WorkPriority.INTERACTIVE, "interactive");
+        assertEquals(4, this.scheduler.getWaitingWorksCount(WorkPriority.BATCH));
+        assertEquals(1, this.scheduler.getWaitingWorksCount(WorkPriority.INTERACTIVE));
+
+        // Once a batch work is retrieved, a new one can be accepted.
+        ScheduledWork interactive = this.scheduler.next();
+        assertEquals("interactive", interactive.getDescription());
+        ScheduledWork batch = this.scheduler.next();
+        assertEquals("batch0", batch.getDescription());
+        submit("wiki1", WorkPriority.BATCH, "accepted");
+        assertEquals(4, this.scheduler.getWaitingWorksCount(WorkPriority.BATCH));
+    }
+
+    @Test
+    void batchWorksDoNotUseAllThreads() throws Exception
+    {
+        this.scheduler.dispose();
+
+        submit("wiki1", WorkPriority.BATCH, "batch1");
+        submit("wiki2", WorkPriority.BATCH, "batch2");
+        submit("wiki3", WorkPriority.BATCH, "batch3");
+
+        ScheduledWork batch1 = this.scheduler.next();
+        ScheduledWork batch2 = this.scheduler.next();
+        assertEquals("batch1", batch1.getDescription());
+        assertEquals("batch2", batch2.getDescription());
+
+        // With 3 threads, only 2 batch works can run at the same time: the last thread is kept for interactive works.
+        assertNull(this.scheduler.next());
+        submit("wiki3", WorkPriority.INTERACTIVE, "interactive");
+        assertEquals("interactive", this.scheduler.next().getDescription());
+
+        this.scheduler.complete(batch1);
+        assertEquals("batch3", this.scheduler.next().getDescription());
+    }
+
+    @Test
+    void submitPerformsWorkInContext() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(this.scheduler.submit("wiki1", WorkPriority.INTERACTIVE, "work", latch::countDown));
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        verify(this.context).setWikiId("wiki1");
+        verify(this.context).setUserReference(this.userReference);
+        this.scheduler.dispose();
+    }
+}
@@ -21,11 +21,15 @@ package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.List;
 
+import javax.inject.Named;
 import javax.inject.Provider;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.DelegateApproverManager;
 import org.xwiki.contrib.changerequest.internal.ChangeRequestConfigurationSource;
 import org.xwiki.contrib.changerequest.internal.DefaultChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
+import org.xwiki.contrib.changerequest.internal.jobs.ChangeRequestWorkScheduler;
 import org.xwiki.contrib.changerequest.internal.jobs.DelegateApproversComputationRequest;
 import org.xwiki.job.JobExecutor;
 import org.xwiki.model.reference.DocumentReference;
@@ -38,6 +42,8 @@ import org.xwiki.query.QueryManager;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
@@ -45,6 +51,7 @@ import com.xpn.xwiki.objects.BaseObject;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -76,6 +83,19 @@ class ChangeRequestConfigurationUpdatedListenerTest
     @MockComponent
     private Provider<JobExecutor> jobExecutorProvider;
 
+    @MockComponent
+    private DelegateApproversCacheManager delegateApproversCacheManager;
+
+    @MockComponent
+    private ChangeRequestWorkScheduler workScheduler;
+
+    @MockComponent
+    private DelegateApproverManager<DocumentReference> delegateApproverManager;
+
+    @MockComponent
+    @Named("document")
+    private UserReferenceResolver<DocumentReference> documentReferenceUserReferenceResolver;
+
     @Test
     void onEventNoRecomputation()
     {
@@ -169,6 +189,29 @@ class ChangeRequestConfigurationUpdatedListenerTest
 
         when(query.execute()).thenReturn(List.of(foo, bar, buz));
 
+        UserReference fooUser = mock(UserReference.class, "foo");
+        UserReference barUser = mock(UserReference.class, "bar");
+        UserReference buzUser = mock(UserReference.class, "buz");
+        when(this.documentReferenceUserReferenceResolver.resolve(fooRef)).thenReturn(fooUser);
+        when(this.documentReferenceUserReferenceResolver.resolve(barRef)).thenReturn(barUser);
+        when(this.documentReferenceUserReferenceResolver.resolve(buzRef)).thenReturn(buzUser);
+
+        // The computation is performed as a single batch work.
+        when(this.workScheduler.submit(eq("xwiki"), eq(ChangeRequestWorkScheduler.WorkPriority.BATCH), anyString(),
+            any())).thenAnswer(invocation -> {
+                invocation.<Runnable>getArgument(3).run();
+                return true;
+            });
+        this.configurationUpdatedListener.onEvent(null, source, null);
+        verify(query).setWiki("xwiki");
+        verify(this.delegateApproverManager).computeDelegates(fooUser);
+        verify(this.delegateApproverManager).computeDelegates(barUser);
+        verify(this.delegateApproverManager).computeDelegates(buzUser);
+        verifyNoInteractions(this.jobExecutorProvider);
+
+        // The computation falls back on the dedicated job when the work is rejected.
+        when(this.workScheduler.submit(eq("xwiki"), eq(ChangeRequestWorkScheduler.WorkPriority.BATCH), anyString(),
+            any())).thenReturn(false);
         JobExecutor jobExecutor = mock(JobExecutor.class);
         when(jobExecutorProvider.get()).thenReturn(jobExecutor);
 
@@ -181,7 +224,36 @@ class ChangeRequestConfigurationUpdatedListenerTest
                 return null;
         });
         this.configurationUpdatedListener.onEvent(null, source, null);
-        verify(query).setWiki("xwiki");
         verify(jobExecutor).execute(eq(DelegateApproversComputationRequest.DELEGATE_APPROVERS_COMPUTATION_JOB), any());
+        verify(this.delegateApproverManager).computeDelegates(fooUser);
+    }
+
+    @Test
+    void onEventDelegateCacheInvalidation()
+    {
+        XWikiDocument source = mock(XWikiDocument.class);
+        when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(true);
+        WikiReference wikiReference = new WikiReference("subwiki");
+        when(source.getDocumentReference())
+            .thenReturn(new DocumentReference(ChangeRequestConfigurationSource.DOC_REFERENCE, wikiReference));
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        when(source.getOriginalDocument()).thenReturn(originalDoc);
+        BaseObject currentObj = mock(BaseObject.class);
+        when(source.getXObject(ChangeRequestConfigurationSource.CLASS_REFERENCE)).thenReturn(currentObj);
+        BaseObject previousObj = mock(BaseObject.class);
+        when(originalDoc.getXObject(ChangeRequestConfigurationSource.CLASS_REFERENCE)).thenReturn(previousObj);
+
+        when(currentObj.getStringValue(DefaultChangeRequestConfiguration.DELEGATE_CLASS_PROPERTY_LIST_PROPERTY))
+            .thenReturn("delegate");
+        when(previousObj.getStringValue(DefaultChangeRequestConfiguration.DELEGATE_CLASS_PROPERTY_LIST_PROPERTY))
+            .thenReturn("delegate");
+        this.configurationUpdatedListener.onEvent(null, source, null);
+        verify(this.delegateApproversCacheManager, never()).invalidate(any());
+
+        // The cached delegates are invalidated even for remote events.
+        when(currentObj.getStringValue(DefaultChangeRequestConfiguration.DELEGATE_CLASS_PROPERTY_LIST_PROPERTY))
+            .thenReturn("delegate,manager");
+        this.configurationUpdatedListener.onEvent(null, source, null);
+        verify(this.delegateApproversCacheManager).invalidate(wikiReference);
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestWikisCacheManager;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.event.ExtensionInstalledEvent;
+import org.xwiki.extension.event.ExtensionUninstalledEvent;
+import org.xwiki.extension.event.ExtensionUpgradedEvent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestWikisCacheInvalidationListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestWikisCacheInvalidationListenerTest
+{
+    private static final ExtensionId UI_EXTENSION_ID =
+        new ExtensionId(ChangeRequestWikisCacheManager.CHANGE_REQUEST_UI_MODULE_ID, "1.16");
+
+    private static final ExtensionId OTHER_EXTENSION_ID = new ExtensionId("org.xwiki.contrib:other", "1.0");
+
+    @InjectMockComponents
+    private ChangeRequestWikisCacheInvalidationListener listener;
+
+    @MockComponent
+    private Provider<ChangeRequestWikisCacheManager> wikisCacheManagerProvider;
+
+    private ChangeRequestWikisCacheManager wikisCacheManager;
+
+    @BeforeEach
+    void setup()
+    {
+        this.wikisCacheManager = mock(ChangeRequestWikisCacheManager.class);
+        when(this.wikisCacheManagerProvider.get()).thenReturn(this.wikisCacheManager);
+    }
+
+    @Test
+    void getEvents()
+    {
+        assertTrue(this.listener.getEvents().stream()
+            .anyMatch(event -> event.matches(new ExtensionInstalledEvent(UI_EXTENSION_ID, "wiki:foo"))));
+        assertTrue(this.listener.getEvents().stream()
+            .anyMatch(event -> event.matches(new ExtensionUninstalledEvent(UI_EXTENSION_ID, "wiki:foo"))));
+        assertTrue(this.listener.getEvents().stream()
+            .anyMatch(event -> event.matches(new ExtensionUpgradedEvent(UI_EXTENSION_ID, "wiki:foo"))));
+        assertTrue(this.listener.getEvents().stream().anyMatch(event -> event.matches(new WikiCreatedEvent("foo"))));
+        assertTrue(this.listener.getEvents().stream().anyMatch(event -> event.matches(new WikiDeletedEvent("foo"))));
+    }
+
+    @Test
+    void onExtensionInstalled()
+    {
+        this.listener.onEvent(new ExtensionInstalledEvent(OTHER_EXTENSION_ID, "wiki:foo"), null, null);
+        verify(this.wikisCacheManager, never()).invalidate();
+
+        this.listener.onEvent(new ExtensionInstalledEvent(UI_EXTENSION_ID, "wiki:foo"), null, null);
+        verify(this.wikisCacheManager).invalidate();
+    }
+
+    @Test
+    void onExtensionUninstalled()
+    {
+        this.listener.onEvent(new ExtensionUninstalledEvent(OTHER_EXTENSION_ID, "wiki:foo"), null, null);
+        verify(this.wikisCacheManager, never()).invalidate();
+
+        this.listener.onEvent(new ExtensionUninstalledEvent(UI_EXTENSION_ID, "wiki:foo"), null, null);
+        verify(this.wikisCacheManager).invalidate();
+    }
+
+    @Test
+    void onExtensionUpgraded()
+    {
+        this.listener.onEvent(new ExtensionUpgradedEvent(UI_EXTENSION_ID, null), null, null);
+        verify(this.wikisCacheManager).invalidate();
+    }
+
+    @Test
+    void onWikiEvents()
+    {
+        this.listener.onEvent(new WikiCreatedEvent("foo"), null, null);
+        verify(this.wikisCacheManager).invalidate();
+
+        this.listener.onEvent(new WikiDeletedEvent("foo"), null, null);
+        verify(this.wikisCacheManager, times(2)).invalidate();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
+import org.xwiki.contrib.changerequest.internal.storage.ChangeRequestXClassInitializer;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestXObjectUpdatedListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestXObjectUpdatedListenerTest
+{
+    @InjectMockComponents
+    private ChangeRequestXObjectUpdatedListener listener;
+
+    @MockComponent
+    @Named("changerequestid")
+    private Provider<EntityReferenceSerializer<String>> entityReferenceSerializerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageCacheManager> cacheManagerProvider;
+
+    private ChangeRequestStorageCacheManager cacheManager;
+
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @BeforeEach
+    void setup()
+    {
+        this.cacheManager = mock(ChangeRequestStorageCacheManager.class);
+        when(this.cacheManagerProvider.get()).thenReturn(this.cacheManager);
+        this.entityReferenceSerializer = mock(EntityReferenceSerializer.class);
+        when(this.entityReferenceSerializerProvider.get()).thenReturn(this.entityReferenceSerializer);
+    }
+
+    @Test
+    void onEvent()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        DocumentReference documentReference = new DocumentReference("xwiki", "CR1", "WebHome");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(this.entityReferenceSerializer.serialize(documentReference)).thenReturn("CR1");
+
+        this.listener.onEvent(new XObjectUpdatedEvent(), document, null);
+        verify(this.cacheManager).invalidate("CR1");
+
+        // A document update which is not a change request is ignored.
+        this.listener.onEvent(new DocumentUpdatedEvent(documentReference), document, null);
+        verify(this.cacheManager).invalidate("CR1");
+
+        // The title of a change request might be updated without any xobject update.
+        when(document.getXObject(ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS))
+            .thenReturn(mock(BaseObject.class));
+        this.listener.onEvent(new DocumentUpdatedEvent(documentReference), document, null);
+        verify(this.cacheManager, times(2)).invalidate("CR1");
+
+        XWikiDocument deletedDocument = mock(XWikiDocument.class);
+        when(deletedDocument.getDocumentReference()).thenReturn(documentReference);
+        when(deletedDocument.getOriginalDocument()).thenReturn(document);
+        this.listener.onEvent(new DocumentDeletedEvent(documentReference), deletedDocument, null);
+        verify(this.cacheManager, times(3)).invalidate("CR1");
+
+        when(document.getXObject(ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS)).thenReturn(null);
+        this.listener.onEvent(new DocumentDeletedEvent(documentReference), deletedDocument, null);
+        verify(this.cacheManager, times(3)).invalidate(any());
+        verify(this.cacheManager, never()).invalidateAll();
+    }
+}
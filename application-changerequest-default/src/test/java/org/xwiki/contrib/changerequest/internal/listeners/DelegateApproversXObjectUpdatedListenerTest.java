@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.contrib.changerequest.internal.approvers.DelegateApproversIndex;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DelegateApproversXObjectUpdatedListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DelegateApproversXObjectUpdatedListenerTest
+{
+    @InjectMockComponents
+    private DelegateApproversXObjectUpdatedListener listener;
+
+    @MockComponent
+    private Provider<DelegateApproversIndex> delegateApproversIndexProvider;
+
+    @MockComponent
+    private Provider<DelegateApproversCacheManager> delegateApproversCacheManagerProvider;
+
+    @MockComponent
+    @Named("document")
+    private UserReferenceResolver<DocumentReference> userReferenceResolver;
+
+    private DelegateApproversIndex delegateApproversIndex;
+
+    private DelegateApproversCacheManager delegateApproversCacheManager;
+
+    @BeforeEach
+    void setup()
+    {
+        this.delegateApproversIndex = mock(DelegateApproversIndex.class);
+        when(this.delegateApproversIndexProvider.get()).thenReturn(this.delegateApproversIndex);
+        this.delegateApproversCacheManager = mock(DelegateApproversCacheManager.class);
+        when(this.delegateApproversCacheManagerProvider.get()).thenReturn(this.delegateApproversCacheManager);
+    }
+
+    @Test
+    void onEvent()
+    {
+        XWikiDocument userDoc = mock(XWikiDocument.class);
+        DocumentReference userDocReference = new DocumentReference("xwiki", "XWiki", "Foo");
+        when(userDoc.getDocumentReference()).thenReturn(userDocReference);
+        UserReference userReference = mock(UserReference.class);
+        when(this.userReferenceResolver.resolve(userDocReference)).thenReturn(userReference);
+
+        this.listener.onEvent(new XObjectUpdatedEvent(), userDoc, null);
+        verify(this.delegateApproversIndex).update(userDoc);
+        verify(this.delegateApproversCacheManager).invalidate(userReference);
+    }
+
+    @Test
+    void onWikiDeleted()
+    {
+        this.listener.onEvent(new WikiDeletedEvent("foo"), null, null);
+        verify(this.delegateApproversIndex).removeWiki(new WikiReference("foo"));
+        verify(this.delegateApproversCacheManager).invalidate(new WikiReference("foo"));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
+import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link FileChangeSavingCheckersInvalidationListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FileChangeSavingCheckersInvalidationListenerTest
+{
+    @InjectMockComponents
+    private FileChangeSavingCheckersInvalidationListener listener;
+
+    @MockComponent
+    private Provider<FileChangeSavingCheckersLoader> fileChangeSavingCheckersLoaderProvider;
+
+    @Test
+    void processLocalEvent()
+    {
+        FileChangeSavingCheckersLoader loader = mock(FileChangeSavingCheckersLoader.class);
+        when(this.fileChangeSavingCheckersLoaderProvider.get()).thenReturn(loader);
+
+        assertTrue(this.listener.getEvents().stream().anyMatch(event ->
+            event.matches(new ComponentDescriptorAddedEvent(FileChangeSavingChecker.class, "checker"))));
+        assertTrue(this.listener.getEvents().stream().anyMatch(event ->
+            event.matches(new ComponentDescriptorRemovedEvent(FileChangeSavingChecker.class, "checker"))));
+        assertFalse(this.listener.getEvents().stream().anyMatch(event ->
+            event.matches(new ComponentDescriptorAddedEvent(ComponentManager.class, "checker"))));
+
+        this.listener.processLocalEvent(new ComponentDescriptorAddedEvent(FileChangeSavingChecker.class, "checker"),
+            mock(ComponentManager.class), mock(ComponentDescriptor.class));
+        verify(loader).invalidate();
+
+        this.listener.processLocalEvent(new ComponentDescriptorRemovedEvent(FileChangeSavingChecker.class, "checker"),
+            mock(ComponentManager.class), mock(ComponentDescriptor.class));
+        verify(loader, times(2)).invalidate();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.Optional;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestTitleCacheManager;
+import org.xwiki.contrib.changerequest.internal.cache.MergeCacheManager;
+import org.xwiki.contrib.changerequest.internal.storage.FileChangeXClassInitializer;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.observation.ObservationContext;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link FileChangeXObjectUpdatedListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FileChangeXObjectUpdatedListenerTest
+{
+    @InjectMockComponents
+    private FileChangeXObjectUpdatedListener listener;
+
+    @MockComponent
+    private ObservationContext observationContext;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageCacheManager> storageCacheManagerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageManager> storageManagerProvider;
+
+    @MockComponent
+    private Provider<MergeCacheManager> mergeCacheManagerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestTitleCacheManager> titleCacheManagerProvider;
+
+    private ChangeRequestStorageCacheManager storageCacheManager;
+
+    private ChangeRequestTitleCacheManager titleCacheManager;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.storageCacheManager = mock(ChangeRequestStorageCacheManager.class);
+        when(this.storageCacheManagerProvider.get()).thenReturn(this.storageCacheManager);
+        this.titleCacheManager = mock(ChangeRequestTitleCacheManager.class);
+        when(this.titleCacheManagerProvider.get()).thenReturn(this.titleCacheManager);
+        ChangeRequestStorageManager storageManager = mock(ChangeRequestStorageManager.class);
+        when(this.storageManagerProvider.get()).thenReturn(storageManager);
+        when(storageManager.load(any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void onEventInvalidatesTitles()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        BaseObject fileChangeObject = mock(BaseObject.class);
+        when(document.getXObject(FileChangeXClassInitializer.FILECHANGE_XCLASS)).thenReturn(fileChangeObject);
+        when(fileChangeObject.getStringValue(FileChangeXClassInitializer.CHANGE_REQUEST_ID)).thenReturn("cr1");
+
+        // The stored rendered title might have been changed with the xobject.
+        this.listener.onEvent(new XObjectUpdatedEvent(), document, null);
+        verify(this.storageCacheManager).invalidate("cr1");
+        verify(this.titleCacheManager).invalidate("cr1");
+
+        XWikiDocument deletedDocument = mock(XWikiDocument.class);
+        when(deletedDocument.getOriginalDocument()).thenReturn(document);
+        when(fileChangeObject.getStringValue(FileChangeXClassInitializer.CHANGE_REQUEST_ID)).thenReturn("cr2");
+        this.listener.onEvent(new XObjectDeletedEvent(), deletedDocument, null);
+        verify(this.titleCacheManager).invalidate("cr2");
+    }
+
+    @Test
+    void onEventDuringFileChangeUpdate()
+    {
+        when(this.observationContext.isIn(any())).thenReturn(true);
+        this.listener.onEvent(new XObjectUpdatedEvent(), mock(XWikiDocument.class), null);
+        verify(this.titleCacheManager, never()).invalidate(any(String.class));
+    }
+}
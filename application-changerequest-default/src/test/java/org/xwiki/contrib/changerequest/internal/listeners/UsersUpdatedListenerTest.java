@@ -20,6 +20,7 @@
 package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.Collections;
+import java.util.List;
 
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -38,6 +39,9 @@ import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceResolver;
 
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.StringProperty;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -117,4 +121,43 @@ class UsersUpdatedListenerTest
 
         verify(this.delegateApproverManager).computeDelegates(userReference);
     }
+
+    @Test
+    void onEventOnlyWhenDelegatePropertiesUpdated() throws ChangeRequestException
+    {
+        when(this.configuration.isDelegateEnabled()).thenReturn(true);
+        when(this.configuration.getDelegateClassPropertyList()).thenReturn(List.of("delegate", "manager"));
+
+        XWikiDocument source = mock(XWikiDocument.class);
+        DocumentReference documentReference = mock(DocumentReference.class);
+        when(source.getDocumentReference()).thenReturn(documentReference);
+        UserReference userReference = mock(UserReference.class);
+        when(this.userReferenceResolver.resolve(documentReference)).thenReturn(userReference);
+
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        when(source.getOriginalDocument()).thenReturn(originalDoc);
+        BaseObject currentObject = mock(BaseObject.class);
+        BaseObject originalObject = mock(BaseObject.class);
+        when(source.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(currentObject);
+        when(originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(originalObject);
+
+        StringProperty currentDelegate = mock(StringProperty.class);
+        StringProperty originalDelegate = mock(StringProperty.class);
+        when(currentObject.safeget("delegate")).thenReturn(currentDelegate);
+        when(originalObject.safeget("delegate")).thenReturn(originalDelegate);
+        when(currentDelegate.getValue()).thenReturn("XWiki.Foo");
+        when(originalDelegate.getValue()).thenReturn("XWiki.Foo");
+
+        // Only a property unrelated to delegates has been updated.
+        this.usersUpdatedListener.onEvent(null, source, null);
+        verifyNoInteractions(this.delegateApproverManager);
+
+        StringProperty currentManager = mock(StringProperty.class);
+        when(currentObject.safeget("manager")).thenReturn(currentManager);
+        when(currentManager.getValue()).thenReturn("XWiki.Bar");
+        this.usersUpdatedListener.onEvent(null, source, null);
+        verify(this.delegateApproverManager).computeDelegates(userReference);
+    }
 }
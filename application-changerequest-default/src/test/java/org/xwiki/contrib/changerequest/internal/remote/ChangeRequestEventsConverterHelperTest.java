@@ -19,22 +19,30 @@
  */
 package org.xwiki.contrib.changerequest.internal.remote;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.ChangeRequestReview;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestStorageCacheManager;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -106,4 +114,127 @@ class ChangeRequestEventsConverterHelperTest
             () -> this.helper.getFileChange(changeRequestId, fileChangeId, event));
         assertEquals("Cannot find change request [someCR42] to convert event [remoteEvent]", exception.getMessage());
     }
+
+    @Test
+    void getChangeRequestWithDeltaNotCached() throws ChangeRequestException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "notCachedCR";
+        RemoteEventData event = mock(RemoteEventData.class, "remoteEvent");
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setStatus("READY_FOR_REVIEW");
+
+        when(this.changeRequestCacheManager.getChangeRequest(changeRequestId)).thenReturn(Optional.empty());
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        verify(this.changeRequestCacheManager, never()).invalidate(changeRequestId);
+    }
+
+    @Test
+    void getChangeRequestWithDeltaPatchesCache() throws ChangeRequestException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "cachedCR";
+        RemoteEventData event = mock(RemoteEventData.class, "remoteEvent");
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId(changeRequestId)
+            .setStatus(ChangeRequestStatus.READY_FOR_REVIEW)
+            .setUpdateDate(new Date(10));
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getId()).thenReturn("fileChange1");
+        when(fileChange.getTargetEntity()).thenReturn(new DocumentReference("xwiki", "Space", "Page"));
+        changeRequest.addFileChange(fileChange);
+        ChangeRequestReview review = new ChangeRequestReview(changeRequest, true, null).setId("xobject_0");
+        changeRequest.getReviews().add(review);
+        when(this.changeRequestCacheManager.getChangeRequest(changeRequestId)).thenReturn(Optional.of(changeRequest));
+
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta()
+            .setStatus("READY_FOR_MERGING")
+            .setUpdateDate(new Date(20))
+            .setFileChangeId("fileChange1")
+            .setReviewId("xobject_0");
+
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        assertEquals(ChangeRequestStatus.READY_FOR_MERGING, changeRequest.getStatus());
+        assertEquals(new Date(20), changeRequest.getUpdateDate());
+
+        // An older update date is ignored.
+        delta.setUpdateDate(new Date(15));
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        assertEquals(new Date(20), changeRequest.getUpdateDate());
+
+        verify(this.changeRequestCacheManager, never()).invalidate(changeRequestId);
+        verify(this.changeRequestStorageManager, never()).load(changeRequestId);
+    }
+
+    @Test
+    void getChangeRequestWithDeltaNewReview() throws ChangeRequestException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "cachedCRNewReview";
+        RemoteEventData event = mock(RemoteEventData.class, "remoteEvent");
+        ChangeRequest cachedChangeRequest = new ChangeRequest().setId(changeRequestId);
+        ChangeRequestReview oldReview =
+            new ChangeRequestReview(cachedChangeRequest, false, null).setId("xobject_0");
+        cachedChangeRequest.getReviews().add(oldReview);
+        when(this.changeRequestCacheManager.getChangeRequest(changeRequestId))
+            .thenReturn(Optional.of(cachedChangeRequest));
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setReviewId("xobject_1");
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        verify(this.changeRequestCacheManager).invalidate(changeRequestId);
+
+        // The cached instance, which might be used concurrently, is never modified.
+        assertEquals(List.of(oldReview), cachedChangeRequest.getReviews());
+    }
+
+    @Test
+    void getChangeRequestWithDeltaFullReload() throws ChangeRequestException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "cachedCRNewFileChange";
+        RemoteEventData event = mock(RemoteEventData.class, "remoteEvent");
+        ChangeRequest cachedChangeRequest = new ChangeRequest().setId(changeRequestId);
+        when(this.changeRequestCacheManager.getChangeRequest(changeRequestId))
+            .thenReturn(Optional.of(cachedChangeRequest));
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+
+        // Unknown file change.
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setFileChangeId("newFileChange");
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        verify(this.changeRequestCacheManager).invalidate(changeRequestId);
+
+        // Unsupported version.
+        delta = new ChangeRequestRemoteDelta(ChangeRequestRemoteDelta.CURRENT_VERSION + 1);
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        verify(this.changeRequestCacheManager, times(2)).invalidate(changeRequestId);
+
+        // Unknown status.
+        delta = new ChangeRequestRemoteDelta().setStatus("UNKNOWN_STATUS");
+        assertSame(changeRequest, this.helper.getChangeRequest(changeRequestId, delta, event));
+        verify(this.changeRequestCacheManager, times(3)).invalidate(changeRequestId);
+    }
+
+    @Test
+    void getFileChangeWithDelta() throws ChangeRequestException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "someCR43";
+        String fileChangeId = "someFilechange";
+        RemoteEventData event = mock(RemoteEventData.class, "remoteEvent");
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        FileChange fileChange = mock(FileChange.class);
+        when(changeRequest.getFileChangeById(fileChangeId)).thenReturn(Optional.of(fileChange));
+        when(this.changeRequestCacheManager.getChangeRequest(changeRequestId)).thenReturn(Optional.of(changeRequest));
+
+        assertSame(fileChange, this.helper.getFileChange(changeRequestId, fileChangeId, null, event));
+        verify(this.changeRequestStorageManager, never()).load(changeRequestId);
+
+        when(changeRequest.getFileChangeById(fileChangeId)).thenReturn(Optional.empty());
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+        ChangeRequestEventsConverterException exception = assertThrows(ChangeRequestEventsConverterException.class,
+            () -> this.helper.getFileChange(changeRequestId, fileChangeId, null, event));
+        assertEquals("Cannot find file change [someFilechange] from change request [someCR43] to convert "
+            + "event [remoteEvent].", exception.getMessage());
+        verify(this.changeRequestCacheManager).invalidate(changeRequestId);
+    }
 }
@@ -21,6 +21,7 @@ package org.xwiki.contrib.changerequest.internal.remote;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 
@@ -31,6 +32,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestReview;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.events.ApproversUpdatedEvent;
+import org.xwiki.contrib.changerequest.events.ChangeRequestConflictsFixedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestCreatedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestFileChangeAddedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestMergeFailedEvent;
@@ -60,13 +62,20 @@ import org.xwiki.test.junit5.mockito.MockComponent;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -261,7 +270,7 @@ class ChangeRequestEventsConverterTest
         assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
         verify(remoteEvent).setEvent(event);
         verify(remoteEvent).setSource(source);
-        verify(remoteEvent).setData(fileChangeId);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta().setFileChangeId(fileChangeId));
     }
 
     @Test
@@ -282,7 +291,7 @@ class ChangeRequestEventsConverterTest
         assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
         verify(remoteEvent).setEvent(event);
         verify(remoteEvent).setSource(source);
-        verify(remoteEvent).setData(fileChangeId);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta().setFileChangeId(fileChangeId));
     }
 
     @Test
@@ -334,7 +343,7 @@ class ChangeRequestEventsConverterTest
         assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
         verify(remoteEvent, times(2)).setEvent(event);
         verify(remoteEvent, times(2)).setSource(source);
-        verify(remoteEvent).setData(fileChangeId);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta().setFileChangeId(fileChangeId));
     }
 
     @Test
@@ -356,7 +365,7 @@ class ChangeRequestEventsConverterTest
         assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
         verify(remoteEvent).setEvent(event);
         verify(remoteEvent).setSource(source);
-        verify(remoteEvent).setData(reviewId);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta().setReviewId(reviewId));
     }
 
     @Test
@@ -819,7 +828,7 @@ class ChangeRequestEventsConverterTest
         when(remoteEvent.getData()).thenReturn(data);
 
         FileChange fileChange = mock(FileChange.class);
-        when(this.helper.getFileChange(changeRequestId, fileChangeId, remoteEvent)).thenReturn(fileChange);
+        when(this.helper.getFileChange(changeRequestId, fileChangeId, null, remoteEvent)).thenReturn(fileChange);
         XWikiDocument document = mock(XWikiDocument.class);
         when(this.serializer.unserializeDocument(data)).thenReturn(document);
 
@@ -877,4 +886,334 @@ class ChangeRequestEventsConverterTest
         verify(localEvent, never()).setSource(any());
         verify(localEvent, never()).setData(any());
     }
+
+    @Test
+    void toRemoteChangeRequestConflictsFixedEvent()
+    {
+        LocalEventData localEvent = mock(LocalEventData.class);
+        RemoteEventData remoteEvent = mock(RemoteEventData.class);
+
+        ChangeRequestConflictsFixedEvent event = new ChangeRequestConflictsFixedEvent();
+        when(localEvent.getEvent()).thenReturn(event);
+        String source = "conflictsFixedCR";
+        when(localEvent.getSource()).thenReturn(source);
+        FileChange fileChange = mock(FileChange.class);
+        when(localEvent.getData()).thenReturn(fileChange);
+        String fileChangeId = "fixedFileChange";
+        when(fileChange.getId()).thenReturn(fileChangeId);
+        Date updateDate = new Date(42);
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId(source)
+            .setStatus(ChangeRequestStatus.READY_FOR_REVIEW)
+            .setUpdateDate(updateDate);
+        when(fileChange.getChangeRequest()).thenReturn(changeRequest);
+
+        assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
+        verify(remoteEvent).setEvent(event);
+        verify(remoteEvent).setSource(source);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta()
+            .setStatus("READY_FOR_REVIEW")
+            .setUpdateDate(updateDate)
+            .setFileChangeId(fileChangeId));
+    }
+
+    @Test
+    void toRemoteChangeRequestUpdatedEventWithChangeRequest()
+    {
+        LocalEventData localEvent = mock(LocalEventData.class);
+        RemoteEventData remoteEvent = mock(RemoteEventData.class);
+
+        ChangeRequestUpdatedEvent event = new ChangeRequestUpdatedEvent();
+        when(localEvent.getEvent()).thenReturn(event);
+        String source = "updatedCR";
+        when(localEvent.getSource()).thenReturn(source);
+        Date updateDate = new Date(4242);
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId(source)
+            .setStatus(ChangeRequestStatus.DRAFT)
+            .setUpdateDate(updateDate);
+        when(localEvent.getData()).thenReturn(changeRequest);
+
+        assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
+        verify(remoteEvent).setEvent(event);
+        verify(remoteEvent).setSource(source);
+        verify(remoteEvent).setData(new ChangeRequestRemoteDelta().setStatus("DRAFT").setUpdateDate(updateDate));
+    }
+
+    @Test
+    void fromRemoteChangeRequestUpdatedEventWithDelta() throws ChangeRequestEventsConverterException
+    {
+        RemoteEventData remoteEvent = mock(RemoteEventData.class);
+        LocalEventData localEvent = mock(LocalEventData.class);
+
+        ChangeRequestUpdatedEvent event = new ChangeRequestUpdatedEvent();
+        when(remoteEvent.getEvent()).thenReturn(event);
+        String source = "someCrWithDelta";
+        when(remoteEvent.getSource()).thenReturn(source);
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setStatus("MERGED");
+        when(remoteEvent.getData()).thenReturn(delta);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.helper.getChangeRequest(source, delta, remoteEvent)).thenReturn(changeRequest);
+        assertTrue(this.converterFromRemote.fromRemote(remoteEvent, localEvent));
+
+        verify(this.helper, never()).getChangeRequest(source, remoteEvent);
+        verify(localEvent).setEvent(event);
+        verify(localEvent).setSource(source);
+        verify(localEvent).setData(changeRequest);
+    }
+
+    @Test
+    void fromRemoteChangeRequestConflictsFixedEvent() throws ChangeRequestEventsConverterException
+    {
+        RemoteEventData remoteEvent = mock(RemoteEventData.class);
+        LocalEventData localEvent = mock(LocalEventData.class);
+
+        ChangeRequestConflictsFixedEvent event = new ChangeRequestConflictsFixedEvent();
+        when(remoteEvent.getEvent()).thenReturn(event);
+        String source = "conflictsFixedCR";
+        when(remoteEvent.getSource()).thenReturn(source);
+        String fileChangeId = "fixedFileChange";
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setFileChangeId(fileChangeId);
+        when(remoteEvent.getData()).thenReturn(delta);
+
+        FileChange fileChange = mock(FileChange.class);
+        when(this.helper.getFileChange(source, fileChangeId, delta, remoteEvent)).thenReturn(fileChange);
+        assertTrue(this.converterFromRemote.fromRemote(remoteEvent, localEvent));
+
+        verify(localEvent).setEvent(event);
+        verify(localEvent).setSource(source);
+        verify(localEvent).setData(fileChange);
+    }
+
+    @Test
+    void fromRemoteChangeRequestReviewAddedEventWithDelta() throws ChangeRequestEventsConverterException
+    {
+        RemoteEventData remoteEvent = mock(RemoteEventData.class);
+        LocalEventData localEvent = mock(LocalEventData.class);
+
+        ChangeRequestReviewAddedEvent event = new ChangeRequestReviewAddedEvent();
+        when(remoteEvent.getEvent()).thenReturn(event);
+        String source = "reviewAddedWithDelta";
+        when(remoteEvent.getSource()).thenReturn(source);
+        String reviewId = "xobject_3";
+        ChangeRequestRemoteDelta delta = new ChangeRequestRemoteDelta().setReviewId(reviewId);
+        when(remoteEvent.getData()).thenReturn(delta);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.helper.getChangeRequest(source, delta, remoteEvent)).thenReturn(changeRequest);
+        ChangeRequestReview review = mock(ChangeRequestReview.class);
+        when(review.getId()).thenReturn(reviewId);
+        when(changeRequest.getReviews()).thenReturn(List.of(review));
+        assertTrue(this.converterFromRemote.fromRemote(remoteEvent, localEvent));
+
+        verify(localEvent).setEvent(event);
+        verify(localEvent).setSource(source);
+        verify(localEvent).setData(review);
+    }
+
+    @Test
+    void roundTripChangeRequestDataEvents() throws ChangeRequestEventsConverterException
+    {
+        List<Event> events = List.of(
+            new ChangeRequestCreatedEvent(),
+            new ChangeRequestMergedEvent(),
+            new ChangeRequestMergeFailedEvent(),
+            new ChangeRequestRebasedEvent(),
+            new ChangeRequestUpdatedEvent(),
+            new StaleChangeRequestEvent()
+        );
+        String changeRequestId = "roundTripCR";
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId(changeRequestId)
+            .setStatus(ChangeRequestStatus.READY_FOR_MERGING)
+            .setUpdateDate(new Date(1000));
+        ChangeRequestRemoteDelta expectedDelta = ChangeRequestRemoteDelta.of(changeRequest);
+        when(this.helper.getChangeRequest(eq(changeRequestId), eq(expectedDelta), any(RemoteEventData.class)))
+            .thenReturn(changeRequest);
+
+        for (Event event : events) {
+            LocalEventData localEvent = this.roundTrip(event, changeRequestId, changeRequest);
+            assertEquals(event, localEvent.getEvent());
+            assertEquals(changeRequestId, localEvent.getSource());
+            assertSame(changeRequest, localEvent.getData());
+        }
+        verify(this.helper, never()).getChangeRequest(eq(changeRequestId), any(RemoteEventData.class));
+    }
+
+    @Test
+    void roundTripFileChangeDataEvents() throws ChangeRequestEventsConverterException
+    {
+        List<Event> events = List.of(
+            new ChangeRequestFileChangeAddedEvent(),
+            new FileChangeRebasedEvent(),
+            new ChangeRequestConflictsFixedEvent(),
+            new ChangeRequestUpdatedFileChangeEvent()
+        );
+        String changeRequestId = "roundTripFileChangeCR";
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId(changeRequestId)
+            .setStatus(ChangeRequestStatus.READY_FOR_REVIEW)
+            .setUpdateDate(new Date(2000));
+        String fileChangeId = "roundTripFileChange";
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getId()).thenReturn(fileChangeId);
+        when(fileChange.getChangeRequest()).thenReturn(changeRequest);
+        ChangeRequestRemoteDelta expectedDelta = ChangeRequestRemoteDelta.of(changeRequest)
+            .setFileChangeId(fileChangeId);
+        when(this.helper.getFileChange(eq(changeRequestId), eq(fileChangeId), eq(expectedDelta),
+            any(RemoteEventData.class))).thenReturn(fileChange);
+
+        for (Event event : events) {
+            LocalEventData localEvent = this.roundTrip(event, changeRequestId, fileChange);
+            assertEquals(event, localEvent.getEvent());
+            assertEquals(changeRequestId, localEvent.getSource());
+            assertSame(fileChange, localEvent.getData());
+        }
+
+        // The updated file change event might also concern the whole change request: it's then fully reloaded.
+        when(this.helper.getChangeRequest(eq(changeRequestId), any(RemoteEventData.class))).thenReturn(changeRequest);
+        LocalEventData localEvent =
+            this.roundTrip(new ChangeRequestUpdatedFileChangeEvent(), changeRequestId, changeRequest);
+        assertSame(changeRequest, localEvent.getData());
+    }
+
+    @Test
+    void roundTripNoDataEvents()
+    {
+        List<Event> events = List.of(
+            new ChangeRequestMergingEvent(),
+            new ChangeRequestUpdatingFileChangeEvent(),
+            new SplitBeginChangeRequestEvent()
+        );
+        String changeRequestId = "roundTripNoData";
+        for (Event event : events) {
+            LocalEventData localEvent = this.roundTrip(event, changeRequestId, new ChangeRequest());
+            assertEquals(event, localEvent.getEvent());
+            assertEquals(changeRequestId, localEvent.getSource());
+            assertNull(localEvent.getData());
+        }
+        verifyNoInteractions(this.helper);
+    }
+
+    @Test
+    void roundTripChangeRequestReviewAddedEvent() throws ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "roundTripReviewCR";
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_MERGING);
+        ChangeRequestReview review = mock(ChangeRequestReview.class);
+        String reviewId = "xobject_2";
+        when(review.getId()).thenReturn(reviewId);
+        when(review.getChangeRequest()).thenReturn(changeRequest);
+        when(changeRequest.getReviews()).thenReturn(List.of(review));
+        ChangeRequestRemoteDelta expectedDelta = new ChangeRequestRemoteDelta()
+            .setStatus("READY_FOR_MERGING")
+            .setReviewId(reviewId);
+        when(this.helper.getChangeRequest(eq(changeRequestId), eq(expectedDelta), any(RemoteEventData.class)))
+            .thenReturn(changeRequest);
+
+        ChangeRequestReviewAddedEvent event = new ChangeRequestReviewAddedEvent();
+        LocalEventData localEvent = this.roundTrip(event, changeRequestId, review);
+        assertEquals(event, localEvent.getEvent());
+        assertEquals(changeRequestId, localEvent.getSource());
+        assertSame(review, localEvent.getData());
+    }
+
+    @Test
+    void roundTripChangeRequestStatusChangedEvent()
+    {
+        ChangeRequestStatus[] statuses = new ChangeRequestStatus[] {
+            ChangeRequestStatus.READY_FOR_REVIEW,
+            ChangeRequestStatus.READY_FOR_MERGING
+        };
+        ChangeRequestStatusChangedEvent event = new ChangeRequestStatusChangedEvent();
+        LocalEventData localEvent = this.roundTrip(event, "roundTripStatusCR", statuses);
+        assertEquals(event, localEvent.getEvent());
+        assertEquals("roundTripStatusCR", localEvent.getSource());
+        assertArrayEquals(statuses, (ChangeRequestStatus[]) localEvent.getData());
+        verifyNoInteractions(this.helper);
+    }
+
+    @Test
+    void roundTripApproversUpdatedEvent() throws XWikiException
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        String serializedDoc = "roundTripSerializedDoc";
+        when(this.serializer.serializeXWikiDocument(document)).thenReturn(serializedDoc);
+        when(this.serializer.unserializeDocument(serializedDoc)).thenReturn(document);
+        Pair<HashSet<String>, HashSet<String>> data = Pair.of(
+            new HashSet<>(Collections.singleton("foo")),
+            new HashSet<>(Collections.singleton("bar"))
+        );
+
+        ApproversUpdatedEvent event = new ApproversUpdatedEvent();
+        LocalEventData localEvent = this.roundTrip(event, document, data);
+        assertEquals(event, localEvent.getEvent());
+        assertSame(document, localEvent.getSource());
+        assertEquals(data, localEvent.getData());
+    }
+
+    @Test
+    void roundTripFileChangeDocumentSavedEvent() throws XWikiException, ChangeRequestEventsConverterException
+    {
+        String changeRequestId = "roundTripSavedCR";
+        String fileChangeId = "roundTripSavedFileChange";
+        ChangeRequest changeRequest = new ChangeRequest().setId(changeRequestId);
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getId()).thenReturn(fileChangeId);
+        when(fileChange.getChangeRequest()).thenReturn(changeRequest);
+        XWikiDocument document = mock(XWikiDocument.class);
+        String serializedDoc = "roundTripSavedDoc";
+        when(this.serializer.serializeXWikiDocument(document)).thenReturn(serializedDoc);
+        when(this.serializer.unserializeDocument(serializedDoc)).thenReturn(document);
+        when(this.helper.getFileChange(eq(changeRequestId), eq(fileChangeId), isNull(), any(RemoteEventData.class)))
+            .thenReturn(fileChange);
+
+        FileChangeDocumentSavedEvent event = new FileChangeDocumentSavedEvent();
+        LocalEventData localEvent = this.roundTrip(event, fileChange, document);
+        assertEquals(event, localEvent.getEvent());
+        assertSame(fileChange, localEvent.getSource());
+        assertSame(document, localEvent.getData());
+    }
+
+    @Test
+    void roundTripSplitEndChangeRequestEvent() throws ChangeRequestEventsConverterException
+    {
+        ChangeRequest changeRequest1 = new ChangeRequest().setId("splitCR1");
+        ChangeRequest changeRequest2 = new ChangeRequest().setId("splitCR2");
+        when(this.helper.getChangeRequest(eq("splitCR1"), any(RemoteEventData.class))).thenReturn(changeRequest1);
+        when(this.helper.getChangeRequest(eq("splitCR2"), any(RemoteEventData.class))).thenReturn(changeRequest2);
+
+        SplitEndChangeRequestEvent event = new SplitEndChangeRequestEvent();
+        LocalEventData localEvent = this.roundTrip(event, "splitOriginalCR", List.of(changeRequest1, changeRequest2));
+        assertEquals(event, localEvent.getEvent());
+        assertEquals("splitOriginalCR", localEvent.getSource());
+        assertEquals(List.of(changeRequest1, changeRequest2), localEvent.getData());
+    }
+
+    @Test
+    void roundTripFileChangeDocumentSavingEvent()
+    {
+        FileChangeDocumentSavingEvent event = new FileChangeDocumentSavingEvent();
+        LocalEventData localEvent = this.roundTrip(event, mock(FileChange.class), mock(XWikiDocument.class));
+        assertEquals(event, localEvent.getEvent());
+        assertNull(localEvent.getSource());
+        assertNull(localEvent.getData());
+    }
+
+    private LocalEventData roundTrip(Event event, Object source, Object data)
+    {
+        LocalEventData localEvent = new LocalEventData();
+        localEvent.setEvent(event);
+        localEvent.setSource(source);
+        localEvent.setData(data);
+
+        RemoteEventData remoteEvent = new RemoteEventData();
+        assertTrue(this.converterToRemote.toRemote(localEvent, remoteEvent));
+
+        LocalEventData result = new LocalEventData();
+        assertTrue(this.converterFromRemote.fromRemote(remoteEvent, result));
+        return result;
+    }
 }
@@ -25,8 +25,10 @@ import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -42,7 +44,9 @@ import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestReview;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionException;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
 import org.xwiki.contrib.changerequest.events.SplitEndChangeRequestEvent;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
@@ -80,13 +84,18 @@ import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.xwiki.contrib.changerequest.internal.storage.ChangeRequestXClassInitializer.CHANGE_REQUEST_XCLASS;
 
@@ -141,6 +150,9 @@ class DefaultChangeRequestStorageManagerTest
     @Named("document")
     private UserReferenceResolver<DocumentReference> userReferenceResolver;
 
+    @MockComponent
+    private UserReferenceResolver<String> stringUserReferenceResolver;
+
     @MockComponent
     private ApproversManager<ChangeRequest> approversManager;
 
@@ -410,6 +422,151 @@ class DefaultChangeRequestStorageManagerTest
         verify(query).bindValue("reference", "Foo.MyPage");
     }
 
+    @Test
+    void findOpenChangeRequestSummariesTargeting() throws Exception
+    {
+        DocumentReference doc1 = new DocumentReference("xwiki", "Foo", "Doc1");
+        DocumentReference doc1Fr = new DocumentReference(doc1, Locale.FRENCH);
+        DocumentReference doc2 = new DocumentReference("xwiki", "Foo", "Doc2");
+        DocumentReference doc3 = new DocumentReference("xwiki", "Foo", "Doc3");
+        when(this.localEntityReferenceSerializer.serialize(doc1)).thenReturn("Foo.Doc1");
+        when(this.localEntityReferenceSerializer.serialize(doc1Fr)).thenReturn("Foo.Doc1");
+        when(this.localEntityReferenceSerializer.serialize(doc2)).thenReturn("Foo.Doc2");
+        when(this.localEntityReferenceSerializer.serialize(doc3)).thenReturn("Foo.Doc3");
+        when(this.entityReferenceSerializer.serialize(CHANGE_REQUEST_XCLASS))
+            .thenReturn("ChangeRequest.ChangeRequestClass");
+
+        Query query = mock(Query.class);
+        when(this.queryManager.createQuery(any(), eq(Query.HQL))).thenReturn(query);
+        when(query.execute()).thenReturn(List.of(
+            new Object[] { "ChangeRequest.CR1.WebHome", "Foo.Doc1", "CR 1", new Date(42), "draft", "XWiki.Foo",
+                null, 2L },
+            new Object[] { "ChangeRequest.CR1.WebHome", "Foo.Doc2", "CR 1", new Date(42), "draft", "XWiki.Foo",
+                null, 2L },
+            new Object[] { "ChangeRequest.CR2.WebHome", "Foo.Doc1", "CR 2", new Date(43), "ready_for_review",
+                "XWiki.Foo,XWiki.Bar", new Date(58), 1L }
+        ));
+
+        DocumentReference cr1Reference = new DocumentReference("xwiki", List.of("ChangeRequest", "CR1"), "WebHome");
+        DocumentReference cr2Reference = new DocumentReference("xwiki", List.of("ChangeRequest", "CR2"), "WebHome");
+        when(this.documentReferenceResolver.resolve("ChangeRequest.CR1.WebHome")).thenReturn(cr1Reference);
+        when(this.documentReferenceResolver.resolve("ChangeRequest.CR2.WebHome")).thenReturn(cr2Reference);
+        UserReference foo = mock(UserReference.class, "foo");
+        UserReference bar = mock(UserReference.class, "bar");
+        when(this.stringUserReferenceResolver.resolve("XWiki.Foo")).thenReturn(foo);
+        when(this.stringUserReferenceResolver.resolve("XWiki.Bar")).thenReturn(bar);
+
+        // The summaries are not in cache: they're built from the query rows.
+        when(this.changeRequestStorageCacheManager.getSummary(any())).thenReturn(Optional.empty());
+        when(this.changeRequestStorageCacheManager.getChangeRequest(any())).thenReturn(Optional.empty());
+
+        ChangeRequestSummary summary1 =
+            new ChangeRequestSummary("CR1", "CR 1", ChangeRequestStatus.DRAFT, Set.of(foo), new Date(42), null, 2);
+        ChangeRequestSummary summary2 = new ChangeRequestSummary("CR2", "CR 2", ChangeRequestStatus.READY_FOR_REVIEW,
+            Set.of(foo, bar), new Date(43), new Date(58), 1);
+
+        Map<DocumentReference, List<ChangeRequestSummary>> expected = Map.of(
+            doc1, List.of(summary1, summary2),
+            doc1Fr, List.of(summary1, summary2),
+            doc2, List.of(summary1)
+        );
+        assertEquals(expected,
+            this.storageManager.findOpenChangeRequestSummariesTargeting(List.of(doc1, doc1Fr, doc2, doc3)));
+
+        // A single query is performed whatever the number of documents, and no document is read.
+        verify(this.queryManager, times(1)).createQuery(any(), any());
+        verify(query).bindValue("references", List.of("Foo.Doc1", "Foo.Doc2", "Foo.Doc3"));
+        verify(query, times(1)).execute();
+        verify(this.wiki, never()).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+        verifyNoInteractions(this.fileChangeStorageManager);
+        verifyNoInteractions(this.reviewStorageManager);
+
+        assertEquals(Map.of(), this.storageManager.findOpenChangeRequestSummariesTargeting(List.of()));
+        verify(this.queryManager, times(1)).createQuery(any(), any());
+    }
+
+    @Test
+    void hasOtherOpenChangeRequestTargetingSame() throws Exception
+    {
+        DocumentReference doc1 = new DocumentReference("xwiki", "Foo", "Doc1");
+        DocumentReference doc1Fr = new DocumentReference(doc1, Locale.FRENCH);
+        when(this.localEntityReferenceSerializer.serialize(doc1)).thenReturn("Foo.Doc1");
+        when(this.localEntityReferenceSerializer.serialize(doc1Fr)).thenReturn("Foo.Doc1");
+        when(this.entityReferenceSerializer.serialize(CHANGE_REQUEST_XCLASS))
+            .thenReturn("ChangeRequest.ChangeRequestClass");
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getModifiedDocuments()).thenReturn(Set.of());
+        assertFalse(this.storageManager.hasOtherOpenChangeRequestTargetingSame(changeRequest));
+        verifyNoInteractions(this.queryManager);
+
+        when(changeRequest.getModifiedDocuments()).thenReturn(new LinkedHashSet<>(List.of(doc1, doc1Fr)));
+        DocumentReference crReference = new DocumentReference("xwiki", List.of("ChangeRequest", "CR1"), "WebHome");
+        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crReference);
+        when(this.localEntityReferenceSerializer.serialize(crReference)).thenReturn("ChangeRequest.CR1.WebHome");
+        Query query = mock(Query.class);
+        when(this.queryManager.createQuery(any(), eq(Query.HQL))).thenReturn(query);
+        when(query.execute()).thenReturn(List.of("ChangeRequest.CR2.WebHome"));
+
+        assertTrue(this.storageManager.hasOtherOpenChangeRequestTargetingSame(changeRequest));
+        verify(query).bindValue("references", List.of("Foo.Doc1"));
+        verify(query).bindValue("changeRequestDocument", "ChangeRequest.CR1.WebHome");
+        // The query stops at the first found change request.
+        verify(query).setLimit(1);
+
+        when(query.execute()).thenReturn(List.of());
+        assertFalse(this.storageManager.hasOtherOpenChangeRequestTargetingSame(changeRequest));
+    }
+
+    @Test
+    void loadSummary() throws Exception
+    {
+        when(this.changeRequestStorageCacheManager.getSummary(any())).thenReturn(Optional.empty());
+        when(this.changeRequestStorageCacheManager.getChangeRequest(any())).thenReturn(Optional.empty());
+
+        DocumentReference crReference = new DocumentReference("xwiki", List.of("ChangeRequest", "CR1"), "WebHome");
+        when(this.changeRequestDocumentReferenceResolver.resolve(any())).thenReturn(crReference);
+        XWikiDocument crDocument = mock(XWikiDocument.class);
+        when(this.wiki.getDocument(crReference, this.context)).thenReturn(crDocument);
+        BaseObject xObject = mock(BaseObject.class);
+        when(crDocument.getXObject(CHANGE_REQUEST_XCLASS)).thenReturn(xObject);
+        when(crDocument.getTitle()).thenReturn("My CR");
+        when(crDocument.getCreationDate()).thenReturn(new Date(42));
+        when(xObject.getStringValue("status")).thenReturn("ready_for_review");
+        when(xObject.getLargeStringValue("authors")).thenReturn("XWiki.Foo,XWiki.Bar");
+        when(xObject.getListValue("changedDocuments")).thenReturn(List.of("Foo.Doc1", "Foo.Doc2", "Foo.Doc3"));
+        when(xObject.getDateValue("staleDate")).thenReturn(new Date(58));
+        UserReference foo = mock(UserReference.class, "foo");
+        UserReference bar = mock(UserReference.class, "bar");
+        when(this.stringUserReferenceResolver.resolve("XWiki.Foo")).thenReturn(foo);
+        when(this.stringUserReferenceResolver.resolve("XWiki.Bar")).thenReturn(bar);
+
+        ChangeRequestSummary expected = new ChangeRequestSummary("CR1", "My CR", ChangeRequestStatus.READY_FOR_REVIEW,
+            Set.of(foo, bar), new Date(42), new Date(58), 3);
+        assertEquals(Optional.of(expected), this.storageManager.loadSummary("CR1"));
+        verify(this.changeRequestStorageCacheManager).cacheSummary(expected);
+
+        // Only the change request document is read.
+        verify(this.wiki, times(1)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+        verifyNoInteractions(this.fileChangeStorageManager);
+        verifyNoInteractions(this.reviewStorageManager);
+
+        // A summary can be computed from a cached change request without reading any document.
+        ChangeRequest changeRequest = new ChangeRequest()
+            .setId("CR2")
+            .setTitle("Cached CR")
+            .setStatus(ChangeRequestStatus.DRAFT)
+            .setCreationDate(new Date(12));
+        when(this.changeRequestStorageCacheManager.getChangeRequest("CR2")).thenReturn(Optional.of(changeRequest));
+        assertEquals(Optional.of(new ChangeRequestSummary(changeRequest)), this.storageManager.loadSummary("CR2"));
+        verify(this.wiki, times(1)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+
+        // Cached summaries are directly returned.
+        when(this.changeRequestStorageCacheManager.getSummary("CR1")).thenReturn(Optional.of(expected));
+        assertEquals(Optional.of(expected), this.storageManager.loadSummary("CR1"));
+        verify(this.wiki, times(1)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+    }
+
     @Test
     void findChangeRequestTargetingSpace() throws Exception
     {
@@ -1186,6 +1343,10 @@ class DefaultChangeRequestStorageManagerTest
         when(cr3Doc.isMetaDataDirty()).thenReturn(true);
         when(this.contextualLocalizationManager.getTranslationPlain("changerequest.save.split"))
             .thenReturn("Creation by splitting");
+        // The first move of the discussions fails: it is resumed.
+        doThrow(new ChangeRequestDiscussionException("Error while moving discussions")).doNothing()
+            .when(this.discussionService)
+            .moveDiscussions(changeRequest, List.of(changeRequest1, changeRequest3, changeRequest4));
 
         assertEquals(List.of(changeRequest1, changeRequest3, changeRequest4),
             this.storageManager.split(changeRequest, Set.of(doc2)));
@@ -1251,7 +1412,7 @@ class DefaultChangeRequestStorageManagerTest
         verify(changeRequest3).addReview(review3CloneCR3);
         verify(this.reviewStorageManager).save(review3CloneCR3);
 
-        verify(this.discussionService).moveDiscussions(changeRequest,
+        verify(this.discussionService, times(2)).moveDiscussions(changeRequest,
             List.of(changeRequest1, changeRequest3, changeRequest4));
 
         // verify approvers handling
@@ -1273,6 +1434,28 @@ class DefaultChangeRequestStorageManagerTest
             eq(List.of(changeRequest1, changeRequest3, changeRequest4)));
     }
 
+    @Test
+    void splitWhenDiscussionsCannotBeMoved() throws Exception
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn("cr1");
+        when(changeRequest.getModifiedDocuments()).thenReturn(Set.of(
+            new DocumentReference("xwiki", "Space", "Doc1"),
+            new DocumentReference("xwiki", "Space", "Doc2")));
+        doThrow(new ChangeRequestDiscussionException("Error while moving discussions")).when(this.discussionService)
+            .moveDiscussions(changeRequest, List.of());
+
+        ChangeRequestException exception =
+            assertThrows(ChangeRequestException.class, () -> this.storageManager.split(changeRequest));
+        assertEquals("Error while moving the discussions of change request [cr1]: it is kept until all its "
+            + "discussions are moved.", exception.getMessage());
+
+        // The move is attempted several times, and the original change request is never deleted.
+        verify(this.discussionService, times(3)).moveDiscussions(changeRequest, List.of());
+        verify(this.refactoringRequestFactory, never()).createDeleteRequest(any());
+        verify(this.observationManager, never()).notify(any(SplitEndChangeRequestEvent.class), any(), any());
+    }
+
     @Test
     void delete() throws JobException, ChangeRequestException, InterruptedException
     {
@@ -19,6 +19,8 @@
  */
 package org.xwiki.contrib.changerequest.internal.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -41,6 +43,7 @@ import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
 import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.internal.FileChangeFingerprintManager;
 import org.xwiki.contrib.changerequest.internal.FileChangeVersionManager;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.environment.Environment;
@@ -105,6 +108,8 @@ import com.xpn.xwiki.web.Utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -192,6 +197,9 @@ class DefaultFileChangeStorageManagerTest
     @MockComponent
     private FileChangeVersionManager fileChangeVersionManager;
 
+    @MockComponent
+    private FileChangeFingerprintManager fileChangeFingerprintManager;
+
     @MockComponent
     @Named("current")
     private UserReferenceResolver<String> stringUserReferenceResolver;
@@ -330,9 +338,21 @@ class DefaultFileChangeStorageManagerTest
         when(fileChange.getType()).thenReturn(FileChange.FileChangeType.EDITION);
         when(fileChange.getTargetEntity()).thenReturn(new DocumentReference("xwiki", "Space", "Doc", Locale.FRENCH));
 
+        when(this.fileChangeFingerprintManager.computeFingerprint(modifiedDoc)).thenReturn("fingerprint");
+        when(fileChange.getContentFingerprint()).thenReturn("fingerprint");
+        when(modifiedDoc.getTitle()).thenReturn("Some title");
+        when(modifiedDoc.getRenderedTitle(this.context)).thenReturn("Rendered title");
+        when(fileChange.getRenderedTitle()).thenReturn("Rendered title");
+
         when(fileChangeDoc.isMetaDataDirty()).thenReturn(true);
         this.fileChangeStorageManager.save(fileChange);
         verify(fileChange).setSaved(true);
+        verify(fileChange).setContentFingerprint("fingerprint");
+        verify(fileChange).setRenderedTitle("Rendered title");
+        verify(fileChangeObj)
+            .setLargeStringValue(FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY, "Rendered title");
+        verify(fileChangeObj)
+            .set(FileChangeXClassInitializer.CONTENT_FINGERPRINT_PROPERTY, "fingerprint", this.context);
         verify(this.xWiki).saveDocument(fileChangeDoc, "Creation of the filechange", this.context);
         verify(documentAuthors).setOriginalMetadataAuthor(author);
         verify(modifiedDoc).toXML(any(OutputStream.class), eq(true), eq(true), eq(true), eq(false), eq(this.context));
@@ -350,6 +370,42 @@ class DefaultFileChangeStorageManagerTest
         verify(fileChangeObj)
             .set(FileChangeXClassInitializer.REFERENCE_LOCALE_PROPERTY, Locale.FRENCH, this.context);
         verify(modifiedDoc).setRCSVersion(new Version("3.3"));
+
+        // Titles containing scripts are never stored since they might depend on the viewer or on other documents.
+        when(modifiedDoc.getTitle()).thenReturn("$services.localization.render('title')");
+        this.fileChangeStorageManager.save(fileChange);
+        verify(fileChange).setRenderedTitle(null);
+        verify(modifiedDoc).getRenderedTitle(this.context);
+    }
+
+    @Test
+    void fingerprintStableAcrossXMLRoundTrip() throws Exception
+    {
+        when(this.xWiki.getEncoding()).thenReturn("UTF-8");
+        FileChangeFingerprintManager fingerprintManager = new FileChangeFingerprintManager();
+
+        XWikiDocument document1 = new XWikiDocument(null);
+        document1.fromXML(getClass().getClassLoader().getResourceAsStream("filechange.xml"));
+        XWikiDocument document2 = new XWikiDocument(null);
+        document2.fromXML(getClass().getClassLoader().getResourceAsStream("filechange2.xml"));
+
+        String fingerprint1 = fingerprintManager.computeFingerprint(document1);
+        String fingerprint2 = fingerprintManager.computeFingerprint(document2);
+        assertNotEquals(fingerprint1, fingerprint2);
+
+        // Serialize the documents the same way they are stored in the file change attachments and parse them back.
+        for (XWikiDocument document : List.of(document1, document2)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            document.toXML(outputStream, true, true, true, false, this.context);
+            XWikiDocument roundTripDocument = new XWikiDocument(null);
+            roundTripDocument.fromXML(new ByteArrayInputStream(outputStream.toByteArray()));
+            // The metadata changed when saving a file change are not part of the fingerprint.
+            roundTripDocument.setVersion("12.1");
+            roundTripDocument.setDate(new Date(42));
+
+            assertEquals(fingerprintManager.computeFingerprint(document),
+                fingerprintManager.computeFingerprint(roundTripDocument));
+        }
     }
 
     @Test
@@ -404,6 +460,8 @@ class DefaultFileChangeStorageManagerTest
             .thenReturn("xwiki:XWiki.surli");
         when(fileChangeObj1.getStringValue(FileChangeXClassInitializer.TYPE_PROPERTY))
             .thenReturn("edition");
+        when(fileChangeObj1.getLargeStringValue(FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY))
+            .thenReturn("Some title");
 
         when(fileChangeObj2.getStringValue(FileChangeXClassInitializer.REFERENCE_PROPERTY))
             .thenReturn(serializedTargetEntity);
@@ -505,6 +563,8 @@ class DefaultFileChangeStorageManagerTest
         expected1.setModifiedDocument(fileChanges.get(0).getModifiedDocument());
         expected2.setModifiedDocument(fileChanges.get(1).getModifiedDocument());
         assertEquals(expected, fileChanges);
+        assertEquals("Some title", fileChanges.get(0).getRenderedTitle());
+        assertNull(fileChanges.get(1).getRenderedTitle());
     }
 
     @Test
@@ -704,6 +764,19 @@ class DefaultFileChangeStorageManagerTest
         verify(cloneFileChange).setVersion(nextFileChangeVersion);
         verify(cloneFileChange).isSaved();
         verify(modifiedDoc).clone();
+
+        // When the merge result has the same content as the published document, there's no change anymore.
+        FileChange noChangeFileChange = mock(FileChange.class);
+        when(cloneFileChange.cloneWithType(FileChange.FileChangeType.NO_CHANGE)).thenReturn(noChangeFileChange);
+        when(noChangeFileChange.isSaved()).thenReturn(true);
+        when(this.fileChangeFingerprintManager.computeFingerprint(mergeDocument)).thenReturn("fingerprint");
+        when(this.fileChangeFingerprintManager.getPublishedFingerprint(currentDocument)).thenReturn("fingerprint");
+
+        this.fileChangeStorageManager.rebase(fileChange);
+        verify(noChangeFileChange).setModifiedDocument(mergeDocument);
+        verify(noChangeFileChange).setPreviousPublishedVersion("3.8", new Date(485));
+        verify(noChangeFileChange).setPreviousVersion(fileChangeVersion);
+        verify(noChangeFileChange).setVersion(nextFileChangeVersion);
     }
 
     @Test
@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link FileChangeRenderedTitleLoader}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FileChangeRenderedTitleLoaderTest
+{
+    @InjectMockComponents
+    private FileChangeRenderedTitleLoader renderedTitleLoader;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    private XWikiContext context;
+
+    private XWiki wiki;
+
+    private Query query;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        this.wiki = mock(XWiki.class);
+        when(this.context.getWiki()).thenReturn(this.wiki);
+        when(this.entityReferenceSerializer.serialize(FileChangeXClassInitializer.FILECHANGE_XCLASS))
+            .thenReturn("ChangeRequest.Code.FileChangeClass");
+        this.query = mock(Query.class);
+        when(this.queryManager.createQuery("select doc.fullName from Document doc, "
+            + "doc.object(ChangeRequest.Code.FileChangeClass) as fileChange "
+            + "where fileChange.changeRequestId = :changeRequestId and fileChange.filename = :filename", Query.XWQL))
+            .thenReturn(this.query);
+    }
+
+    @Test
+    void getLatestRenderedTitles() throws Exception
+    {
+        when(this.query.execute()).thenReturn(Collections.emptyList());
+        assertTrue(this.renderedTitleLoader.getLatestRenderedTitles("cr1", "fc1").isEmpty());
+        verify(this.query).bindValue("changeRequestId", "cr1");
+        verify(this.query).bindValue("filename", "fc1.xml");
+        verify(this.wiki, never()).getDocument(any(DocumentReference.class), any());
+
+        when(this.query.execute()).thenReturn(List.of("ChangeRequest.CR1.storage"));
+        DocumentReference storageReference = new DocumentReference("xwiki", List.of("ChangeRequest", "CR1"),
+            "storage");
+        when(this.documentReferenceResolver.resolve("ChangeRequest.CR1.storage")).thenReturn(storageReference);
+        XWikiDocument storageDocument = mock(XWikiDocument.class);
+        when(this.wiki.getDocument(storageReference, this.context)).thenReturn(storageDocument);
+
+        BaseObject fileChangeObject1 = mock(BaseObject.class);
+        when(fileChangeObject1.getStringValue(FileChangeXClassInitializer.FILENAME_PROPERTY)).thenReturn("fc1.xml");
+        when(fileChangeObject1.getLargeStringValue(FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY))
+            .thenReturn("Old title");
+        BaseObject fileChangeObject2 = mock(BaseObject.class);
+        when(fileChangeObject2.getStringValue(FileChangeXClassInitializer.FILENAME_PROPERTY)).thenReturn("fc2.xml");
+        when(fileChangeObject2.getLargeStringValue(FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY))
+            .thenReturn("New title");
+        when(storageDocument.getXObjects(FileChangeXClassInitializer.FILECHANGE_XCLASS))
+            .thenReturn(Arrays.asList(fileChangeObject1, null, fileChangeObject2));
+
+        assertEquals(Map.of("fc1", "New title", "fc2", "New title"),
+            this.renderedTitleLoader.getLatestRenderedTitles("cr1", "fc1"));
+
+        // Latest filechange saved without any title: the titles are marked to be rendered on display.
+        when(fileChangeObject2.getLargeStringValue(FileChangeXClassInitializer.RENDERED_TITLE_PROPERTY))
+            .thenReturn("");
+        Map<String, String> expected = new HashMap<>();
+        expected.put("fc1", null);
+        expected.put("fc2", null);
+        assertEquals(expected, this.renderedTitleLoader.getLatestRenderedTitles("cr1", "fc1"));
+        verify(storageDocument, never()).getAttachmentList();
+    }
+}
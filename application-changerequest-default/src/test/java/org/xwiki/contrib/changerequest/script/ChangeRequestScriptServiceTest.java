@@ -21,7 +21,10 @@ package org.xwiki.contrib.changerequest.script;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -37,15 +40,16 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.ChangeRequestManager;
 import org.xwiki.contrib.changerequest.ChangeRequestReference;
 import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.ChangeRequestSummary;
 import org.xwiki.contrib.changerequest.DelegateApproverManager;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.FileChangeSavingChecker;
 import org.xwiki.contrib.changerequest.MergeApprovalStrategy;
 import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
+import org.xwiki.contrib.changerequest.internal.cache.ChangeRequestWikisCacheManager;
+import org.xwiki.contrib.changerequest.internal.cache.DelegateApproversCacheManager;
 import org.xwiki.contrib.changerequest.internal.checkers.FileChangeSavingCheckersLoader;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
-import org.xwiki.extension.InstalledExtension;
-import org.xwiki.extension.repository.InstalledExtensionRepository;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.LocalDocumentReference;
@@ -78,7 +82,9 @@ import com.xpn.xwiki.doc.XWikiDocument;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -135,7 +141,10 @@ class ChangeRequestScriptServiceTest
     private DelegateApproverManager<FileChange> delegateApproverManager;
 
     @MockComponent
-    private InstalledExtensionRepository installedExtensionRepository;
+    private ChangeRequestWikisCacheManager wikisCacheManager;
+
+    @MockComponent
+    private DelegateApproversCacheManager delegateApproversCacheManager;
 
     @MockComponent
     private FileChangeSavingCheckersLoader fileChangeSavingCheckersLoader;
@@ -164,6 +173,16 @@ class ChangeRequestScriptServiceTest
         assertEquals(Optional.of(changeRequest), this.scriptService.getChangeRequest(id));
     }
 
+    @Test
+    void getChangeRequestSummary() throws ChangeRequestException
+    {
+        String id = "someId";
+        ChangeRequestSummary summary = mock(ChangeRequestSummary.class);
+        when(this.changeRequestStorageManager.loadSummary(id)).thenReturn(Optional.of(summary));
+        assertEquals(Optional.of(summary), this.scriptService.getChangeRequestSummary(id));
+        verify(this.changeRequestStorageManager, never()).load(id);
+    }
+
     @Test
     void canBeMerged() throws ChangeRequestException
     {
@@ -199,6 +218,39 @@ class ChangeRequestScriptServiceTest
         assertEquals(expected, this.scriptService.getChangeRequestWithChangesFor(documentReference));
     }
 
+    @Test
+    void getOpenChangeRequestSummariesTargetingSame() throws ChangeRequestException
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn("cr1");
+        DocumentReference doc1 = new DocumentReference("xwiki", "Space", "Doc1");
+        DocumentReference doc2 = new DocumentReference("xwiki", "Space", "Doc2");
+        Set<DocumentReference> modifiedDocuments = Set.of(doc1, doc2);
+        when(changeRequest.getModifiedDocuments()).thenReturn(modifiedDocuments);
+
+        ChangeRequestSummary summary1 =
+            new ChangeRequestSummary("cr1", "CR 1", ChangeRequestStatus.DRAFT, Set.of(), new Date(42), null, 2);
+        ChangeRequestSummary summary2 =
+            new ChangeRequestSummary("cr2", "CR 2", ChangeRequestStatus.READY_FOR_REVIEW, Set.of(), new Date(43), null,
+                1);
+        when(this.changeRequestStorageManager.findOpenChangeRequestSummariesTargeting(modifiedDocuments))
+            .thenReturn(Map.of(doc1, List.of(summary1, summary2), doc2, List.of(summary1)));
+
+        assertEquals(Map.of(doc1, List.of(summary2)),
+            this.scriptService.getOpenChangeRequestSummariesTargetingSame(changeRequest));
+
+        // The deprecated method only loads the change requests found.
+        ChangeRequest changeRequest2 = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load("cr2")).thenReturn(Optional.of(changeRequest2));
+        assertEquals(Map.of(doc1, List.of(changeRequest2)),
+            this.scriptService.getOpenChangeRequestsTargetingSame(changeRequest));
+        verify(this.changeRequestStorageManager, never()).load("cr1");
+        verify(this.changeRequestStorageManager, never()).findChangeRequestTargeting(any(DocumentReference.class));
+
+        when(this.changeRequestStorageManager.hasOtherOpenChangeRequestTargetingSame(changeRequest)).thenReturn(true);
+        assertTrue(this.scriptService.hasOtherOpenChangeRequestTargetingSame(changeRequest));
+    }
+
     @Test
     void findChangeRequestMatchingTitle() throws ChangeRequestException
     {
@@ -327,31 +379,14 @@ class ChangeRequestScriptServiceTest
         ChangeRequest changeRequest = mock(ChangeRequest.class);
         when(this.changeRequestStorageManager.load(crId)).thenReturn(Optional.of(changeRequest));
 
-        FileChangeSavingChecker checker1 = mock(FileChangeSavingChecker.class, "checker1");
-        FileChangeSavingChecker checker2 = mock(FileChangeSavingChecker.class, "checker2");
-        FileChangeSavingChecker checker3 = mock(FileChangeSavingChecker.class, "checker3");
-
-        when(fileChangeSavingCheckersLoader.getCheckers()).thenReturn(List.of(checker1, checker2, checker3));
-
         expectedIncompatibilityReason = "Problem with checker 2";
-
-        when(checker1.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
-            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
-        when(checker2.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
+        when(this.fileChangeSavingCheckersLoader.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
             .thenReturn(new FileChangeSavingChecker.SavingCheckerResult(expectedIncompatibilityReason));
-        when(checker3.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
-            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
-
         assertEquals(new FileChangeSavingChecker.SavingCheckerResult(expectedIncompatibilityReason),
             this.scriptService.checkDocumentChangeCompatibility(crId, changedDoc, changeType));
 
-        when(checker1.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
-            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
-        when(checker2.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
-            .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
-        when(checker3.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
+        when(this.fileChangeSavingCheckersLoader.canChangeOnDocumentBeAdded(changeRequest, changedDoc, changeType))
             .thenReturn(new FileChangeSavingChecker.SavingCheckerResult());
-
         assertEquals(new FileChangeSavingChecker.SavingCheckerResult(),
             this.scriptService.checkDocumentChangeCompatibility(crId, changedDoc, changeType));
     }
@@ -359,7 +394,6 @@ class ChangeRequestScriptServiceTest
     @Test
     void getWikisWithChangeRequest() throws WikiManagerException, WikiUserManagerException
     {
-        String changeRequestUiModule = "org.xwiki.contrib.changerequest:application-changerequest-ui";
         UserReference userReference = mock(UserReference.class);
         DocumentReference userDocReference = mock(DocumentReference.class);
         when(this.userReferenceConverter.convert(userReference)).thenReturn(userDocReference);
@@ -386,40 +420,18 @@ class ChangeRequestScriptServiceTest
         String otherWikiId = "other";
         when(otherWikiDescriptor.getId()).thenReturn(otherWikiId);
 
-        // Note that we return on purpose the current wiki as last one in the list, to check that it's properly
-        // added first in the returned list.
-        when(wikiDescriptorManager.getAll()).thenReturn(List.of(
-            otherWikiDescriptor,
-            mainWikiDescriptor,
-            userWikiDescriptor,
-            currentWikiDescriptor
-        ));
+        when(this.wikiDescriptorManager.getById(otherWikiId)).thenReturn(otherWikiDescriptor);
+        when(this.wikiDescriptorManager.getById(mainWikiId)).thenReturn(mainWikiDescriptor);
+        when(this.wikiDescriptorManager.getById(userWikiId)).thenReturn(userWikiDescriptor);
+        when(this.wikiDescriptorManager.getById(currentWikiId)).thenReturn(currentWikiDescriptor);
 
-        // No mock set yet for installed extension repository, so it returns null, so it's considered not installed
+        // No wiki with change request installed yet
         assertEquals(Collections.emptyList(), this.scriptService.getWikisWithChangeRequest(userReference));
 
-        // only installed in current and user wiki
-        // main wiki should be ignored as it's installed "on farm" (null namespace)
-        InstalledExtension currentWikiInstalledExtension = mock(InstalledExtension.class, "current");
-        when(this.installedExtensionRepository.getInstalledExtension(changeRequestUiModule, "wiki:" + currentWikiId))
-            .thenReturn(currentWikiInstalledExtension);
-        when(currentWikiInstalledExtension.getNamespaces()).thenReturn(Collections.singleton("wiki:" + currentWikiId));
-
-        InstalledExtension userWikiInstalledExtension = mock(InstalledExtension.class, "user");
-        when(this.installedExtensionRepository.getInstalledExtension(changeRequestUiModule,
-            "wiki:" + userWikiDescriptor))
-            .thenReturn(userWikiInstalledExtension);
-        when(userWikiInstalledExtension.getNamespaces()).thenReturn(Collections.singleton("wiki:" + userWikiId));
-
-        InstalledExtension mainWikiInstalledExtension = mock(InstalledExtension.class, "main");
-        when(this.installedExtensionRepository.getInstalledExtension(changeRequestUiModule,
-            "wiki:" + mainWikiId))
-            .thenReturn(mainWikiInstalledExtension);
-        when(mainWikiInstalledExtension.getNamespaces()).thenReturn(Collections.singleton(null));
-
-        when(this.installedExtensionRepository.getInstalledExtension(changeRequestUiModule,
-            "wiki:" + otherWikiId))
-            .thenReturn(null);
+        // only installed in current and user wiki: note that we return on purpose the current wiki as last one in
+        // the set, to check that it's properly added first in the returned list.
+        when(this.wikisCacheManager.getWikisWithChangeRequest())
+            .thenReturn(new LinkedHashSet<>(List.of(userWikiId, currentWikiId)));
 
         // The user does not belong to main wiki, so he should only see the user wiki
         assertEquals(List.of(userWikiDescriptor), this.scriptService.getWikisWithChangeRequest(userReference));
@@ -478,4 +490,13 @@ class ChangeRequestScriptServiceTest
 
         verify(this.delegateApproverManager).isDelegateApproverOf(CurrentUserReference.INSTANCE, fileChange);
     }
+
+    @Test
+    void getDelegateApproversCacheStatistics()
+    {
+        when(this.delegateApproversCacheManager.getHitCount()).thenReturn(12L);
+        when(this.delegateApproversCacheManager.getMissCount()).thenReturn(3L);
+
+        assertEquals(Map.of("hits", 12L, "misses", 3L), this.scriptService.getDelegateApproversCacheStatistics());
+    }
 }
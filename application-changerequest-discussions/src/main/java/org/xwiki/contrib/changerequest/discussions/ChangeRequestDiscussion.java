@@ -37,6 +37,8 @@ public class ChangeRequestDiscussion
 {
     private final AbstractChangeRequestDiscussionContextReference reference;
     private final Discussion discussion;
+    private final ChangeRequestDiscussionDiffBlock diffBlock;
+    private final long messageCount;
 
     /**
      * Default constructor.
@@ -45,9 +47,28 @@ public class ChangeRequestDiscussion
      * @param discussion the actual discussion
      */
     public ChangeRequestDiscussion(AbstractChangeRequestDiscussionContextReference reference, Discussion discussion)
+    {
+        this(reference, discussion, null, -1);
+    }
+
+    /**
+     * Constructor used when the diff block metadata and the number of messages of the discussion are retrieved
+     * along with the discussion.
+     *
+     * @param reference the reference to link the discussion to a change request element
+     * @param discussion the actual discussion
+     * @param diffBlock the diff block metadata attached to the discussion, or {@code null} if there's none
+     * @param messageCount the number of messages of the discussion
+     * @since 1.16
+     */
+    @Unstable
+    public ChangeRequestDiscussion(AbstractChangeRequestDiscussionContextReference reference, Discussion discussion,
+        ChangeRequestDiscussionDiffBlock diffBlock, long messageCount)
     {
         this.reference = reference;
         this.discussion = discussion;
+        this.diffBlock = diffBlock;
+        this.messageCount = messageCount;
     }
 
     /**
@@ -66,6 +87,28 @@ public class ChangeRequestDiscussion
         return discussion;
     }
 
+    /**
+     * @return the diff block metadata attached to the discussion, or {@code null} if there's none or if it hasn't
+     *         been retrieved
+     * @see ChangeRequestDiscussionService#getDiffBlockMetadata(Discussion)
+     * @since 1.16
+     */
+    @Unstable
+    public ChangeRequestDiscussionDiffBlock getDiffBlock()
+    {
+        return diffBlock;
+    }
+
+    /**
+     * @return the number of messages of the discussion, or {@code -1} if it hasn't been retrieved
+     * @since 1.16
+     */
+    @Unstable
+    public long getMessageCount()
+    {
+        return messageCount;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -80,12 +123,16 @@ public class ChangeRequestDiscussion
         ChangeRequestDiscussion that = (ChangeRequestDiscussion) o;
 
         return new EqualsBuilder().append(reference, that.reference)
-            .append(discussion, that.discussion).isEquals();
+            .append(discussion, that.discussion)
+            .append(diffBlock, that.diffBlock)
+            .append(messageCount, that.messageCount)
+            .isEquals();
     }
 
     @Override
     public int hashCode()
     {
-        return new HashCodeBuilder(17, 37).append(reference).append(discussion).toHashCode();
+        return new HashCodeBuilder(17, 37).append(reference).append(discussion).append(diffBlock)
+            .append(messageCount).toHashCode();
     }
 }
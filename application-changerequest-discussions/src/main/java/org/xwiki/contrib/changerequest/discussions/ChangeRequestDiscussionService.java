@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.changerequest.discussions;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,7 @@ import org.xwiki.component.annotation.Role;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.discussions.references.AbstractChangeRequestDiscussionContextReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
 import org.xwiki.contrib.discussions.domain.Discussion;
 import org.xwiki.contrib.discussions.domain.DiscussionContext;
 import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
@@ -66,6 +68,25 @@ public interface ChangeRequestDiscussionService
     <T extends AbstractChangeRequestDiscussionContextReference> Discussion getOrCreateDiscussionFor(T reference)
         throws ChangeRequestDiscussionException;
 
+    /**
+     * Retrieve the discussion attached to the given reference, without creating it nor any of its underlying contexts.
+     * This method should be preferred to
+     * {@link #getOrCreateDiscussionFor(AbstractChangeRequestDiscussionContextReference)} whenever the discussion is
+     * only displayed.
+     *
+     * @param reference the reference for which to retrieve the discussion
+     * @param <T> the concrete type of the reference
+     * @return the discussion attached to the reference, or {@link Optional#empty()} if there's none yet
+     * @throws ChangeRequestDiscussionException in case of problem to retrieve the discussion
+     * @since 1.16
+     */
+    @Unstable
+    default <T extends AbstractChangeRequestDiscussionContextReference> Optional<Discussion> getDiscussionFor(
+        T reference) throws ChangeRequestDiscussionException
+    {
+        return Optional.empty();
+    }
+
     /**
      * Create a new discussion based on the given reference.
      * This method should get or create the underlying contexts corresponding to the reference and associate them to the
@@ -88,7 +109,7 @@ public interface ChangeRequestDiscussionService
         throws ChangeRequestDiscussionException;
 
     /**
-     * Retrieve discussions related to the given reference, without creating any.
+     * Retrieve discussions related to the given reference, without creating any discussion or discussion context.
      *
      * @param reference the reference for which to retrieve the discussions
      * @param <T> the concrete type of the reference
@@ -115,6 +136,8 @@ public interface ChangeRequestDiscussionService
      * Allow to move all discussions related to the original change request, in the given splitted change requests.
      * Global discussions should be copied in all splitted change requests, while specific file discussions should
      * target specific change request.
+     * Implementations should make sure that calling again this method with the same arguments after a failure
+     * resumes the move without duplicating the messages already moved.
      *
      * @param originalChangeRequest the original change request containing all discussions.
      * @param splittedChangeRequest the splitted change requests where to copy the discussions.
@@ -170,4 +193,29 @@ public interface ChangeRequestDiscussionService
      */
     Optional<ChangeRequestDiscussionDiffBlock> getDiffBlockMetadata(Discussion discussion)
         throws ChangeRequestException;
+
+    /**
+     * Retrieve all discussions of the given change request, along with their reference, their diff block metadata
+     * and their number of messages. This method should be preferred over calling
+     * {@link #getReferenceFrom(Discussion)} and {@link #getDiffBlockMetadata(Discussion)} on each discussion returned
+     * by {@link #getDiscussionsFrom(AbstractChangeRequestDiscussionContextReference)}, since implementations can
+     * retrieve all those information with a lot less requests.
+     *
+     * @param reference the reference of the change request for which to retrieve the discussions
+     * @return the discussions of the change request with their reference, diff block metadata and number of messages
+     * @throws ChangeRequestException in case of problem for requesting the discussions or for computing their
+     *         information
+     * @since 1.16
+     */
+    @Unstable
+    default List<ChangeRequestDiscussion> getChangeRequestDiscussions(ChangeRequestReference reference)
+        throws ChangeRequestException
+    {
+        List<ChangeRequestDiscussion> result = new ArrayList<>();
+        for (Discussion discussion : getDiscussionsFrom(reference)) {
+            result.add(new ChangeRequestDiscussion(getReferenceFrom(discussion), discussion,
+                getDiffBlockMetadata(discussion).orElse(null), -1));
+        }
+        return result;
+    }
 }
@@ -22,9 +22,12 @@ package org.xwiki.contrib.changerequest.discussions.internal;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.diff.display.InlineDiffChunk;
 import org.xwiki.diff.display.UnifiedDiffBlock;
@@ -37,17 +40,26 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 
 import static com.fasterxml.jackson.databind.MapperFeature.SORT_PROPERTIES_ALPHABETICALLY;
 
 /**
  * Utility component for manipulating {@link UnifiedDiffBlock}.
  * This component mainly provides helpers to serialize/deserialize to/from JSON.
+ * <p>
+ * Since 1.16 the blocks are serialized in a compact versioned format: a JSON object holding the version of the format
+ * and the list of elements, each element being represented by an array containing its index, the first letter of its
+ * type, its value and, if it has chunks, the list of the chunks encoded as the first letter of their type followed by
+ * their length (e.g. {@code D3U1A2}), since the chunks are a split of the element value. The legacy format, where the
+ * block is a JSON array of the elements with all their properties, is still supported for deserialization.
  *
  * @version $Id$
  * @since 1.5
@@ -58,6 +70,14 @@ public class ChangeRequestDiscussionDiffUtils
 {
     private static final String TYPE_FIELD = "type";
 
+    private static final String VERSION_FIELD = "v";
+
+    private static final String ELEMENTS_FIELD = "e";
+
+    private static final int COMPACT_VERSION = 2;
+
+    private static final Pattern CHUNK_PATTERN = Pattern.compile("([A-Z])(\\d+)");
+
     private ObjectMapper objectMapper;
 
     /**
@@ -183,18 +203,135 @@ public class ChangeRequestDiscussionDiffUtils
      */
     public String serialize(UnifiedDiffBlock<String, Character> unifiedDiffBlock) throws JsonProcessingException
     {
-        return getObjectMapper().writeValueAsString(unifiedDiffBlock);
+        ObjectNode root = getObjectMapper().createObjectNode();
+        root.put(VERSION_FIELD, COMPACT_VERSION);
+        ArrayNode elements = root.putArray(ELEMENTS_FIELD);
+        for (UnifiedDiffElement<String, Character> element : unifiedDiffBlock) {
+            ArrayNode elementNode = elements.addArray();
+            elementNode.add(element.getIndex());
+            elementNode.add(getCode(element.getType()));
+            elementNode.add(element.getValue());
+            List<InlineDiffChunk<Character>> chunks = element.getChunks();
+            if (chunks != null) {
+                elementNode.add(serializeChunks(element.getValue(), chunks));
+            }
+        }
+        return getObjectMapper().writeValueAsString(root);
+    }
+
+    private JsonNode serializeChunks(String value, List<InlineDiffChunk<Character>> chunks)
+    {
+        StringBuilder compactChunks = new StringBuilder();
+        StringBuilder chunksContent = new StringBuilder();
+        ArrayNode explicitChunks = getObjectMapper().createArrayNode();
+        for (InlineDiffChunk<Character> chunk : chunks) {
+            StringBuilder chunkContent = new StringBuilder();
+            chunk.getElements().forEach(chunkContent::append);
+            compactChunks.append(getCode(chunk.getType())).append(chunkContent.length());
+            chunksContent.append(chunkContent);
+            explicitChunks.addArray().add(getCode(chunk.getType())).add(chunkContent.toString());
+        }
+
+        // The lengths are only enough when the chunks are a split of the value, which should always be the case: we
+        // still keep the content of the chunks otherwise to not lose anything.
+        if (StringUtils.equals(value, chunksContent)) {
+            return new TextNode(compactChunks.toString());
+        } else {
+            return explicitChunks;
+        }
     }
 
     /**
      * Performs deserialization of a JSON to obtain a {@link UnifiedDiffBlock}.
      *
-     * @param jsonSerialization a serialized {@link UnifiedDiffBlock}
+     * @param jsonSerialization a serialized {@link UnifiedDiffBlock}, either in the compact format or in the legacy
+     *     one
      * @return a {@link UnifiedDiffBlock} built from the given serialization
      * @throws JsonProcessingException in case of problem during deserialization
      */
     public UnifiedDiffBlock<String, Character> deserialize(String jsonSerialization) throws JsonProcessingException
     {
-        return getObjectMapper().readValue(jsonSerialization, UnifiedDiffBlock.class);
+        JsonNode root = getObjectMapper().readTree(jsonSerialization);
+        if (root.isArray()) {
+            return getObjectMapper().treeToValue(root, UnifiedDiffBlock.class);
+        } else if (root.path(VERSION_FIELD).asInt() == COMPACT_VERSION) {
+            return deserializeCompact(root.path(ELEMENTS_FIELD));
+        } else {
+            throw new JsonMappingException(null,
+                String.format("Unsupported diff block serialization version: [%s]", root.get(VERSION_FIELD)));
+        }
+    }
+
+    private UnifiedDiffBlock<String, Character> deserializeCompact(JsonNode elements) throws JsonProcessingException
+    {
+        UnifiedDiffBlock<String, Character> result = new UnifiedDiffBlock<>();
+        for (JsonNode elementNode : elements) {
+            String value = elementNode.path(2).asText();
+            UnifiedDiffElement<String, Character> element = new UnifiedDiffElement<>(elementNode.path(0).asInt(),
+                fromCode(UnifiedDiffElement.Type.class, elementNode.path(1).asText()), value);
+            JsonNode chunksNode = elementNode.get(3);
+            if (chunksNode != null) {
+                element.setChunks(deserializeChunks(value, chunksNode));
+            }
+            result.add(element);
+        }
+        return result;
+    }
+
+    private List<InlineDiffChunk<Character>> deserializeChunks(String value, JsonNode chunksNode)
+        throws JsonProcessingException
+    {
+        List<InlineDiffChunk<Character>> result = new ArrayList<>();
+        if (chunksNode.isArray()) {
+            for (JsonNode chunkNode : chunksNode) {
+                result.add(new InlineDiffChunk<>(fromCode(InlineDiffChunk.Type.class, chunkNode.path(0).asText()),
+                    toCharacterList(chunkNode.path(1).asText())));
+            }
+        } else {
+            String compactChunks = chunksNode.asText();
+            Matcher matcher = CHUNK_PATTERN.matcher(compactChunks);
+            int offset = 0;
+            int end = 0;
+            while (matcher.lookingAt()) {
+                int length = Integer.parseInt(matcher.group(2));
+                if (offset + length > value.length()) {
+                    throw new JsonMappingException(null,
+                        String.format("Chunks [%s] don't match the value [%s]", compactChunks, value));
+                }
+                result.add(new InlineDiffChunk<>(fromCode(InlineDiffChunk.Type.class, matcher.group(1)),
+                    toCharacterList(value.substring(offset, offset + length))));
+                offset += length;
+                end = matcher.end();
+                matcher.region(end, compactChunks.length());
+            }
+            if (end != compactChunks.length()) {
+                throw new JsonMappingException(null, String.format("Invalid chunks [%s]", compactChunks));
+            }
+        }
+        return result;
+    }
+
+    private static List<Character> toCharacterList(String text)
+    {
+        List<Character> result = new ArrayList<>(text.length());
+        for (char character : text.toCharArray()) {
+            result.add(character);
+        }
+        return result;
+    }
+
+    private static String getCode(Enum<?> type)
+    {
+        return type.name().substring(0, 1);
+    }
+
+    private static <E extends Enum<E>> E fromCode(Class<E> enumClass, String code) throws JsonProcessingException
+    {
+        for (E value : enumClass.getEnumConstants()) {
+            if (getCode(value).equals(code)) {
+                return value;
+            }
+        }
+        throw new JsonMappingException(null, String.format("Unknown [%s] code: [%s]", enumClass.getSimpleName(), code));
     }
 }
@@ -60,6 +60,9 @@ import com.xpn.xwiki.doc.XWikiDocument;
 public class ChangeRequestDiscussionFactory
 {
     static final String CR_ID_REF_ID_SEPARATOR = "__CRREF__";
+
+    private static final int MESSAGE_BATCH_SIZE = 100;
+
     @Inject
     private ChangeRequestDiscussionReferenceUtils discussionReferenceUtils;
 
@@ -82,7 +85,15 @@ public class ChangeRequestDiscussionFactory
     @Inject
     private Logger logger;
 
-    private <T extends AbstractChangeRequestDiscussionContextReference> DiscussionContextEntityReference
+    /**
+     * Compute the entity reference of the context matching the given reference, without creating the context.
+     *
+     * @param reference the reference for which to compute the context entity reference
+     * @param <T> the real type of the reference
+     * @return the entity reference of the context of the given reference
+     * @since 1.16
+     */
+    <T extends AbstractChangeRequestDiscussionContextReference> DiscussionContextEntityReference
         createContextEntityReferenceFor(T reference)
     {
         String entityReference;
@@ -161,36 +172,50 @@ public class ChangeRequestDiscussionFactory
     }
 
     /**
-     * Allow to copy messages from the given discussion to a new discussion, with the given new reference.
+     * Allow to copy the messages of the given discussions to a new discussion, with the given new reference.
+     * The messages are read by batches and copied in the order of the given discussions: messages already present in
+     * the new discussion are considered as copied by a previous call that has been interrupted, so that calling again
+     * this method with the same arguments after a failure resumes the copy without duplicating any message.
      *
-     * @param originalDiscussion the discussion from which to get the messages to copy.
+     * @param originalDiscussions the discussions from which to get the messages to copy, always in the same order.
      * @param newDiscussion the target for the copied messages.
      * @param newReference the reference to use for discussion store parameters.
+     * @throws ChangeRequestDiscussionException if a message cannot be copied
+     * @since 1.16
      */
-    public void copyMessages(Discussion originalDiscussion, Discussion newDiscussion,
-        AbstractChangeRequestDiscussionContextReference newReference)
+    public void copyMessages(List<Discussion> originalDiscussions, Discussion newDiscussion,
+        AbstractChangeRequestDiscussionContextReference newReference) throws ChangeRequestDiscussionException
     {
-        long limit = this.messageService.countByDiscussion(originalDiscussion);
-        for (int offset = 0; offset < limit; offset += 100) {
-            List<Message> messages =
-                this.messageService.getByDiscussion(originalDiscussion.getReference(), offset, 100);
-
-            for (Message message : messages) {
-                this.copyMessage(message, newDiscussion, newReference);
+        DiscussionStoreConfigurationParameters storeConfigurationParameters =
+            this.createDiscussionStoreConfigurationParametersFor(newReference);
+        long alreadyCopied = this.messageService.countByDiscussion(newDiscussion);
+        for (Discussion originalDiscussion : originalDiscussions) {
+            long limit = this.messageService.countByDiscussion(originalDiscussion);
+            for (long offset = alreadyCopied; offset < limit; offset += MESSAGE_BATCH_SIZE) {
+                List<Message> messages = this.messageService.getByDiscussion(originalDiscussion.getReference(),
+                    (int) offset, MESSAGE_BATCH_SIZE);
+
+                for (Message message : messages) {
+                    this.copyMessage(message, newDiscussion, storeConfigurationParameters);
+                }
             }
+            alreadyCopied = Math.max(0, alreadyCopied - limit);
         }
     }
 
     private void copyMessage(Message message, Discussion newDiscussion,
-        AbstractChangeRequestDiscussionContextReference newReference)
+        DiscussionStoreConfigurationParameters storeConfigurationParameters) throws ChangeRequestDiscussionException
     {
-        DiscussionStoreConfigurationParameters storeConfigurationParameters =
-            this.createDiscussionStoreConfigurationParametersFor(newReference);
-        this.messageService.create(
+        Optional<Message> copiedMessage = this.messageService.create(
             message.getContent(),
             message.getSyntax(),
             newDiscussion.getReference(),
             message.getActorReference(),
             storeConfigurationParameters);
+        if (copiedMessage.isEmpty()) {
+            throw new ChangeRequestDiscussionException(
+                String.format("Error while copying message [%s] to discussion [%s]", message.getReference(),
+                    newDiscussion.getReference()));
+        }
     }
 }
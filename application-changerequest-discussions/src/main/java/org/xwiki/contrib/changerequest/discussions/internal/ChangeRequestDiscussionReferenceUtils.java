@@ -196,10 +196,20 @@ public class ChangeRequestDiscussionReferenceUtils
     {
         AbstractChangeRequestDiscussionContextReference reference = previousReference;
         DiscussionContextReference contextReference = discussionContext.getReference();
-        DiscussionContextEntityReference entityReference = discussionContext.getEntityReference();
+        if (ChangeRequestDiscussionService.APPLICATION_HINT.equals(contextReference.getApplicationHint())) {
+            reference = this.computeReferenceFromEntityReference(discussionContext.getEntityReference(),
+                previousReference);
+        }
+        return reference;
+    }
+
+    AbstractChangeRequestDiscussionContextReference computeReferenceFromEntityReference(
+        DiscussionContextEntityReference entityReference,
+        AbstractChangeRequestDiscussionContextReference previousReference)
+    {
+        AbstractChangeRequestDiscussionContextReference reference = previousReference;
         Matcher typeMatcher = ENTITY_REFERENCE_TYPE_PATTERN.matcher(entityReference.getType());
-        if (ChangeRequestDiscussionService.APPLICATION_HINT.equals(contextReference.getApplicationHint())
-            && typeMatcher.matches()) {
+        if (typeMatcher.matches()) {
             ChangeRequestDiscussionReferenceType referenceType =
                 ChangeRequestDiscussionReferenceType.valueOf(typeMatcher.group(REFERENCE_TYPE_GROUP).toUpperCase());
             reference = this.computeReferenceFromType(referenceType, entityReference.getReference(), previousReference);
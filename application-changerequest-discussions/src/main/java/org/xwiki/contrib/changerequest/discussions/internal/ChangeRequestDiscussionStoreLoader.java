@@ -0,0 +1,320 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.discussions.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestDiscussionReferenceType;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.discussions.DiscussionStoreConfigurationParameters;
+import org.xwiki.contrib.discussions.domain.Discussion;
+import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
+import org.xwiki.contrib.discussions.store.DiscussionStoreConfiguration;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Load the contexts and the number of messages of all the discussions of a change request with a fixed number of
+ * queries on the discussion store space of the change request, instead of requesting the discussion contexts of each
+ * discussion one by one.
+ * <p>
+ * The queries rely on the xobjects used by the discussions application to store the contexts and the messages: a
+ * discussion which cannot be found in the results is not part of the returned map, so that the caller can fall back
+ * on the discussion services for it.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ChangeRequestDiscussionStoreLoader.class)
+@Singleton
+public class ChangeRequestDiscussionStoreLoader
+{
+    // The names below are the ones of the xclasses and properties of the discussions application store: they need to
+    // be kept in sync with it.
+    static final String DISCUSSION_CONTEXT_CLASS = "Discussions.Code.DiscussionContextClass";
+
+    static final String MESSAGE_CLASS = "Discussions.Code.MessageClass";
+
+    static final String ENTITY_REFERENCE_TYPE_PROPERTY = "entityReferenceType";
+
+    static final String ENTITY_REFERENCE_PROPERTY = "entityReference";
+
+    static final String DISCUSSIONS_PROPERTY = "discussions";
+
+    static final String METADATA_PROPERTY = "metadata";
+
+    static final String DISCUSSION_REFERENCE_PROPERTY = "discussionReference";
+
+    static final String CONTEXTS_STATEMENT = "select obj.name, entityReferenceType.value, entityReference.value, "
+        + "discussion from XWikiDocument doc, BaseObject obj, StringProperty entityReferenceType, "
+        + "StringProperty entityReference, DBStringListProperty discussions join discussions.list discussion "
+        + "where doc.space = :space and obj.name = doc.fullName and obj.className = :className "
+        + "and entityReferenceType.id.id = obj.id and entityReferenceType.id.name = :entityReferenceTypeProperty "
+        + "and entityReference.id.id = obj.id and entityReference.id.name = :entityReferenceProperty "
+        + "and discussions.id.id = obj.id and discussions.id.name = :discussionsProperty";
+
+    static final String METADATA_STATEMENT = "select obj.name, metadata.value from XWikiDocument doc, BaseObject obj, "
+        + "LargeStringProperty metadata where doc.space = :space and obj.name = doc.fullName "
+        + "and obj.className = :className and metadata.id.id = obj.id and metadata.id.name = :metadataProperty";
+
+    static final String MESSAGE_COUNTS_STATEMENT = "select discussion.value, count(obj.id) from XWikiDocument doc, "
+        + "BaseObject obj, StringProperty discussion where doc.space = :space and obj.name = doc.fullName "
+        + "and obj.className = :className and discussion.id.id = obj.id "
+        + "and discussion.id.name = :discussionReferenceProperty group by discussion.value";
+
+    static final String MESSAGE_DOCUMENTS_STATEMENT =
+        "select count(doc.id) from XWikiDocument doc where doc.space = :space";
+
+    private static final String SPACE_PARAMETER = "space";
+
+    private static final String CLASS_NAME_PARAMETER = "className";
+
+    private static final Pattern ENTITY_REFERENCE_TYPE_PATTERN =
+        Pattern.compile(String.format("^%s-(?<referenceType>\\w+)$", ChangeRequestDiscussionService.APPLICATION_HINT));
+
+    private static final TypeReference<Map<String, String>> METADATA_TYPE = new TypeReference<>() { };
+
+    @Inject
+    @Named(ChangeRequestDiscussionService.APPLICATION_HINT)
+    private DiscussionStoreConfiguration discussionStoreConfiguration;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
+
+    @Inject
+    private Logger logger;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * The data of a discussion retrieved from the store.
+     *
+     * @version $Id$
+     * @since 1.16
+     */
+    static final class StoredDiscussion
+    {
+        private final List<DiscussionContextEntityReference> contextEntityReferences;
+
+        private final Map<String, String> metadata;
+
+        private final long messageCount;
+
+        StoredDiscussion(List<DiscussionContextEntityReference> contextEntityReferences, Map<String, String> metadata,
+            long messageCount)
+        {
+            this.contextEntityReferences = contextEntityReferences;
+            this.metadata = metadata;
+            this.messageCount = messageCount;
+        }
+
+        /**
+         * @return the entity references of the contexts of the discussion, sorted so that the most generic ones come
+         *         first
+         */
+        List<DiscussionContextEntityReference> getContextEntityReferences()
+        {
+            return this.contextEntityReferences;
+        }
+
+        /**
+         * @return the metadata of the contexts of the discussion, or {@code null} if none of them has metadata
+         */
+        Map<String, String> getMetadata()
+        {
+            return this.metadata;
+        }
+
+        /**
+         * @return the number of messages of the discussion, or {@code -1} if it couldn't be computed reliably
+         */
+        long getMessageCount()
+        {
+            return this.messageCount;
+        }
+    }
+
+    /**
+     * Load the data of the given discussions of a change request.
+     *
+     * @param reference the reference of the change request
+     * @param discussions the discussions of the change request
+     * @return the data of the discussions found in the store: the discussions which cannot be found are missing
+     */
+    Map<Discussion, StoredDiscussion> load(ChangeRequestReference reference, Collection<Discussion> discussions)
+    {
+        Map<Discussion, StoredDiscussion> result = new LinkedHashMap<>();
+        if (!discussions.isEmpty()) {
+            DiscussionStoreConfigurationParameters parameters = new DiscussionStoreConfigurationParameters();
+            parameters.put(DefaultChangeRequestDiscussionStoreConfiguration.CHANGE_REQUEST_ID_PARAMETER_KEY,
+                reference.getChangeRequestId());
+            try {
+                Map<String, List<String[]>> contexts = this.loadContexts(
+                    this.discussionStoreConfiguration.getDiscussionContextSpaceStorageLocation(parameters, null));
+                Map<String, Long> messageCounts = this.loadMessageCounts(
+                    this.discussionStoreConfiguration.getMessageSpaceStorageLocation(parameters, null));
+                for (Discussion discussion : discussions) {
+                    String discussionReference = discussion.getReference().getReference();
+                    if (contexts.containsKey(discussionReference)) {
+                        long messageCount = (messageCounts == null) ? -1
+                            : messageCounts.getOrDefault(discussionReference, 0L);
+                        result.put(discussion,
+                            this.getStoredDiscussion(contexts.get(discussionReference), messageCount));
+                    }
+                }
+            } catch (QueryException | JsonProcessingException e) {
+                this.logger.warn("Error while loading the discussions of change request [{}] from the store: [{}]",
+                    reference.getChangeRequestId(), ExceptionUtils.getRootCauseMessage(e));
+                this.logger.debug("Full stack trace of the loading error: ", e);
+                result.clear();
+            }
+        }
+        return result;
+    }
+
+    private StoredDiscussion getStoredDiscussion(List<String[]> contexts, long messageCount)
+        throws JsonProcessingException
+    {
+        List<DiscussionContextEntityReference> entityReferences = new ArrayList<>();
+        Map<String, String> metadata = null;
+        contexts.sort(Comparator.comparingInt(context -> getTypeOrder(context[0])));
+        for (String[] context : contexts) {
+            entityReferences.add(new DiscussionContextEntityReference(context[0], context[1]));
+            if (context[2] != null) {
+                if (metadata == null) {
+                    metadata = new HashMap<>();
+                }
+                // Keep the first value found for a key, as when iterating over the contexts of the discussion.
+                for (Map.Entry<String, String> entry
+                    : this.objectMapper.readValue(context[2], METADATA_TYPE).entrySet()) {
+                    metadata.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return new StoredDiscussion(entityReferences, metadata, messageCount);
+    }
+
+    private static int getTypeOrder(String entityReferenceType)
+    {
+        // The contexts are not retrieved in their creation order: sort them so that the most generic ones, which the
+        // specific ones override, come first.
+        int result = -1;
+        Matcher matcher = ENTITY_REFERENCE_TYPE_PATTERN.matcher(entityReferenceType);
+        if (matcher.matches()) {
+            try {
+                result = ChangeRequestDiscussionReferenceType.valueOf(matcher.group("referenceType").toUpperCase())
+                    .ordinal();
+            } catch (IllegalArgumentException e) {
+                // Not a change request reference type: keep it first, it doesn't contribute to the reference.
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load the contexts stored in the given space.
+     *
+     * @return for each discussion reference, the entity reference type, entity reference and metadata of its contexts
+     */
+    private Map<String, List<String[]>> loadContexts(SpaceReference contextSpace) throws QueryException
+    {
+        Map<String, String> metadataByContext = new HashMap<>();
+        Query metadataQuery = this.createQuery(METADATA_STATEMENT, contextSpace, DISCUSSION_CONTEXT_CLASS);
+        metadataQuery.bindValue("metadataProperty", METADATA_PROPERTY);
+        for (Object[] row : metadataQuery.<Object[]>execute()) {
+            metadataByContext.put((String) row[0], (String) row[1]);
+        }
+
+        Map<String, List<String[]>> result = new HashMap<>();
+        Query contextsQuery = this.createQuery(CONTEXTS_STATEMENT, contextSpace, DISCUSSION_CONTEXT_CLASS);
+        contextsQuery.bindValue("entityReferenceTypeProperty", ENTITY_REFERENCE_TYPE_PROPERTY);
+        contextsQuery.bindValue("entityReferenceProperty", ENTITY_REFERENCE_PROPERTY);
+        contextsQuery.bindValue("discussionsProperty", DISCUSSIONS_PROPERTY);
+        for (Object[] row : contextsQuery.<Object[]>execute()) {
+            result.computeIfAbsent((String) row[3], key -> new ArrayList<>())
+                .add(new String[] { (String) row[1], (String) row[2], metadataByContext.get((String) row[0]) });
+        }
+        return result;
+    }
+
+    /**
+     * Count the messages stored in the given space.
+     *
+     * @return the number of messages of each discussion having messages, or {@code null} if the counts don't match
+     *         the number of message documents, in which case they cannot be relied on
+     */
+    private Map<String, Long> loadMessageCounts(SpaceReference messageSpace) throws QueryException
+    {
+        Map<String, Long> result = new HashMap<>();
+        Query countsQuery = this.createQuery(MESSAGE_COUNTS_STATEMENT, messageSpace, MESSAGE_CLASS);
+        countsQuery.bindValue("discussionReferenceProperty", DISCUSSION_REFERENCE_PROPERTY);
+        long total = 0;
+        for (Object[] row : countsQuery.<Object[]>execute()) {
+            long count = ((Number) row[1]).longValue();
+            result.put((String) row[0], count);
+            total += count;
+        }
+
+        Query documentsQuery = this.queryManager.createQuery(MESSAGE_DOCUMENTS_STATEMENT, Query.HQL);
+        documentsQuery.setWiki(messageSpace.getWikiReference().getName());
+        documentsQuery.bindValue(SPACE_PARAMETER, this.localEntityReferenceSerializer.serialize(messageSpace));
+        List<Number> documents = documentsQuery.execute();
+        if (documents.isEmpty() || documents.get(0).longValue() != total) {
+            result = null;
+        }
+        return result;
+    }
+
+    private Query createQuery(String statement, SpaceReference space, String className) throws QueryException
+    {
+        Query query = this.queryManager.createQuery(statement, Query.HQL);
+        query.setWiki(space.getWikiReference().getName());
+        query.bindValue(SPACE_PARAMETER, this.localEntityReferenceSerializer.serialize(space));
+        query.bindValue(CLASS_NAME_PARAMETER, className);
+        return query;
+    }
+}
@@ -20,9 +20,9 @@
 package org.xwiki.contrib.changerequest.discussions.internal;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,9 +36,11 @@ import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussion;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionDiffBlock;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionException;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.internal.ChangeRequestDiscussionStoreLoader.StoredDiscussion;
 import org.xwiki.contrib.changerequest.discussions.references.AbstractChangeRequestDiscussionContextReference;
 import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestCommentReference;
 import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestFileDiffReference;
@@ -51,6 +53,7 @@ import org.xwiki.contrib.discussions.DiscussionContextService;
 import org.xwiki.contrib.discussions.DiscussionService;
 import org.xwiki.contrib.discussions.domain.Discussion;
 import org.xwiki.contrib.discussions.domain.DiscussionContext;
+import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
 import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
 import org.xwiki.diff.display.UnifiedDiffBlock;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -86,6 +89,9 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
     @Inject
     private ChangeRequestDiscussionDiffUtils changeRequestDiscussionDiffUtils;
 
+    @Inject
+    private ChangeRequestDiscussionStoreLoader discussionStoreLoader;
+
     @Inject
     private Logger logger;
 
@@ -124,10 +130,50 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
         return contextList;
     }
 
+    /**
+     * Retrieve the discussions attached to the context of the given reference, without creating the context when it
+     * doesn't exist.
+     */
+    private <T extends AbstractChangeRequestDiscussionContextReference> List<Discussion> findDiscussionsFor(
+        T reference)
+    {
+        List<Discussion> result = Collections.emptyList();
+        DiscussionContextEntityReference contextEntityReference =
+            this.changeRequestDiscussionFactory.createContextEntityReferenceFor(reference);
+        List<String> entityReferences = Collections.singletonList(contextEntityReference.getReference());
+        long count =
+            this.discussionService.countByEntityReferences(contextEntityReference.getType(), entityReferences);
+        if (count > 0) {
+            result = this.discussionService.findByEntityReferences(contextEntityReference.getType(), entityReferences,
+                0, (int) count);
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends AbstractChangeRequestDiscussionContextReference> Optional<Discussion> getDiscussionFor(
+        T reference) throws ChangeRequestDiscussionException
+    {
+        // The context of a reference might also be linked to the discussions of more specific references: e.g. the
+        // context of a file diff is linked to the discussions of all the line diffs of the file.
+        for (Discussion discussion : this.findDiscussionsFor(reference)) {
+            if (reference.equals(this.getReferenceFrom(discussion))) {
+                return Optional.of(discussion);
+            }
+        }
+        return Optional.empty();
+    }
+
     @Override
     public <T extends AbstractChangeRequestDiscussionContextReference> Discussion getOrCreateDiscussionFor(T reference)
         throws ChangeRequestDiscussionException
     {
+        // Start with a read-only lookup to avoid getting or creating each context of the chain when the discussion
+        // already exists.
+        Optional<Discussion> existingDiscussion = this.getDiscussionFor(reference);
+        if (existingDiscussion.isPresent()) {
+            return existingDiscussion.get();
+        }
         List<DiscussionContext> contextList = this.getContextListFor(reference);
 
         Optional<Discussion> discussionOptional = this.discussionService.getOrCreate(
@@ -186,17 +232,20 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
     public <T extends AbstractChangeRequestDiscussionContextReference> List<Discussion> getDiscussionsFrom(T reference)
         throws ChangeRequestDiscussionException
     {
-        DiscussionContext discussionContext = this.changeRequestDiscussionFactory.getOrCreateContextFor(reference);
-        return this.discussionService
-            .findByDiscussionContexts(Collections.singletonList(discussionContext.getReference()));
+        return this.findDiscussionsFor(reference);
     }
 
     @Override
     public AbstractChangeRequestDiscussionContextReference getReferenceFrom(Discussion discussion)
         throws ChangeRequestDiscussionException
     {
-        List<DiscussionContext> discussionContexts =
-            this.discussionContextService.findByDiscussionReference(discussion.getReference());
+        return this.getReferenceFrom(discussion,
+            this.discussionContextService.findByDiscussionReference(discussion.getReference()));
+    }
+
+    private AbstractChangeRequestDiscussionContextReference getReferenceFrom(Discussion discussion,
+        List<DiscussionContext> discussionContexts) throws ChangeRequestDiscussionException
+    {
         AbstractChangeRequestDiscussionContextReference reference = null;
 
         for (DiscussionContext discussionContext : discussionContexts) {
@@ -226,16 +275,30 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
             changeRequestMap.put(fileChangeIdList, splittedChangeRequest);
         }
 
-        List<Discussion> allDiscussions = this.getDiscussionsFrom(changeRequestReference);
-        for (Discussion discussion : allDiscussions) {
-            this.moveDiscussion(discussion, changeRequestMap);
+        // Compute first where each discussion should be copied without writing anything: this allows to get or
+        // create each new discussion only once, and to always copy the messages in the same order so that an
+        // interrupted move can be resumed by calling again this method.
+        Map<AbstractChangeRequestDiscussionContextReference, List<Discussion>> discussionsByNewReference =
+            new LinkedHashMap<>();
+        for (Discussion discussion : this.getDiscussionsFrom(changeRequestReference)) {
+            for (AbstractChangeRequestDiscussionContextReference newReference
+                : this.getNewReferences(discussion, changeRequestMap)) {
+                discussionsByNewReference.computeIfAbsent(newReference, key -> new ArrayList<>()).add(discussion);
+            }
+        }
+
+        for (Map.Entry<AbstractChangeRequestDiscussionContextReference, List<Discussion>> entry
+            : discussionsByNewReference.entrySet()) {
+            Discussion newDiscussion = this.getOrCreateDiscussionFor(entry.getKey());
+            this.changeRequestDiscussionFactory.copyMessages(entry.getValue(), newDiscussion, entry.getKey());
         }
     }
 
-    private void moveDiscussion(Discussion discussion, Map<List<String>, ChangeRequest> splittedChangeRequests)
-        throws ChangeRequestDiscussionException
+    private List<AbstractChangeRequestDiscussionContextReference> getNewReferences(Discussion discussion,
+        Map<List<String>, ChangeRequest> splittedChangeRequests) throws ChangeRequestDiscussionException
     {
         AbstractChangeRequestDiscussionContextReference reference = this.getReferenceFrom(discussion);
+        List<AbstractChangeRequestDiscussionContextReference> result = new ArrayList<>();
         ChangeRequest newChangeRequest = null;
         FileDiffLocation fileDiffLocation;
         String lostDiscussionLoggerMsg = "Cannot find change request associated with file [{}] the discussion might be "
@@ -246,7 +309,7 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
                 fileDiffLocation = fileDiffReference.getFileDiffLocation();
                 newChangeRequest = findChangeRequest(splittedChangeRequests, fileDiffLocation);
                 if (newChangeRequest != null) {
-                    this.moveFileDiffDiscussion(fileDiffReference, discussion, newChangeRequest);
+                    result.add(new ChangeRequestFileDiffReference(newChangeRequest.getId(), fileDiffLocation));
                 } else {
                     this.logger.error(lostDiscussionLoggerMsg, fileDiffLocation.getTargetReference());
                 }
@@ -257,7 +320,8 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
                 fileDiffLocation = lineDiffReference.getLineDiffLocation().getFileDiffLocation();
                 newChangeRequest = findChangeRequest(splittedChangeRequests, fileDiffLocation);
                 if (newChangeRequest != null) {
-                    this.moveLineDiffDiscussion(lineDiffReference, discussion, newChangeRequest);
+                    result.add(new ChangeRequestLineDiffReference(newChangeRequest.getId(),
+                        lineDiffReference.getLineDiffLocation()));
                 } else {
                     this.logger.error(lostDiscussionLoggerMsg, fileDiffLocation.getTargetReference());
                 }
@@ -268,8 +332,11 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
             case CHANGE_REQUEST:
             case CHANGE_REQUEST_COMMENT:
             default:
-                this.moveGlobalDiscussion(reference, discussion, splittedChangeRequests.values());
+                for (ChangeRequest splittedChangeRequest : splittedChangeRequests.values()) {
+                    result.add(this.getGlobalReference(reference, splittedChangeRequest));
+                }
         }
+        return result;
     }
 
     private ChangeRequest findChangeRequest(Map<List<String>, ChangeRequest> splittedChangeRequests,
@@ -285,45 +352,23 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
         return result;
     }
 
-    private void moveLineDiffDiscussion(ChangeRequestLineDiffReference lineDiffReference, Discussion discussion,
-        ChangeRequest newChangeRequest) throws ChangeRequestDiscussionException
+    private AbstractChangeRequestDiscussionContextReference getGlobalReference(
+        AbstractChangeRequestDiscussionContextReference reference, ChangeRequest splittedChangeRequest)
     {
-        ChangeRequestLineDiffReference newReference = new ChangeRequestLineDiffReference(newChangeRequest.getId(),
-            lineDiffReference.getLineDiffLocation()
-        );
-        Discussion newDiscussion = this.getOrCreateDiscussionFor(newReference);
-        this.changeRequestDiscussionFactory.copyMessages(discussion, newDiscussion, newReference);
-    }
-
-    private void moveFileDiffDiscussion(ChangeRequestFileDiffReference fileDiffReference, Discussion discussion,
-        ChangeRequest newChangeRequest) throws ChangeRequestDiscussionException
-    {
-        ChangeRequestFileDiffReference newReference = new ChangeRequestFileDiffReference(newChangeRequest.getId(),
-            fileDiffReference.getFileDiffLocation());
-        Discussion newDiscussion = this.getOrCreateDiscussionFor(newReference);
-        this.changeRequestDiscussionFactory.copyMessages(discussion, newDiscussion, newReference);
-    }
-
-    private void moveGlobalDiscussion(AbstractChangeRequestDiscussionContextReference reference, Discussion discussion,
-        Collection<ChangeRequest> splittedChangeRequests) throws ChangeRequestDiscussionException
-    {
-        for (ChangeRequest splittedChangeRequest : splittedChangeRequests) {
-            AbstractChangeRequestDiscussionContextReference newReference = null;
-
-            if (reference instanceof ChangeRequestReference) {
-                newReference = new ChangeRequestReference(splittedChangeRequest.getId());
-            } else if (reference instanceof ChangeRequestCommentReference) {
-                newReference = new ChangeRequestCommentReference(splittedChangeRequest.getId());
-            } else if (reference instanceof ChangeRequestReviewsReference) {
-                newReference = new ChangeRequestReviewsReference(splittedChangeRequest.getId());
-            } else if (reference instanceof ChangeRequestReviewReference) {
-                ChangeRequestReviewReference reviewReference = (ChangeRequestReviewReference) reference;
-                newReference = new ChangeRequestReviewReference(reviewReference.getReviewId(),
-                    splittedChangeRequest.getId());
-            }
-            Discussion newDiscussion = this.getOrCreateDiscussionFor(newReference);
-            this.changeRequestDiscussionFactory.copyMessages(discussion, newDiscussion, newReference);
+        AbstractChangeRequestDiscussionContextReference newReference = null;
+
+        if (reference instanceof ChangeRequestReference) {
+            newReference = new ChangeRequestReference(splittedChangeRequest.getId());
+        } else if (reference instanceof ChangeRequestCommentReference) {
+            newReference = new ChangeRequestCommentReference(splittedChangeRequest.getId());
+        } else if (reference instanceof ChangeRequestReviewsReference) {
+            newReference = new ChangeRequestReviewsReference(splittedChangeRequest.getId());
+        } else if (reference instanceof ChangeRequestReviewReference) {
+            ChangeRequestReviewReference reviewReference = (ChangeRequestReviewReference) reference;
+            newReference = new ChangeRequestReviewReference(reviewReference.getReviewId(),
+                splittedChangeRequest.getId());
         }
+        return newReference;
     }
 
     @Override
@@ -365,23 +410,22 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
     public Optional<ChangeRequestDiscussionDiffBlock> getDiffBlockMetadata(Discussion discussion)
         throws ChangeRequestException
     {
-        Optional<ChangeRequestDiscussionDiffBlock> result = Optional.empty();
         List<DiscussionContext> discussionContexts =
             this.discussionContextService.findByDiscussionReference(discussion.getReference());
-        AbstractChangeRequestDiscussionContextReference referenceFrom = getReferenceFrom(discussion);
+        return this.getDiffBlockMetadata(this.getReferenceFrom(discussion, discussionContexts), discussionContexts);
+    }
+
+    private Optional<ChangeRequestDiscussionDiffBlock> getDiffBlockMetadata(
+        AbstractChangeRequestDiscussionContextReference referenceFrom, List<DiscussionContext> discussionContexts)
+        throws ChangeRequestException
+    {
+        Optional<ChangeRequestDiscussionDiffBlock> result = Optional.empty();
         if (referenceFrom instanceof ChangeRequestLineDiffReference) {
             ChangeRequestLineDiffReference lineDiffReference = (ChangeRequestLineDiffReference) referenceFrom;
             for (DiscussionContext discussionContext : discussionContexts) {
                 Map<String, String> metadata = discussionContext.getMetadata();
                 if (metadata.containsKey(DIFF_CONTEXT_METADATA_KEY)) {
-                    String jsonDiffBlockSerialization = metadata.get(DIFF_CONTEXT_METADATA_KEY);
-                    try {
-                        UnifiedDiffBlock<String, Character> unifiedDiffBlock =
-                            this.changeRequestDiscussionDiffUtils.deserialize(jsonDiffBlockSerialization);
-                        result = Optional.of(new ChangeRequestDiscussionDiffBlock(unifiedDiffBlock, lineDiffReference));
-                    } catch (JsonProcessingException e) {
-                        throw new ChangeRequestException("Error when parsing json serialization of diff block", e);
-                    }
+                    result = Optional.of(this.getDiffBlock(lineDiffReference, metadata));
                     break;
                 }
             }
@@ -389,4 +433,73 @@ public class DefaultChangeRequestDiscussionService implements ChangeRequestDiscu
 
         return result;
     }
+
+    private ChangeRequestDiscussionDiffBlock getDiffBlock(ChangeRequestLineDiffReference lineDiffReference,
+        Map<String, String> metadata) throws ChangeRequestException
+    {
+        try {
+            UnifiedDiffBlock<String, Character> unifiedDiffBlock =
+                this.changeRequestDiscussionDiffUtils.deserialize(metadata.get(DIFF_CONTEXT_METADATA_KEY));
+            return new ChangeRequestDiscussionDiffBlock(unifiedDiffBlock, lineDiffReference);
+        } catch (JsonProcessingException e) {
+            throw new ChangeRequestException("Error when parsing json serialization of diff block", e);
+        }
+    }
+
+    @Override
+    public List<ChangeRequestDiscussion> getChangeRequestDiscussions(ChangeRequestReference reference)
+        throws ChangeRequestException
+    {
+        List<ChangeRequestDiscussion> result = new ArrayList<>();
+        List<Discussion> discussions = this.findDiscussionsFor(reference);
+        // The contexts and messages count of all discussions are loaded at once: the discussion services are only
+        // used for the discussions which couldn't be resolved from the store.
+        Map<Discussion, StoredDiscussion> storedDiscussions =
+            this.discussionStoreLoader.load(reference, discussions);
+        for (Discussion discussion : discussions) {
+            StoredDiscussion storedDiscussion = storedDiscussions.get(discussion);
+            ChangeRequestDiscussion changeRequestDiscussion =
+                this.getChangeRequestDiscussion(discussion, storedDiscussion);
+            if (changeRequestDiscussion == null) {
+                List<DiscussionContext> discussionContexts =
+                    this.discussionContextService.findByDiscussionReference(discussion.getReference());
+                AbstractChangeRequestDiscussionContextReference discussionReference =
+                    this.getReferenceFrom(discussion, discussionContexts);
+                ChangeRequestDiscussionDiffBlock diffBlock =
+                    this.getDiffBlockMetadata(discussionReference, discussionContexts).orElse(null);
+                changeRequestDiscussion = new ChangeRequestDiscussion(discussionReference, discussion, diffBlock,
+                    (storedDiscussion == null) ? -1 : storedDiscussion.getMessageCount());
+            }
+            result.add(changeRequestDiscussion);
+        }
+        return result;
+    }
+
+    private ChangeRequestDiscussion getChangeRequestDiscussion(Discussion discussion,
+        StoredDiscussion storedDiscussion) throws ChangeRequestException
+    {
+        ChangeRequestDiscussion result = null;
+        if (storedDiscussion != null) {
+            AbstractChangeRequestDiscussionContextReference discussionReference = null;
+            for (DiscussionContextEntityReference entityReference : storedDiscussion.getContextEntityReferences()) {
+                discussionReference =
+                    this.discussionReferenceUtils.computeReferenceFromEntityReference(entityReference,
+                        discussionReference);
+            }
+            Map<String, String> metadata = storedDiscussion.getMetadata();
+            if (discussionReference instanceof ChangeRequestLineDiffReference) {
+                // A line diff discussion without stored metadata is resolved with the discussion services, so that
+                // its diff block isn't lost if the metadata couldn't be retrieved from the store.
+                if (metadata != null && metadata.containsKey(DIFF_CONTEXT_METADATA_KEY)) {
+                    result = new ChangeRequestDiscussion(discussionReference, discussion,
+                        this.getDiffBlock((ChangeRequestLineDiffReference) discussionReference, metadata),
+                        storedDiscussion.getMessageCount());
+                }
+            } else if (discussionReference != null) {
+                result = new ChangeRequestDiscussion(discussionReference, discussion, null,
+                    storedDiscussion.getMessageCount());
+            }
+        }
+        return result;
+    }
 }
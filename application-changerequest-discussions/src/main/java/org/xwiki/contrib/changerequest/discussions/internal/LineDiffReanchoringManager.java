@@ -0,0 +1,453 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.discussions.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussion;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestFileDiffReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestLineDiffReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.FileDiffLocation;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.LineDiffLocation;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
+import org.xwiki.contrib.discussions.DiscussionContextService;
+import org.xwiki.contrib.discussions.domain.Discussion;
+import org.xwiki.contrib.discussions.domain.DiscussionContext;
+import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
+import org.xwiki.diff.Chunk;
+import org.xwiki.diff.Delta;
+import org.xwiki.diff.DiffException;
+import org.xwiki.diff.DiffManager;
+import org.xwiki.diff.Patch;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.ObjectReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Component responsible for moving the line diff discussions of a change request on the diff obtained after a rebase.
+ * Line discussions are attached to a line number of a specific version of a file change: after a rebase those numbers
+ * are mapped through the differences between the previous and the new versions of the changed blocks, each block being
+ * diffed only once whatever the number of discussions attached to it. Since the rebase also changes the previous
+ * version of the file change, the kind of change of each mapped line is computed again on the new diff: for example
+ * an added line might now be part of the published version. Discussions attached to lines that have been modified by
+ * the rebase cannot be mapped: they are kept on their old location and displayed as outdated.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = LineDiffReanchoringManager.class)
+@Singleton
+public class LineDiffReanchoringManager
+{
+    private static final String UNDERSCORE = "_";
+
+    private static final String CONTENT_PROPERTY = "content";
+
+    private static final String TITLE_PROPERTY = "title";
+
+    private static final String OBJECT_TYPE_PREFIX = "object:";
+
+    private static final String LINE_SEPARATOR_REGEX = "\\r?\\n";
+
+    @Inject
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    @Inject
+    private FileChangeStorageManager fileChangeStorageManager;
+
+    @Inject
+    private ChangeRequestDiscussionService changeRequestDiscussionService;
+
+    @Inject
+    private ChangeRequestDiscussionFactory changeRequestDiscussionFactory;
+
+    @Inject
+    private DiscussionContextService discussionContextService;
+
+    @Inject
+    private DiffManager diffManager;
+
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    @Named("currentmixed")
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The documents needed to map the lines of a file change through a rebase.
+     */
+    private final class RebasedDocuments
+    {
+        private final FileChange newFileChange;
+
+        private final XWikiDocument oldModifiedDocument;
+
+        private final XWikiDocument newModifiedDocument;
+
+        private final XWikiDocument oldPreviousDocument;
+
+        private final XWikiDocument newPreviousDocument;
+
+        // Each diff block is only diffed once, whatever the number of discussions attached to it.
+        private final Map<List<Object>, Optional<Patch<String>>> patches = new HashMap<>();
+
+        private final Map<List<Object>, Optional<Patch<String>>> newDiffPatches = new HashMap<>();
+
+        RebasedDocuments(FileChange oldFileChange, FileChange newFileChange) throws ChangeRequestException
+        {
+            this.newFileChange = newFileChange;
+            this.oldModifiedDocument = (XWikiDocument) fileChangeStorageManager
+                .getModifiedDocumentFromFileChange(oldFileChange);
+            this.newModifiedDocument = (XWikiDocument) fileChangeStorageManager
+                .getModifiedDocumentFromFileChange(newFileChange);
+            this.oldPreviousDocument = (XWikiDocument) fileChangeStorageManager
+                .getPreviousDocumentFromFileChange(oldFileChange).orElse(null);
+            this.newPreviousDocument = (XWikiDocument) fileChangeStorageManager
+                .getPreviousDocumentFromFileChange(newFileChange).orElse(null);
+        }
+
+        Optional<Patch<String>> getPatch(LineDiffLocation location)
+        {
+            boolean previousSide = location.getLineChange() == LineDiffLocation.LineChange.REMOVED;
+            List<Object> key = Arrays.asList(previousSide, location.getDocumentPart(), location.getEntityReference(),
+                location.getDiffBlockId());
+            return this.patches.computeIfAbsent(key, k -> {
+                List<String> oldLines = (previousSide) ? getLines(this.oldPreviousDocument, location)
+                    : getLines(this.oldModifiedDocument, location);
+                List<String> newLines = (previousSide) ? getLines(this.newPreviousDocument, location)
+                    : getLines(this.newModifiedDocument, location);
+                return computePatch(oldLines, newLines);
+            });
+        }
+
+        /**
+         * @return the differences between the new previous and new modified versions of the block of the given
+         *         location, i.e. the diff displayed after the rebase
+         */
+        Optional<Patch<String>> getNewDiffPatch(LineDiffLocation location)
+        {
+            List<Object> key =
+                Arrays.asList(location.getDocumentPart(), location.getEntityReference(), location.getDiffBlockId());
+            // A missing block is displayed as entirely added or removed.
+            return this.newDiffPatches.computeIfAbsent(key, k -> computePatch(
+                Objects.requireNonNullElse(getLines(this.newPreviousDocument, location), Collections.emptyList()),
+                Objects.requireNonNullElse(getLines(this.newModifiedDocument, location), Collections.emptyList())));
+        }
+    }
+
+    /**
+     * Move the line diff discussions of the given documents from the diff of the rebased file changes, to the diff of
+     * the file changes created by the rebase. This method should be called once per rebase.
+     *
+     * @param changeRequestId the identifier of the rebased change request
+     * @param targets the documents whose file changes have been rebased
+     * @throws ChangeRequestException in case of problem for loading the change request, its file changes or its
+     *         discussions
+     */
+    public void reanchorLineDiscussions(String changeRequestId, Collection<DocumentReference> targets)
+        throws ChangeRequestException
+    {
+        // The change request is loaded again since the instance used for the rebase doesn't contain the new file
+        // changes.
+        Optional<ChangeRequest> changeRequestOpt = this.changeRequestStorageManager.load(changeRequestId);
+        if (changeRequestOpt.isPresent()) {
+            ChangeRequest changeRequest = changeRequestOpt.get();
+            List<ChangeRequestDiscussion> discussions = null;
+            for (DocumentReference target : targets) {
+                Deque<FileChange> fileChanges = changeRequest.getFileChanges().get(target);
+                if (fileChanges != null && fileChanges.size() > 1) {
+                    Iterator<FileChange> fileChangeIterator = fileChanges.descendingIterator();
+                    FileChange newFileChange = fileChangeIterator.next();
+                    FileChange oldFileChange = fileChangeIterator.next();
+                    if (StringUtils.equals(newFileChange.getPreviousVersion(), oldFileChange.getVersion())) {
+                        if (discussions == null) {
+                            discussions = this.changeRequestDiscussionService
+                                .getChangeRequestDiscussions(new ChangeRequestReference(changeRequestId));
+                        }
+                        this.reanchorLineDiscussions(discussions, target, oldFileChange, newFileChange);
+                    }
+                }
+            }
+        }
+    }
+
+    private void reanchorLineDiscussions(List<ChangeRequestDiscussion> discussions, DocumentReference target,
+        FileChange oldFileChange, FileChange newFileChange) throws ChangeRequestException
+    {
+        String oldDiffIdPrefix = getDiffIdPrefix(oldFileChange);
+        List<ChangeRequestDiscussion> targetDiscussions = new ArrayList<>();
+        for (ChangeRequestDiscussion discussion : discussions) {
+            if (discussion.getReference() instanceof ChangeRequestLineDiffReference) {
+                FileDiffLocation fileDiffLocation = ((ChangeRequestLineDiffReference) discussion.getReference())
+                    .getLineDiffLocation().getFileDiffLocation();
+                if (StringUtils.startsWith(fileDiffLocation.getDiffId(), oldDiffIdPrefix)
+                    && target.equals(this.resolveTarget(fileDiffLocation.getTargetReference()))) {
+                    targetDiscussions.add(discussion);
+                }
+            }
+        }
+
+        if (!targetDiscussions.isEmpty()) {
+            RebasedDocuments rebasedDocuments = new RebasedDocuments(oldFileChange, newFileChange);
+            for (ChangeRequestDiscussion discussion : targetDiscussions) {
+                ChangeRequestLineDiffReference reference = (ChangeRequestLineDiffReference) discussion.getReference();
+                Optional<ChangeRequestLineDiffReference> newReference =
+                    this.computeNewReference(reference, rebasedDocuments);
+                if (newReference.isPresent()) {
+                    this.relink(discussion.getDiscussion(), reference, newReference.get());
+                } else {
+                    this.logger.debug("Line of discussion [{}] changed during the rebase, it's kept on [{}].",
+                        discussion.getDiscussion().getReference(), reference);
+                }
+            }
+        }
+    }
+
+    private DocumentReference resolveTarget(String targetReference)
+    {
+        DocumentReference result = this.documentReferenceResolver.resolve(targetReference);
+        if (result.getLocale() == null) {
+            result = new DocumentReference(result, Locale.ROOT);
+        }
+        return result;
+    }
+
+    private Optional<ChangeRequestLineDiffReference> computeNewReference(ChangeRequestLineDiffReference reference,
+        RebasedDocuments rebasedDocuments)
+    {
+        Optional<ChangeRequestLineDiffReference> result = Optional.empty();
+        LineDiffLocation location = reference.getLineDiffLocation();
+        Optional<Patch<String>> patch = rebasedDocuments.getPatch(location);
+        if (patch.isPresent()) {
+            OptionalLong newLineNumber = mapLineNumber(patch.get(), location.getLineNumber());
+            if (newLineNumber.isPresent()) {
+                long lineNumber = newLineNumber.getAsLong();
+                LineDiffLocation.LineChange lineChange = location.getLineChange();
+                Optional<Patch<String>> newDiffPatch = rebasedDocuments.getNewDiffPatch(location);
+                if (newDiffPatch.isPresent()) {
+                    boolean previousSide = lineChange == LineDiffLocation.LineChange.REMOVED;
+                    if (isChanged(newDiffPatch.get(), lineNumber, previousSide)) {
+                        lineChange = (previousSide) ? LineDiffLocation.LineChange.REMOVED
+                            : LineDiffLocation.LineChange.ADDED;
+                    } else {
+                        lineChange = LineDiffLocation.LineChange.UNCHANGED;
+                        // Unchanged lines are identified by their number in the modified version.
+                        if (previousSide) {
+                            lineNumber = mapLineNumber(newDiffPatch.get(), lineNumber).orElse(lineNumber);
+                        }
+                    }
+                }
+                FileDiffLocation newFileDiffLocation = new FileDiffLocation(
+                    getDiffIdPrefix(rebasedDocuments.newFileChange),
+                    location.getFileDiffLocation().getTargetReference());
+                LineDiffLocation newLocation = new LineDiffLocation(newFileDiffLocation, location.getDocumentPart(),
+                    location.getEntityReference(), location.getDiffBlockId(), lineNumber, lineChange);
+                result = Optional.of(new ChangeRequestLineDiffReference(reference.getChangeRequestId(), newLocation));
+            }
+        }
+        return result;
+    }
+
+    private void relink(Discussion discussion, ChangeRequestLineDiffReference oldReference,
+        ChangeRequestLineDiffReference newReference) throws ChangeRequestException
+    {
+        DiscussionContextEntityReference oldLineEntityReference =
+            this.changeRequestDiscussionFactory.createContextEntityReferenceFor(oldReference);
+        DiscussionContextEntityReference oldFileEntityReference =
+            this.changeRequestDiscussionFactory.createContextEntityReferenceFor(getFileDiffReference(oldReference));
+        List<DiscussionContext> oldContexts = new ArrayList<>();
+        Map<String, String> diffContextMetadata = Collections.emptyMap();
+        for (DiscussionContext context : this.discussionContextService.findByDiscussionReference(
+            discussion.getReference())) {
+            if (oldLineEntityReference.equals(context.getEntityReference())) {
+                oldContexts.add(context);
+                String diffContext =
+                    context.getMetadata().get(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY);
+                if (diffContext != null) {
+                    diffContextMetadata =
+                        Collections.singletonMap(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, diffContext);
+                }
+            } else if (oldFileEntityReference.equals(context.getEntityReference())) {
+                oldContexts.add(context);
+            }
+        }
+
+        // The discussion is linked to the new contexts before being unlinked from the old ones, so that it's never
+        // left without any line context in case of failure.
+        DiscussionContext newLineContext = this.changeRequestDiscussionFactory.getOrCreateContextFor(newReference);
+        if (!diffContextMetadata.isEmpty()) {
+            this.discussionContextService.saveMetadata(newLineContext, diffContextMetadata);
+        }
+        this.discussionContextService.link(newLineContext, discussion);
+        this.discussionContextService.link(
+            this.changeRequestDiscussionFactory.getOrCreateContextFor(getFileDiffReference(newReference)), discussion);
+        for (DiscussionContext oldContext : oldContexts) {
+            this.discussionContextService.unlink(oldContext, discussion);
+        }
+    }
+
+    private static ChangeRequestFileDiffReference getFileDiffReference(ChangeRequestLineDiffReference reference)
+    {
+        return new ChangeRequestFileDiffReference(reference.getChangeRequestId(),
+            reference.getLineDiffLocation().getFileDiffLocation());
+    }
+
+    /**
+     * Compute the beginning of the identifiers of the diffs displayed for the given file change: the full identifier
+     * also contains information about the previous version which is not known here, but the UI looks for diffs
+     * whose identifier contains the one of the discussion.
+     */
+    private static String getDiffIdPrefix(FileChange fileChange)
+    {
+        return StringUtils.replace(String.format("%s_%s_", fileChange.getId(), fileChange.getVersion()), ".", "dot");
+    }
+
+    private List<String> getLines(XWikiDocument document, LineDiffLocation location)
+    {
+        String value = null;
+        if (document != null) {
+            switch (location.getDocumentPart()) {
+                case METADATA:
+                    if (CONTENT_PROPERTY.equals(location.getDiffBlockId())) {
+                        value = document.getContent();
+                    } else if (TITLE_PROPERTY.equals(location.getDiffBlockId())) {
+                        value = document.getTitle();
+                    }
+                    break;
+
+                case XOBJECT:
+                    BaseObject object = document.getXObject(new ObjectReference(this.entityReferenceResolver
+                        .resolve(StringUtils.removeStart(location.getEntityReference(), OBJECT_TYPE_PREFIX),
+                            EntityType.OBJECT)));
+                    if (object != null && !UNDERSCORE.equals(location.getDiffBlockId())) {
+                        value = object.getStringValue(location.getDiffBlockId());
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        return (value != null) ? Arrays.asList(value.split(LINE_SEPARATOR_REGEX, -1)) : null;
+    }
+
+    private Optional<Patch<String>> computePatch(List<String> oldLines, List<String> newLines)
+    {
+        Optional<Patch<String>> result = Optional.empty();
+        if (oldLines != null && newLines != null) {
+            try {
+                result = Optional.of(this.diffManager.diff(oldLines, newLines, null).getPatch());
+            } catch (DiffException e) {
+                this.logger.warn("Error while computing the diff for moving line discussions: [{}]",
+                    e.getMessage());
+                this.logger.debug("Full stack trace of the diff error: ", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check if a line is part of the differences between two versions of a text.
+     *
+     * @param patch the differences between the previous and the next versions of the text
+     * @param lineNumber the line number, starting at 1
+     * @param previousSide {@code true} if the line number is about the previous version, {@code false} if it's about
+     *        the next version
+     * @return {@code true} if the line has been removed from the previous version, or added in the next version
+     */
+    static boolean isChanged(Patch<String> patch, long lineNumber, boolean previousSide)
+    {
+        long index = lineNumber - 1;
+        boolean result = false;
+        for (Delta<String> delta : patch) {
+            Chunk<String> chunk = (previousSide) ? delta.getPrevious() : delta.getNext();
+            if (index < chunk.getIndex()) {
+                break;
+            } else if (index < chunk.getIndex() + chunk.size()) {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Map a line number of the previous version of a text, to the line number of the same line in the next version.
+     *
+     * @param patch the differences between the previous and the next versions of the text
+     * @param lineNumber the line number, starting at 1, in the previous version
+     * @return the matching line number in the next version, or {@link OptionalLong#empty()} if the line has been
+     *         modified or removed in the next version
+     */
+    static OptionalLong mapLineNumber(Patch<String> patch, long lineNumber)
+    {
+        long index = lineNumber - 1;
+        long shift = 0;
+        boolean changed = false;
+        for (Delta<String> delta : patch) {
+            int previousIndex = delta.getPrevious().getIndex();
+            int previousSize = delta.getPrevious().size();
+            if (index < previousIndex) {
+                break;
+            } else if (index < previousIndex + previousSize) {
+                changed = true;
+                break;
+            } else {
+                shift += delta.getNext().size() - previousSize;
+            }
+        }
+        return (changed) ? OptionalLong.empty() : OptionalLong.of(lineNumber + shift);
+    }
+}
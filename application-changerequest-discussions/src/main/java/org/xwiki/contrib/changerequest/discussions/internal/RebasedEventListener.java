@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.discussions.internal;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.events.ChangeRequestRebasedEvent;
+import org.xwiki.contrib.changerequest.events.FileChangeRebasedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.event.AbstractLocalEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener responsible for moving the line diff discussions on the new diffs whenever a change request or one of
+ * its file change is rebased.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Singleton
+@Named(RebasedEventListener.NAME)
+public class RebasedEventListener extends AbstractLocalEventListener
+{
+    static final String NAME = "org.xwiki.contrib.changerequest.discussions.internal.RebasedEventListener";
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new ChangeRequestRebasedEvent(),
+        new FileChangeRebasedEvent()
+    );
+
+    @Inject
+    private Provider<LineDiffReanchoringManager> reanchoringManagerProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Default constructor.
+     */
+    public RebasedEventListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void processLocalEvent(Event event, Object source, Object data)
+    {
+        String changeRequestId = (String) source;
+        Collection<DocumentReference> targets;
+        if (event instanceof ChangeRequestRebasedEvent) {
+            targets = ((ChangeRequest) data).getModifiedDocuments();
+        } else {
+            targets = Set.of(((FileChange) data).getTargetEntity());
+        }
+        try {
+            this.reanchoringManagerProvider.get().reanchorLineDiscussions(changeRequestId, targets);
+        } catch (ChangeRequestException e) {
+            this.logger.error("Error while moving the line discussions of change request [{}] after a rebase",
+                changeRequestId, e);
+        }
+    }
+}
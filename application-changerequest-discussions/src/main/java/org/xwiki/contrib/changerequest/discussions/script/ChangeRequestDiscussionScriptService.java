@@ -19,7 +19,6 @@
  */
 package org.xwiki.contrib.changerequest.discussions.script;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -135,6 +134,43 @@ public class ChangeRequestDiscussionScriptService implements ScriptService
         EntityReference entityReference, String diffBlockId, long lineNumber,
         LineDiffLocation.LineChange lineChange)
         throws ChangeRequestDiscussionException
+    {
+        ChangeRequestLineDiffReference reference = this.getLineDiffReference(fileDiffReference, entityReference,
+            diffBlockId, lineNumber, lineChange);
+        return this.changeRequestDiscussionService.getOrCreateDiscussionFor(reference).getReference();
+    }
+
+    /**
+     * Retrieve the discussion of a diff line, without creating it. All the arguments allow to uniquely identify where
+     * the discussion is attached.
+     *
+     * @see #getOrCreateDiffDiscussion(ChangeRequestFileDiffReference, EntityReference, String, long,
+     *      LineDiffLocation.LineChange)
+     * @param fileDiffReference the reference of the file diff where the discussion takes place
+     * @param entityReference the reference of the specific entity where the discussion takes place, e.g. an xobject or
+     *                        an xclass
+     * @param diffBlockId the specific name of the property discussed
+     * @param lineNumber the line number of the document diff part where the discussion is attached
+     * @param lineChange the type of change of the line number to identify where the discussion is attached
+     * @return the reference of the discussion or {@code null} if it doesn't exist yet
+     * @throws ChangeRequestDiscussionException in case of problem when getting the discussion
+     * @since 1.16
+     */
+    @Unstable
+    public DiscussionReference getDiffDiscussion(ChangeRequestFileDiffReference fileDiffReference,
+        EntityReference entityReference, String diffBlockId, long lineNumber,
+        LineDiffLocation.LineChange lineChange)
+        throws ChangeRequestDiscussionException
+    {
+        ChangeRequestLineDiffReference reference = this.getLineDiffReference(fileDiffReference, entityReference,
+            diffBlockId, lineNumber, lineChange);
+        return this.changeRequestDiscussionService.getDiscussionFor(reference)
+            .map(Discussion::getReference)
+            .orElse(null);
+    }
+
+    private ChangeRequestLineDiffReference getLineDiffReference(ChangeRequestFileDiffReference fileDiffReference,
+        EntityReference entityReference, String diffBlockId, long lineNumber, LineDiffLocation.LineChange lineChange)
     {
         LineDiffLocation.DiffDocumentPart documentPart;
         String serializedEntityReference = this.entityReferenceSerializer.serialize(entityReference);
@@ -170,11 +206,10 @@ public class ChangeRequestDiscussionScriptService implements ScriptService
             lineNumber,
             lineChange
         );
-        ChangeRequestLineDiffReference reference = new ChangeRequestLineDiffReference(
+        return new ChangeRequestLineDiffReference(
             fileDiffReference.getChangeRequestId(),
             lineDiffLocation
         );
-        return this.changeRequestDiscussionService.getOrCreateDiscussionFor(reference).getReference();
     }
 
     /**
@@ -192,6 +227,25 @@ public class ChangeRequestDiscussionScriptService implements ScriptService
         return this.changeRequestDiscussionService.getOrCreateDiscussionFor(reference).getReference();
     }
 
+    /**
+     * Retrieve the discussion for commenting a change request, without creating it.
+     *
+     * @see ChangeRequestCommentReference
+     * @param changeRequestId the id of the change request for which to retrieve the discussion
+     * @return the reference of the discussion or {@code null} if it doesn't exist yet
+     * @throws ChangeRequestDiscussionException in case of problem when getting the discussion
+     * @since 1.16
+     */
+    @Unstable
+    public DiscussionReference getChangeRequestCommentDiscussion(String changeRequestId)
+        throws ChangeRequestDiscussionException
+    {
+        ChangeRequestCommentReference reference = new ChangeRequestCommentReference(changeRequestId);
+        return this.changeRequestDiscussionService.getDiscussionFor(reference)
+            .map(Discussion::getReference)
+            .orElse(null);
+    }
+
     /**
      * Create or get a discussion for a specific review of a change request.
      *
@@ -245,20 +299,10 @@ public class ChangeRequestDiscussionScriptService implements ScriptService
         return this.changeRequestDiscussionService.getOrCreateDiscussionContextFor(reference).getReference();
     }
 
-    private List<ChangeRequestDiscussion> getChangeRequestDiscussions(List<Discussion> discussions)
-        throws ChangeRequestDiscussionException
-    {
-        List<ChangeRequestDiscussion> result = new ArrayList<>();
-        for (Discussion discussion : discussions) {
-            AbstractChangeRequestDiscussionContextReference reference =
-                this.changeRequestDiscussionService.getReferenceFrom(discussion);
-            result.add(new ChangeRequestDiscussion(reference, discussion));
-        }
-        return result;
-    }
-
     /**
-     * Retrieve all discussions attached to the given change request.
+     * Retrieve all discussions attached to the given change request, along with their diff block metadata and their
+     * number of messages (see {@link ChangeRequestDiscussion#getDiffBlock()} and
+     * {@link ChangeRequestDiscussion#getMessageCount()}).
      *
      * @param changeRequest the change request for which to retrieve the discussions.
      * @return a list of discussions with their references.
@@ -267,9 +311,16 @@ public class ChangeRequestDiscussionScriptService implements ScriptService
     public List<ChangeRequestDiscussion> getDiscussionsFromChangeRequest(ChangeRequest changeRequest)
         throws ChangeRequestDiscussionException
     {
-        List<Discussion> discussions = this.changeRequestDiscussionService
-            .getDiscussionsFrom(new ChangeRequestReference(changeRequest.getId()));
-        return getChangeRequestDiscussions(discussions);
+        try {
+            return this.changeRequestDiscussionService
+                .getChangeRequestDiscussions(new ChangeRequestReference(changeRequest.getId()));
+        } catch (ChangeRequestDiscussionException e) {
+            throw e;
+        } catch (ChangeRequestException e) {
+            throw new ChangeRequestDiscussionException(
+                String.format("Error while retrieving the discussions of change request [%s]", changeRequest.getId()),
+                e);
+        }
     }
 
     /**
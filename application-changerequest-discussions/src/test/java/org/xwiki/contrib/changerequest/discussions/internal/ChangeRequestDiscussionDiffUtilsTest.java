@@ -78,6 +78,15 @@ class ChangeRequestDiscussionDiffUtilsTest
             + "\"value\":\"Lorem ipsum dolor sit amet, consectetur adipiscing elit\"},"
             + "{\"added\":false,\"chunks\":null,\"deleted\":true,\"index\":19,\"type\":\"DELETED\",\"value\":\"\"}]";
 
+    private static final String COMPACT_EXAMPLE = "{\"v\":2,\"e\":["
+        + "[14,\"C\",\"Lorem ipsum dolor sit amet, consectetur\"],"
+        + "[15,\"C\",\"\"],"
+        + "[16,\"D\",\"== Sub-paragraph ==\",\"D3U1D3U9D3\"],"
+        + "[18,\"A\",\"Some changes in this paragraph.\",\"U1A20U9A1\"],"
+        + "[17,\"C\",\"\"],"
+        + "[18,\"D\",\"Lorem ipsum dolor sit amet, consectetur adipiscing elit\"],"
+        + "[19,\"D\",\"\"]]}";
+
     private List<Character> stringToListChar(String string)
     {
         return Arrays.asList(ArrayUtils.toObject(string.toCharArray()));
@@ -138,20 +147,89 @@ class ChangeRequestDiscussionDiffUtilsTest
         return block;
     }
 
+    private void assertBlockEquals(UnifiedDiffBlock<String, Character> expected,
+        UnifiedDiffBlock<String, Character> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            UnifiedDiffElement<String, Character> expectedElement = expected.get(i);
+            UnifiedDiffElement<String, Character> actualElement = actual.get(i);
+            assertEquals(expectedElement.getIndex(), actualElement.getIndex());
+            assertEquals(expectedElement.getType(), actualElement.getType());
+            assertEquals(expectedElement.getValue(), actualElement.getValue());
+            if (expectedElement.getChunks() == null) {
+                assertNull(actualElement.getChunks());
+            } else {
+                assertEquals(expectedElement.getChunks().size(), actualElement.getChunks().size());
+                for (int j = 0; j < expectedElement.getChunks().size(); j++) {
+                    assertEquals(expectedElement.getChunks().get(j).getType(),
+                        actualElement.getChunks().get(j).getType());
+                    assertEquals(expectedElement.getChunks().get(j).getElements(),
+                        actualElement.getChunks().get(j).getElements());
+                }
+            }
+        }
+    }
+
     @Test
     void jsonSerializer() throws JsonProcessingException
     {
         String jsonSerialization = this.discussionDiffUtils.serialize(getUnidifiedDiffBlock());
-        assertEquals(JSON_EXAMPLE, jsonSerialization);
+        assertEquals(COMPACT_EXAMPLE, jsonSerialization);
     }
 
     @Test
     void jsonDeserializer() throws JsonProcessingException
     {
-        UnifiedDiffBlock<String, Character> diffBlock = this.discussionDiffUtils.deserialize(JSON_EXAMPLE);
+        UnifiedDiffBlock<String, Character> diffBlock = this.discussionDiffUtils.deserialize(COMPACT_EXAMPLE);
         // We cannot perform assertEquals because those classes are missing equals method...
-        // assertEquals(getUnidifiedDiffBlock(), diffBlock);
+        assertBlockEquals(getUnidifiedDiffBlock(), diffBlock);
         String serializedJson = this.discussionDiffUtils.serialize(diffBlock);
-        assertEquals(JSON_EXAMPLE, serializedJson);
+        assertEquals(COMPACT_EXAMPLE, serializedJson);
+    }
+
+    @Test
+    void legacyJsonDeserializer() throws JsonProcessingException
+    {
+        UnifiedDiffBlock<String, Character> diffBlock = this.discussionDiffUtils.deserialize(JSON_EXAMPLE);
+        assertBlockEquals(getUnidifiedDiffBlock(), diffBlock);
+        assertEquals(COMPACT_EXAMPLE, this.discussionDiffUtils.serialize(diffBlock));
+    }
+
+    @Test
+    void compactSerializationSize() throws JsonProcessingException
+    {
+        String jsonSerialization = this.discussionDiffUtils.serialize(getUnidifiedDiffBlock());
+        assertEquals(266, jsonSerialization.length());
+        assertTrue(jsonSerialization.length() * 5 < JSON_EXAMPLE.length());
+    }
+
+    @Test
+    void chunksNotMatchingValue() throws JsonProcessingException
+    {
+        UnifiedDiffBlock<String, Character> block = new UnifiedDiffBlock<>();
+        UnifiedDiffElement<String, Character> element =
+            new UnifiedDiffElement<>(2, UnifiedDiffElement.Type.ADDED, "Foo");
+        element.setChunks(List.of(
+            new InlineDiffChunk<>(InlineDiffChunk.Type.UNMODIFIED, this.stringToListChar("F")),
+            new InlineDiffChunk<>(InlineDiffChunk.Type.ADDED, this.stringToListChar("ar"))));
+        block.add(element);
+
+        String expected = "{\"v\":2,\"e\":[[2,\"A\",\"Foo\",[[\"U\",\"F\"],[\"A\",\"ar\"]]]]}";
+        assertEquals(expected, this.discussionDiffUtils.serialize(block));
+        UnifiedDiffBlock<String, Character> diffBlock = this.discussionDiffUtils.deserialize(expected);
+        assertBlockEquals(block, diffBlock);
+        assertEquals(expected, this.discussionDiffUtils.serialize(diffBlock));
+    }
+
+    @Test
+    void invalidCompactSerialization()
+    {
+        assertThrows(JsonProcessingException.class,
+            () -> this.discussionDiffUtils.deserialize("{\"v\":3,\"e\":[]}"));
+        assertThrows(JsonProcessingException.class,
+            () -> this.discussionDiffUtils.deserialize("{\"v\":2,\"e\":[[2,\"A\",\"Foo\",\"U1A5\"]]}"));
+        assertThrows(JsonProcessingException.class,
+            () -> this.discussionDiffUtils.deserialize("{\"v\":2,\"e\":[[2,\"A\",\"Foo\",\"U1X2\"]]}"));
     }
-}
\ No newline at end of file
+}
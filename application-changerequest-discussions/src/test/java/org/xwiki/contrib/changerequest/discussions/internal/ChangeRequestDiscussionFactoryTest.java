@@ -19,8 +19,11 @@
  */
 package org.xwiki.contrib.changerequest.discussions.internal;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -40,8 +43,11 @@ import org.xwiki.contrib.changerequest.discussions.references.difflocation.LineD
 import org.xwiki.contrib.discussions.DiscussionContextService;
 import org.xwiki.contrib.discussions.DiscussionStoreConfigurationParameters;
 import org.xwiki.contrib.discussions.MessageService;
+import org.xwiki.contrib.discussions.domain.Discussion;
 import org.xwiki.contrib.discussions.domain.DiscussionContext;
+import org.xwiki.contrib.discussions.domain.Message;
 import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
+import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
 import org.xwiki.model.document.DocumentAuthors;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -59,7 +65,12 @@ import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -436,4 +447,81 @@ class ChangeRequestDiscussionFactoryTest
 
         assertSame(expectedContext, this.factory.getOrCreateContextFor(changeRequestReference));
     }
+
+    @Test
+    void copyMessagesResumedAfterFailure() throws Exception
+    {
+        String changeRequestId = "crId";
+        ChangeRequestCommentReference reference = new ChangeRequestCommentReference(changeRequestId);
+        DocumentReference crDocRef = new DocumentReference("xwiki", List.of("CR"), "crId");
+        when(this.changeRequestIdDocumentReferenceResolver.resolve(changeRequestId)).thenReturn(crDocRef);
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.wiki.getDocument(any(DocumentReference.class), eq(this.context))).thenReturn(document);
+        when(document.getAuthors()).thenReturn(mock(DocumentAuthors.class));
+
+        // The first discussion needs several batches to be read.
+        List<String> expectedContents = new ArrayList<>();
+        Discussion discussion1 = mockDiscussionWithMessages("d1", 150, expectedContents);
+        Discussion discussion2 = mockDiscussionWithMessages("d2", 2, expectedContents);
+        Discussion newDiscussion = mock(Discussion.class);
+        DiscussionReference newDiscussionReference = mock(DiscussionReference.class);
+        when(newDiscussion.getReference()).thenReturn(newDiscussionReference);
+
+        // Stub of the new discussion backed by a list: the copy of some messages fails the first time.
+        List<String> copiedContents = new ArrayList<>();
+        Set<String> failingContents = new HashSet<>(Set.of("d1-120", "d2-1"));
+        when(this.messageService.countByDiscussion(newDiscussion)).then(invocation -> (long) copiedContents.size());
+        when(this.messageService.create(any(), any(), eq(newDiscussionReference), any(), any())).then(invocation -> {
+            String content = invocation.getArgument(0);
+            if (failingContents.remove(content)) {
+                return Optional.empty();
+            }
+            copiedContents.add(content);
+            return Optional.of(mock(Message.class));
+        });
+
+        List<Discussion> originalDiscussions = List.of(discussion1, discussion2);
+        assertThrows(ChangeRequestDiscussionException.class,
+            () -> this.factory.copyMessages(originalDiscussions, newDiscussion, reference));
+        assertEquals(expectedContents.subList(0, 120), copiedContents);
+        assertThrows(ChangeRequestDiscussionException.class,
+            () -> this.factory.copyMessages(originalDiscussions, newDiscussion, reference));
+        assertEquals(expectedContents.subList(0, 151), copiedContents);
+
+        // Each call resumes the copy where it stopped: no message is duplicated or lost.
+        this.factory.copyMessages(originalDiscussions, newDiscussion, reference);
+        assertEquals(expectedContents, copiedContents);
+
+        // Calling again the method once the copy is done doesn't copy anything.
+        this.factory.copyMessages(originalDiscussions, newDiscussion, reference);
+        assertEquals(expectedContents, copiedContents);
+    }
+
+    private Discussion mockDiscussionWithMessages(String name, int messageNumber, List<String> allContents)
+    {
+        Discussion discussion = mock(Discussion.class);
+        DiscussionReference discussionReference = mock(DiscussionReference.class);
+        when(discussion.getReference()).thenReturn(discussionReference);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < messageNumber; i++) {
+            String content = String.format("%s-%s", name, i);
+            messages.add(mockMessage(content));
+            allContents.add(content);
+        }
+        when(this.messageService.countByDiscussion(discussion)).thenReturn((long) messageNumber);
+        when(this.messageService.getByDiscussion(eq(discussionReference), anyInt(), anyInt()))
+            .then(invocation -> {
+                int offset = invocation.getArgument(1);
+                int limit = invocation.getArgument(2);
+                return messages.subList(Math.min(offset, messageNumber), Math.min(offset + limit, messageNumber));
+            });
+        return discussion;
+    }
+
+    private Message mockMessage(String content)
+    {
+        Message message = mock(Message.class);
+        when(message.getContent()).thenReturn(content);
+        return message;
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.discussions.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.internal.ChangeRequestDiscussionStoreLoader.StoredDiscussion;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.discussions.domain.Discussion;
+import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
+import org.xwiki.contrib.discussions.store.DiscussionStoreConfiguration;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestDiscussionStoreLoader}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestDiscussionStoreLoaderTest
+{
+    private static final ChangeRequestReference REFERENCE = new ChangeRequestReference("cr1");
+
+    @InjectMockComponents
+    private ChangeRequestDiscussionStoreLoader storeLoader;
+
+    @MockComponent
+    @Named(ChangeRequestDiscussionService.APPLICATION_HINT)
+    private DiscussionStoreConfiguration discussionStoreConfiguration;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @MockComponent
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
+
+    private Query contextsQuery;
+
+    private Query metadataQuery;
+
+    private Query messageCountsQuery;
+
+    private Query messageDocumentsQuery;
+
+    @BeforeEach
+    void setup() throws QueryException
+    {
+        SpaceReference discussionsSpace =
+            new SpaceReference("Discussions", new SpaceReference("xwiki", "ChangeRequest", "cr1"));
+        SpaceReference contextSpace = new SpaceReference("DiscussionContext", discussionsSpace);
+        SpaceReference messageSpace = new SpaceReference("Message", discussionsSpace);
+        when(this.discussionStoreConfiguration.getDiscussionContextSpaceStorageLocation(any(), any()))
+            .thenReturn(contextSpace);
+        when(this.discussionStoreConfiguration.getMessageSpaceStorageLocation(any(), any())).thenReturn(messageSpace);
+        when(this.localEntityReferenceSerializer.serialize(contextSpace))
+            .thenReturn("ChangeRequest.cr1.Discussions.DiscussionContext");
+        when(this.localEntityReferenceSerializer.serialize(messageSpace))
+            .thenReturn("ChangeRequest.cr1.Discussions.Message");
+
+        this.contextsQuery = mockQuery(ChangeRequestDiscussionStoreLoader.CONTEXTS_STATEMENT);
+        this.metadataQuery = mockQuery(ChangeRequestDiscussionStoreLoader.METADATA_STATEMENT);
+        this.messageCountsQuery = mockQuery(ChangeRequestDiscussionStoreLoader.MESSAGE_COUNTS_STATEMENT);
+        this.messageDocumentsQuery = mockQuery(ChangeRequestDiscussionStoreLoader.MESSAGE_DOCUMENTS_STATEMENT);
+    }
+
+    private Query mockQuery(String statement) throws QueryException
+    {
+        Query query = mock(Query.class);
+        when(this.queryManager.createQuery(statement, Query.HQL)).thenReturn(query);
+        return query;
+    }
+
+    private List<Discussion> mockDiscussions(int size) throws QueryException
+    {
+        List<Discussion> result = new ArrayList<>();
+        List<Object[]> contextRows = new ArrayList<>();
+        List<Object[]> metadataRows = new ArrayList<>();
+        List<Object[]> messageCountRows = new ArrayList<>();
+        long messages = 0;
+        for (int i = 0; i < size; i++) {
+            String discussionReferenceId = "discussion" + i;
+            Discussion discussion = mock(Discussion.class);
+            DiscussionReference discussionReference = mock(DiscussionReference.class);
+            when(discussion.getReference()).thenReturn(discussionReference);
+            when(discussionReference.getReference()).thenReturn(discussionReferenceId);
+            result.add(discussion);
+
+            // The specific context is returned before the change request one, to check that they are sorted.
+            String lineDiffContext = "Context" + i;
+            contextRows.add(new Object[] { lineDiffContext, "changerequest-line_diff", "cr1:line" + i,
+                discussionReferenceId });
+            contextRows.add(new Object[] { "ContextCR", "changerequest-change_request", "cr1",
+                discussionReferenceId });
+            metadataRows.add(new Object[] { lineDiffContext,
+                String.format("{\"%s\":\"block%s\"}", ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, i) });
+            if (i > 0) {
+                messageCountRows.add(new Object[] { discussionReferenceId, (long) i });
+                messages += i;
+            }
+        }
+        when(this.contextsQuery.<Object[]>execute()).thenReturn(contextRows);
+        when(this.metadataQuery.<Object[]>execute()).thenReturn(metadataRows);
+        when(this.messageCountsQuery.<Object[]>execute()).thenReturn(messageCountRows);
+        when(this.messageDocumentsQuery.<Long>execute()).thenReturn(List.of(messages));
+        return result;
+    }
+
+    @Test
+    void load() throws QueryException
+    {
+        for (int size : List.of(2, 20)) {
+            List<Discussion> discussions = mockDiscussions(size);
+
+            Map<Discussion, StoredDiscussion> result = this.storeLoader.load(REFERENCE, discussions);
+
+            assertEquals(size, result.size());
+            for (int i = 0; i < size; i++) {
+                StoredDiscussion storedDiscussion = result.get(discussions.get(i));
+                assertEquals(List.of("changerequest-change_request", "changerequest-line_diff"),
+                    storedDiscussion.getContextEntityReferences().stream()
+                        .map(entityReference -> entityReference.getType()).collect(Collectors.toList()));
+                assertEquals("cr1:line" + i, storedDiscussion.getContextEntityReferences().get(1).getReference());
+                assertEquals(Map.of(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, "block" + i),
+                    storedDiscussion.getMetadata());
+                assertEquals(i, storedDiscussion.getMessageCount());
+            }
+        }
+
+        // The number of queries doesn't depend on the number of discussions.
+        verify(this.queryManager, times(8)).createQuery(anyString(), any());
+        verify(this.contextsQuery, times(2)).bindValue("space", "ChangeRequest.cr1.Discussions.DiscussionContext");
+        verify(this.contextsQuery, times(2)).setWiki("xwiki");
+        verify(this.messageCountsQuery, times(2)).bindValue("space", "ChangeRequest.cr1.Discussions.Message");
+    }
+
+    @Test
+    void loadWithUnreliableMessageCounts() throws QueryException
+    {
+        List<Discussion> discussions = mockDiscussions(3);
+        // Some message documents are not counted for any discussion.
+        when(this.messageDocumentsQuery.<Long>execute()).thenReturn(List.of(42L));
+
+        Map<Discussion, StoredDiscussion> result = this.storeLoader.load(REFERENCE, discussions);
+
+        assertEquals(List.of(-1L, -1L, -1L), discussions.stream()
+            .map(discussion -> result.get(discussion).getMessageCount()).collect(Collectors.toList()));
+    }
+
+    @Test
+    void loadWithMissingDiscussion() throws QueryException
+    {
+        List<Discussion> discussions = new ArrayList<>(mockDiscussions(1));
+        when(this.metadataQuery.<Object[]>execute()).thenReturn(List.of());
+        Discussion missingDiscussion = mock(Discussion.class);
+        DiscussionReference missingReference = mock(DiscussionReference.class);
+        when(missingDiscussion.getReference()).thenReturn(missingReference);
+        when(missingReference.getReference()).thenReturn("missing");
+        discussions.add(missingDiscussion);
+
+        Map<Discussion, StoredDiscussion> result = this.storeLoader.load(REFERENCE, discussions);
+
+        assertEquals(1, result.size());
+        assertNull(result.get(discussions.get(0)).getMetadata());
+        assertEquals(0, result.get(discussions.get(0)).getMessageCount());
+    }
+
+    @Test
+    void loadWithQueryError() throws QueryException
+    {
+        List<Discussion> discussions = mockDiscussions(2);
+        when(this.contextsQuery.execute()).thenThrow(new QueryException("error", null, null));
+
+        assertTrue(this.storeLoader.load(REFERENCE, discussions).isEmpty());
+        assertEquals(1, this.logCapture.size());
+        assertEquals("Error while loading the discussions of change request [cr1] from the store: "
+            + "[QueryException: error]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void loadWithoutDiscussion() throws QueryException
+    {
+        assertTrue(this.storeLoader.load(REFERENCE, List.of()).isEmpty());
+        verify(this.queryManager, never()).createQuery(anyString(), any());
+    }
+}
@@ -19,18 +19,34 @@
  */
 package org.xwiki.contrib.changerequest.discussions.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussion;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionDiffBlock;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionException;
 import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.internal.ChangeRequestDiscussionStoreLoader.StoredDiscussion;
 import org.xwiki.contrib.changerequest.discussions.references.AbstractChangeRequestDiscussionContextReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestCommentReference;
 import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestFileDiffReference;
 import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestLineDiffReference;
 import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.FileDiffLocation;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.LineDiffLocation;
 import org.xwiki.contrib.discussions.DiscussionContextService;
 import org.xwiki.contrib.discussions.DiscussionService;
 import org.xwiki.contrib.discussions.domain.Discussion;
@@ -38,14 +54,28 @@ import org.xwiki.contrib.discussions.domain.DiscussionContext;
 import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
 import org.xwiki.contrib.discussions.domain.references.DiscussionContextReference;
 import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
+import org.xwiki.diff.display.UnifiedDiffBlock;
 import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.store.merge.MergeDocumentResult;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -72,6 +102,19 @@ class DefaultChangeRequestDiscussionServiceTest
     @MockComponent
     private ContextualLocalizationManager localizationManager;
 
+    @MockComponent
+    private ChangeRequestDiscussionFactory changeRequestDiscussionFactory;
+
+    @MockComponent
+    private ChangeRequestDiscussionDiffUtils changeRequestDiscussionDiffUtils;
+
+    @MockComponent
+    private ChangeRequestDiscussionStoreLoader discussionStoreLoader;
+
+    @MockComponent
+    @Named("compactwiki")
+    private EntityReferenceSerializer<String> stringEntityReferenceSerializer;
+
     @Test
     void getReferencesFrom() throws ChangeRequestDiscussionException
     {
@@ -116,4 +159,333 @@ class DefaultChangeRequestDiscussionServiceTest
         ));
         assertEquals(fileDiffReference, this.changeRequestDiscussionService.getReferenceFrom(discussion));
     }
+
+    @Test
+    void getDiscussionsFromWithoutDiscussion() throws ChangeRequestDiscussionException
+    {
+        ChangeRequestReference reference = new ChangeRequestReference("cr1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(reference))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+            .thenReturn(0L);
+
+        // Viewing a change request without any discussion doesn't write anything.
+        assertEquals(List.of(), this.changeRequestDiscussionService.getDiscussionsFrom(reference));
+        verify(this.changeRequestDiscussionFactory, never()).getOrCreateContextFor(any());
+        verifyNoInteractions(this.discussionContextService);
+        verify(this.discussionService, never()).getOrCreate(any(), any(), any(), any(), any());
+        verify(this.discussionService, never()).create(any(), any(), any(), any(), any());
+        verify(this.discussionService, never()).findByEntityReferences(any(), any(), any(), any());
+    }
+
+    @Test
+    void getDiscussionsFrom() throws ChangeRequestDiscussionException
+    {
+        ChangeRequestReference reference = new ChangeRequestReference("cr1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(reference))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+            .thenReturn(2L);
+        List<Discussion> discussions = List.of(mock(Discussion.class), mock(Discussion.class));
+        when(this.discussionService.findByEntityReferences("changerequest-change_request", List.of("cr1"), 0, 2))
+            .thenReturn(discussions);
+
+        assertEquals(discussions, this.changeRequestDiscussionService.getDiscussionsFrom(reference));
+        verify(this.changeRequestDiscussionFactory, never()).getOrCreateContextFor(any());
+    }
+
+    @Test
+    void getOrCreateDiscussionForExistingDiscussion() throws ChangeRequestDiscussionException
+    {
+        ChangeRequestFileDiffReference fileDiffReference =
+            new ChangeRequestFileDiffReference("cr1", new FileDiffLocation("diff1", "xwiki:Foo.Bar"));
+        ChangeRequestFileDiffReference otherFileDiffReference =
+            new ChangeRequestFileDiffReference("cr1", new FileDiffLocation("diff2", "xwiki:Foo.Bar"));
+        DiscussionContextEntityReference entityReference =
+            new DiscussionContextEntityReference("changerequest-file_diff", "cr1__CRREF__diff1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(fileDiffReference))
+            .thenReturn(entityReference);
+        List<String> entityReferences = List.of(entityReference.getReference());
+        when(this.discussionService.countByEntityReferences(entityReference.getType(), entityReferences))
+            .thenReturn(2L);
+
+        // The context of the file diff is also linked to the discussion of another reference.
+        Discussion otherDiscussion = mockDiscussion(otherFileDiffReference);
+        Discussion discussion = mockDiscussion(fileDiffReference);
+        when(this.discussionService.findByEntityReferences(entityReference.getType(), entityReferences, 0, 2))
+            .thenReturn(List.of(otherDiscussion, discussion));
+
+        assertSame(discussion, this.changeRequestDiscussionService.getOrCreateDiscussionFor(fileDiffReference));
+        verify(this.changeRequestDiscussionFactory, never()).getOrCreateContextFor(any());
+        verify(this.discussionService, never()).getOrCreate(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getOrCreateDiscussionForMissingDiscussion() throws ChangeRequestDiscussionException
+    {
+        ChangeRequestCommentReference commentReference = new ChangeRequestCommentReference("cr1");
+        DiscussionContextEntityReference entityReference =
+            new DiscussionContextEntityReference("changerequest-change_request_comment", "cr1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(commentReference))
+            .thenReturn(entityReference);
+        assertEquals(Optional.empty(), this.changeRequestDiscussionService.getDiscussionFor(commentReference));
+
+        DiscussionContext crContext = mock(DiscussionContext.class);
+        DiscussionContextReference crContextReference = mock(DiscussionContextReference.class);
+        when(crContext.getReference()).thenReturn(crContextReference);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(new ChangeRequestReference("cr1")))
+            .thenReturn(crContext);
+        DiscussionContext commentContext = mock(DiscussionContext.class);
+        DiscussionContextReference commentContextReference = mock(DiscussionContextReference.class);
+        when(commentContext.getReference()).thenReturn(commentContextReference);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(commentReference)).thenReturn(commentContext);
+
+        Discussion discussion = mock(Discussion.class);
+        when(this.discussionService.getOrCreate(eq(ChangeRequestDiscussionService.APPLICATION_HINT), any(), any(),
+            eq(List.of(crContextReference, commentContextReference)), any())).thenReturn(Optional.of(discussion));
+
+        assertSame(discussion, this.changeRequestDiscussionService.getOrCreateDiscussionFor(commentReference));
+    }
+
+    private Discussion mockDiscussion(AbstractChangeRequestDiscussionContextReference reference)
+    {
+        Discussion discussion = mock(Discussion.class);
+        DiscussionReference discussionReference = mock(DiscussionReference.class);
+        when(discussion.getReference()).thenReturn(discussionReference);
+        DiscussionContext discussionContext = mock(DiscussionContext.class);
+        when(this.discussionContextService.findByDiscussionReference(discussionReference))
+            .thenReturn(List.of(discussionContext));
+        when(this.discussionReferenceUtils.computeReferenceFromContext(discussionContext, null)).thenReturn(reference);
+        return discussion;
+    }
+
+    @Test
+    void getChangeRequestDiscussions() throws Exception
+    {
+        ChangeRequestReference reference = new ChangeRequestReference("cr1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(reference))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        FileDiffLocation fileDiffLocation = new FileDiffLocation("diff1", "xwiki:Foo.Bar");
+        ChangeRequestLineDiffReference lineDiffReference = new ChangeRequestLineDiffReference("cr1",
+            new LineDiffLocation(fileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_",
+                "content", 12, LineDiffLocation.LineChange.ADDED));
+        DiscussionContextEntityReference crEntityReference =
+            new DiscussionContextEntityReference("changerequest-change_request", "cr1");
+        DiscussionContextEntityReference lineDiffEntityReference =
+            new DiscussionContextEntityReference("changerequest-line_diff", "cr1:lineDiff");
+        ChangeRequestReference crReference = new ChangeRequestReference("cr1");
+        when(this.discussionReferenceUtils.computeReferenceFromEntityReference(crEntityReference, null))
+            .thenReturn(crReference);
+        when(this.discussionReferenceUtils.computeReferenceFromEntityReference(lineDiffEntityReference, crReference))
+            .thenReturn(lineDiffReference);
+        UnifiedDiffBlock<String, Character> diffBlock = new UnifiedDiffBlock<>();
+        when(this.changeRequestDiscussionDiffUtils.deserialize("serializedBlock")).thenReturn(diffBlock);
+
+        for (int size : List.of(2, 20)) {
+            List<Discussion> discussions = new ArrayList<>();
+            Map<Discussion, StoredDiscussion> storedDiscussions = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Discussion discussion = mock(Discussion.class);
+                discussions.add(discussion);
+                if (i % 2 == 0) {
+                    storedDiscussions.put(discussion, new StoredDiscussion(List.of(crEntityReference), null, i));
+                } else {
+                    storedDiscussions.put(discussion,
+                        new StoredDiscussion(List.of(crEntityReference, lineDiffEntityReference),
+                            Map.of(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, "serializedBlock"), 0));
+                }
+            }
+            when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+                .thenReturn((long) size);
+            when(this.discussionService.findByEntityReferences("changerequest-change_request", List.of("cr1"), 0,
+                size)).thenReturn(discussions);
+            when(this.discussionStoreLoader.load(reference, discussions)).thenReturn(storedDiscussions);
+
+            List<ChangeRequestDiscussion> result =
+                this.changeRequestDiscussionService.getChangeRequestDiscussions(reference);
+
+            assertEquals(size, result.size());
+            for (int i = 0; i < size; i++) {
+                ChangeRequestDiscussion changeRequestDiscussion = result.get(i);
+                assertSame(discussions.get(i), changeRequestDiscussion.getDiscussion());
+                if (i % 2 == 0) {
+                    assertEquals(crReference, changeRequestDiscussion.getReference());
+                    assertNull(changeRequestDiscussion.getDiffBlock());
+                    assertEquals(i, changeRequestDiscussion.getMessageCount());
+                } else {
+                    assertEquals(lineDiffReference, changeRequestDiscussion.getReference());
+                    assertEquals(new ChangeRequestDiscussionDiffBlock(diffBlock, lineDiffReference),
+                        changeRequestDiscussion.getDiffBlock());
+                    assertEquals(0, changeRequestDiscussion.getMessageCount());
+                }
+            }
+        }
+
+        // Whatever the number of discussions, they are all loaded at once and never one by one.
+        verify(this.discussionStoreLoader, times(2)).load(eq(reference), any());
+        verifyNoInteractions(this.discussionContextService);
+    }
+
+    @Test
+    void getChangeRequestDiscussionsNotInStore() throws Exception
+    {
+        ChangeRequestReference reference = new ChangeRequestReference("cr1");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(reference))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+            .thenReturn(3L);
+
+        FileDiffLocation fileDiffLocation = new FileDiffLocation("diff1", "xwiki:Foo.Bar");
+        ChangeRequestLineDiffReference lineDiffReference = new ChangeRequestLineDiffReference("cr1",
+            new LineDiffLocation(fileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_",
+                "content", 12, LineDiffLocation.LineChange.ADDED));
+        Discussion commentDiscussion = mockDiscussion(new ChangeRequestCommentReference("cr1"));
+        Discussion fileDiffDiscussion = mockDiscussion(new ChangeRequestFileDiffReference("cr1", fileDiffLocation));
+        Discussion lineDiffDiscussion = mockDiscussion(lineDiffReference);
+        List<Discussion> discussions = List.of(commentDiscussion, fileDiffDiscussion, lineDiffDiscussion);
+        when(this.discussionService.findByEntityReferences("changerequest-change_request", List.of("cr1"), 0, 3))
+            .thenReturn(discussions);
+
+        DiscussionContext lineDiffContext =
+            this.discussionContextService.findByDiscussionReference(lineDiffDiscussion.getReference()).get(0);
+        when(lineDiffContext.getMetadata()).thenReturn(
+            Collections.singletonMap(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, "serializedBlock"));
+        UnifiedDiffBlock<String, Character> diffBlock = new UnifiedDiffBlock<>();
+        when(this.changeRequestDiscussionDiffUtils.deserialize("serializedBlock")).thenReturn(diffBlock);
+        clearInvocations(this.discussionContextService);
+
+        // The line diff discussion is found in the store, but without its metadata.
+        when(this.discussionStoreLoader.load(reference, discussions)).thenReturn(Map.of(lineDiffDiscussion,
+            new StoredDiscussion(List.of(new DiscussionContextEntityReference("changerequest-line_diff", "cr1:line")),
+                null, 1)));
+        when(this.discussionReferenceUtils.computeReferenceFromEntityReference(any(), any()))
+            .thenReturn(lineDiffReference);
+
+        List<ChangeRequestDiscussion> result =
+            this.changeRequestDiscussionService.getChangeRequestDiscussions(reference);
+
+        // The contexts of the discussions which couldn't be resolved from the store are only requested once.
+        for (Discussion discussion : discussions) {
+            verify(this.discussionContextService).findByDiscussionReference(discussion.getReference());
+        }
+        assertEquals(new ChangeRequestDiscussionDiffBlock(diffBlock, lineDiffReference), result.get(2).getDiffBlock());
+        assertEquals(List.of(-1L, -1L, 1L),
+            result.stream().map(ChangeRequestDiscussion::getMessageCount).collect(Collectors.toList()));
+
+        // The result is the same as the one obtained with the calls for each discussion.
+        assertEquals(discussions.size(), result.size());
+        for (int i = 0; i < discussions.size(); i++) {
+            Discussion discussion = discussions.get(i);
+            ChangeRequestDiscussion changeRequestDiscussion = result.get(i);
+            assertSame(discussion, changeRequestDiscussion.getDiscussion());
+            assertEquals(this.changeRequestDiscussionService.getReferenceFrom(discussion),
+                changeRequestDiscussion.getReference());
+            assertEquals(this.changeRequestDiscussionService.getDiffBlockMetadata(discussion).orElse(null),
+                changeRequestDiscussion.getDiffBlock());
+        }
+    }
+
+    @Test
+    void moveDiscussions() throws ChangeRequestException
+    {
+        ChangeRequest originalChangeRequest = mock(ChangeRequest.class);
+        when(originalChangeRequest.getId()).thenReturn("cr1");
+        DocumentReference fooReference = new DocumentReference("xwiki", "Foo", "WebHome");
+        DocumentReference barReference = new DocumentReference("xwiki", "Bar", "WebHome");
+        when(this.stringEntityReferenceSerializer.serialize(fooReference)).thenReturn("xwiki:Foo.WebHome");
+        when(this.stringEntityReferenceSerializer.serialize(barReference)).thenReturn("xwiki:Bar.WebHome");
+        ChangeRequest fooChangeRequest = mock(ChangeRequest.class);
+        when(fooChangeRequest.getId()).thenReturn("cr2");
+        when(fooChangeRequest.getModifiedDocuments()).thenReturn(Set.of(fooReference));
+        ChangeRequest barChangeRequest = mock(ChangeRequest.class);
+        when(barChangeRequest.getId()).thenReturn("cr3");
+        when(barChangeRequest.getModifiedDocuments()).thenReturn(Set.of(barReference));
+
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(any()))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+            .thenReturn(3L, 0L);
+        FileDiffLocation fooDiffLocation = new FileDiffLocation("diff1", "xwiki:Foo.WebHome");
+        Discussion comment1 = mockDiscussion(new ChangeRequestCommentReference("cr1"));
+        Discussion comment2 = mockDiscussion(new ChangeRequestCommentReference("cr1"));
+        Discussion fooDiscussion = mockDiscussion(new ChangeRequestFileDiffReference("cr1", fooDiffLocation));
+        when(this.discussionService.findByEntityReferences("changerequest-change_request", List.of("cr1"), 0, 3))
+            .thenReturn(List.of(comment1, fooDiscussion, comment2));
+
+        DiscussionContext context = mock(DiscussionContext.class);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(any())).thenReturn(context);
+        Discussion newDiscussion = mock(Discussion.class);
+        when(this.discussionService.getOrCreate(any(), any(), any(), any(), any()))
+            .thenReturn(Optional.of(newDiscussion));
+
+        this.changeRequestDiscussionService.moveDiscussions(originalChangeRequest,
+            List.of(fooChangeRequest, barChangeRequest));
+
+        // Each new discussion is only retrieved once, and receives the messages of all the matching discussions.
+        verify(this.discussionService, times(3)).getOrCreate(any(), any(), any(), any(), any());
+        verify(this.changeRequestDiscussionFactory).copyMessages(List.of(comment1, comment2), newDiscussion,
+            new ChangeRequestCommentReference("cr2"));
+        verify(this.changeRequestDiscussionFactory).copyMessages(List.of(comment1, comment2), newDiscussion,
+            new ChangeRequestCommentReference("cr3"));
+        verify(this.changeRequestDiscussionFactory).copyMessages(List.of(fooDiscussion), newDiscussion,
+            new ChangeRequestFileDiffReference("cr2", fooDiffLocation));
+    }
+
+    @Test
+    void moveDiscussionsResumedAfterFailure() throws ChangeRequestException
+    {
+        ChangeRequest originalChangeRequest = mock(ChangeRequest.class);
+        when(originalChangeRequest.getId()).thenReturn("cr1");
+        DocumentReference fooReference = new DocumentReference("xwiki", "Foo", "WebHome");
+        DocumentReference barReference = new DocumentReference("xwiki", "Bar", "WebHome");
+        when(this.stringEntityReferenceSerializer.serialize(fooReference)).thenReturn("xwiki:Foo.WebHome");
+        when(this.stringEntityReferenceSerializer.serialize(barReference)).thenReturn("xwiki:Bar.WebHome");
+        ChangeRequest fooChangeRequest = mock(ChangeRequest.class);
+        when(fooChangeRequest.getId()).thenReturn("cr2");
+        when(fooChangeRequest.getModifiedDocuments()).thenReturn(Set.of(fooReference));
+        ChangeRequest barChangeRequest = mock(ChangeRequest.class);
+        when(barChangeRequest.getId()).thenReturn("cr3");
+        when(barChangeRequest.getModifiedDocuments()).thenReturn(Set.of(barReference));
+
+        // The discussions of the original change request are always found, while the new ones don't exist yet.
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(any()))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "new"));
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(new ChangeRequestReference("cr1")))
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", "cr1"));
+        when(this.discussionService.countByEntityReferences("changerequest-change_request", List.of("cr1")))
+            .thenReturn(3L);
+        FileDiffLocation fooDiffLocation = new FileDiffLocation("diff1", "xwiki:Foo.WebHome");
+        Discussion comment1 = mockDiscussion(new ChangeRequestCommentReference("cr1"));
+        Discussion comment2 = mockDiscussion(new ChangeRequestCommentReference("cr1"));
+        Discussion fooDiscussion = mockDiscussion(new ChangeRequestFileDiffReference("cr1", fooDiffLocation));
+        when(this.discussionService.findByEntityReferences("changerequest-change_request", List.of("cr1"), 0, 3))
+            .thenReturn(List.of(comment1, fooDiscussion, comment2));
+
+        DiscussionContext context = mock(DiscussionContext.class);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(any())).thenReturn(context);
+        Discussion newDiscussion = mock(Discussion.class);
+        when(this.discussionService.getOrCreate(any(), any(), any(), any(), any()))
+            .thenReturn(Optional.of(newDiscussion));
+
+        // The copy of the messages in the comments of the second change request fails the first time.
+        doThrow(new ChangeRequestDiscussionException("Error while copying message")).doNothing()
+            .when(this.changeRequestDiscussionFactory).copyMessages(List.of(comment1, comment2), newDiscussion,
+                new ChangeRequestCommentReference("cr3"));
+
+        List<ChangeRequest> splittedChangeRequests = List.of(fooChangeRequest, barChangeRequest);
+        assertThrows(ChangeRequestDiscussionException.class,
+            () -> this.changeRequestDiscussionService.moveDiscussions(originalChangeRequest, splittedChangeRequests));
+        verify(this.changeRequestDiscussionFactory, never()).copyMessages(List.of(fooDiscussion), newDiscussion,
+            new ChangeRequestFileDiffReference("cr2", fooDiffLocation));
+
+        // The move is restarted with the same discussions in the same order, so that the copy of the messages is
+        // resumed where it stopped.
+        this.changeRequestDiscussionService.moveDiscussions(originalChangeRequest, splittedChangeRequests);
+        verify(this.changeRequestDiscussionFactory, times(2)).copyMessages(List.of(comment1, comment2),
+            newDiscussion, new ChangeRequestCommentReference("cr2"));
+        verify(this.changeRequestDiscussionFactory, times(2)).copyMessages(List.of(comment1, comment2),
+            newDiscussion, new ChangeRequestCommentReference("cr3"));
+        verify(this.changeRequestDiscussionFactory).copyMessages(List.of(fooDiscussion), newDiscussion,
+            new ChangeRequestFileDiffReference("cr2", fooDiffLocation));
+    }
 }
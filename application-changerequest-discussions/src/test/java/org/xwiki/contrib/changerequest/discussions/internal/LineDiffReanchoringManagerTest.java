@@ -0,0 +1,367 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.discussions.internal;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussion;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestFileDiffReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestLineDiffReference;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.FileDiffLocation;
+import org.xwiki.contrib.changerequest.discussions.references.difflocation.LineDiffLocation;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
+import org.xwiki.contrib.discussions.DiscussionContextService;
+import org.xwiki.contrib.discussions.domain.Discussion;
+import org.xwiki.contrib.discussions.domain.DiscussionContext;
+import org.xwiki.contrib.discussions.domain.references.DiscussionContextEntityReference;
+import org.xwiki.contrib.discussions.domain.references.DiscussionReference;
+import org.xwiki.diff.DiffManager;
+import org.xwiki.diff.Patch;
+import org.xwiki.diff.internal.DefaultDiffManager;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.ObjectReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link LineDiffReanchoringManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LineDiffReanchoringManagerTest
+{
+    private static final String TARGET = "xwiki:Space.Page";
+
+    @InjectMockComponents
+    private LineDiffReanchoringManager reanchoringManager;
+
+    @MockComponent
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    @MockComponent
+    private FileChangeStorageManager fileChangeStorageManager;
+
+    @MockComponent
+    private ChangeRequestDiscussionService changeRequestDiscussionService;
+
+    @MockComponent
+    private ChangeRequestDiscussionFactory changeRequestDiscussionFactory;
+
+    @MockComponent
+    private DiscussionContextService discussionContextService;
+
+    @MockComponent
+    private DiffManager diffManager;
+
+    @MockComponent
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @MockComponent
+    @Named("currentmixed")
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    private final DefaultDiffManager defaultDiffManager = new DefaultDiffManager();
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        when(this.diffManager.diff(any(), any(), any())).then(invocationOnMock ->
+            this.defaultDiffManager.diff(invocationOnMock.getArgument(0), invocationOnMock.getArgument(1), null));
+    }
+
+    private Patch<String> diff(List<String> previous, List<String> next) throws Exception
+    {
+        return this.defaultDiffManager.diff(previous, next, null).getPatch();
+    }
+
+    @Test
+    void mapLineNumberWithInsertions() throws Exception
+    {
+        Patch<String> patch = diff(List.of("a", "b", "c"), List.of("x", "a", "b", "y", "z", "c"));
+
+        assertEquals(OptionalLong.of(2), LineDiffReanchoringManager.mapLineNumber(patch, 1));
+        assertEquals(OptionalLong.of(3), LineDiffReanchoringManager.mapLineNumber(patch, 2));
+        assertEquals(OptionalLong.of(6), LineDiffReanchoringManager.mapLineNumber(patch, 3));
+    }
+
+    @Test
+    void mapLineNumberWithDeletions() throws Exception
+    {
+        Patch<String> patch = diff(List.of("a", "b", "c", "d", "e"), List.of("a", "d", "e"));
+
+        assertEquals(OptionalLong.of(1), LineDiffReanchoringManager.mapLineNumber(patch, 1));
+        assertEquals(OptionalLong.empty(), LineDiffReanchoringManager.mapLineNumber(patch, 2));
+        assertEquals(OptionalLong.empty(), LineDiffReanchoringManager.mapLineNumber(patch, 3));
+        assertEquals(OptionalLong.of(2), LineDiffReanchoringManager.mapLineNumber(patch, 4));
+        assertEquals(OptionalLong.of(3), LineDiffReanchoringManager.mapLineNumber(patch, 5));
+    }
+
+    @Test
+    void mapLineNumberWithConflictingRegion() throws Exception
+    {
+        // The second line has been modified by both the change request and the new published version.
+        Patch<String> patch = diff(List.of("a", "b", "c"), List.of("a", "b merged", "b extra", "c"));
+
+        assertEquals(OptionalLong.of(1), LineDiffReanchoringManager.mapLineNumber(patch, 1));
+        assertEquals(OptionalLong.empty(), LineDiffReanchoringManager.mapLineNumber(patch, 2));
+        assertEquals(OptionalLong.of(4), LineDiffReanchoringManager.mapLineNumber(patch, 3));
+    }
+
+    @Test
+    void isChanged() throws Exception
+    {
+        Patch<String> patch = diff(List.of("a", "b", "c", "d"), List.of("a", "x", "y", "c", "d", "z"));
+
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 1, true));
+        assertTrue(LineDiffReanchoringManager.isChanged(patch, 2, true));
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 3, true));
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 4, true));
+
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 1, false));
+        assertTrue(LineDiffReanchoringManager.isChanged(patch, 2, false));
+        assertTrue(LineDiffReanchoringManager.isChanged(patch, 3, false));
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 4, false));
+        assertFalse(LineDiffReanchoringManager.isChanged(patch, 5, false));
+        assertTrue(LineDiffReanchoringManager.isChanged(patch, 6, false));
+    }
+
+    @Test
+    void reanchorLineDiscussions() throws Exception
+    {
+        String changeRequestId = "cr1";
+        DocumentReference target = new DocumentReference("xwiki", "Space", "Page", Locale.ROOT);
+        when(this.documentReferenceResolver.resolve(TARGET)).thenReturn(new DocumentReference("xwiki", "Space",
+            "Page"));
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+        FileChange oldFileChange = mock(FileChange.class);
+        when(oldFileChange.getId()).thenReturn("fc1");
+        when(oldFileChange.getVersion()).thenReturn("2.1");
+        FileChange newFileChange = mock(FileChange.class);
+        when(newFileChange.getId()).thenReturn("fc1");
+        when(newFileChange.getVersion()).thenReturn("3.1");
+        when(newFileChange.getPreviousVersion()).thenReturn("2.1");
+        Deque<FileChange> fileChanges = new LinkedList<>(List.of(oldFileChange, newFileChange));
+        when(changeRequest.getFileChanges()).thenReturn(Map.of(target, fileChanges));
+
+        XWikiDocument oldDocument = mock(XWikiDocument.class);
+        when(oldDocument.getContent()).thenReturn("a\nb\nc\nd");
+        XWikiDocument newDocument = mock(XWikiDocument.class);
+        when(newDocument.getContent()).thenReturn("x\na\nb\nc modified\nd");
+        when(this.fileChangeStorageManager.getModifiedDocumentFromFileChange(oldFileChange)).thenReturn(oldDocument);
+        when(this.fileChangeStorageManager.getModifiedDocumentFromFileChange(newFileChange)).thenReturn(newDocument);
+
+        FileDiffLocation oldFileDiffLocation = new FileDiffLocation("fc1_2dot1_1dot1_42", TARGET);
+        ChangeRequestLineDiffReference movedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(oldFileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 2,
+                LineDiffLocation.LineChange.ADDED));
+        ChangeRequestLineDiffReference changedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(oldFileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 3,
+                LineDiffLocation.LineChange.ADDED));
+        ChangeRequestLineDiffReference otherDiffReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(new FileDiffLocation("fc1_1dot1_1dot1_42", TARGET),
+                LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 1, LineDiffLocation.LineChange.ADDED));
+
+        Discussion movedDiscussion = mock(Discussion.class, "moved");
+        DiscussionReference movedDiscussionReference = mock(DiscussionReference.class);
+        when(movedDiscussion.getReference()).thenReturn(movedDiscussionReference);
+        Discussion changedDiscussion = mock(Discussion.class, "changed");
+        Discussion otherDiscussion = mock(Discussion.class, "other");
+        when(this.changeRequestDiscussionService.getChangeRequestDiscussions(
+            new ChangeRequestReference(changeRequestId))).thenReturn(List.of(
+                new ChangeRequestDiscussion(movedReference, movedDiscussion),
+                new ChangeRequestDiscussion(changedReference, changedDiscussion),
+                new ChangeRequestDiscussion(otherDiffReference, otherDiscussion)));
+
+        DiscussionContextEntityReference oldLineEntityReference =
+            new DiscussionContextEntityReference("changerequest-line_diff", "oldLine");
+        DiscussionContextEntityReference oldFileEntityReference =
+            new DiscussionContextEntityReference("changerequest-file_diff", "oldFile");
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(movedReference))
+            .thenReturn(oldLineEntityReference);
+        when(this.changeRequestDiscussionFactory.createContextEntityReferenceFor(
+            new ChangeRequestFileDiffReference(changeRequestId, oldFileDiffLocation)))
+            .thenReturn(oldFileEntityReference);
+
+        DiscussionContext oldLineContext = mock(DiscussionContext.class);
+        when(oldLineContext.getEntityReference()).thenReturn(oldLineEntityReference);
+        when(oldLineContext.getMetadata()).thenReturn(
+            Map.of(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, "{}"));
+        DiscussionContext oldFileContext = mock(DiscussionContext.class);
+        when(oldFileContext.getEntityReference()).thenReturn(oldFileEntityReference);
+        DiscussionContext changeRequestContext = mock(DiscussionContext.class);
+        when(changeRequestContext.getEntityReference())
+            .thenReturn(new DiscussionContextEntityReference("changerequest-change_request", changeRequestId));
+        when(this.discussionContextService.findByDiscussionReference(movedDiscussionReference))
+            .thenReturn(List.of(changeRequestContext, oldLineContext, oldFileContext));
+
+        FileDiffLocation newFileDiffLocation = new FileDiffLocation("fc1_3dot1_", TARGET);
+        ChangeRequestLineDiffReference newReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(newFileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 3,
+                LineDiffLocation.LineChange.ADDED));
+        DiscussionContext newLineContext = mock(DiscussionContext.class);
+        DiscussionContext newFileContext = mock(DiscussionContext.class);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(newReference)).thenReturn(newLineContext);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(
+            new ChangeRequestFileDiffReference(changeRequestId, newFileDiffLocation))).thenReturn(newFileContext);
+
+        this.reanchoringManager.reanchorLineDiscussions(changeRequestId, Set.of(target));
+
+        verify(this.discussionContextService).saveMetadata(newLineContext,
+            Map.of(ChangeRequestDiscussionService.DIFF_CONTEXT_METADATA_KEY, "{}"));
+        verify(this.discussionContextService).link(newLineContext, movedDiscussion);
+        verify(this.discussionContextService).link(newFileContext, movedDiscussion);
+        verify(this.discussionContextService).unlink(oldLineContext, movedDiscussion);
+        verify(this.discussionContextService).unlink(oldFileContext, movedDiscussion);
+        verify(this.discussionContextService, never()).unlink(changeRequestContext, movedDiscussion);
+
+        // The line of the second discussion has been modified, and the last one is not about the rebased diff.
+        verify(this.discussionContextService, never()).link(any(), eq(changedDiscussion));
+        verify(this.discussionContextService, never()).link(any(), eq(otherDiscussion));
+
+        // All discussions are about the same block: it's diffed only once for the rebase, and once for computing the
+        // kind of change of the lines in the new diff.
+        verify(this.diffManager, times(2)).diff(any(), any(), any());
+    }
+
+    private XWikiDocument mockDocument(String content, ObjectReference objectReference, String description)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getContent()).thenReturn(content);
+        BaseObject object = mock(BaseObject.class);
+        when(object.getStringValue("description")).thenReturn(description);
+        when(document.getXObject(objectReference)).thenReturn(object);
+        return document;
+    }
+
+    @Test
+    void reanchorRemovedAndXObjectLineDiscussions() throws Exception
+    {
+        String changeRequestId = "cr1";
+        DocumentReference target = new DocumentReference("xwiki", "Space", "Page", Locale.ROOT);
+        when(this.documentReferenceResolver.resolve(TARGET)).thenReturn(new DocumentReference("xwiki", "Space",
+            "Page"));
+        ObjectReference objectReference = new ObjectReference("XWiki.SomeClass[0]", target);
+        when(this.entityReferenceResolver.resolve("xwiki:Space.Page^XWiki.SomeClass[0]", EntityType.OBJECT))
+            .thenReturn(objectReference);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
+        FileChange oldFileChange = mock(FileChange.class);
+        when(oldFileChange.getId()).thenReturn("fc1");
+        when(oldFileChange.getVersion()).thenReturn("2.1");
+        FileChange newFileChange = mock(FileChange.class);
+        when(newFileChange.getId()).thenReturn("fc1");
+        when(newFileChange.getVersion()).thenReturn("3.1");
+        when(newFileChange.getPreviousVersion()).thenReturn("2.1");
+        when(changeRequest.getFileChanges())
+            .thenReturn(Map.of(target, new LinkedList<>(List.of(oldFileChange, newFileChange))));
+
+        // The change request removes line "b" of the content and adds line "b" to the description. The published
+        // version on which it is rebased adds a first line to the content, and also adds line "b" to the description.
+        XWikiDocument oldPreviousDocument = mockDocument("a\nb\nc", objectReference, "a\nc");
+        XWikiDocument oldModifiedDocument = mockDocument("a\nc", objectReference, "a\nb\nc");
+        XWikiDocument newPreviousDocument = mockDocument("x\na\nb\nc", objectReference, "a\nb\nc");
+        XWikiDocument newModifiedDocument = mockDocument("x\na\nc", objectReference, "a\nb\nc");
+        when(this.fileChangeStorageManager.getPreviousDocumentFromFileChange(oldFileChange))
+            .thenReturn(Optional.of(oldPreviousDocument));
+        when(this.fileChangeStorageManager.getModifiedDocumentFromFileChange(oldFileChange))
+            .thenReturn(oldModifiedDocument);
+        when(this.fileChangeStorageManager.getPreviousDocumentFromFileChange(newFileChange))
+            .thenReturn(Optional.of(newPreviousDocument));
+        when(this.fileChangeStorageManager.getModifiedDocumentFromFileChange(newFileChange))
+            .thenReturn(newModifiedDocument);
+
+        FileDiffLocation oldFileDiffLocation = new FileDiffLocation("fc1_2dot1_1dot1_42", TARGET);
+        String objectEntityReference = "object:xwiki:Space.Page^XWiki.SomeClass[0]";
+        ChangeRequestLineDiffReference removedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(oldFileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 2,
+                LineDiffLocation.LineChange.REMOVED));
+        ChangeRequestLineDiffReference addedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(oldFileDiffLocation, LineDiffLocation.DiffDocumentPart.XOBJECT,
+                objectEntityReference, "description", 2, LineDiffLocation.LineChange.ADDED));
+        Discussion removedDiscussion = mock(Discussion.class, "removed");
+        when(removedDiscussion.getReference()).thenReturn(mock(DiscussionReference.class));
+        Discussion addedDiscussion = mock(Discussion.class, "added");
+        when(addedDiscussion.getReference()).thenReturn(mock(DiscussionReference.class));
+        when(this.changeRequestDiscussionService.getChangeRequestDiscussions(
+            new ChangeRequestReference(changeRequestId))).thenReturn(List.of(
+                new ChangeRequestDiscussion(removedReference, removedDiscussion),
+                new ChangeRequestDiscussion(addedReference, addedDiscussion)));
+
+        // The removed line is still removed, but it's now the third line of the previous version.
+        FileDiffLocation newFileDiffLocation = new FileDiffLocation("fc1_3dot1_", TARGET);
+        ChangeRequestLineDiffReference newRemovedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(newFileDiffLocation, LineDiffLocation.DiffDocumentPart.METADATA, "_", "content", 3,
+                LineDiffLocation.LineChange.REMOVED));
+        // The added line is now part of the published version: it's displayed as context in the new diff.
+        ChangeRequestLineDiffReference newAddedReference = new ChangeRequestLineDiffReference(changeRequestId,
+            new LineDiffLocation(newFileDiffLocation, LineDiffLocation.DiffDocumentPart.XOBJECT,
+                objectEntityReference, "description", 2, LineDiffLocation.LineChange.UNCHANGED));
+        DiscussionContext newRemovedContext = mock(DiscussionContext.class);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(newRemovedReference))
+            .thenReturn(newRemovedContext);
+        DiscussionContext newAddedContext = mock(DiscussionContext.class);
+        when(this.changeRequestDiscussionFactory.getOrCreateContextFor(newAddedReference))
+            .thenReturn(newAddedContext);
+
+        this.reanchoringManager.reanchorLineDiscussions(changeRequestId, Set.of(target));
+
+        verify(this.discussionContextService).link(newRemovedContext, removedDiscussion);
+        verify(this.discussionContextService).link(newAddedContext, addedDiscussion);
+    }
+}
@@ -19,6 +19,12 @@
  */
 package org.xwiki.contrib.changerequest.internal;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -108,9 +114,28 @@ public class ChangeRequestAutoWatchHandler
      */
     public void watchChangeRequest(ChangeRequest changeRequest, UserReference userReference)
         throws ChangeRequestException
+    {
+        this.watchChangeRequest(changeRequest, Set.of(userReference));
+    }
+
+    /**
+     * Ensure that all the given users watch the given change request.
+     *
+     * @param changeRequest the change request for which to create new watch entities.
+     * @param userReferences the users who should watch the change request.
+     * @throws ChangeRequestException in case of problem when saving one of the watch entities: the watch entities of
+     *         the other users are still saved.
+     * @since 1.16
+     */
+    public void watchChangeRequest(ChangeRequest changeRequest, Collection<UserReference> userReferences)
+        throws ChangeRequestException
     {
         DocumentReference changeRequestDoc = this.changeRequestDocumentReferenceResolver.resolve(changeRequest);
-        this.watchDocument(changeRequestDoc, userReference);
+        Map<UserReference, Set<DocumentReference>> documentsPerUser = new LinkedHashMap<>();
+        for (UserReference userReference : userReferences) {
+            documentsPerUser.put(userReference, Set.of(changeRequestDoc));
+        }
+        this.watchDocuments(documentsPerUser);
     }
 
     /**
@@ -124,11 +149,52 @@ public class ChangeRequestAutoWatchHandler
     public void watchDocument(DocumentReference documentReference, UserReference userReference)
         throws ChangeRequestException
     {
-        DocumentReference userDoc = this.userReferenceSerializer.serialize(userReference);
+        this.watchDocuments(Map.of(userReference, Set.of(documentReference)));
+    }
+
+    /**
+     * Ensure that each user watch all the locations associated to them, in a single operation.
+     * Each pair of user and location is only handled once, and nothing is written for the locations already watched
+     * by the user.
+     *
+     * @param documentsPerUser the references that each user should watch
+     * @throws ChangeRequestException in case of problem for watching one of the documents: the other documents are
+     *         still watched.
+     * @since 1.16
+     */
+    public void watchDocuments(Map<UserReference, ? extends Collection<DocumentReference>> documentsPerUser)
+        throws ChangeRequestException
+    {
+        ChangeRequestException exception = null;
+        for (Map.Entry<UserReference, ? extends Collection<DocumentReference>> entry : documentsPerUser.entrySet()) {
+            DocumentReference userDoc = this.userReferenceSerializer.serialize(entry.getKey());
+            for (DocumentReference documentReference : new LinkedHashSet<>(entry.getValue())) {
+                try {
+                    this.watchLocation(documentReference, userDoc);
+                } catch (ChangeRequestException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void watchLocation(DocumentReference documentReference, DocumentReference userDoc)
+        throws ChangeRequestException
+    {
         WatchedLocationReference watchedLocationReference =
             this.watchedEntityFactory.createWatchedLocationReference(documentReference);
         try {
-            this.watchedEntitiesManager.watchEntity(watchedLocationReference, userDoc);
+            // Avoid writing again the preferences of the user if the location is already watched.
+            if (!watchedLocationReference.isWatched(userDoc)) {
+                this.watchedEntitiesManager.watchEntity(watchedLocationReference, userDoc);
+            }
         } catch (NotificationException e) {
             throw new ChangeRequestException(
                 String.format("Error when trying to automatically watch document [%s]", documentReference), e);
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterPreference;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.expression.ExpressionNode;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.user.group.GroupException;
+import org.xwiki.user.group.GroupManager;
+
+/**
+ * Filter dedicated to check that a ready for review event is only displayed to the approvers it targets.
+ * The targets of those events might be groups: their members are never expanded, instead the groups of the user
+ * retrieving the notifications are checked against the targets.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Singleton
+@Named(ChangeRequestReadyForReviewNotificationFilter.FILTER_NAME)
+public class ChangeRequestReadyForReviewNotificationFilter implements NotificationFilter
+{
+    /**
+     * The name of the filter.
+     */
+    public static final String FILTER_NAME = "changeRequestReadyForReviewNotificationFilter";
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private GroupManager groupManager;
+
+    @Inject
+    private Logger logger;
+
+    private boolean isTargeted(Event event, DocumentReference user)
+    {
+        boolean result = false;
+        Collection<DocumentReference> userGroups = null;
+        Iterator<String> targetIterator = event.getTarget().iterator();
+        while (!result && targetIterator.hasNext()) {
+            DocumentReference target = this.documentReferenceResolver.resolve(targetIterator.next(), event.getWiki());
+            if (user.equals(target)) {
+                result = true;
+            } else {
+                // The groups of the user are only retrieved if the user is not directly targeted.
+                if (userGroups == null) {
+                    userGroups = getGroups(user, event);
+                }
+                result = userGroups.contains(target);
+            }
+        }
+        return result;
+    }
+
+    private Collection<DocumentReference> getGroups(DocumentReference user, Event event)
+    {
+        Collection<DocumentReference> result = Set.of();
+        try {
+            result = this.groupManager.getGroups(user, event.getWiki(), true);
+        } catch (GroupException e) {
+            this.logger.warn("Error while retrieving the groups of user [{}]: [{}]", user,
+                ExceptionUtils.getRootCauseMessage(e));
+            this.logger.debug("Full stack trace: ", e);
+        }
+        return result;
+    }
+
+    @Override
+    public FilterPolicy filterEvent(Event event, DocumentReference user,
+        Collection<NotificationFilterPreference> filterPreferences, NotificationFormat format)
+    {
+        FilterPolicy result = FilterPolicy.NO_EFFECT;
+        if (ChangeRequestReadyForReviewTargetableEvent.EVENT_NAME.equals(event.getType()) && user != null
+            && event.getTarget() != null && !event.getTarget().isEmpty() && !isTargeted(event, user)) {
+            result = FilterPolicy.FILTER;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean matchesPreference(NotificationPreference preference)
+    {
+        return false;
+    }
+
+    @Override
+    public ExpressionNode filterExpression(DocumentReference user,
+        Collection<NotificationFilterPreference> filterPreferences, NotificationPreference preference)
+    {
+        return null;
+    }
+
+    @Override
+    public ExpressionNode filterExpression(DocumentReference user,
+        Collection<NotificationFilterPreference> filterPreferences, NotificationFilterType type,
+        NotificationFormat format)
+    {
+        return null;
+    }
+
+    @Override
+    public String getName()
+    {
+        return FILTER_NAME;
+    }
+}
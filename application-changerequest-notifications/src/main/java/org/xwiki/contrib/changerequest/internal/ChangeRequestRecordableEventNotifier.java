@@ -19,22 +19,29 @@
  */
 package org.xwiki.contrib.changerequest.internal;
 
-import java.util.Optional;
-
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
-import org.slf4j.Logger;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.ChangeRequest;
-import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.eventstream.RecordableEvent;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.observation.ObservationManager;
 
+import com.xpn.xwiki.XWikiContext;
+
 /**
  * Utility component for sending recordable events with the appropriate source.
  *
@@ -43,18 +50,17 @@ import org.xwiki.observation.ObservationManager;
  */
 @Component(roles = ChangeRequestRecordableEventNotifier.class)
 @Singleton
-public class ChangeRequestRecordableEventNotifier
+public class ChangeRequestRecordableEventNotifier implements Initializable, Disposable
 {
     /**
      * Default event source.
      */
     static final String EVENT_SOURCE = "org.xwiki.contrib.changerequest:application-changerequest-notifications";
 
-    @Inject
-    private ObservationManager observationManager;
+    private static final int DOCUMENT_REFERENCE_CACHE_SIZE = 1000;
 
     @Inject
-    private Provider<ChangeRequestStorageManager> changeRequestStorageManager;
+    private ObservationManager observationManager;
 
     @Inject
     private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
@@ -63,7 +69,30 @@ public class ChangeRequestRecordableEventNotifier
     private DocumentAccessBridge documentAccessBridge;
 
     @Inject
-    private Logger logger;
+    private CacheManager cacheManager;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    private Cache<DocumentReference> documentReferenceCache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.documentReferenceCache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("changerequest.notifications.documentReferences",
+                    DOCUMENT_REFERENCE_CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.documentReferenceCache.dispose();
+    }
 
     /**
      * Notify an event using the change request source.
@@ -77,24 +106,48 @@ public class ChangeRequestRecordableEventNotifier
     }
 
     /**
-     * Retrieve the document instance holding the given change request identifier.
+     * Retrieve the reference of the document holding the given change request identifier. The change request is not
+     * loaded: the reference only relies on the identifier and on the current wiki, and is kept in cache until the
+     * location of the change requests is modified (see {@link #invalidate()}).
+     *
+     * @param changeRequestId the identifier for which to retrieve the change request document reference
+     * @return the reference of the document holding the change request
+     */
+    DocumentReference getChangeRequestDocumentReference(String changeRequestId)
+    {
+        // The location of change requests depends on the configuration of each wiki.
+        String cacheKey = String.format("%s:%s", this.contextProvider.get().getWikiId(), changeRequestId);
+        DocumentReference result = this.documentReferenceCache.get(cacheKey);
+        if (result == null) {
+            ChangeRequest changeRequest = new ChangeRequest().setId(changeRequestId);
+            result = this.changeRequestDocumentReferenceResolver.resolve(changeRequest);
+            this.documentReferenceCache.set(cacheKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate the cached change request document references. This should be called whenever the location of the
+     * change requests is modified.
+     *
+     * @since 1.16
+     */
+    public void invalidate()
+    {
+        this.documentReferenceCache.removeAll();
+    }
+
+    /**
+     * Retrieve the document instance holding the given change request identifier. The change request itself is not
+     * loaded, since the events are always sent for existing change requests.
      *
      * @param changeRequestId the identifier for which to retrieve the change request.
-     * @return the instance of the document holding the change request or {@code null} if no change request can be found
-     *         matching the given identifier.
-     * @throws Exception in case of problem to load the change request or to load the document.
+     * @return the instance of the document holding the change request
+     * @throws Exception in case of problem to load the document.
      */
     public DocumentModelBridge getChangeRequestDocument(String changeRequestId) throws Exception
     {
-        Optional<ChangeRequest> optionalChangeRequest =
-            this.changeRequestStorageManager.get().load(changeRequestId);
-        if (optionalChangeRequest.isPresent()) {
-            ChangeRequest changeRequest = optionalChangeRequest.get();
-            return this.documentAccessBridge.getTranslatedDocumentInstance(
-                this.changeRequestDocumentReferenceResolver.resolve(changeRequest));
-        } else {
-            logger.error("Cannot find change request with identifier [{}]", changeRequestId);
-            return null;
-        }
+        return this.documentAccessBridge.getTranslatedDocumentInstance(
+            this.getChangeRequestDocumentReference(changeRequestId));
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Keep in cache the location where the change requests are stored for each wiki, to avoid reading the configuration
+ * of the wiki each time we need it.
+ * The cache of a wiki is invalidated whenever its change request configuration is updated, or whenever the wiki is
+ * created or deleted.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ChangeRequestSpaceLocationCache.class)
+@Singleton
+public class ChangeRequestSpaceLocationCache implements Initializable, Disposable
+{
+    private static final int CACHE_SIZE = 100;
+
+    @Inject
+    private Provider<ChangeRequestConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<SpaceReference> cache;
+
+    private final AtomicLong version = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("changerequest.notifications.spaceLocations", CACHE_SIZE));
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * Retrieve the location where the change requests of the given wiki are stored.
+     *
+     * @param wikiReference the wiki for which to retrieve the change requests location
+     * @return the space containing all change requests of the wiki
+     * @see ChangeRequestConfiguration#getChangeRequestSpaceLocation()
+     */
+    public SpaceReference getChangeRequestSpaceLocation(WikiReference wikiReference)
+    {
+        SpaceReference result = this.cache.get(wikiReference.getName());
+        if (result == null) {
+            XWikiContext context = this.contextProvider.get();
+            WikiReference currentWiki = context.getWikiReference();
+            // We need to set the wiki reference to obtain the proper location
+            context.setWikiReference(wikiReference);
+            try {
+                result = this.configurationProvider.get().getChangeRequestSpaceLocation();
+            } finally {
+                context.setWikiReference(currentWiki);
+            }
+            this.cache.set(wikiReference.getName(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate the location of the given wiki.
+     *
+     * @param wikiReference the wiki for which the configuration changed
+     */
+    public void invalidate(WikiReference wikiReference)
+    {
+        this.cache.remove(wikiReference.getName());
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Retrieve the version of the locations: it changes each time a location is invalidated, which allows to cache
+     * values computed from the locations of all wikis.
+     *
+     * @return the current version of the locations
+     */
+    public long getVersion()
+    {
+        return this.version.get();
+    }
+}
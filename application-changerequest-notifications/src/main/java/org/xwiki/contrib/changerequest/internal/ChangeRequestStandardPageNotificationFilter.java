@@ -19,34 +19,44 @@
  */
 package org.xwiki.contrib.changerequest.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.eventstream.Event;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
 import org.xwiki.notifications.filters.NotificationFilterPreference;
 import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.expression.EventProperty;
 import org.xwiki.notifications.filters.expression.ExpressionNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractOperatorNode;
 import org.xwiki.notifications.filters.internal.ToggleableNotificationFilter;
 import org.xwiki.notifications.preferences.NotificationPreference;
-
-import com.xpn.xwiki.XWikiContext;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
 
 import static java.util.Arrays.asList;
+import static org.xwiki.notifications.filters.expression.generics.AbstractNode.not;
+import static org.xwiki.notifications.filters.expression.generics.AbstractNode.value;
 
 /**
  * Filter dedicated to ignore standard update / create / addComment events that might be triggered in change request
  * pages, since those are redundant with the change request events.
+ * The filter is also provided as an expression so that those events are directly excluded when querying the events.
  *
  * @version $Id$
  * @since 1.4.5
@@ -63,22 +73,46 @@ public class ChangeRequestStandardPageNotificationFilter implements Notification
 
     private static final List<String> XWIKI_EVENT_TYPES = asList("create", "update", "addComment");
 
+    private static final String SPACE_SEPARATOR = ".";
+
+    @Inject
+    private ChangeRequestSpaceLocationCache spaceLocationCache;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
     @Inject
-    private Provider<ChangeRequestConfiguration> configurationProvider;
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
 
     @Inject
-    private Provider<XWikiContext> contextProvider;
+    private Logger logger;
+
+    private volatile LocationsNode locationsNode;
+
+    /**
+     * The expression matching the change request locations of all wikis, along with the version of the locations used
+     * to compute it.
+     */
+    private static final class LocationsNode
+    {
+        private final long version;
+
+        private final AbstractOperatorNode node;
+
+        LocationsNode(long version, AbstractOperatorNode node)
+        {
+            this.version = version;
+            this.node = node;
+        }
+    }
 
     private boolean isDocumentPartOfChangeRequestData(DocumentReference documentReference, WikiReference eventWiki)
     {
         boolean result = false;
         if (documentReference != null) {
-            XWikiContext context = contextProvider.get();
-            WikiReference currentWiki = context.getWikiReference();
-            // We need to set the wiki reference to obtain the proper location
-            context.setWikiReference(eventWiki);
-            result = documentReference.hasParent(this.configurationProvider.get().getChangeRequestSpaceLocation());
-            context.setWikiReference(currentWiki);
+            WikiReference wikiReference = (eventWiki != null) ? eventWiki : documentReference.getWikiReference();
+            result = documentReference.hasParent(this.spaceLocationCache.getChangeRequestSpaceLocation(wikiReference));
         }
         return result;
     }
@@ -112,7 +146,86 @@ public class ChangeRequestStandardPageNotificationFilter implements Notification
         Collection<NotificationFilterPreference> filterPreferences, NotificationFilterType type,
         NotificationFormat format)
     {
-        return null;
+        ExpressionNode result = null;
+        if (type == NotificationFilterType.EXCLUSIVE) {
+            try {
+                AbstractOperatorNode locationsNode = getChangeRequestLocationsNode();
+                if (locationsNode != null) {
+                    result = not(getEventTypesNode().and(locationsNode));
+                }
+            } catch (WikiManagerException e) {
+                this.logger.warn("Error while retrieving the wikis to filter the standard events of change requests "
+                    + "pages: [{}]", ExceptionUtils.getRootCauseMessage(e));
+                this.logger.debug("Full stack trace: ", e);
+            }
+        }
+        return result;
+    }
+
+    private AbstractOperatorNode getEventTypesNode()
+    {
+        AbstractOperatorNode result = null;
+        for (String eventType : XWIKI_EVENT_TYPES) {
+            AbstractOperatorNode typeNode = value(EventProperty.TYPE).eq(value(eventType));
+            result = (result == null) ? typeNode : result.or(typeNode);
+        }
+        return result;
+    }
+
+    private AbstractOperatorNode getChangeRequestLocationsNode() throws WikiManagerException
+    {
+        // The expression only changes when a location is modified or when a wiki is created or deleted: in all those
+        // cases the version of the locations is changed.
+        long version = this.spaceLocationCache.getVersion();
+        LocationsNode cachedNode = this.locationsNode;
+        if (cachedNode == null || cachedNode.version != version) {
+            cachedNode = new LocationsNode(version, computeChangeRequestLocationsNode());
+            this.locationsNode = cachedNode;
+        }
+        return cachedNode.node;
+    }
+
+    private AbstractOperatorNode computeChangeRequestLocationsNode() throws WikiManagerException
+    {
+        // Most of the time the wikis are using the same location: we group them to keep the expression small.
+        Collection<String> wikiIds = this.wikiDescriptorManager.getAllIds();
+        Map<String, List<String>> wikisPerLocation = new LinkedHashMap<>();
+        for (String wikiId : wikiIds) {
+            WikiReference wikiReference = new WikiReference(wikiId);
+            SpaceReference location = this.spaceLocationCache.getChangeRequestSpaceLocation(wikiReference);
+            // A location in another wiki never contains the documents of the events of this wiki.
+            if (location != null && wikiReference.equals(location.getWikiReference())) {
+                wikisPerLocation.computeIfAbsent(this.localEntityReferenceSerializer.serialize(location),
+                    key -> new ArrayList<>()).add(wikiId);
+            }
+        }
+
+        AbstractOperatorNode result = null;
+        for (Map.Entry<String, List<String>> entry : wikisPerLocation.entrySet()) {
+            AbstractOperatorNode locationNode = getLocationNode(entry.getKey());
+            if (entry.getValue().size() < wikiIds.size()) {
+                locationNode = getWikisNode(entry.getValue()).and(locationNode);
+            }
+            result = (result == null) ? locationNode : result.or(locationNode);
+        }
+        return result;
+    }
+
+    private AbstractOperatorNode getLocationNode(String serializedLocation)
+    {
+        // The events are either in the location space itself, or in one of its children spaces.
+        return value(EventProperty.SPACE).eq(value(serializedLocation))
+            .or(value(EventProperty.SPACE).startsWith(value(serializedLocation + SPACE_SEPARATOR)));
+    }
+
+    private AbstractOperatorNode getWikisNode(List<String> wikiIds)
+    {
+        AbstractOperatorNode result = null;
+        for (String wikiId : wikiIds) {
+            AbstractOperatorNode wikiNode = value(EventProperty.WIKI).eq(value(wikiId));
+            result = (result == null) ? wikiNode : result.or(wikiNode);
+        }
+        return result;
     }
 
     @Override
@@ -19,25 +19,45 @@
  */
 package org.xwiki.contrib.changerequest.internal.email;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.changerequest.internal.AbstractChangeRequestNotificationRenderer;
 import org.xwiki.contrib.changerequest.internal.ChangeRequestGroupingStrategy;
+import org.xwiki.eventstream.Event;
 import org.xwiki.notifications.CompositeEvent;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.notifiers.email.NotificationEmailRenderer;
+import org.xwiki.notifications.notifiers.email.NotificationEmailUserPreferenceManager;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.GroupBlock;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.template.Template;
 import org.xwiki.template.TemplateManager;
 
+import com.xpn.xwiki.XWikiContext;
+
 /**
  * Dedicated email renderer for the various change request events.
+ * <p>
+ * The same notification is usually sent to many recipients: since the templates are executed with the rights of
+ * their author, the only parts of the rendering depending on the recipient are the locale, the wiki and the diff type
+ * preference of the recipient. So the result of a rendering is kept in cache for a short time, and reused for all the
+ * recipients sharing those values.
  *
  * @version $Id$
  * @since 1.14
@@ -49,11 +69,16 @@ import org.xwiki.template.TemplateManager;
 })
 @Singleton
 public class ChangeRequestNotificationEmailRenderer extends AbstractChangeRequestNotificationRenderer
-    implements NotificationEmailRenderer
+    implements NotificationEmailRenderer, Initializable, Disposable
 {
     private static final String TEMPLATES_PATH = "changerequest/email/";
     private static final String PLAIN_TEMPLATE = TEMPLATES_PATH + "plain/%s.vm";
     private static final String HTML_TEMPLATE = TEMPLATES_PATH + "html/%s.vm";
+    private static final int RENDERING_CACHE_SIZE = 100;
+    // Renderings are only reused while sending the same notifications to the different recipients.
+    private static final int RENDERING_CACHE_MAX_IDLE_SECONDS = 300;
+    private static final char KEY_SEPARATOR = '|';
+
     @Inject
     private EmailTemplateRenderer emailTemplateRenderer;
 
@@ -63,32 +88,99 @@ public class ChangeRequestNotificationEmailRenderer extends AbstractChangeReques
     @Inject
     private ChangeRequestGroupingStrategy groupingStrategy;
 
+    @Inject
+    private NotificationEmailUserPreferenceManager userPreferenceManager;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<String> renderingCache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.renderingCache = this.cacheManager.createNewCache(new LRUCacheConfiguration(
+                "changerequest.email.renderings", RENDERING_CACHE_SIZE, RENDERING_CACHE_MAX_IDLE_SECONDS));
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.renderingCache.dispose();
+    }
+
     private Block executeTemplate(CompositeEvent event, String userId, Template template, Syntax syntax)
         throws NotificationException
     {
         GroupBlock groupBlock = new GroupBlock();
-        for (CompositeEvent compositeEvent : this.groupingStrategy.groupEvents(event)) {
-            groupBlock.addChild(this.emailTemplateRenderer.executeTemplate(compositeEvent, userId, template, syntax,
-                Map.of(CHANGE_REQUEST_REFERENCES_BINDING_NAME, getChangeRequestReferences(event))
-            ));
-        }
+        Map<String, Object> bindings =
+            Map.of(CHANGE_REQUEST_REFERENCES_BINDING_NAME, getChangeRequestReferences(event));
+        groupBlock.addChildren(this.emailTemplateRenderer.executeTemplates(this.groupingStrategy.groupEvents(event),
+            userId, template, syntax, bindings));
         return groupBlock;
     }
 
+    /**
+     * Compute the key identifying all the recipients for which the rendering of the given event is the same, or
+     * {@code null} if the rendering cannot be shared.
+     */
+    private String getRenderingKey(CompositeEvent compositeEvent, String userId, Syntax syntax)
+    {
+        String result = null;
+        List<String> eventIds = new ArrayList<>();
+        for (Event event : compositeEvent.getEvents()) {
+            eventIds.add(event.getId());
+        }
+        if (!eventIds.contains(null)) {
+            XWikiContext context = this.contextProvider.get();
+            result = new StringBuilder()
+                .append(syntax.toIdString()).append(KEY_SEPARATOR)
+                .append(context.getWikiId()).append(KEY_SEPARATOR)
+                .append(context.getLocale()).append(KEY_SEPARATOR)
+                .append(this.userPreferenceManager.getDiffType(userId)).append(KEY_SEPARATOR)
+                .append(String.join(",", eventIds))
+                .toString();
+        }
+        return result;
+    }
+
+    private String render(CompositeEvent compositeEvent, String userId, String templateName, Syntax syntax)
+        throws NotificationException
+    {
+        String key = getRenderingKey(compositeEvent, userId, syntax);
+        String result = (key != null) ? this.renderingCache.get(key) : null;
+        if (result == null) {
+            Template template = this.templateManager.getTemplate(templateName);
+            Block block = executeTemplate(compositeEvent, userId, template, syntax);
+            if (Syntax.PLAIN_1_0.equals(syntax)) {
+                result = this.emailTemplateRenderer.renderPlainText(block);
+            } else {
+                result = this.emailTemplateRenderer.renderHTML(block);
+            }
+            if (key != null) {
+                this.renderingCache.set(key, result);
+            }
+        }
+        return result;
+    }
+
     @Override
     public String renderHTML(CompositeEvent compositeEvent, String userId) throws NotificationException
     {
-        Template template = this.templateManager.getTemplate(HTML_TEMPLATE);
-        Block block = executeTemplate(compositeEvent, userId, template, Syntax.XHTML_1_0);
-        return emailTemplateRenderer.renderHTML(block);
+        return render(compositeEvent, userId, HTML_TEMPLATE, Syntax.XHTML_1_0);
     }
 
     @Override
     public String renderPlainText(CompositeEvent compositeEvent, String userId) throws NotificationException
     {
-        Template template = this.templateManager.getTemplate(PLAIN_TEMPLATE);
-        Block block = executeTemplate(compositeEvent, userId, template, Syntax.PLAIN_1_0);
-        return emailTemplateRenderer.renderPlainText(block);
+        return render(compositeEvent, userId, PLAIN_TEMPLATE, Syntax.PLAIN_1_0);
     }
 
     @Override
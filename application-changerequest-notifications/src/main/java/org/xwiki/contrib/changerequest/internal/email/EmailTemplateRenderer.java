@@ -19,6 +19,8 @@
  */
 package org.xwiki.contrib.changerequest.internal.email;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -121,6 +123,40 @@ public class EmailTemplateRenderer
         }
     }
 
+    /**
+     * Execute a template for each of the given events, in a single new execution context.
+     *
+     * @param events composite events to render
+     * @param userId id of the user who will receive the email
+     * @param template the template to use
+     * @param syntax syntax of the template and of the output
+     * @param customBindings the specific bindings to use in the template
+     * @return the rendered templates, in the order of the given events
+     * @throws NotificationException if something wrong happens
+     * @since 1.16
+     */
+    public List<Block> executeTemplates(List<CompositeEvent> events, String userId, Template template, Syntax syntax,
+        Map<String, Object> customBindings) throws NotificationException
+    {
+        // Push a new execution context only once for all events, since cloning it is costly.
+        try {
+            this.execution.pushContext(this.executionManager.clone(this.execution.getContext()));
+        } catch (ExecutionContextException e) {
+            throw new NotificationException("Failed to push a new execution context", e);
+        }
+
+        try {
+            List<Block> result = new ArrayList<>();
+            for (CompositeEvent event : events) {
+                result.add(executeTemplateInContext(event, userId, template, syntax, customBindings));
+            }
+            return result;
+        } finally {
+            // Restore parent execution context
+            this.execution.popContext();
+        }
+    }
+
     /**
      * Execute a template in the current context.
      *
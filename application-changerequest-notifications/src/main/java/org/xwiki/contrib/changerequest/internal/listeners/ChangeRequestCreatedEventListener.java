@@ -20,6 +20,7 @@
 package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -80,26 +81,21 @@ public class ChangeRequestCreatedEventListener extends AbstractChangeRequestEven
         String changeRequestId = (String) source;
         try {
             ChangeRequest changeRequest = (ChangeRequest) data;
-            UserReference creator = changeRequest.getCreator();
             ChangeRequestAutoWatchHandler autoWatchHandler = this.autoWatchHandlerProvider.get();
-            if (autoWatchHandler.hasAutoWatchEnabled(creator)) {
-                autoWatchHandler.watchChangeRequest(changeRequest, creator);
-            }
-            Set<UserReference> allApprovers = this.approversManagerProvider.get().getAllApprovers(changeRequest, false);
-            allApprovers.forEach(userReference -> {
-                if (autoWatchHandler.hasAutoWatchEnabled(userReference)) {
-                    try {
-                        autoWatchHandler.watchChangeRequest(changeRequest, userReference);
-                    } catch (ChangeRequestException e) {
-                        this.logger.error(
-                            "Error while handling autowatch for changerequest [{}] and approver [{}]: [{}]",
-                            changeRequest, userReference,
-                            ExceptionUtils.getRootCauseMessage(e)
-                        );
-                        this.logger.debug("Full stack trace: ", e);
-                    }
+            // The creator might also be an approver: each user is only handled once.
+            Set<UserReference> watchers = new LinkedHashSet<>();
+            watchers.add(changeRequest.getCreator());
+            watchers.addAll(this.approversManagerProvider.get().getAllApprovers(changeRequest, false));
+            watchers.removeIf(userReference -> !autoWatchHandler.hasAutoWatchEnabled(userReference));
+            if (!watchers.isEmpty()) {
+                try {
+                    autoWatchHandler.watchChangeRequest(changeRequest, watchers);
+                } catch (ChangeRequestException e) {
+                    this.logger.error("Error while handling autowatch for changerequest [{}]: [{}]",
+                        changeRequestId, ExceptionUtils.getRootCauseMessage(e));
+                    this.logger.debug("Full stack trace: ", e);
                 }
-            });
+            }
             DocumentModelBridge documentInstance = this.getChangeRequestDocument(changeRequestId);
             ChangeRequestCreatedRecordableEvent recordableEvent =
                 new ChangeRequestCreatedRecordableEvent(changeRequestId,
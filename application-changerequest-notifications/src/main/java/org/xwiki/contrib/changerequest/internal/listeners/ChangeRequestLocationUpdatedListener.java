@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.internal.ChangeRequestRecordableEventNotifier;
+import org.xwiki.contrib.changerequest.internal.ChangeRequestSpaceLocationCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.RegexEntityReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Listener in charge of invalidating the {@link ChangeRequestSpaceLocationCache} entry of a wiki and the change request
+ * document references cached by the {@link ChangeRequestRecordableEventNotifier} whenever the change request
+ * configuration of a wiki is modified, or whenever a wiki is created or deleted.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Singleton
+@Named(ChangeRequestLocationUpdatedListener.NAME)
+public class ChangeRequestLocationUpdatedListener extends AbstractEventListener
+{
+    static final String NAME = "ChangeRequestLocationUpdatedListener";
+
+    // Those references are defined in the configuration source of the default module.
+    private static final List<String> CONFIGURATION_SPACE = List.of("ChangeRequest", "Code");
+
+    private static final LocalDocumentReference CONFIGURATION_REFERENCE =
+        new LocalDocumentReference(CONFIGURATION_SPACE, "Configuration");
+
+    private static final RegexEntityReference REFERENCE =
+        BaseObjectReference.any(new LocalDocumentReference(CONFIGURATION_SPACE, "ConfigurationClass").toString());
+
+    @Inject
+    private Provider<ChangeRequestSpaceLocationCache> spaceLocationCacheProvider;
+
+    @Inject
+    private Provider<ChangeRequestRecordableEventNotifier> recordableEventNotifierProvider;
+
+    /**
+     * Default constructor.
+     */
+    public ChangeRequestLocationUpdatedListener()
+    {
+        super(NAME, List.of(
+            new XObjectAddedEvent(REFERENCE),
+            new XObjectUpdatedEvent(REFERENCE),
+            new XObjectDeletedEvent(REFERENCE),
+            new WikiCreatedEvent(),
+            new WikiDeletedEvent()
+        ));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // We always invalidate the cache, even in case of remote event.
+        if (event instanceof WikiCreatedEvent) {
+            invalidate(new WikiReference(((WikiCreatedEvent) event).getWikiId()));
+        } else if (event instanceof WikiDeletedEvent) {
+            invalidate(new WikiReference(((WikiDeletedEvent) event).getWikiId()));
+        } else {
+            DocumentReference configurationReference = ((XWikiDocument) source).getDocumentReference();
+            if (configurationReference.getLocalDocumentReference().equals(CONFIGURATION_REFERENCE)) {
+                invalidate(configurationReference.getWikiReference());
+            }
+        }
+    }
+
+    private void invalidate(WikiReference wikiReference)
+    {
+        this.spaceLocationCacheProvider.get().invalidate(wikiReference);
+        this.recordableEventNotifierProvider.get().invalidate();
+    }
+}
@@ -19,7 +19,11 @@
  */
 package org.xwiki.contrib.changerequest.internal.listeners;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -32,6 +36,7 @@ import org.xwiki.contrib.changerequest.ChangeRequestException;
 import org.xwiki.contrib.changerequest.FileChange;
 import org.xwiki.contrib.changerequest.events.ChangeRequestMergedEvent;
 import org.xwiki.contrib.changerequest.internal.ChangeRequestAutoWatchHandler;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.notifications.filters.watch.AutomaticWatchMode;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
@@ -69,10 +74,13 @@ public class ChangeRequestMergedEventListener extends AbstractEventListener
     {
         ChangeRequest changeRequest = (ChangeRequest) data;
         List<FileChange> lastFileChanges = changeRequest.getLastFileChanges();
-        for (FileChange fileChange : lastFileChanges) {
-            FileChange.FileChangeType type = fileChange.getType();
-            for (UserReference author : changeRequest.getAuthors()) {
-                AutomaticWatchMode watchMode = this.autoWatchHandler.getAutomaticWatchMode(author);
+        // Gather all the documents to watch for each author, so that the watches are only handled once per location.
+        Map<UserReference, Set<DocumentReference>> documentsPerAuthor = new LinkedHashMap<>();
+        for (UserReference author : changeRequest.getAuthors()) {
+            AutomaticWatchMode watchMode = this.autoWatchHandler.getAutomaticWatchMode(author);
+            Set<DocumentReference> documents = new LinkedHashSet<>();
+            for (FileChange fileChange : lastFileChanges) {
+                FileChange.FileChangeType type = fileChange.getType();
                 boolean createWatch = false;
                 if (type == FileChange.FileChangeType.CREATION) {
                     createWatch = watchMode != AutomaticWatchMode.NONE;
@@ -80,14 +88,20 @@ public class ChangeRequestMergedEventListener extends AbstractEventListener
                     createWatch = (watchMode == AutomaticWatchMode.ALL || watchMode == AutomaticWatchMode.MAJOR);
                 }
                 if (createWatch) {
-                    try {
-                        this.autoWatchHandler.watchDocument(fileChange.getTargetEntity(), author);
-                    } catch (ChangeRequestException e) {
-                        this.logger.error("Error while trying to autowatch [{}] after merge of change request "
-                            + "[{}]", fileChange.getTargetEntity(), changeRequest.getId(), e);
-                    }
+                    documents.add(fileChange.getTargetEntity());
                 }
             }
+            if (!documents.isEmpty()) {
+                documentsPerAuthor.put(author, documents);
+            }
+        }
+        if (!documentsPerAuthor.isEmpty()) {
+            try {
+                this.autoWatchHandler.watchDocuments(documentsPerAuthor);
+            } catch (ChangeRequestException e) {
+                this.logger.error("Error while trying to autowatch documents after merge of change request [{}]",
+                    changeRequest.getId(), e);
+            }
         }
     }
 }
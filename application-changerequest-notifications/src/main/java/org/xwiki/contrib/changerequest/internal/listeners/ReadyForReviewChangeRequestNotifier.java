@@ -20,16 +20,14 @@
 package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
-import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.bridge.DocumentModelBridge;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.ApproversManager;
@@ -40,9 +38,8 @@ import org.xwiki.contrib.changerequest.events.ChangeRequestCreatedEvent;
 import org.xwiki.contrib.changerequest.events.ChangeRequestStatusChangedEvent;
 import org.xwiki.contrib.changerequest.internal.ChangeRequestRecordableEventNotifier;
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
-import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.observation.event.AbstractLocalEventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.user.UserReference;
@@ -51,6 +48,8 @@ import org.xwiki.user.UserReferenceSerializer;
 /**
  * Listener dedicated to trigger notifications events for explicit approvers whenever a change request is marked as
  * ready for review.
+ * Note that the groups of approvers are not expanded here: they are used as targets of the event, and their members
+ * are only resolved when the notifications are retrieved.
  *
  * @version $Id$
  * @since 0.11
@@ -62,9 +61,6 @@ public class ReadyForReviewChangeRequestNotifier extends AbstractLocalEventListe
 {
     static final String NAME = "org.xwiki.contrib.changerequest.internal.listeners.ReadyToReviewChangeRequestNotifier";
 
-    @Inject
-    private ChangeRequestStorageManager changeRequestStorageManager;
-
     @Inject
     private ApproversManager<ChangeRequest> changeRequestApproversManager;
 
@@ -72,13 +68,10 @@ public class ReadyForReviewChangeRequestNotifier extends AbstractLocalEventListe
     private UserReferenceSerializer<String> userReferenceSerializer;
 
     @Inject
-    private ChangeRequestRecordableEventNotifier recordableEventNotifier;
-
-    @Inject
-    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
 
     @Inject
-    private DocumentAccessBridge documentAccessBridge;
+    private ChangeRequestRecordableEventNotifier recordableEventNotifier;
 
     @Inject
     private Logger logger;
@@ -97,15 +90,8 @@ public class ReadyForReviewChangeRequestNotifier extends AbstractLocalEventListe
         if (event instanceof ChangeRequestStatusChangedEvent) {
             ChangeRequestStatus[] statuses = (ChangeRequestStatus[]) data;
             if (statuses != null && statuses.length == 2 && statuses[1] == ChangeRequestStatus.READY_FOR_REVIEW) {
-                String changeRequestId = (String) source;
-                try {
-                    Optional<ChangeRequest> optionalChangeRequest =
-                        this.changeRequestStorageManager.load(changeRequestId);
-                    optionalChangeRequest.ifPresent(this::notifyChangeRequestApprovers);
-                } catch (ChangeRequestException e) {
-                    logger.error("Error while loading change request [{}] in order to notify explicit approvers",
-                        changeRequestId, e);
-                }
+                // The approvers are stored in the change request document: we don't need to load the change request.
+                this.notifyChangeRequestApprovers(new ChangeRequest().setId((String) source));
             }
         } else if (event instanceof ChangeRequestCreatedEvent) {
             ChangeRequest changeRequest = (ChangeRequest) data;
@@ -118,17 +104,18 @@ public class ReadyForReviewChangeRequestNotifier extends AbstractLocalEventListe
     private void notifyChangeRequestApprovers(ChangeRequest changeRequest)
     {
         try {
-            Set<UserReference> allApprovers = this.changeRequestApproversManager.getAllApprovers(changeRequest, true);
-            if (!allApprovers.isEmpty()) {
-                Set<String> serializedApprovers = allApprovers.stream()
-                    .map(this.userReferenceSerializer::serialize)
-                    .collect(Collectors.toSet());
+            Set<String> targets = new HashSet<>();
+            for (UserReference approver : this.changeRequestApproversManager.getAllApprovers(changeRequest, false)) {
+                targets.add(this.userReferenceSerializer.serialize(approver));
+            }
+            for (DocumentReference group : this.changeRequestApproversManager.getGroupsApprovers(changeRequest)) {
+                targets.add(this.entityReferenceSerializer.serialize(group));
+            }
+            if (!targets.isEmpty()) {
                 ChangeRequestReadyForReviewTargetableEvent event =
-                    new ChangeRequestReadyForReviewTargetableEvent(serializedApprovers);
-                DocumentReference documentReference =
-                    this.changeRequestDocumentReferenceResolver.resolve(changeRequest);
+                    new ChangeRequestReadyForReviewTargetableEvent(targets);
                 DocumentModelBridge document =
-                    this.documentAccessBridge.getTranslatedDocumentInstance(documentReference);
+                    this.recordableEventNotifier.getChangeRequestDocument(changeRequest.getId());
                 this.recordableEventNotifier.notifyChangeRequestRecordableEvent(event, document);
             }
         } catch (ChangeRequestException e) {
@@ -52,7 +52,8 @@ public class ChangeRequestReadyForReviewTargetableEvent implements RecordableEve
     /**
      * Default constructor.
      *
-     * @param targets the approvers concerned by the event.
+     * @param targets the approvers concerned by the event: those can be users or groups of users, in which case the
+     *                members are only resolved when retrieving the notifications.
      */
     public ChangeRequestReadyForReviewTargetableEvent(Set<String> targets)
     {
@@ -19,6 +19,11 @@
  */
 package org.xwiki.contrib.changerequest.internal;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.inject.Named;
 
 import org.junit.jupiter.api.Test;
@@ -38,9 +43,15 @@ import org.xwiki.test.junit5.mockito.MockComponent;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceSerializer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -116,4 +127,75 @@ class ChangeRequestAutoWatchHandlerTest
         this.autoWatchHandler.watchChangeRequest(changeRequest, creator);
         verify(this.watchedEntitiesManager).watchEntity(watchedLocationReference, userDoc);
     }
+
+    private WatchedLocationReference mockWatchedLocation(DocumentReference location, Set<List<Object>> watches)
+        throws NotificationException
+    {
+        WatchedLocationReference watchedLocationReference = mock(WatchedLocationReference.class);
+        when(this.watchedEntityFactory.createWatchedLocationReference(location)).thenReturn(watchedLocationReference);
+        when(watchedLocationReference.isWatched(any()))
+            .then(invocation -> watches.contains(List.of(invocation.getArgument(0), location)));
+        return watchedLocationReference;
+    }
+
+    @Test
+    void watchDocumentsWithRepeatedTriggers() throws Exception
+    {
+        UserReference user1 = mock(UserReference.class, "user1");
+        UserReference user2 = mock(UserReference.class, "user2");
+        DocumentReference userDoc1 = new DocumentReference("xwiki", "XWiki", "User1");
+        DocumentReference userDoc2 = new DocumentReference("xwiki", "XWiki", "User2");
+        when(this.userReferenceSerializer.serialize(user1)).thenReturn(userDoc1);
+        when(this.userReferenceSerializer.serialize(user2)).thenReturn(userDoc2);
+
+        DocumentReference document1 = new DocumentReference("xwiki", "Space", "Page1");
+        DocumentReference document2 = new DocumentReference("xwiki", "Space", "Page2");
+
+        // Keep track of the watches actually written.
+        Set<List<Object>> watches = new HashSet<>();
+        WatchedLocationReference watchedLocation1 = mockWatchedLocation(document1, watches);
+        WatchedLocationReference watchedLocation2 = mockWatchedLocation(document2, watches);
+        doAnswer(invocation -> {
+            DocumentReference location = (invocation.getArgument(0) == watchedLocation1) ? document1 : document2;
+            assertTrue(watches.add(List.of(invocation.getArgument(1), location)));
+            return null;
+        }).when(this.watchedEntitiesManager).watchEntity(any(), any());
+
+        Map<UserReference, List<DocumentReference>> documentsPerUser = Map.of(
+            user1, List.of(document1, document1, document2),
+            user2, List.of(document1)
+        );
+        this.autoWatchHandler.watchDocuments(documentsPerUser);
+        // The same operation triggered again doesn't write anything.
+        this.autoWatchHandler.watchDocuments(documentsPerUser);
+        this.autoWatchHandler.watchDocument(document2, user1);
+
+        verify(this.watchedEntitiesManager, times(3)).watchEntity(any(), any());
+        verify(this.watchedEntitiesManager).watchEntity(watchedLocation1, userDoc1);
+        verify(this.watchedEntitiesManager).watchEntity(watchedLocation2, userDoc1);
+        verify(this.watchedEntitiesManager).watchEntity(watchedLocation1, userDoc2);
+        assertEquals(3, watches.size());
+    }
+
+    @Test
+    void watchDocumentsWithError() throws Exception
+    {
+        UserReference user = mock(UserReference.class);
+        DocumentReference userDoc = new DocumentReference("xwiki", "XWiki", "User");
+        when(this.userReferenceSerializer.serialize(user)).thenReturn(userDoc);
+
+        DocumentReference document1 = new DocumentReference("xwiki", "Space", "Page1");
+        DocumentReference document2 = new DocumentReference("xwiki", "Space", "Page2");
+        WatchedLocationReference watchedLocation1 = mockWatchedLocation(document1, Set.of());
+        WatchedLocationReference watchedLocation2 = mockWatchedLocation(document2, Set.of());
+        doThrow(new NotificationException("error")).when(this.watchedEntitiesManager)
+            .watchEntity(watchedLocation1, userDoc);
+
+        ChangeRequestException exception = assertThrows(ChangeRequestException.class,
+            () -> this.autoWatchHandler.watchDocuments(Map.of(user, List.of(document1, document2))));
+        assertEquals("Error when trying to automatically watch document [xwiki:Space.Page1]",
+            exception.getMessage());
+        // The other documents are still watched.
+        verify(this.watchedEntitiesManager).watchEntity(watchedLocation2, userDoc);
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.group.GroupManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestReadyForReviewNotificationFilter}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestReadyForReviewNotificationFilterTest
+{
+    private static final WikiReference WIKI = new WikiReference("xwiki");
+
+    @InjectMockComponents
+    private ChangeRequestReadyForReviewNotificationFilter filter;
+
+    @MockComponent
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @MockComponent
+    private GroupManager groupManager;
+
+    private final Map<DocumentReference, Set<DocumentReference>> userGroups = new HashMap<>();
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        when(this.documentReferenceResolver.resolve(anyString(), eq(WIKI)))
+            .then(invocation -> new DocumentReference("xwiki", "XWiki", invocation.getArgument(0)));
+        when(this.groupManager.getGroups(any(), eq(WIKI), eq(true)))
+            .then(invocation -> this.userGroups.getOrDefault(invocation.getArgument(0), Set.of()));
+    }
+
+    private DocumentReference user(String name, String... groups)
+    {
+        DocumentReference result = new DocumentReference("xwiki", "XWiki", name);
+        Set<DocumentReference> groupReferences = new HashSet<>();
+        for (String group : groups) {
+            groupReferences.add(new DocumentReference("xwiki", "XWiki", group));
+        }
+        this.userGroups.put(result, groupReferences);
+        return result;
+    }
+
+    private Event readyForReviewEvent(String... targets)
+    {
+        Event event = mock(Event.class);
+        when(event.getType()).thenReturn(ChangeRequestReadyForReviewTargetableEvent.EVENT_NAME);
+        when(event.getWiki()).thenReturn(WIKI);
+        when(event.getTarget()).thenReturn(Set.of(targets));
+        return event;
+    }
+
+    @Test
+    void filterEventWithGroupTargets() throws Exception
+    {
+        List<DocumentReference> approvers = new ArrayList<>();
+        approvers.add(user("Approver1"));
+        approvers.add(user("Approver2", "Group1"));
+        approvers.add(user("Approver3", "Group1", "Group2"));
+        // Member of a subgroup of Group2.
+        approvers.add(user("Approver4", "SubGroup", "Group2"));
+        for (int i = 0; i < 100; i++) {
+            approvers.add(user("Member" + i, "Group2"));
+        }
+        DocumentReference otherUser = user("OtherUser", "OtherGroup");
+
+        Event event = readyForReviewEvent("Approver1", "Approver3", "Group1", "Group2");
+        List<Event> events = List.of(event);
+
+        // Each approver gets the notification exactly once, whatever the number of targets matching.
+        for (DocumentReference approver : approvers) {
+            long received = events.stream()
+                .filter(e -> this.filter.filterEvent(e, approver, List.of(), NotificationFormat.ALERT)
+                    != NotificationFilter.FilterPolicy.FILTER)
+                .count();
+            assertEquals(1, received, approver.toString());
+        }
+        assertEquals(NotificationFilter.FilterPolicy.FILTER,
+            this.filter.filterEvent(event, otherUser, List.of(), NotificationFormat.ALERT));
+
+        // The members of the groups are never retrieved.
+        verify(this.groupManager, never()).getMembers(any(), anyBoolean());
+    }
+
+    @Test
+    void filterEventWithUserTargets() throws Exception
+    {
+        DocumentReference approver = user("Approver1", "Group1");
+        Event event = readyForReviewEvent("Approver1");
+
+        assertEquals(NotificationFilter.FilterPolicy.NO_EFFECT,
+            this.filter.filterEvent(event, approver, List.of(), NotificationFormat.EMAIL));
+        // The groups are only needed when the user is not directly targeted.
+        verify(this.groupManager, never()).getGroups(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void filterOtherEvents()
+    {
+        Event event = mock(Event.class);
+        when(event.getType()).thenReturn("update");
+        when(event.getTarget()).thenReturn(Set.of("Approver1"));
+
+        assertEquals(NotificationFilter.FilterPolicy.NO_EFFECT,
+            this.filter.filterEvent(event, user("OtherUser"), List.of(), NotificationFormat.ALERT));
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.contrib.changerequest.ApproversManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestReview;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.FileChange;
+import org.xwiki.contrib.changerequest.discussions.ChangeRequestDiscussionService;
+import org.xwiki.contrib.changerequest.discussions.references.ChangeRequestReference;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestConflictsFixedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestCreatedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestDiscussionEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestFileChangeAddedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestRebasedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestReviewAddedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestStatusChangedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.ChangeRequestUpdatedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.FileChangeRebasedEventListener;
+import org.xwiki.contrib.changerequest.internal.listeners.StaleChangeRequestEventListener;
+import org.xwiki.contrib.changerequest.notifications.events.AbstractChangeRequestRecordableEvent;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.changerequest.storage.FileChangeStorageManager;
+import org.xwiki.contrib.discussions.DiscussionReferencesSerializer;
+import org.xwiki.contrib.discussions.domain.Message;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationContext;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.AbstractLocalEventListener;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestRecordableEventNotifier}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList({
+    ChangeRequestRecordableEventNotifier.class,
+    ChangeRequestConflictsFixedEventListener.class,
+    ChangeRequestCreatedEventListener.class,
+    ChangeRequestDiscussionEventListener.class,
+    ChangeRequestFileChangeAddedEventListener.class,
+    ChangeRequestRebasedEventListener.class,
+    ChangeRequestReviewAddedEventListener.class,
+    ChangeRequestStatusChangedEventListener.class,
+    ChangeRequestUpdatedEventListener.class,
+    FileChangeRebasedEventListener.class,
+    StaleChangeRequestEventListener.class
+})
+class ChangeRequestRecordableEventNotifierTest
+{
+    private static final String CHANGE_REQUEST_ID = "cr1";
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @MockComponent
+    private ObservationManager observationManager;
+
+    @MockComponent
+    private DocumentAccessBridge documentAccessBridge;
+
+    @MockComponent
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    @MockComponent
+    private FileChangeStorageManager fileChangeStorageManager;
+
+    @MockComponent
+    private ChangeRequestAutoWatchHandler autoWatchHandler;
+
+    @MockComponent
+    private ApproversManager<ChangeRequest> approversManager;
+
+    @MockComponent
+    private ObservationContext observationContext;
+
+    @MockComponent
+    private ChangeRequestDiscussionService changeRequestDiscussionService;
+
+    @MockComponent
+    private DiscussionReferencesSerializer discussionReferencesSerializer;
+
+    @MockComponent
+    private UserReferenceSerializer<String> userReferenceSerializer;
+
+    private XWikiContext context;
+
+    private DocumentReference changeRequestDocumentReference;
+
+    private DocumentModelBridge changeRequestDocument;
+
+    private final Map<String, DocumentReference> cacheContent = new HashMap<>();
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWikiId()).thenReturn("xwiki");
+
+        // Stub of the cache backed by a map.
+        Cache<DocumentReference> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        doAnswer(invocation -> {
+            this.cacheContent.clear();
+            return null;
+        }).when(cache).removeAll();
+        when(this.cacheManager.<DocumentReference>createNewCache(any())).thenReturn(cache);
+
+        this.changeRequestDocumentReference = new DocumentReference("xwiki", "ChangeRequest", CHANGE_REQUEST_ID);
+        when(this.changeRequestDocumentReferenceResolver.resolve(any())).thenReturn(
+            this.changeRequestDocumentReference);
+        this.changeRequestDocument = mock(DocumentModelBridge.class);
+        when(this.documentAccessBridge.getTranslatedDocumentInstance(this.changeRequestDocumentReference))
+            .thenReturn(this.changeRequestDocument);
+    }
+
+    @Test
+    void getChangeRequestDocumentReference() throws Exception
+    {
+        ChangeRequestRecordableEventNotifier notifier =
+            this.componentManager.getInstance(ChangeRequestRecordableEventNotifier.class);
+
+        assertSame(this.changeRequestDocumentReference,
+            notifier.getChangeRequestDocumentReference(CHANGE_REQUEST_ID));
+        assertSame(this.changeRequestDocumentReference,
+            notifier.getChangeRequestDocumentReference(CHANGE_REQUEST_ID));
+        verify(this.changeRequestDocumentReferenceResolver, times(1)).resolve(any());
+
+        // The resolution depends on the wiki configuration.
+        when(this.context.getWikiId()).thenReturn("subwiki");
+        notifier.getChangeRequestDocumentReference(CHANGE_REQUEST_ID);
+        verify(this.changeRequestDocumentReferenceResolver, times(2)).resolve(any());
+
+        // The location of the change requests might have been modified.
+        notifier.invalidate();
+        notifier.getChangeRequestDocumentReference(CHANGE_REQUEST_ID);
+        verify(this.changeRequestDocumentReferenceResolver, times(3)).resolve(any());
+
+        assertSame(this.changeRequestDocument, notifier.getChangeRequestDocument(CHANGE_REQUEST_ID));
+        verifyNoInteractions(this.changeRequestStorageManager);
+    }
+
+    @Test
+    void recordableEventsWithoutStorageReads() throws Exception
+    {
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getId()).thenReturn("fileChange1");
+        when(fileChange.getTargetEntity()).thenReturn(new DocumentReference("xwiki", "Space", "Page"));
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn(CHANGE_REQUEST_ID);
+        when(changeRequest.getCreator()).thenReturn(mock(UserReference.class));
+        when(changeRequest.getAllFileChanges()).thenReturn(List.of(fileChange));
+
+        when(this.approversManager.getAllApprovers(changeRequest, false)).thenReturn(Set.of());
+
+        Message message = mock(Message.class);
+        when(this.changeRequestDiscussionService.getReferenceFrom(any()))
+            .thenReturn(new ChangeRequestReference(CHANGE_REQUEST_ID));
+
+        // Payload of each change request event.
+        Map<Class<?>, Object> payloads = new LinkedHashMap<>();
+        payloads.put(ChangeRequestConflictsFixedEventListener.class, fileChange);
+        payloads.put(ChangeRequestCreatedEventListener.class, changeRequest);
+        payloads.put(ChangeRequestDiscussionEventListener.class, message);
+        payloads.put(ChangeRequestFileChangeAddedEventListener.class, fileChange);
+        payloads.put(ChangeRequestRebasedEventListener.class, changeRequest);
+        payloads.put(ChangeRequestReviewAddedEventListener.class, mock(ChangeRequestReview.class));
+        payloads.put(ChangeRequestStatusChangedEventListener.class,
+            new ChangeRequestStatus[] { ChangeRequestStatus.DRAFT, ChangeRequestStatus.READY_FOR_REVIEW });
+        payloads.put(ChangeRequestUpdatedEventListener.class, null);
+        payloads.put(FileChangeRebasedEventListener.class, fileChange);
+        payloads.put(StaleChangeRequestEventListener.class, null);
+
+        List<EventListener> listeners = this.componentManager.getInstanceList(EventListener.class);
+        assertEquals(10, listeners.size());
+        for (EventListener listener : listeners) {
+            AbstractLocalEventListener localEventListener = (AbstractLocalEventListener) listener;
+            localEventListener.processLocalEvent(listener.getEvents().get(0), CHANGE_REQUEST_ID,
+                payloads.get(listener.getClass()));
+
+            verify(this.observationManager, atLeastOnce()).notify(any(AbstractChangeRequestRecordableEvent.class),
+                eq("org.xwiki.contrib.changerequest:application-changerequest-notifications"),
+                eq(this.changeRequestDocument));
+            clearInvocations(this.observationManager);
+        }
+
+        verifyNoInteractions(this.changeRequestStorageManager);
+        verifyNoInteractions(this.fileChangeStorageManager);
+        // The document reference is only resolved once for all events.
+        verify(this.changeRequestDocumentReferenceResolver, times(1)).resolve(any());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestSpaceLocationCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestSpaceLocationCacheTest
+{
+    @InjectMockComponents
+    private ChangeRequestSpaceLocationCache spaceLocationCache;
+
+    @MockComponent
+    private ChangeRequestConfiguration configuration;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    private XWikiContext context;
+
+    private final Map<String, SpaceReference> cacheContent = new HashMap<>();
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+
+        // Stub of the cache backed by a map.
+        Cache<SpaceReference> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        doAnswer(invocation -> this.cacheContent.remove(invocation.<String>getArgument(0)))
+            .when(cache).remove(anyString());
+        when(this.cacheManager.<SpaceReference>createNewCache(any())).thenReturn(cache);
+        this.spaceLocationCache.initialize();
+    }
+
+    @Test
+    void getChangeRequestSpaceLocation()
+    {
+        WikiReference currentWiki = new WikiReference("foo");
+        when(this.context.getWikiReference()).thenReturn(currentWiki);
+        WikiReference subwiki = new WikiReference("subwiki");
+        SpaceReference location = new SpaceReference(subwiki.getName(), Arrays.asList("ChangeRequest", "Data"));
+        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(location);
+
+        assertEquals(location, this.spaceLocationCache.getChangeRequestSpaceLocation(subwiki));
+        // The configuration is read in the context of the requested wiki.
+        verify(this.context).setWikiReference(subwiki);
+        verify(this.context).setWikiReference(currentWiki);
+
+        assertEquals(location, this.spaceLocationCache.getChangeRequestSpaceLocation(subwiki));
+        verify(this.configuration, times(1)).getChangeRequestSpaceLocation();
+
+        SpaceReference newLocation = new SpaceReference(subwiki.getName(), Arrays.asList("Foo", "Data"));
+        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(newLocation);
+        long version = this.spaceLocationCache.getVersion();
+        this.spaceLocationCache.invalidate(subwiki);
+        assertNotEquals(version, this.spaceLocationCache.getVersion());
+        assertEquals(newLocation, this.spaceLocationCache.getChangeRequestSpaceLocation(subwiki));
+        verify(this.configuration, times(2)).getChangeRequestSpaceLocation();
+    }
+}
@@ -19,26 +19,47 @@
  */
 package org.xwiki.contrib.changerequest.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
-import javax.inject.Provider;
+import javax.inject.Named;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
 import org.xwiki.eventstream.Event;
+import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.expression.AndNode;
+import org.xwiki.notifications.filters.expression.EqualsNode;
+import org.xwiki.notifications.filters.expression.EventProperty;
+import org.xwiki.notifications.filters.expression.ExpressionNode;
+import org.xwiki.notifications.filters.expression.NotNode;
+import org.xwiki.notifications.filters.expression.OrNode;
+import org.xwiki.notifications.filters.expression.PropertyValueNode;
+import org.xwiki.notifications.filters.expression.StartsWith;
+import org.xwiki.notifications.filters.expression.StringValueNode;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
-
-import com.xpn.xwiki.XWikiContext;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -51,22 +72,34 @@ import static org.mockito.Mockito.when;
 @ComponentTest
 public class ChangeRequestStandardPageNotificationFilterTest
 {
+    private static final List<String> DEFAULT_LOCATION = Arrays.asList("ChangeRequest", "Data");
+
     @InjectMockComponents
     private ChangeRequestStandardPageNotificationFilter notificationFilter;
 
     @MockComponent
-    private ChangeRequestConfiguration configuration;
+    private ChangeRequestSpaceLocationCache spaceLocationCache;
 
     @MockComponent
-    private Provider<XWikiContext> contextProvider;
+    private WikiDescriptorManager wikiDescriptorManager;
 
-    private XWikiContext context;
+    @MockComponent
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
 
     @BeforeEach
     void setup()
     {
-        this.context = mock(XWikiContext.class);
-        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.localEntityReferenceSerializer.serialize(any()))
+            .then(invocation -> serializeLocalSpace(invocation.getArgument(0)));
+    }
+
+    private static String serializeLocalSpace(EntityReference reference)
+    {
+        return reference.getReversedReferenceChain().stream()
+            .filter(entityReference -> entityReference.getType() == EntityType.SPACE)
+            .map(EntityReference::getName)
+            .collect(Collectors.joining("."));
     }
 
     @Test
@@ -84,39 +117,153 @@ public class ChangeRequestStandardPageNotificationFilterTest
             new DocumentReference("subwiki", Arrays.asList("ChangeRequest", "Data", "MyCR"), "WebHome");
         when(event.getDocument()).thenReturn(documentReference);
 
-        WikiReference currentWiki = new WikiReference("foo");
-        when(context.getWikiReference()).thenReturn(currentWiki);
         WikiReference eventWiki = new WikiReference("subwiki");
         when(event.getWiki()).thenReturn(eventWiki);
 
-        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(
-            new SpaceReference(eventWiki.getName(), Arrays.asList("ChangeRequest", "Data")));
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(eventWiki)).thenReturn(
+            new SpaceReference(eventWiki.getName(), DEFAULT_LOCATION));
         assertEquals(NotificationFilter.FilterPolicy.FILTER,
             this.notificationFilter.filterEvent(event, null, null, null));
-        verify(this.context).setWikiReference(eventWiki);
-        verify(this.context).setWikiReference(currentWiki);
 
         when(event.getType()).thenReturn("changerequest.create");
         assertEquals(NotificationFilter.FilterPolicy.NO_EFFECT,
             this.notificationFilter.filterEvent(event, null, null, null));
 
         when(event.getType()).thenReturn("create");
-        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(eventWiki)).thenReturn(
             new SpaceReference(eventWiki.getName(), Arrays.asList("Foo", "Data")));
         assertEquals(NotificationFilter.FilterPolicy.NO_EFFECT,
             this.notificationFilter.filterEvent(event, null, null, null));
 
-        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(eventWiki)).thenReturn(
             new SpaceReference(eventWiki.getName(), Arrays.asList("ChangeRequest")));
         assertEquals(NotificationFilter.FilterPolicy.FILTER,
             this.notificationFilter.filterEvent(event, null, null, null));
 
-        when(this.configuration.getChangeRequestSpaceLocation()).thenReturn(
-            new SpaceReference(eventWiki.getName(), Arrays.asList("ChangeRequest", "Data")));
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(eventWiki)).thenReturn(
+            new SpaceReference(eventWiki.getName(), DEFAULT_LOCATION));
         documentReference =
             new DocumentReference("subwiki", Arrays.asList("ChangeRequest", "SomePage"), "WebHome");
         when(event.getDocument()).thenReturn(documentReference);
         assertEquals(NotificationFilter.FilterPolicy.NO_EFFECT,
             this.notificationFilter.filterEvent(event, null, null, null));
     }
+
+    @Test
+    void filterExpressionAgreesWithFilterEvent() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki", "subwiki", "otherwiki"));
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(any())).then(invocation -> {
+            WikiReference wikiReference = invocation.getArgument(0);
+            List<String> location = ("otherwiki".equals(wikiReference.getName()))
+                ? Arrays.asList("Foo", "CR") : DEFAULT_LOCATION;
+            return new SpaceReference(wikiReference.getName(), location);
+        });
+
+        assertNull(this.notificationFilter.filterExpression(null, List.of(), NotificationFilterType.INCLUSIVE,
+            NotificationFormat.ALERT));
+        ExpressionNode expression = this.notificationFilter.filterExpression(null, List.of(),
+            NotificationFilterType.EXCLUSIVE, NotificationFormat.ALERT);
+        assertNotNull(expression);
+
+        List<DocumentReference> documents = new ArrayList<>();
+        for (String wiki : List.of("xwiki", "subwiki", "otherwiki")) {
+            documents.add(new DocumentReference(wiki, Arrays.asList("ChangeRequest", "Data", "MyCR"), "WebHome"));
+            documents.add(new DocumentReference(wiki, DEFAULT_LOCATION, "WebHome"));
+            documents.add(new DocumentReference(wiki, Arrays.asList("ChangeRequest", "DataOther"), "WebHome"));
+            documents.add(new DocumentReference(wiki, Arrays.asList("ChangeRequest", "SomePage"), "WebHome"));
+            documents.add(new DocumentReference(wiki, Arrays.asList("Foo", "CR", "MyCR", "Sub"), "WebHome"));
+            documents.add(new DocumentReference(wiki, "Main", "WebHome"));
+        }
+        documents.add(null);
+
+        int filteredEvents = 0;
+        for (String type : List.of("create", "update", "addComment", "changerequest.create")) {
+            for (DocumentReference document : documents) {
+                Event event = mock(Event.class);
+                when(event.getType()).thenReturn(type);
+                when(event.getDocument()).thenReturn(document);
+                if (document != null) {
+                    when(event.getSpace()).thenReturn(document.getLastSpaceReference());
+                    when(event.getWiki()).thenReturn(document.getWikiReference());
+                }
+
+                boolean filtered = this.notificationFilter.filterEvent(event, null, List.of(),
+                    NotificationFormat.ALERT) == NotificationFilter.FilterPolicy.FILTER;
+                // The expression gives the events to keep.
+                assertEquals(!filtered, evaluate(expression, event), String.format("[%s] [%s]", type, document));
+                if (filtered) {
+                    filteredEvents++;
+                }
+            }
+        }
+        // 3 types x (2 documents in the default location for 2 wikis + 1 document in the location of the other wiki)
+        assertEquals(15, filteredEvents);
+    }
+
+    @Test
+    void filterExpressionIsCached() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki", "subwiki"));
+        when(this.spaceLocationCache.getChangeRequestSpaceLocation(any())).then(
+            invocation -> new SpaceReference(invocation.<WikiReference>getArgument(0).getName(), DEFAULT_LOCATION));
+        when(this.spaceLocationCache.getVersion()).thenReturn(1L);
+
+        ExpressionNode expression = this.notificationFilter.filterExpression(null, List.of(),
+            NotificationFilterType.EXCLUSIVE, NotificationFormat.ALERT);
+        assertEquals(expression, this.notificationFilter.filterExpression(null, List.of(),
+            NotificationFilterType.EXCLUSIVE, NotificationFormat.ALERT));
+        verify(this.wikiDescriptorManager, times(1)).getAllIds();
+
+        // A location or a wiki changed.
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki", "subwiki", "otherwiki"));
+        when(this.spaceLocationCache.getVersion()).thenReturn(2L);
+        assertNotSame(expression, this.notificationFilter.filterExpression(null, List.of(),
+            NotificationFilterType.EXCLUSIVE, NotificationFormat.ALERT));
+        verify(this.wikiDescriptorManager, times(2)).getAllIds();
+    }
+
+    private Object evaluate(ExpressionNode node, Event event)
+    {
+        Object result;
+        if (node instanceof NotNode) {
+            result = !((Boolean) evaluate(((NotNode) node).getOperand(), event));
+        } else if (node instanceof AndNode) {
+            AndNode andNode = (AndNode) node;
+            result = (Boolean) evaluate(andNode.getLeftOperand(), event)
+                && (Boolean) evaluate(andNode.getRightOperand(), event);
+        } else if (node instanceof OrNode) {
+            OrNode orNode = (OrNode) node;
+            result = (Boolean) evaluate(orNode.getLeftOperand(), event)
+                || (Boolean) evaluate(orNode.getRightOperand(), event);
+        } else if (node instanceof EqualsNode) {
+            EqualsNode equalsNode = (EqualsNode) node;
+            result = Objects.equals(evaluate(equalsNode.getLeftOperand(), event),
+                evaluate(equalsNode.getRightOperand(), event));
+        } else if (node instanceof StartsWith) {
+            StartsWith startsWith = (StartsWith) node;
+            String value = (String) evaluate(startsWith.getLeftOperand(), event);
+            result = value != null && value.startsWith((String) evaluate(startsWith.getRightOperand(), event));
+        } else if (node instanceof PropertyValueNode) {
+            result = getProperty(event, (EventProperty) ((PropertyValueNode) node).getContent());
+        } else if (node instanceof StringValueNode) {
+            result = ((StringValueNode) node).getContent();
+        } else {
+            throw new IllegalArgumentException(String.format("Unexpected node [%s]", node));
+        }
+        return result;
+    }
+
+    private String getProperty(Event event, EventProperty property)
+    {
+        String result = null;
+        if (property == EventProperty.TYPE) {
+            result = event.getType();
+        } else if (property == EventProperty.WIKI && event.getWiki() != null) {
+            result = event.getWiki().getName();
+        } else if (property == EventProperty.SPACE && event.getSpace() != null) {
+            result = serializeLocalSpace(event.getSpace());
+        }
+        return result;
+    }
 }
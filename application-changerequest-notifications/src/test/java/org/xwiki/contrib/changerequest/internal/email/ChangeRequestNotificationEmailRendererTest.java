@@ -0,0 +1,192 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.email;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.internal.ChangeRequestGroupingStrategy;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.notifications.CompositeEvent;
+import org.xwiki.notifications.notifiers.email.NotificationEmailDiffType;
+import org.xwiki.notifications.notifiers.email.NotificationEmailUserPreferenceManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.template.Template;
+import org.xwiki.template.TemplateManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestNotificationEmailRenderer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestNotificationEmailRendererTest
+{
+    private static final String HTML_TEMPLATE = "changerequest/email/html/%s.vm";
+
+    private static final String PLAIN_TEMPLATE = "changerequest/email/plain/%s.vm";
+
+    @InjectMockComponents
+    private ChangeRequestNotificationEmailRenderer renderer;
+
+    @MockComponent
+    private EmailTemplateRenderer emailTemplateRenderer;
+
+    @MockComponent
+    private TemplateManager templateManager;
+
+    @MockComponent
+    private ChangeRequestGroupingStrategy groupingStrategy;
+
+    @MockComponent
+    private NotificationEmailUserPreferenceManager userPreferenceManager;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    private XWikiContext context;
+
+    private CompositeEvent compositeEvent;
+
+    private final Map<String, String> cacheContent = new HashMap<>();
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWikiId()).thenReturn("xwiki");
+        when(this.context.getLocale()).thenReturn(Locale.ENGLISH);
+
+        // Stub of the cache backed by a map.
+        Cache<String> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        when(this.cacheManager.<String>createNewCache(any())).thenReturn(cache);
+        this.renderer.initialize();
+
+        this.compositeEvent = mock(CompositeEvent.class);
+        Event event1 = mock(Event.class, "event1");
+        Event event2 = mock(Event.class, "event2");
+        when(event1.getId()).thenReturn("event1");
+        when(event2.getId()).thenReturn("event2");
+        when(event1.getCustom()).thenReturn(Map.of("changerequest.id", "cr1"));
+        when(event2.getCustom()).thenReturn(Map.of("changerequest.id", "cr1"));
+        when(this.compositeEvent.getEvents()).thenReturn(List.of(event1, event2));
+        when(this.groupingStrategy.groupEvents(this.compositeEvent)).thenReturn(List.of(this.compositeEvent));
+        when(this.changeRequestDocumentReferenceResolver.resolve(any()))
+            .thenReturn(new DocumentReference("xwiki", "ChangeRequest", "cr1"));
+
+        Template htmlTemplate = mock(Template.class, "html");
+        Template plainTemplate = mock(Template.class, "plain");
+        when(this.templateManager.getTemplate(HTML_TEMPLATE)).thenReturn(htmlTemplate);
+        when(this.templateManager.getTemplate(PLAIN_TEMPLATE)).thenReturn(plainTemplate);
+
+        // The rendering only depends on the diff type preference of the recipient.
+        Map<Block, String> blockContents = new HashMap<>();
+        when(this.emailTemplateRenderer.executeTemplates(any(), anyString(), any(), any(), any())).then(invocation -> {
+            String userId = invocation.getArgument(1);
+            Template template = invocation.getArgument(2);
+            Block block = mock(Block.class);
+            blockContents.put(block, String.format("%s %s", (template == htmlTemplate) ? "html" : "plain",
+                this.userPreferenceManager.getDiffType(userId)));
+            return List.of(block);
+        });
+        when(this.emailTemplateRenderer.renderHTML(any())).then(
+            invocation -> blockContents.get(invocation.<Block>getArgument(0).getChildren().get(0)));
+        when(this.emailTemplateRenderer.renderPlainText(any())).then(
+            invocation -> blockContents.get(invocation.<Block>getArgument(0).getChildren().get(0)));
+    }
+
+    @Test
+    void renderOncePerRecipientClass() throws Exception
+    {
+        int recipients = 300;
+        for (int i = 0; i < recipients; i++) {
+            String userId = "xwiki:XWiki.User" + i;
+            when(this.userPreferenceManager.getDiffType(userId))
+                .thenReturn((i % 3 == 0) ? NotificationEmailDiffType.NOTHING : NotificationEmailDiffType.STANDARD);
+        }
+
+        for (int i = 0; i < recipients; i++) {
+            String userId = "xwiki:XWiki.User" + i;
+            String diffType = (i % 3 == 0) ? "NOTHING" : "STANDARD";
+            assertEquals("html " + diffType, this.renderer.renderHTML(this.compositeEvent, userId));
+            assertEquals("plain " + diffType, this.renderer.renderPlainText(this.compositeEvent, userId));
+        }
+
+        // One rendering per syntax and diff type, whatever the number of recipients.
+        verify(this.emailTemplateRenderer, times(4)).executeTemplates(any(), anyString(), any(), any(), any());
+        verify(this.emailTemplateRenderer, times(2))
+            .executeTemplates(any(), anyString(), any(), eq(Syntax.XHTML_1_0), any());
+
+        // Recipients with another locale get their own rendering.
+        when(this.context.getLocale()).thenReturn(Locale.FRENCH);
+        assertEquals("html STANDARD", this.renderer.renderHTML(this.compositeEvent, "xwiki:XWiki.User1"));
+        verify(this.emailTemplateRenderer, times(5)).executeTemplates(any(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void renderWithoutEventIds() throws Exception
+    {
+        when(this.compositeEvent.getEvents().get(0).getId()).thenReturn(null);
+        when(this.userPreferenceManager.getDiffType(anyString())).thenReturn(NotificationEmailDiffType.STANDARD);
+
+        assertEquals("html STANDARD", this.renderer.renderHTML(this.compositeEvent, "xwiki:XWiki.User1"));
+        assertEquals("html STANDARD", this.renderer.renderHTML(this.compositeEvent, "xwiki:XWiki.User2"));
+
+        // Events not stored yet cannot be identified: they're rendered for each recipient.
+        verify(this.emailTemplateRenderer, times(2)).executeTemplates(any(), anyString(), any(), any(), any());
+    }
+}
@@ -124,9 +124,8 @@ class ChangeRequestCreatedEventListenerTest
         verify(this.changeRequestRecordableEventNotifier).notifyChangeRequestRecordableEvent(
             any(ChangeRequestCreatedRecordableEvent.class),
             eq(document));
-        verify(changeRequestAutoWatchHandler).watchChangeRequest(data, creator);
-        verify(changeRequestAutoWatchHandler).watchChangeRequest(data, approver1);
-        verify(changeRequestAutoWatchHandler).watchChangeRequest(data, approver3);
-        verify(changeRequestAutoWatchHandler, never()).watchChangeRequest(data, approver2);
+        // All the users are watching the change request in a single operation.
+        verify(changeRequestAutoWatchHandler).watchChangeRequest(data, Set.of(creator, approver1, approver3));
+        verify(changeRequestAutoWatchHandler, never()).watchChangeRequest(eq(data), any(UserReference.class));
     }
 }
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.internal.listeners;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.contrib.changerequest.internal.ChangeRequestRecordableEventNotifier;
+import org.xwiki.contrib.changerequest.internal.ChangeRequestSpaceLocationCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestLocationUpdatedListener}.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@ComponentTest
+class ChangeRequestLocationUpdatedListenerTest
+{
+    @InjectMockComponents
+    private ChangeRequestLocationUpdatedListener listener;
+
+    @MockComponent
+    private ChangeRequestSpaceLocationCache spaceLocationCache;
+
+    @MockComponent
+    private ChangeRequestRecordableEventNotifier recordableEventNotifier;
+
+    @Test
+    void onEvent()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference())
+            .thenReturn(new DocumentReference("subwiki", List.of("ChangeRequest", "Code"), "Configuration"));
+
+        this.listener.onEvent(new XObjectUpdatedEvent(), document, null);
+        verify(this.spaceLocationCache).invalidate(new WikiReference("subwiki"));
+        verify(this.recordableEventNotifier).invalidate();
+    }
+
+    @Test
+    void onEventOtherDocument()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("subwiki", "Space", "Page"));
+
+        this.listener.onEvent(new XObjectUpdatedEvent(), document, null);
+        verifyNoInteractions(this.spaceLocationCache);
+        verifyNoInteractions(this.recordableEventNotifier);
+    }
+
+    @Test
+    void onWikiEvents()
+    {
+        this.listener.onEvent(new WikiCreatedEvent("newwiki"), "newwiki", null);
+        verify(this.spaceLocationCache).invalidate(new WikiReference("newwiki"));
+
+        this.listener.onEvent(new WikiDeletedEvent("oldwiki"), "oldwiki", null);
+        verify(this.spaceLocationCache).invalidate(new WikiReference("oldwiki"));
+        verify(this.recordableEventNotifier, times(2)).invalidate();
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
@@ -35,6 +36,7 @@ import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 import org.xwiki.user.UserReference;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -85,16 +87,30 @@ class ChangeRequestMergedEventListenerTest
         when(changeRequest.getLastFileChanges()).thenReturn(List.of(fileChange1, fileChange2, fileChange3));
 
         this.changeRequestMergedEventListener.onEvent(new ChangeRequestMergedEvent(), null, changeRequest);
-        verify(this.autoWatchHandler, never()).watchDocument(entity1, user1);
-        verify(this.autoWatchHandler, never()).watchDocument(entity1, user2);
-        verify(this.autoWatchHandler).watchDocument(entity1, user3);
+        // All the watches are handled in a single operation.
+        verify(this.autoWatchHandler).watchDocuments(Map.of(
+            user1, Set.of(entity3),
+            user3, Set.of(entity1, entity3)
+        ));
+        verify(this.autoWatchHandler, never()).watchDocument(any(), any());
+        // The watch mode of each author is only retrieved once, whatever the number of file changes.
+        verify(this.autoWatchHandler).getAutomaticWatchMode(user1);
+        verify(this.autoWatchHandler).getAutomaticWatchMode(user2);
+        verify(this.autoWatchHandler).getAutomaticWatchMode(user3);
+    }
 
-        verify(this.autoWatchHandler, never()).watchDocument(entity2, user1);
-        verify(this.autoWatchHandler, never()).watchDocument(entity2, user2);
-        verify(this.autoWatchHandler, never()).watchDocument(entity2, user3);
+    @Test
+    void onEventWithoutWatch() throws ChangeRequestException
+    {
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        UserReference user = mock(UserReference.class);
+        FileChange fileChange = mock(FileChange.class);
+        when(fileChange.getType()).thenReturn(FileChange.FileChangeType.EDITION);
+        when(this.autoWatchHandler.getAutomaticWatchMode(user)).thenReturn(AutomaticWatchMode.NEW);
+        when(changeRequest.getAuthors()).thenReturn(Set.of(user));
+        when(changeRequest.getLastFileChanges()).thenReturn(List.of(fileChange));
 
-        verify(this.autoWatchHandler).watchDocument(entity3, user1);
-        verify(this.autoWatchHandler, never()).watchDocument(entity3, user2);
-        verify(this.autoWatchHandler).watchDocument(entity3, user3);
+        this.changeRequestMergedEventListener.onEvent(new ChangeRequestMergedEvent(), null, changeRequest);
+        verify(this.autoWatchHandler, never()).watchDocuments(any());
     }
 }
\ No newline at end of file
@@ -21,11 +21,9 @@ package org.xwiki.contrib.changerequest.internal.listeners;
 
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Optional;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
-import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.bridge.DocumentModelBridge;
 import org.xwiki.contrib.changerequest.ApproversManager;
 import org.xwiki.contrib.changerequest.ChangeRequest;
@@ -35,7 +33,7 @@ import org.xwiki.contrib.changerequest.internal.ChangeRequestRecordableEventNoti
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
 import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -44,9 +42,12 @@ import org.xwiki.user.UserReferenceSerializer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -73,13 +74,10 @@ class ReadyForReviewChangeRequestNotifierTest
     private UserReferenceSerializer<String> userReferenceSerializer;
 
     @MockComponent
-    private ChangeRequestRecordableEventNotifier changeRequestRecordableEventNotifier;
-
-    @MockComponent
-    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
 
     @MockComponent
-    private DocumentAccessBridge documentAccessBridge;
+    private ChangeRequestRecordableEventNotifier changeRequestRecordableEventNotifier;
 
     @Test
     void onEvent() throws Exception
@@ -91,11 +89,8 @@ class ReadyForReviewChangeRequestNotifierTest
             ChangeRequestStatus.CLOSED, ChangeRequestStatus.DRAFT
         });
         verifyNoInteractions(this.changeRequestRecordableEventNotifier);
-        verifyNoInteractions(this.changeRequestStorageManager);
 
         String changeRequestId = "crId";
-        ChangeRequest changeRequest = mock(ChangeRequest.class);
-        when(this.changeRequestStorageManager.load(changeRequestId)).thenReturn(Optional.of(changeRequest));
 
         UserReference approver1 = mock(UserReference.class);
         UserReference approver2 = mock(UserReference.class);
@@ -104,18 +99,27 @@ class ReadyForReviewChangeRequestNotifierTest
         when(this.userReferenceSerializer.serialize(approver1)).thenReturn("approver1");
         when(this.userReferenceSerializer.serialize(approver2)).thenReturn("approver2");
         when(this.userReferenceSerializer.serialize(approver3)).thenReturn("approver3");
-        when(this.changeRequestApproversManager.getAllApprovers(changeRequest, true))
-            .thenReturn(new HashSet<>(Arrays.asList(approver1, approver2, approver3)));
+        when(this.changeRequestApproversManager.getAllApprovers(argThat(cr -> changeRequestId.equals(cr.getId())),
+            eq(false))).thenReturn(new HashSet<>(Arrays.asList(approver1, approver2, approver3)));
+
+        DocumentReference group1 = new DocumentReference("xwiki", "XWiki", "Group1");
+        DocumentReference group2 = new DocumentReference("xwiki", "XWiki", "Group2");
+        when(this.entityReferenceSerializer.serialize(group1)).thenReturn("group1");
+        when(this.entityReferenceSerializer.serialize(group2)).thenReturn("group2");
+        when(this.changeRequestApproversManager.getGroupsApprovers(argThat(cr -> changeRequestId.equals(cr.getId()))))
+            .thenReturn(Set.of(group1, group2));
 
-        DocumentReference crDocRef = mock(DocumentReference.class);
         DocumentModelBridge documentModelBridge = mock(DocumentModelBridge.class);
-        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crDocRef);
-        when(this.documentAccessBridge.getTranslatedDocumentInstance(crDocRef)).thenReturn(documentModelBridge);
+        when(this.changeRequestRecordableEventNotifier.getChangeRequestDocument(changeRequestId))
+            .thenReturn(documentModelBridge);
 
+        // The groups are not expanded: the targets don't depend on the number of members.
         Set<String> expectedTargets = new HashSet<>(Arrays.asList(
             "approver1",
             "approver2",
-            "approver3"
+            "approver3",
+            "group1",
+            "group2"
         ));
 
         doAnswer(invocationOnMock -> {
@@ -131,5 +135,18 @@ class ReadyForReviewChangeRequestNotifierTest
         verify(this.changeRequestRecordableEventNotifier).notifyChangeRequestRecordableEvent(
             any(ChangeRequestReadyForReviewTargetableEvent.class),
             eq(documentModelBridge));
+        verify(this.changeRequestApproversManager, never()).getAllApprovers(any(), eq(true));
+        verifyNoInteractions(this.changeRequestStorageManager);
+    }
+
+    @Test
+    void onEventWithoutApprovers() throws Exception
+    {
+        when(this.changeRequestApproversManager.getAllApprovers(any(), anyBoolean())).thenReturn(Set.of());
+        when(this.changeRequestApproversManager.getGroupsApprovers(any())).thenReturn(Set.of());
+
+        this.changeRequestNotifier.onEvent(mock(ChangeRequestStatusChangedEvent.class), "crId",
+            new ChangeRequestStatus[] { ChangeRequestStatus.DRAFT, ChangeRequestStatus.READY_FOR_REVIEW });
+        verifyNoInteractions(this.changeRequestRecordableEventNotifier);
     }
 }
@@ -0,0 +1,394 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.replication.internal;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.notifications.events.AbstractChangeRequestRecordableEvent;
+import org.xwiki.contrib.changerequest.replication.internal.listeners.AbstractChangeRequestEventListener;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.replication.ReplicationException;
+import org.xwiki.contrib.replication.entity.DocumentReplicationController;
+import org.xwiki.contrib.replication.entity.DocumentReplicationLevel;
+import org.xwiki.contrib.replication.entity.DocumentReplicationSenderMessageBuilder;
+import org.xwiki.contrib.replication.entity.EntityReplicationBuilders;
+import org.xwiki.eventstream.RecordableEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Component in charge of batching the replication messages of change request events before sending them.
+ * The messages are gathered per change request during the window defined by
+ * {@link ChangeRequestConfiguration#getReplicationMessagesBatchWindow()}: during that window, consecutive messages of
+ * the same type concerning the same document are coalesced when the listener which produced them allows it (see
+ * {@link AbstractChangeRequestEventListener#coalesce(RecordableEvent, RecordableEvent)}). At the end of the window
+ * the remaining messages are sent in order, and the change request is only loaded once to resolve the reference used
+ * for computing the replication instances.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component(roles = ChangeRequestReplicationMessageBatcher.class)
+@Singleton
+public class ChangeRequestReplicationMessageBatcher implements Initializable, Disposable
+{
+    /**
+     * Interval in milliseconds between two checks of the pending batches.
+     */
+    private static final long TICK_INTERVAL = 200;
+
+    @Inject
+    @Named("context")
+    private ComponentManager componentManager;
+
+    @Inject
+    private Provider<EntityReplicationBuilders> entityReplicationBuildersProvider;
+
+    @Inject
+    private Provider<DocumentReplicationController> documentReplicationControllerProvider;
+
+    @Inject
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @Inject
+    private Provider<ChangeRequestConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private Clock clock = Clock.systemUTC();
+
+    private ScheduledExecutorService executorService;
+
+    private static final class PendingMessage
+    {
+        private final AbstractChangeRequestEventListener<RecordableEvent> listener;
+
+        private final String messageHint;
+
+        private final DocumentReference dataDocumentReference;
+
+        private final DocumentReference userReference;
+
+        private RecordableEvent event;
+
+        PendingMessage(AbstractChangeRequestEventListener<RecordableEvent> listener, RecordableEvent event,
+            String messageHint, DocumentReference dataDocumentReference, DocumentReference userReference)
+        {
+            this.listener = listener;
+            this.event = event;
+            this.messageHint = messageHint;
+            this.dataDocumentReference = dataDocumentReference;
+            this.userReference = userReference;
+        }
+
+        boolean isSameKind(PendingMessage otherMessage)
+        {
+            return this.listener == otherMessage.listener
+                && this.messageHint.equals(otherMessage.messageHint)
+                && this.dataDocumentReference.equals(otherMessage.dataDocumentReference);
+        }
+    }
+
+    private static final class Batch
+    {
+        private final WikiReference wikiReference;
+
+        private final long creationTime;
+
+        private final long window;
+
+        private final List<PendingMessage> messages = new ArrayList<>();
+
+        Batch(WikiReference wikiReference, long creationTime, long window)
+        {
+            this.wikiReference = wikiReference;
+            this.creationTime = creationTime;
+            this.window = window;
+        }
+
+        void add(PendingMessage message)
+        {
+            PendingMessage messageToAdd = message;
+            // Only the latest message can be coalesced with the new one, so that the order of the events is kept.
+            int lastIndex = this.messages.size() - 1;
+            if (lastIndex >= 0 && this.messages.get(lastIndex).isSameKind(message)) {
+                RecordableEvent coalescedEvent =
+                    message.listener.coalesce(this.messages.get(lastIndex).event, message.event);
+                if (coalescedEvent != null) {
+                    this.messages.remove(lastIndex);
+                    message.event = coalescedEvent;
+                    // Both events might cancel each other, in which case nothing needs to be replicated.
+                    if (message.listener.hasNoEffect(coalescedEvent)) {
+                        messageToAdd = null;
+                    }
+                }
+            }
+            if (messageToAdd != null) {
+                this.messages.add(messageToAdd);
+            }
+        }
+
+        boolean isExpired(long now)
+        {
+            return now - this.creationTime >= this.window;
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executorService = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("changerequest-replication-batch-%d")
+            .daemon(true)
+            .build());
+        this.executorService.scheduleWithFixedDelay(() -> {
+            // Any exception thrown here would cancel the next executions.
+            try {
+                this.processExpiredBatches();
+            } catch (Exception e) {
+                this.logger.error("Unexpected error while sending the change request replication messages", e);
+            }
+        }, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executorService.shutdownNow();
+        // Try to not lose the pending messages.
+        this.processBatches(true);
+    }
+
+    /**
+     * Only meant for tests: allow to control the time used to decide if pending batches are expired.
+     *
+     * @param clock the clock to use
+     */
+    void setClock(Clock clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Record a replication message to be sent for the given event. The message is sent immediately if the batch window
+     * is {@code 0}, else it's added to the batch of the change request concerned by the event.
+     *
+     * @param listener the listener which received the event, and which is asked to coalesce the events
+     * @param event the event to replicate
+     * @param messageHint the hint of the {@link ChangeRequestReplicationSenderMessage} to use for the event
+     * @param dataDocumentReference the reference of the document sent along with the event
+     * @param <T> the type of event
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends RecordableEvent> void add(AbstractChangeRequestEventListener<T> listener, T event,
+        String messageHint, DocumentReference dataDocumentReference)
+    {
+        PendingMessage message = new PendingMessage((AbstractChangeRequestEventListener) listener, event,
+            messageHint, dataDocumentReference, this.contextProvider.get().getUserReference());
+        long window = this.configurationProvider.get().getReplicationMessagesBatchWindow();
+        if (window <= 0) {
+            this.sendMessage(message, this.getOriginalReference(message));
+        } else {
+            long now = this.clock.millis();
+            this.batches.compute(getKey(event, dataDocumentReference), (key, batch) -> {
+                Batch result = batch;
+                if (result == null) {
+                    result = new Batch(dataDocumentReference.getWikiReference(), now, window);
+                }
+                result.add(message);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * @return the number of batches waiting to be sent
+     */
+    public int getPendingBatchesCount()
+    {
+        return this.batches.size();
+    }
+
+    /**
+     * Send all batches whose window is expired.
+     * This method is called periodically by a dedicated thread.
+     */
+    public void processExpiredBatches()
+    {
+        this.processBatches(false);
+    }
+
+    /**
+     * Send all pending batches right away.
+     */
+    public void flush()
+    {
+        this.processBatches(true);
+    }
+
+    private void processBatches(boolean all)
+    {
+        long now = this.clock.millis();
+        List<Map.Entry<String, Batch>> expiredBatches = new ArrayList<>();
+        for (Map.Entry<String, Batch> entry : this.batches.entrySet()) {
+            if (all || entry.getValue().isExpired(now)) {
+                expiredBatches.add(entry);
+            }
+        }
+        for (Map.Entry<String, Batch> expiredBatch : expiredBatches) {
+            // Only send the batch if no one else did it in between: it might be empty if all its events cancelled
+            // each other.
+            if (this.batches.remove(expiredBatch.getKey(), expiredBatch.getValue())
+                && !expiredBatch.getValue().messages.isEmpty()) {
+                this.processInContext(expiredBatch.getValue());
+            }
+        }
+    }
+
+    private void processInContext(Batch batch)
+    {
+        // The batches are sent from a dedicated thread, so we need to create the context.
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            XWikiContext context = this.contextProvider.get();
+            context.setWikiReference(batch.wikiReference);
+            DocumentReference originalReference = null;
+            for (PendingMessage message : batch.messages) {
+                // The message stores the context user: it has to be the one who triggered the event.
+                context.setUserReference(message.userReference);
+                // All messages of the batch concern the same change request: we only resolve its reference once.
+                if (originalReference == null) {
+                    originalReference = this.getOriginalReference(message);
+                }
+                this.sendMessage(message, originalReference);
+            }
+        } catch (ExecutionContextException e) {
+            this.logger.error("Error while initializing context for sending replication messages in wiki [{}]",
+                batch.wikiReference, e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private String getKey(RecordableEvent event, DocumentReference dataDocumentReference)
+    {
+        if (event instanceof AbstractChangeRequestRecordableEvent) {
+            return String.format("%s:%s", dataDocumentReference.getWikiReference().getName(),
+                ((AbstractChangeRequestRecordableEvent) event).getChangeRequestId());
+        } else {
+            return dataDocumentReference.toString();
+        }
+    }
+
+    private DocumentReference getOriginalReference(PendingMessage message)
+    {
+        DocumentReference result = message.dataDocumentReference;
+        if (message.event instanceof AbstractChangeRequestRecordableEvent) {
+            String changeRequestId = ((AbstractChangeRequestRecordableEvent) message.event).getChangeRequestId();
+            try {
+                Optional<ChangeRequest> optionalChangeRequest = this.changeRequestStorageManagerProvider.get()
+                    .load(changeRequestId);
+                if (optionalChangeRequest.isPresent()) {
+                    result = this.changeRequestDocumentReferenceResolver.resolve(optionalChangeRequest.get());
+                } else {
+                    this.logger.error("No change request found with identifier [{}]", changeRequestId);
+                }
+            } catch (ChangeRequestException e) {
+                this.logger.error("Cannot load change request [{}]", changeRequestId, e);
+            }
+        }
+        return result;
+    }
+
+    private void sendMessage(PendingMessage message, DocumentReference originalReference)
+    {
+        String messageHint = message.messageHint;
+        try {
+            DocumentReplicationSenderMessageBuilder documentReplicationSenderMessageBuilder =
+                this.entityReplicationBuildersProvider.get()
+                    .documentMessageBuilder((builder, level, readonly, extraMetadata) ->
+                    {
+                        try {
+                            ChangeRequestReplicationSenderMessage senderMessage = this.componentManager
+                                .getInstance(ChangeRequestReplicationSenderMessage.class, messageHint);
+                            senderMessage.initialize(message.event, message.dataDocumentReference);
+                            return senderMessage;
+                        } catch (ComponentLookupException e) {
+                            throw new ReplicationException(
+                                String.format("Error when looking for replication component message with hint [%s]",
+                                    messageHint), e);
+                        }
+                    }, originalReference)
+                    .minimumLevel(DocumentReplicationLevel.ALL);
+            this.documentReplicationControllerProvider.get().send(documentReplicationSenderMessageBuilder);
+        } catch (ReplicationException e) {
+            this.logger.error("Error while sending the replication message for document [{}]",
+                message.dataDocumentReference, e);
+        }
+    }
+}
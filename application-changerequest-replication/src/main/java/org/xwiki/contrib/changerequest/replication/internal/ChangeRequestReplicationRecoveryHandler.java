@@ -19,34 +19,68 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestCreatedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestDiscussionRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestFileChangeAddedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestRebasedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReviewAddedRecordableEvent;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestException;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestStatusChangedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestUpdatedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.DocumentModifiedInChangeRequestEvent;
-import org.xwiki.contrib.changerequest.notifications.events.StaleChangeRequestRecordableEvent;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestStateReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.contrib.replication.ReplicationException;
+import org.xwiki.contrib.replication.ReplicationInstance;
+import org.xwiki.contrib.replication.ReplicationInstanceManager;
 import org.xwiki.contrib.replication.ReplicationInstanceRecoverHandler;
 import org.xwiki.contrib.replication.ReplicationReceiverMessage;
 import org.xwiki.contrib.replication.ReplicationSender;
-import org.xwiki.contrib.replication.log.ReplicationMessageEventQuery;
 import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventSearchResult;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.query.SimpleEventQuery;
 import org.xwiki.eventstream.query.SortableEventQuery;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.xwiki.contrib.changerequest.internal.converters.AbstractChangeRequestRecordableEventConverter.CHANGE_REQUEST_ID_PARAMETER_KEY;
+import static org.xwiki.contrib.changerequest.internal.converters.ChangeRequestStatusChangedRecordableEventConverter.OLD_STATUS_PARAMETER_KEY;
 
 /**
  * Component in charge of recovering the lost change request events in replication.
+ * Instead of replaying all the events that occurred during the recovery period, this component sends a single
+ * {@link ChangeRequestStateReplicationSenderMessage} for each change request updated during that period (including the
+ * updates of its file changes, reviews and discussions), to the recovering instance only. The status of the change
+ * request before the period is retrieved from the locally stored events, so that status changes are still notified.
  *
  * @version $Id$
  * @since 1.4
@@ -56,41 +90,194 @@ import org.xwiki.eventstream.query.SortableEventQuery;
 @Singleton
 public class ChangeRequestReplicationRecoveryHandler implements ReplicationInstanceRecoverHandler
 {
+    // The file changes are stored in the space of the change request, and the discussions in its subspaces: we look
+    // for any of those documents updated during the period, and resolve their change request from their space. The
+    // query only relies on the change request location, so that it can use the index of the space column.
+    private static final String UPDATED_CHANGE_REQUESTS_STATEMENT = "select distinct doc.space from XWikiDocument doc "
+        + "where doc.space like :location escape '!' and doc.date >= :dateMin and doc.date <= :dateMax";
+
+    private static final char LIKE_ESCAPE = '!';
+
     @Inject
     private ReplicationSender replicationSender;
 
+    @Inject
+    private ReplicationInstanceManager instanceManager;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @Inject
+    private SpaceReferenceResolver<String> spaceReferenceResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
+
+    @Inject
+    private Provider<ChangeRequestConfiguration> configurationProvider;
+
+    @Inject
+    private UserReferenceConverter userReferenceConverter;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Provider<EventStore> eventStoreProvider;
+
+    @Inject
+    private Logger logger;
+
     @Override
     public void receive(Date dateMin, Date dateMax, ReplicationReceiverMessage message)
         throws ReplicationException
     {
-        ReplicationMessageEventQuery query = new ReplicationMessageEventQuery();
-
-        // Get all events related to Change request
-        query.in(Event.FIELD_TYPE, List.of(
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestCreatedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestDiscussionRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestRebasedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestUpdatedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestFileChangeAddedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestReadyForReviewTargetableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestReviewAddedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestStatusChangedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(StaleChangeRequestRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(DocumentModifiedInChangeRequestEvent.EVENT_NAME)
-        ));
-
-        // And only the stored and received ones
-        query.custom().in(
-            ReplicationMessageEventQuery.KEY_STATUS,
-            ReplicationMessageEventQuery.VALUE_STATUS_STORED,
-            ReplicationMessageEventQuery.VALUE_STATUS_RECEIVED);
-
-        // Minimum date
-        query.after(dateMin);
-        query.before(dateMax);
-        // Sort by date
-        query.addSort(Event.FIELD_DATE, SortableEventQuery.SortClause.Order.ASC);
-
-        this.replicationSender.resend(query, List.of(message.getSource()));
+        ReplicationInstance instance = this.instanceManager.getInstanceByURI(message.getSource());
+        if (instance == null) {
+            this.logger.warn("Cannot find the replication instance [{}] to recover change requests.",
+                message.getSource());
+            return;
+        }
+
+        Collection<String> wikiIds;
+        try {
+            wikiIds = this.wikiDescriptorManager.getAllIds();
+        } catch (WikiManagerException e) {
+            throw new ReplicationException("Error while getting the list of wikis to recover change requests", e);
+        }
+
+        XWikiContext context = this.contextProvider.get();
+        WikiReference currentWiki = context.getWikiReference();
+        DocumentReference currentUser = context.getUserReference();
+        try {
+            for (String wikiId : wikiIds) {
+                context.setWikiReference(new WikiReference(wikiId));
+                for (String changeRequestId : getUpdatedChangeRequests(wikiId, dateMin, dateMax)) {
+                    this.sendState(changeRequestId, getPreviousStatus(wikiId, changeRequestId, dateMin, dateMax),
+                        instance, context);
+                }
+            }
+        } finally {
+            context.setWikiReference(currentWiki);
+            context.setUserReference(currentUser);
+        }
+    }
+
+    private Set<String> getUpdatedChangeRequests(String wikiId, Date dateMin, Date dateMax)
+        throws ReplicationException
+    {
+        WikiReference wikiReference = new WikiReference(wikiId);
+        SpaceReference location = this.configurationProvider.get().getChangeRequestSpaceLocation();
+        List<String> spaces;
+        try {
+            Query query = this.queryManager.createQuery(UPDATED_CHANGE_REQUESTS_STATEMENT, Query.HQL)
+                .setWiki(wikiId)
+                .bindValue("location",
+                    escapeLike(this.localEntityReferenceSerializer.serialize(location)) + ".%")
+                .bindValue("dateMin", dateMin)
+                .bindValue("dateMax", dateMax);
+            spaces = query.execute();
+        } catch (QueryException e) {
+            throw new ReplicationException(
+                String.format("Error while getting the change requests updated in wiki [%s]", wikiId), e);
+        }
+
+        // Several spaces can belong to the same change request.
+        Set<String> result = new LinkedHashSet<>();
+        for (String space : spaces) {
+            EntityReference changeRequestSpace = this.spaceReferenceResolver.resolve(space, wikiReference);
+            while (changeRequestSpace != null && !location.equals(changeRequestSpace.getParent())) {
+                changeRequestSpace = changeRequestSpace.getParent();
+            }
+            if (changeRequestSpace != null) {
+                result.add(changeRequestSpace.getName());
+            }
+        }
+        return result;
+    }
+
+    private static String escapeLike(String value)
+    {
+        StringBuilder result = new StringBuilder();
+        for (char character : value.toCharArray()) {
+            if (character == LIKE_ESCAPE || character == '%' || character == '_') {
+                result.append(LIKE_ESCAPE);
+            }
+            result.append(character);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Retrieve the status the change request had before the first status change performed during the period, by
+     * looking at the status change events stored locally.
+     *
+     * @return the status before the first status change of the period or {@code null} if it didn't change
+     */
+    private ChangeRequestStatus getPreviousStatus(String wikiId, String changeRequestId, Date dateMin, Date dateMax)
+    {
+        ChangeRequestStatus result = null;
+        SimpleEventQuery eventQuery = new SimpleEventQuery(0, 1)
+            .eq(Event.FIELD_TYPE, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME)
+            .eq(Event.FIELD_WIKI, wikiId)
+            .eq(String.format("%s__properties_string", CHANGE_REQUEST_ID_PARAMETER_KEY), changeRequestId)
+            .after(dateMin)
+            .before(dateMax)
+            .addSort(Event.FIELD_DATE, SortableEventQuery.SortClause.Order.ASC);
+        try (EventSearchResult searchResult = this.eventStoreProvider.get().search(eventQuery)) {
+            Optional<Event> firstStatusChange = searchResult.stream().findFirst();
+            if (firstStatusChange.isPresent()) {
+                result = EnumUtils.getEnum(ChangeRequestStatus.class,
+                    firstStatusChange.get().getParameters().get(OLD_STATUS_PARAMETER_KEY));
+            }
+        } catch (Exception e) {
+            // The state is still sent, only the status change won't be notified.
+            this.logger.warn("Error while looking for the status changes of change request [{}]: [{}]",
+                changeRequestId, ExceptionUtils.getRootCauseMessage(e));
+            this.logger.debug("Full stack trace: ", e);
+        }
+        return result;
+    }
+
+    private void sendState(String changeRequestId, ChangeRequestStatus previousStatus, ReplicationInstance instance,
+        XWikiContext context) throws ReplicationException
+    {
+        Optional<ChangeRequest> optionalChangeRequest;
+        try {
+            optionalChangeRequest = this.changeRequestStorageManagerProvider.get().load(changeRequestId);
+        } catch (ChangeRequestException e) {
+            throw new ReplicationException(
+                String.format("Error while loading change request [%s] for recovery", changeRequestId), e);
+        }
+        if (optionalChangeRequest.isPresent()) {
+            ChangeRequest changeRequest = optionalChangeRequest.get();
+            try {
+                ChangeRequestStateReplicationSenderMessage senderMessage =
+                    (ChangeRequestStateReplicationSenderMessage) this.componentManagerProvider.get()
+                        .getInstance(ChangeRequestReplicationSenderMessage.class,
+                            ChangeRequestStateReplicationSenderMessage.TYPE);
+                // The message is sent on behalf of the author of the change request.
+                context.setUserReference(this.userReferenceConverter.convert(changeRequest.getCreator()));
+                senderMessage.initialize(changeRequest, previousStatus,
+                    this.changeRequestDocumentReferenceResolver.resolve(changeRequest));
+                this.replicationSender.send(senderMessage, List.of(instance));
+            } catch (ComponentLookupException e) {
+                throw new ReplicationException("Error when looking for the change request state message", e);
+            }
+        }
     }
 }
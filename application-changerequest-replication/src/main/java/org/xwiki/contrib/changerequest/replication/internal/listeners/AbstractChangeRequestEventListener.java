@@ -19,29 +19,13 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal.listeners;
 
-import java.util.Optional;
-
 import javax.inject.Inject;
-import javax.inject.Named;
-import javax.inject.Provider;
 
-import org.slf4j.Logger;
-import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.contrib.changerequest.ChangeRequest;
-import org.xwiki.contrib.changerequest.ChangeRequestException;
-import org.xwiki.contrib.changerequest.notifications.events.AbstractChangeRequestRecordableEvent;
+import org.xwiki.contrib.changerequest.replication.internal.ChangeRequestReplicationMessageBatcher;
 import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
-import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.contrib.replication.ReplicationContext;
-import org.xwiki.contrib.replication.ReplicationException;
-import org.xwiki.contrib.replication.entity.DocumentReplicationController;
-import org.xwiki.contrib.replication.entity.DocumentReplicationLevel;
-import org.xwiki.contrib.replication.entity.DocumentReplicationSenderMessageBuilder;
-import org.xwiki.contrib.replication.entity.EntityReplicationBuilders;
 import org.xwiki.eventstream.RecordableEvent;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
@@ -60,10 +44,6 @@ import com.xpn.xwiki.doc.XWikiDocument;
  */
 public abstract class AbstractChangeRequestEventListener<T extends RecordableEvent> extends AbstractEventListener
 {
-    @Inject
-    @Named("context")
-    private ComponentManager componentManager;
-
     @Inject
     private RemoteObservationManagerContext remoteObservationManagerContext;
 
@@ -71,19 +51,7 @@ public abstract class AbstractChangeRequestEventListener<T extends RecordableEve
     private ReplicationContext replicationContext;
 
     @Inject
-    private Provider<EntityReplicationBuilders> entityReplicationBuildersProvider;
-
-    @Inject
-    private Provider<DocumentReplicationController> documentReplicationControllerProvider;
-
-    @Inject
-    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
-
-    @Inject
-    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
-
-    @Inject
-    private Logger logger;
+    private ChangeRequestReplicationMessageBatcher messageBatcher;
 
     /**
      * Default constructor.
@@ -106,29 +74,10 @@ public abstract class AbstractChangeRequestEventListener<T extends RecordableEve
         }
     }
 
-    private DocumentReference getDocumentReference(T event, DocumentReference dataDocumentReference)
-    {
-        DocumentReference result = dataDocumentReference;
-        if (event instanceof AbstractChangeRequestRecordableEvent) {
-            String changeRequestId = ((AbstractChangeRequestRecordableEvent) event).getChangeRequestId();
-            try {
-                Optional<ChangeRequest> optionalChangeRequest = this.changeRequestStorageManagerProvider.get()
-                    .load(changeRequestId);
-                if (optionalChangeRequest.isPresent()) {
-                    result = this.changeRequestDocumentReferenceResolver.resolve(optionalChangeRequest.get());
-                } else {
-                    this.logger.error("No change request found with identifier [{}]", changeRequestId);
-                }
-            } catch (ChangeRequestException e) {
-                this.logger.error("Cannot load change request [{}]", changeRequestId, e);
-            }
-        }
-        return result;
-    }
-
     /**
      * Create a new instance of a message associated to the event, initialize it with event information and finally
-     * sent it to the replicated instances.
+     * sent it to the replicated instances. Note that the messages are batched per change request before being sent,
+     * see {@link ChangeRequestReplicationMessageBatcher}.
      *
      * @param event the event from which to create the message.
      * @param messageHint the hint of the {@link ChangeRequestReplicationSenderMessage}: by convention it should be the
@@ -138,29 +87,35 @@ public abstract class AbstractChangeRequestEventListener<T extends RecordableEve
      */
     protected void processMessage(T event, String messageHint, DocumentReference dataDocumentReference)
     {
-        try {
-            DocumentReference originalReference = getDocumentReference(event, dataDocumentReference);
-            DocumentReplicationSenderMessageBuilder documentReplicationSenderMessageBuilder =
-                this.entityReplicationBuildersProvider.get()
-                    .documentMessageBuilder((builder, level, readonly, extraMetadata) ->
-                    {
-                        try {
-                            ChangeRequestReplicationSenderMessage message = this.componentManager
-                                .getInstance(ChangeRequestReplicationSenderMessage.class, messageHint);
-                            message.initialize(event, dataDocumentReference);
-                            return message;
-                        } catch (ComponentLookupException e) {
-                            throw new ReplicationException(
-                                String .format("Error when looking for replication component message with hint [%s]",
-                                    messageHint), e);
-                        }
-                    }, originalReference)
-                    .minimumLevel(DocumentReplicationLevel.ALL);
-            this.documentReplicationControllerProvider.get().send(documentReplicationSenderMessageBuilder);
-        } catch (ReplicationException e) {
-            this.logger.error("Error while sending the replication message for document [{}]",
-                dataDocumentReference, e);
-        }
+        this.messageBatcher.add(this, event, messageHint, dataDocumentReference);
+    }
+
+    /**
+     * Coalesce two events waiting to be replicated in a single one. This method is only called for events handled by
+     * this listener, concerning the same change request and the same data document, and which are not yet sent.
+     * By default, events are not coalesced since each of them needs to be replicated.
+     *
+     * @param previousEvent the event which was received first
+     * @param nextEvent the event which was received after the previous one
+     * @return the event to replicate instead of both events, or {@code null} if both events need to be replicated
+     * @since 1.16
+     */
+    public T coalesce(T previousEvent, T nextEvent)
+    {
+        return null;
+    }
+
+    /**
+     * Check if an event resulting from {@link #coalesce(RecordableEvent, RecordableEvent)} doesn't change anything and
+     * can be dropped instead of being replicated, e.g. because the coalesced events cancel each other.
+     *
+     * @param coalescedEvent an event obtained by coalescing two events
+     * @return {@code true} if the event doesn't need to be replicated
+     * @since 1.16
+     */
+    public boolean hasNoEffect(T coalescedEvent)
+    {
+        return false;
     }
 
     /**
@@ -22,6 +22,7 @@ package org.xwiki.contrib.changerequest.replication.internal.listeners;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestRebasedRecordableEvent;
 
@@ -56,4 +57,18 @@ public class ChangeRequestRebasedListener extends
     {
         return ChangeRequestRebasedRecordableEvent.EVENT_NAME;
     }
+
+    @Override
+    public ChangeRequestRebasedRecordableEvent coalesce(ChangeRequestRebasedRecordableEvent previousEvent,
+        ChangeRequestRebasedRecordableEvent nextEvent)
+    {
+        ChangeRequestRebasedRecordableEvent result = null;
+        // Rebasing twice the same thing is only replicated once.
+        if (previousEvent.isConflictFixing() == nextEvent.isConflictFixing()
+            && previousEvent.concernsAllChangeRequest() == nextEvent.concernsAllChangeRequest()
+            && StringUtils.equals(previousEvent.getConcernedFileChangeId(), nextEvent.getConcernedFileChangeId())) {
+            result = nextEvent;
+        }
+        return result;
+    }
 }
@@ -56,4 +56,12 @@ public class ChangeRequestUpdatedListener extends
     {
         return ChangeRequestUpdatedRecordableEvent.EVENT_NAME;
     }
+
+    @Override
+    public ChangeRequestUpdatedRecordableEvent coalesce(ChangeRequestUpdatedRecordableEvent previousEvent,
+        ChangeRequestUpdatedRecordableEvent nextEvent)
+    {
+        // Only the latest update matters.
+        return nextEvent;
+    }
 }
@@ -19,6 +19,9 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal.listeners;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -56,4 +59,19 @@ public class ReadyForReviewListener extends
     {
         return ChangeRequestReadyForReviewTargetableEvent.EVENT_NAME;
     }
+
+    @Override
+    public ChangeRequestReadyForReviewTargetableEvent coalesce(ChangeRequestReadyForReviewTargetableEvent previousEvent,
+        ChangeRequestReadyForReviewTargetableEvent nextEvent)
+    {
+        // Both events concern the same change request: we only replicate one targeting all approvers.
+        Set<String> targets = new HashSet<>();
+        if (previousEvent.getTarget() != null) {
+            targets.addAll(previousEvent.getTarget());
+        }
+        if (nextEvent.getTarget() != null) {
+            targets.addAll(nextEvent.getTarget());
+        }
+        return new ChangeRequestReadyForReviewTargetableEvent(targets);
+    }
 }
@@ -55,4 +55,11 @@ public class StaleChangeRequestListener extends AbstractChangeRequestEventListen
     {
         return StaleChangeRequestRecordableEvent.EVENT_NAME;
     }
+
+    @Override
+    public StaleChangeRequestRecordableEvent coalesce(StaleChangeRequestRecordableEvent previousEvent,
+        StaleChangeRequestRecordableEvent nextEvent)
+    {
+        return nextEvent;
+    }
 }
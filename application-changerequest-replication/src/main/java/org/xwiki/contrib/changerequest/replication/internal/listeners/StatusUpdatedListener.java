@@ -55,4 +55,20 @@ public class StatusUpdatedListener extends AbstractChangeRequestEventListener<Ch
     {
         return ChangeRequestStatusChangedRecordableEvent.EVENT_NAME;
     }
+
+    @Override
+    public ChangeRequestStatusChangedRecordableEvent coalesce(ChangeRequestStatusChangedRecordableEvent previousEvent,
+        ChangeRequestStatusChangedRecordableEvent nextEvent)
+    {
+        // We only replicate the status change from the first old status to the last new status.
+        return new ChangeRequestStatusChangedRecordableEvent(nextEvent.getChangeRequestId(),
+            previousEvent.getOldStatus(), nextEvent.getNewStatus());
+    }
+
+    @Override
+    public boolean hasNoEffect(ChangeRequestStatusChangedRecordableEvent coalescedEvent)
+    {
+        // The status came back to its first value.
+        return coalescedEvent.getOldStatus() == coalescedEvent.getNewStatus();
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.replication.internal.messages;
+
+import javax.inject.Named;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestUpdatedRecordableEvent;
+import org.xwiki.eventstream.RecordableEvent;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Sender message holding the current state of a change request: it's used when recovering an instance, to send a
+ * single message per change request instead of replaying all the events that occurred on it.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Named(ChangeRequestStateReplicationSenderMessage.TYPE)
+public class ChangeRequestStateReplicationSenderMessage extends
+    AbstractRecordableChangeRequestEventReplicationSenderMessage
+{
+    /**
+     * Type of the message.
+     */
+    public static final String TYPE = "changerequest.state";
+
+    /**
+     * Key of the custom metadata holding the current status of the change request.
+     */
+    public static final String STATUS = "STATUS";
+
+    /**
+     * Key of the custom metadata holding the status of the change request before it changed, only set if the status
+     * changed.
+     */
+    public static final String PREVIOUS_STATUS = "PREVIOUS_STATUS";
+
+    /**
+     * Default constructor.
+     */
+    public ChangeRequestStateReplicationSenderMessage()
+    {
+        super(TYPE);
+    }
+
+    /**
+     * Initialize the message with the current state of the given change request.
+     *
+     * @param changeRequest the change request for which to send the state
+     * @param previousStatus the status of the change request before the first status change performed since the last
+     *                       replicated state, or {@code null} if the status didn't change
+     * @param changeRequestDocument the reference of the document of the change request
+     */
+    public void initialize(ChangeRequest changeRequest, ChangeRequestStatus previousStatus,
+        DocumentReference changeRequestDocument)
+    {
+        this.initialize(new ChangeRequestUpdatedRecordableEvent(changeRequest.getId()), changeRequestDocument);
+        this.putCustomMetadata(STATUS, changeRequest.getStatus().name());
+        if (previousStatus != null && previousStatus != changeRequest.getStatus()) {
+            this.putCustomMetadata(PREVIOUS_STATUS, previousStatus.name());
+        }
+    }
+
+    @Override
+    protected void initializeCustomMetadata(RecordableEvent event)
+    {
+        // The state is added when initializing from the change request.
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal.receivers;
 
+import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
 
@@ -76,25 +77,20 @@ public class ChangeRequestCreatedEventReceiver extends AbstractChangeRequestRece
             Optional<ChangeRequest> changeRequestOpt = this.changeRequestStorageManager.load(changeRequestId);
             if (changeRequestOpt.isPresent()) {
                 ChangeRequest changeRequest = changeRequestOpt.get();
-                if (this.autoWatchHandler.hasAutoWatchEnabled(changeRequest.getCreator())) {
-                    this.autoWatchHandler.watchChangeRequest(changeRequest, changeRequest.getCreator());
-                }
-                Set<UserReference> allApprovers =
-                    this.approversManagerProvider.get().getAllApprovers(changeRequest, false);
-                allApprovers.forEach(userReference -> {
-                    if (autoWatchHandler.hasAutoWatchEnabled(userReference)) {
-                        try {
-                            autoWatchHandler.watchChangeRequest(changeRequest, userReference);
-                        } catch (ChangeRequestException e) {
-                            this.logger.error(
-                                "Error while handling autowatch for changerequest [{}] and approver [{}]: [{}]",
-                                changeRequest, userReference,
-                                ExceptionUtils.getRootCauseMessage(e)
-                            );
-                            this.logger.debug("Full stack trace: ", e);
-                        }
+                // The creator might also be an approver: each user is only handled once.
+                Set<UserReference> watchers = new LinkedHashSet<>();
+                watchers.add(changeRequest.getCreator());
+                watchers.addAll(this.approversManagerProvider.get().getAllApprovers(changeRequest, false));
+                watchers.removeIf(userReference -> !this.autoWatchHandler.hasAutoWatchEnabled(userReference));
+                if (!watchers.isEmpty()) {
+                    try {
+                        this.autoWatchHandler.watchChangeRequest(changeRequest, watchers);
+                    } catch (ChangeRequestException e) {
+                        this.logger.error("Error while handling autowatch for changerequest [{}]: [{}]",
+                            changeRequestId, ExceptionUtils.getRootCauseMessage(e));
+                        this.logger.debug("Full stack trace: ", e);
                     }
-                });
+                }
             }
         } catch (ChangeRequestException e) {
             throw new ReplicationException(
@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.replication.internal.receivers;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.notifications.events.AbstractChangeRequestRecordableEvent;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestStatusChangedRecordableEvent;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestUpdatedRecordableEvent;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestStateReplicationSenderMessage;
+import org.xwiki.contrib.replication.ReplicationException;
+import org.xwiki.contrib.replication.ReplicationReceiverMessage;
+
+/**
+ * Message receiver for {@link ChangeRequestStateReplicationSenderMessage}: the state of the change request is
+ * replicated with its documents, so we only notify a single status change of the change request if its status changed,
+ * or a single update of the change request otherwise.
+ *
+ * @version $Id$
+ * @since 1.16
+ */
+@Component
+@Singleton
+@Named(ChangeRequestStateReplicationSenderMessage.TYPE)
+public class ChangeRequestStateEventReceiver extends AbstractChangeRequestReceiver
+{
+    @Override
+    protected void receiveWithUserSet(ReplicationReceiverMessage message) throws ReplicationException
+    {
+        String changeRequestId = getChangeRequestId(message);
+        String previousStatus =
+            this.messageReader.getMetadata(message, ChangeRequestStateReplicationSenderMessage.PREVIOUS_STATUS, false);
+        AbstractChangeRequestRecordableEvent event;
+        // The status change is notified as such, so that it's not lost when recovering.
+        if (previousStatus != null) {
+            String status =
+                this.messageReader.getMetadata(message, ChangeRequestStateReplicationSenderMessage.STATUS, true);
+            event = new ChangeRequestStatusChangedRecordableEvent(changeRequestId,
+                ChangeRequestStatus.valueOf(previousStatus), ChangeRequestStatus.valueOf(status));
+        } else {
+            event = new ChangeRequestUpdatedRecordableEvent(changeRequestId);
+        }
+        DocumentModelBridge crDocument = this.getDataDocument(message);
+        this.recordableEventNotifier.notifyChangeRequestRecordableEvent(event, crDocument);
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.replication.internal;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestDiscussionRecordableEvent;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestStatusChangedRecordableEvent;
+import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestUpdatedRecordableEvent;
+import org.xwiki.contrib.changerequest.replication.internal.listeners.ChangeRequestDiscussionListener;
+import org.xwiki.contrib.changerequest.replication.internal.listeners.ChangeRequestUpdatedListener;
+import org.xwiki.contrib.changerequest.replication.internal.listeners.StatusUpdatedListener;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.replication.entity.DocumentReplicationController;
+import org.xwiki.contrib.replication.entity.DocumentReplicationLevel;
+import org.xwiki.contrib.replication.entity.DocumentReplicationSenderMessageBuilder;
+import org.xwiki.contrib.replication.entity.EntityReplicationBuilders;
+import org.xwiki.contrib.replication.entity.EntityReplicationSenderMessageBuilderProducer;
+import org.xwiki.eventstream.RecordableEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestReplicationMessageBatcher}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestReplicationMessageBatcherTest
+{
+    private static final long WINDOW = 1000;
+
+    @InjectMockComponents
+    private ChangeRequestReplicationMessageBatcher batcher;
+
+    @MockComponent
+    private Provider<EntityReplicationBuilders> entityReplicationBuildersProvider;
+
+    @MockComponent
+    private Provider<DocumentReplicationController> documentReplicationControllerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @MockComponent
+    private Provider<ChangeRequestConfiguration> configurationProvider;
+
+    @MockComponent
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @MockComponent
+    private Execution execution;
+
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    private ChangeRequestConfiguration configuration;
+
+    private XWikiContext context;
+
+    private Clock clock;
+
+    private DocumentReference userReference;
+
+    private DocumentReference changeRequestReference;
+
+    private DocumentReference dataDocumentReference;
+
+    private final StatusUpdatedListener statusUpdatedListener = new StatusUpdatedListener();
+
+    private final ChangeRequestUpdatedListener updatedListener = new ChangeRequestUpdatedListener();
+
+    private final ChangeRequestDiscussionListener discussionListener = new ChangeRequestDiscussionListener();
+
+    /**
+     * The events for which a message has been initialized, in the order of initialization.
+     */
+    private final List<RecordableEvent> initializedEvents = new ArrayList<>();
+
+    /**
+     * The references used to compute the replication instances of the messages sent to the in-memory controller.
+     */
+    private final List<DocumentReference> sentReferences = new ArrayList<>();
+
+    @BeforeComponent
+    void beforeComponent(MockitoComponentManager componentManager) throws Exception
+    {
+        componentManager.registerComponent(ComponentManager.class, "context", componentManager);
+    }
+
+    @BeforeEach
+    void setup(MockitoComponentManager componentManager) throws Exception
+    {
+        // Stop the periodic processing so that the test fully controls when pending batches are sent.
+        this.batcher.dispose();
+        this.clock = mock(Clock.class);
+        this.batcher.setClock(this.clock);
+
+        this.configuration = mock(ChangeRequestConfiguration.class);
+        when(this.configurationProvider.get()).thenReturn(this.configuration);
+        when(this.configuration.getReplicationMessagesBatchWindow()).thenReturn(WINDOW);
+        this.changeRequestStorageManager = mock(ChangeRequestStorageManager.class);
+        when(this.changeRequestStorageManagerProvider.get()).thenReturn(this.changeRequestStorageManager);
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        this.userReference = new DocumentReference("xwiki", "XWiki", "Foo");
+        when(this.context.getUserReference()).thenReturn(this.userReference);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load("cr1")).thenReturn(Optional.of(changeRequest));
+        this.changeRequestReference = new DocumentReference("subwiki", "ChangeRequest", "cr1");
+        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest))
+            .thenReturn(this.changeRequestReference);
+        this.dataDocumentReference = new DocumentReference("subwiki", List.of("ChangeRequest", "cr1"), "WebHome");
+
+        for (String hint : List.of(ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            ChangeRequestUpdatedRecordableEvent.EVENT_NAME, ChangeRequestDiscussionRecordableEvent.EVENT_NAME)) {
+            ChangeRequestReplicationSenderMessage senderMessage =
+                componentManager.registerMockComponent(ChangeRequestReplicationSenderMessage.class, hint);
+            doAnswer(invocation -> this.initializedEvents.add(invocation.getArgument(0)))
+                .when(senderMessage).initialize(any(), any());
+        }
+
+        // In-memory replication controller: it only records the messages it receives.
+        Map<DocumentReplicationSenderMessageBuilder, EntityReplicationSenderMessageBuilderProducer> producers =
+            new HashMap<>();
+        Map<DocumentReplicationSenderMessageBuilder, DocumentReference> references = new HashMap<>();
+        EntityReplicationBuilders entityReplicationBuilders = mock(EntityReplicationBuilders.class);
+        when(this.entityReplicationBuildersProvider.get()).thenReturn(entityReplicationBuilders);
+        when(entityReplicationBuilders.documentMessageBuilder(any(EntityReplicationSenderMessageBuilderProducer.class),
+            any(DocumentReference.class))).then(invocationOnMock -> {
+                DocumentReplicationSenderMessageBuilder builder = mock(DocumentReplicationSenderMessageBuilder.class);
+                when(builder.minimumLevel(DocumentReplicationLevel.ALL)).thenReturn(builder);
+                producers.put(builder, invocationOnMock.getArgument(0));
+                references.put(builder, invocationOnMock.getArgument(1));
+                return builder;
+            });
+        DocumentReplicationController documentReplicationController = mock(DocumentReplicationController.class);
+        when(this.documentReplicationControllerProvider.get()).thenReturn(documentReplicationController);
+        doAnswer(invocationOnMock -> {
+            DocumentReplicationSenderMessageBuilder builder = invocationOnMock.getArgument(0);
+            producers.get(builder).produce(null, null, null, null);
+            this.sentReferences.add(references.get(builder));
+            return null;
+        }).when(documentReplicationController).send(any(DocumentReplicationSenderMessageBuilder.class));
+    }
+
+    private void processAt(long time)
+    {
+        when(this.clock.millis()).thenReturn(time);
+        this.batcher.processExpiredBatches();
+    }
+
+    @Test
+    void addWithoutWindow() throws Exception
+    {
+        when(this.configuration.getReplicationMessagesBatchWindow()).thenReturn(0L);
+        ChangeRequestUpdatedRecordableEvent event = new ChangeRequestUpdatedRecordableEvent("cr1");
+
+        this.batcher.add(this.updatedListener, event, ChangeRequestUpdatedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+
+        assertEquals(0, this.batcher.getPendingBatchesCount());
+        assertEquals(List.of(event), this.initializedEvents);
+        assertEquals(List.of(this.changeRequestReference), this.sentReferences);
+    }
+
+    @Test
+    void addCoalescesMessagesWithinWindow() throws Exception
+    {
+        when(this.clock.millis()).thenReturn(0L);
+        ChangeRequestStatusChangedRecordableEvent status1 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.DRAFT, ChangeRequestStatus.READY_FOR_REVIEW);
+        ChangeRequestStatusChangedRecordableEvent status2 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.READY_FOR_REVIEW, ChangeRequestStatus.READY_FOR_MERGING);
+        ChangeRequestDiscussionRecordableEvent discussion =
+            new ChangeRequestDiscussionRecordableEvent("cr1", "discussion", "reference", "message");
+        ChangeRequestStatusChangedRecordableEvent status3 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.READY_FOR_MERGING, ChangeRequestStatus.READY_FOR_REVIEW);
+        ChangeRequestUpdatedRecordableEvent updated1 = new ChangeRequestUpdatedRecordableEvent("cr1");
+        ChangeRequestUpdatedRecordableEvent updated2 = new ChangeRequestUpdatedRecordableEvent("cr1");
+
+        this.batcher.add(this.statusUpdatedListener, status1, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.statusUpdatedListener, status2, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.discussionListener, discussion, ChangeRequestDiscussionRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.statusUpdatedListener, status3, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.updatedListener, updated1, ChangeRequestUpdatedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.updatedListener, updated2, ChangeRequestUpdatedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+
+        assertEquals(1, this.batcher.getPendingBatchesCount());
+        processAt(WINDOW - 1);
+        assertEquals(1, this.batcher.getPendingBatchesCount());
+        assertEquals(List.of(), this.initializedEvents);
+
+        processAt(WINDOW);
+        assertEquals(0, this.batcher.getPendingBatchesCount());
+        // Only consecutive events are coalesced, so that the order of the events is kept.
+        assertEquals(4, this.initializedEvents.size());
+        ChangeRequestStatusChangedRecordableEvent coalescedStatus =
+            (ChangeRequestStatusChangedRecordableEvent) this.initializedEvents.get(0);
+        assertEquals(ChangeRequestStatus.DRAFT, coalescedStatus.getOldStatus());
+        assertEquals(ChangeRequestStatus.READY_FOR_MERGING, coalescedStatus.getNewStatus());
+        assertSame(discussion, this.initializedEvents.get(1));
+        assertSame(status3, this.initializedEvents.get(2));
+        assertSame(updated2, this.initializedEvents.get(3));
+
+        // The change request is only loaded once for the whole batch.
+        verify(this.changeRequestStorageManager, times(1)).load("cr1");
+        assertEquals(Collections.nCopies(4, this.changeRequestReference), this.sentReferences);
+        verify(this.context, times(4)).setUserReference(this.userReference);
+    }
+
+    @Test
+    void addDropsCancelledStatusChanges() throws Exception
+    {
+        when(this.clock.millis()).thenReturn(0L);
+        ChangeRequestStatusChangedRecordableEvent status1 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.READY_FOR_REVIEW, ChangeRequestStatus.READY_FOR_MERGING);
+        ChangeRequestStatusChangedRecordableEvent status2 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.READY_FOR_MERGING, ChangeRequestStatus.READY_FOR_REVIEW);
+        ChangeRequestStatusChangedRecordableEvent status3 = new ChangeRequestStatusChangedRecordableEvent("cr1",
+            ChangeRequestStatus.READY_FOR_REVIEW, ChangeRequestStatus.READY_FOR_MERGING);
+
+        this.batcher.add(this.statusUpdatedListener, status1, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.statusUpdatedListener, status2, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+
+        // Nothing is sent when the status came back to its first value.
+        processAt(WINDOW);
+        assertEquals(0, this.batcher.getPendingBatchesCount());
+        assertEquals(List.of(), this.initializedEvents);
+        verify(this.changeRequestStorageManager, never()).load("cr1");
+
+        // A new status change after a cancelled one is replicated as is.
+        when(this.clock.millis()).thenReturn(0L);
+        this.batcher.add(this.statusUpdatedListener, status1, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.statusUpdatedListener, status2, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.statusUpdatedListener, status3, ChangeRequestStatusChangedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        processAt(WINDOW);
+        assertEquals(List.of(status3), this.initializedEvents);
+    }
+
+    @Test
+    void flush() throws Exception
+    {
+        when(this.clock.millis()).thenReturn(0L);
+        ChangeRequestUpdatedRecordableEvent event1 = new ChangeRequestUpdatedRecordableEvent("cr1");
+        ChangeRequestUpdatedRecordableEvent event2 = new ChangeRequestUpdatedRecordableEvent("cr2");
+        DocumentReference otherDataDocument =
+            new DocumentReference("subwiki", List.of("ChangeRequest", "cr2"), "WebHome");
+        when(this.changeRequestStorageManager.load("cr2")).thenReturn(Optional.empty());
+
+        this.batcher.add(this.updatedListener, event1, ChangeRequestUpdatedRecordableEvent.EVENT_NAME,
+            this.dataDocumentReference);
+        this.batcher.add(this.updatedListener, event2, ChangeRequestUpdatedRecordableEvent.EVENT_NAME,
+            otherDataDocument);
+        assertEquals(2, this.batcher.getPendingBatchesCount());
+
+        this.batcher.flush();
+        assertEquals(0, this.batcher.getPendingBatchesCount());
+        assertEquals(2, this.initializedEvents.size());
+        assertEquals(2, this.sentReferences.size());
+        // When the change request cannot be loaded, the data document is used to compute the instances.
+        assertEquals(this.sentReferences.indexOf(this.changeRequestReference),
+            this.initializedEvents.indexOf(event1));
+        assertEquals(this.sentReferences.indexOf(otherDataDocument), this.initializedEvents.indexOf(event2));
+    }
+}
@@ -21,31 +21,57 @@ package org.xwiki.contrib.changerequest.replication.internal;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestCreatedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestDiscussionRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestFileChangeAddedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReadyForReviewTargetableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestRebasedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestReviewAddedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestStatusChangedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestUpdatedRecordableEvent;
-import org.xwiki.contrib.changerequest.notifications.events.DocumentModifiedInChangeRequestEvent;
-import org.xwiki.contrib.changerequest.notifications.events.StaleChangeRequestRecordableEvent;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestConfiguration;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.contrib.changerequest.internal.UserReferenceConverter;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestStateReplicationSenderMessage;
+import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
 import org.xwiki.contrib.replication.ReplicationException;
+import org.xwiki.contrib.replication.ReplicationInstance;
+import org.xwiki.contrib.replication.ReplicationInstanceManager;
 import org.xwiki.contrib.replication.ReplicationReceiverMessage;
 import org.xwiki.contrib.replication.ReplicationSender;
-import org.xwiki.contrib.replication.log.ReplicationMessageEventQuery;
 import org.xwiki.eventstream.Event;
-import org.xwiki.eventstream.query.SortableEventQuery;
+import org.xwiki.eventstream.EventSearchResult;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.XWikiContext;
 
-import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -62,44 +88,215 @@ class ChangeRequestReplicationRecoveryHandlerTest
     @MockComponent
     private ReplicationSender replicationSender;
 
+    @MockComponent
+    private ReplicationInstanceManager instanceManager;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    private Provider<ChangeRequestStorageManager> changeRequestStorageManagerProvider;
+
+    @MockComponent
+    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
+
+    @MockComponent
+    private SpaceReferenceResolver<String> spaceReferenceResolver;
+
+    @MockComponent
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
+
+    @MockComponent
+    private Provider<ChangeRequestConfiguration> configurationProvider;
+
+    @MockComponent
+    private UserReferenceConverter userReferenceConverter;
+
+    @MockComponent
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private Provider<EventStore> eventStoreProvider;
+
+    private EventStore eventStore;
+
+    private ChangeRequestStorageManager changeRequestStorageManager;
+
+    private ComponentManager componentManager;
+
+    private XWikiContext context;
+
+    private ChangeRequestConfiguration configuration;
+
+    private WikiReference currentWiki;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        this.changeRequestStorageManager = mock(ChangeRequestStorageManager.class);
+        when(this.changeRequestStorageManagerProvider.get()).thenReturn(this.changeRequestStorageManager);
+        this.componentManager = mock(ComponentManager.class);
+        when(this.componentManagerProvider.get()).thenReturn(this.componentManager);
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        this.configuration = mock(ChangeRequestConfiguration.class);
+        when(this.configurationProvider.get()).thenReturn(this.configuration);
+        // The change requests are located in the ChangeRequest space of the current wiki.
+        doAnswer(invocation -> {
+            this.currentWiki = invocation.getArgument(0);
+            return null;
+        }).when(this.context).setWikiReference(any());
+        when(this.configuration.getChangeRequestSpaceLocation())
+            .then(invocation -> new SpaceReference("ChangeRequest", this.currentWiki));
+        when(this.localEntityReferenceSerializer.serialize(any(SpaceReference.class)))
+            .then(invocation -> invocation.<SpaceReference>getArgument(0).getName());
+        when(this.spaceReferenceResolver.resolve(anyString(), any(WikiReference.class)))
+            .then(invocation -> new SpaceReference(invocation.<WikiReference>getArgument(1).getName(),
+                List.of(invocation.<String>getArgument(0).split("\\."))));
+        this.eventStore = mock(EventStore.class);
+        when(this.eventStoreProvider.get()).thenReturn(this.eventStore);
+        when(this.eventStore.search(any(SimpleEventQuery.class))).then(invocation -> mockSearchResult());
+    }
+
+    private EventSearchResult mockSearchResult(Event... events)
+    {
+        EventSearchResult searchResult = mock(EventSearchResult.class);
+        when(searchResult.stream()).then(invocation -> Stream.of(events));
+        return searchResult;
+    }
+
+    private Query mockQuery(String wiki, Date dateMin, Date dateMax, List<String> result) throws Exception
+    {
+        Query query = mock(Query.class, wiki);
+        when(query.setWiki(wiki)).thenReturn(query);
+        when(query.bindValue("location", "ChangeRequest.%")).thenReturn(query);
+        when(query.bindValue("dateMin", dateMin)).thenReturn(query);
+        when(query.bindValue("dateMax", dateMax)).thenReturn(query);
+        when(query.execute()).thenReturn((List) result);
+        return query;
+    }
+
+    @Test
+    void receive() throws Exception
+    {
+        Date dateMin = new Date(41);
+        Date dateMax = new Date(4444);
+
+        ReplicationReceiverMessage message = mock(ReplicationReceiverMessage.class);
+        when(message.getSource()).thenReturn("toto");
+        ReplicationInstance instance = mock(ReplicationInstance.class);
+        when(this.instanceManager.getInstanceByURI("toto")).thenReturn(instance);
+
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki", "subwiki"));
+        // The spaces of the updated documents of a change request are resolved to a single change request.
+        Query query1 = mockQuery("xwiki", dateMin, dateMax,
+            List.of("ChangeRequest.cr1", "ChangeRequest.cr1.Discussions.Message"));
+        Query query2 = mockQuery("subwiki", dateMin, dateMax, List.of("ChangeRequest.cr2"));
+        when(this.queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query1, query2);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load("cr1")).thenReturn(Optional.of(changeRequest));
+        when(this.changeRequestStorageManager.load("cr2")).thenReturn(Optional.empty());
+        UserReference creator = mock(UserReference.class);
+        when(changeRequest.getCreator()).thenReturn(creator);
+        DocumentReference creatorReference = mock(DocumentReference.class, "creator");
+        when(this.userReferenceConverter.convert(creator)).thenReturn(creatorReference);
+        DocumentReference crReference = mock(DocumentReference.class, "crReference");
+        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crReference);
+
+        ChangeRequestStateReplicationSenderMessage senderMessage =
+            mock(ChangeRequestStateReplicationSenderMessage.class);
+        when(this.componentManager.getInstance(ChangeRequestReplicationSenderMessage.class,
+            ChangeRequestStateReplicationSenderMessage.TYPE)).thenReturn(senderMessage);
+
+        this.requestReplicationRecoveryHandler.receive(dateMin, dateMax, message);
+
+        verify(this.context).setWikiReference(new WikiReference("xwiki"));
+        verify(this.context).setWikiReference(new WikiReference("subwiki"));
+        verify(this.context).setUserReference(creatorReference);
+        verify(senderMessage).initialize(changeRequest, null, crReference);
+        // Only a single message is sent for the change request, and only to the recovering instance.
+        verify(this.replicationSender).send(senderMessage, List.of(instance));
+        verifyNoMoreInteractions(this.replicationSender);
+    }
+
     @Test
-    void receive() throws ReplicationException
+    void receiveWithStatusChange() throws Exception
     {
         Date dateMin = new Date(41);
         Date dateMax = new Date(4444);
 
-        ReplicationMessageEventQuery query = new ReplicationMessageEventQuery();
-
-        // Get all events related to Change request
-        query.in(Event.FIELD_TYPE, List.of(
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestCreatedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestDiscussionRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestRebasedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestUpdatedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestFileChangeAddedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestReadyForReviewTargetableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestReviewAddedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(ChangeRequestStatusChangedRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(StaleChangeRequestRecordableEvent.EVENT_NAME),
-            ReplicationMessageEventQuery.messageTypeValue(DocumentModifiedInChangeRequestEvent.EVENT_NAME)
-        ));
-
-        // And only the stored and received ones
-        query.custom().in(
-            ReplicationMessageEventQuery.KEY_STATUS,
-            ReplicationMessageEventQuery.VALUE_STATUS_STORED,
-            ReplicationMessageEventQuery.VALUE_STATUS_RECEIVED);
-
-        // Minimum date
-        query.after(dateMin);
-        query.before(dateMax);
-        // Sort by date
-        query.addSort(Event.FIELD_DATE, SortableEventQuery.SortClause.Order.ASC);
+        ReplicationReceiverMessage message = mock(ReplicationReceiverMessage.class);
+        when(message.getSource()).thenReturn("toto");
+        ReplicationInstance instance = mock(ReplicationInstance.class);
+        when(this.instanceManager.getInstanceByURI("toto")).thenReturn(instance);
+
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki"));
+        Query query = mockQuery("xwiki", dateMin, dateMax, List.of("ChangeRequest.cr1"));
+        when(this.queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query);
+
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(this.changeRequestStorageManager.load("cr1")).thenReturn(Optional.of(changeRequest));
+        DocumentReference crReference = mock(DocumentReference.class, "crReference");
+        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crReference);
+
+        // The first status change of the period gives the status to notify the change from.
+        Event statusChange = mock(Event.class);
+        when(statusChange.getParameters()).thenReturn(Map.of("changerequest.status.old", "DRAFT"));
+        EventSearchResult searchResult = mockSearchResult(statusChange);
+        when(this.eventStore.search(any(SimpleEventQuery.class))).thenReturn(searchResult);
+
+        ChangeRequestStateReplicationSenderMessage senderMessage =
+            mock(ChangeRequestStateReplicationSenderMessage.class);
+        when(this.componentManager.getInstance(ChangeRequestReplicationSenderMessage.class,
+            ChangeRequestStateReplicationSenderMessage.TYPE)).thenReturn(senderMessage);
+
+        this.requestReplicationRecoveryHandler.receive(dateMin, dateMax, message);
+
+        verify(senderMessage).initialize(changeRequest, ChangeRequestStatus.DRAFT, crReference);
+        verify(this.replicationSender).send(senderMessage, List.of(instance));
+        verify(searchResult).close();
+    }
+
+    @Test
+    void receiveWithUnknownInstance() throws ReplicationException
+    {
+        ReplicationReceiverMessage message = mock(ReplicationReceiverMessage.class);
+        when(message.getSource()).thenReturn("toto");
+
+        this.requestReplicationRecoveryHandler.receive(new Date(41), new Date(4444), message);
+
+        verifyNoInteractions(this.replicationSender);
+    }
+
+    @Test
+    void receiveWithSpecialCharactersInLocation() throws Exception
+    {
+        Date dateMin = new Date(41);
+        Date dateMax = new Date(4444);
 
         ReplicationReceiverMessage message = mock(ReplicationReceiverMessage.class);
         when(message.getSource()).thenReturn("toto");
+        when(this.instanceManager.getInstanceByURI("toto")).thenReturn(mock(ReplicationInstance.class));
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki"));
+        when(this.configuration.getChangeRequestSpaceLocation())
+            .thenReturn(new SpaceReference("xwiki", "Change_Requests%!"));
+        Query query = mock(Query.class, RETURNS_SELF);
+        when(query.execute()).thenReturn(List.of());
+        when(this.queryManager.createQuery(anyString(), eq(Query.HQL))).thenReturn(query);
 
         this.requestReplicationRecoveryHandler.receive(dateMin, dateMax, message);
-        verify(this.replicationSender).resend(query, List.of(message.getSource()));
+
+        // The wildcards of the location are escaped, so that only its subspaces match.
+        verify(query).bindValue("location", "Change!_Requests!%!!.%");
+        verifyNoInteractions(this.replicationSender);
     }
-}
\ No newline at end of file
+}
@@ -19,35 +19,20 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal.listeners;
 
-import java.util.Optional;
-
 import org.junit.jupiter.api.Test;
-import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestCreatedRecordableEvent;
-import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
-import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.changerequest.replication.internal.ChangeRequestReplicationMessageBatcher;
 import org.xwiki.contrib.replication.ReplicationContext;
-import org.xwiki.contrib.replication.entity.DocumentReplicationController;
-import org.xwiki.contrib.replication.entity.DocumentReplicationLevel;
-import org.xwiki.contrib.replication.entity.DocumentReplicationSenderMessageBuilder;
-import org.xwiki.contrib.replication.entity.EntityReplicationBuilders;
-import org.xwiki.contrib.replication.entity.EntityReplicationSenderMessageBuilderProducer;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
-import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
-import org.xwiki.test.mockito.MockitoComponentManager;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -65,10 +50,7 @@ class ChangeRequestCreatedListenerTest
     private ChangeRequestCreatedListener listener;
 
     @MockComponent
-    private EntityReplicationBuilders entityReplicationBuilders;
-
-    @MockComponent
-    private DocumentReplicationController documentReplicationController;
+    private ChangeRequestReplicationMessageBatcher messageBatcher;
 
     @MockComponent
     private RemoteObservationManagerContext remoteObservationManagerContext;
@@ -76,18 +58,6 @@ class ChangeRequestCreatedListenerTest
     @MockComponent
     private ReplicationContext replicationContext;
 
-    @MockComponent
-    private ChangeRequestStorageManager changeRequestStorageManager;
-
-    @MockComponent
-    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
-
-    @BeforeComponent
-    void beforeComponent(MockitoComponentManager componentManager) throws Exception
-    {
-        componentManager.registerComponent(ComponentManager.class, "context", componentManager);
-    }
-
     @Test
     void getEvents()
     {
@@ -96,7 +66,7 @@ class ChangeRequestCreatedListenerTest
     }
 
     @Test
-    void onEvent(MockitoComponentManager componentManager) throws Exception
+    void onEvent()
     {
         String crId = "crFooBar";
         String fileChangeId = "fileChangeId";
@@ -109,41 +79,15 @@ class ChangeRequestCreatedListenerTest
 
         when(this.replicationContext.isReplicationMessage()).thenReturn(true);
         this.listener.onEvent(event, null, data);
-        verifyNoInteractions(this.documentReplicationController);
+        verifyNoInteractions(this.messageBatcher);
 
         when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(true);
         when(this.replicationContext.isReplicationMessage()).thenReturn(false);
         this.listener.onEvent(event, null, data);
-        verifyNoInteractions(this.documentReplicationController);
+        verifyNoInteractions(this.messageBatcher);
 
         when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(false);
-
-        ChangeRequestReplicationSenderMessage senderMessage =
-            componentManager.registerMockComponent(ChangeRequestReplicationSenderMessage.class, expectedHint);
-
-        ChangeRequest changeRequest = mock(ChangeRequest.class);
-        when(this.changeRequestStorageManager.load(crId)).thenReturn(Optional.of(changeRequest));
-        DocumentReference crDocReference = mock(DocumentReference.class, "crDoc");
-
-        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crDocReference);
-
-        DocumentReplicationSenderMessageBuilder messageBuilder1 = mock(DocumentReplicationSenderMessageBuilder.class,
-            "beforeLevel");
-        DocumentReplicationSenderMessageBuilder messageBuilder2 = mock(DocumentReplicationSenderMessageBuilder.class,
-            "afterLevel");
-        when(this.entityReplicationBuilders.documentMessageBuilder(
-            any(EntityReplicationSenderMessageBuilderProducer.class),
-            eq(crDocReference))
-        ).then(invocationOnMock -> {
-            EntityReplicationSenderMessageBuilderProducer producer = invocationOnMock.getArgument(0);
-            producer.produce(null, null, null, null);
-            return messageBuilder1;
-        });
-        when(messageBuilder1.minimumLevel(DocumentReplicationLevel.ALL)).thenReturn(messageBuilder2);
-
         this.listener.onEvent(event, null, data);
-        verify(senderMessage).initialize(event, dataDocRef);
-        verify(messageBuilder1).minimumLevel(DocumentReplicationLevel.ALL);
-        verify(this.documentReplicationController).send(messageBuilder2);
+        verify(this.messageBatcher).add(this.listener, event, expectedHint, dataDocRef);
     }
 }
\ No newline at end of file
@@ -19,39 +19,22 @@
  */
 package org.xwiki.contrib.changerequest.replication.internal.listeners;
 
-import java.util.Collections;
-import java.util.Optional;
-
 import org.junit.jupiter.api.Test;
-import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.contrib.changerequest.ChangeRequest;
 import org.xwiki.contrib.changerequest.notifications.events.ChangeRequestRebasedRecordableEvent;
-import org.xwiki.contrib.changerequest.replication.internal.messages.ChangeRequestReplicationSenderMessage;
-import org.xwiki.contrib.changerequest.storage.ChangeRequestStorageManager;
+import org.xwiki.contrib.changerequest.replication.internal.ChangeRequestReplicationMessageBatcher;
 import org.xwiki.contrib.replication.ReplicationContext;
-import org.xwiki.contrib.replication.entity.DocumentReplicationController;
-import org.xwiki.contrib.replication.entity.DocumentReplicationLevel;
-import org.xwiki.contrib.replication.entity.DocumentReplicationSenderMessageBuilder;
-import org.xwiki.contrib.replication.entity.EntityReplicationBuilders;
-import org.xwiki.contrib.replication.entity.EntityReplicationSenderMessageBuilderProducer;
-import org.xwiki.contrib.replication.entity.ReplicationSenderMessageProducer;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
-import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
-import org.xwiki.test.mockito.MockitoComponentManager;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.isNull;
-import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -75,22 +58,7 @@ class ChangeRequestRebasedListenerTest
     private ReplicationContext replicationContext;
 
     @MockComponent
-    private EntityReplicationBuilders entityReplicationBuilders;
-
-    @MockComponent
-    private DocumentReplicationController documentReplicationController;
-
-    @MockComponent
-    private ChangeRequestStorageManager changeRequestStorageManager;
-
-    @MockComponent
-    private DocumentReferenceResolver<ChangeRequest> changeRequestDocumentReferenceResolver;
-
-    @BeforeComponent
-    void beforeComponent(MockitoComponentManager componentManager) throws Exception
-    {
-        componentManager.registerComponent(ComponentManager.class, "context", componentManager);
-    }
+    private ChangeRequestReplicationMessageBatcher messageBatcher;
 
     @Test
     void getEvents()
@@ -100,7 +68,7 @@ class ChangeRequestRebasedListenerTest
     }
 
     @Test
-    void onEvent(MockitoComponentManager componentManager) throws Exception
+    void onEvent()
     {
         String crId = "crFooBar";
         ChangeRequestRebasedRecordableEvent event = new ChangeRequestRebasedRecordableEvent(crId, false, "");
@@ -112,41 +80,36 @@ class ChangeRequestRebasedListenerTest
 
         when(this.replicationContext.isReplicationMessage()).thenReturn(true);
         this.listener.onEvent(event, null, data);
-        verifyNoInteractions(this.documentReplicationController);
+        verifyNoInteractions(this.messageBatcher);
 
         when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(true);
         when(this.replicationContext.isReplicationMessage()).thenReturn(false);
         this.listener.onEvent(event, null, data);
-        verifyNoInteractions(this.documentReplicationController);
+        verifyNoInteractions(this.messageBatcher);
 
         when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(false);
+        this.listener.onEvent(event, null, data);
+        verify(this.messageBatcher).add(this.listener, event, expectedHint, dataDocRef);
+    }
 
-        ChangeRequestReplicationSenderMessage senderMessage =
-            componentManager.registerMockComponent(ChangeRequestReplicationSenderMessage.class, expectedHint);
-
-
-        ChangeRequest changeRequest = mock(ChangeRequest.class);
-        when(this.changeRequestStorageManager.load(crId)).thenReturn(Optional.of(changeRequest));
-        DocumentReference crDocReference = mock(DocumentReference.class, "crDoc");
-
-        when(this.changeRequestDocumentReferenceResolver.resolve(changeRequest)).thenReturn(crDocReference);
-        DocumentReplicationSenderMessageBuilder messageBuilder1 = mock(DocumentReplicationSenderMessageBuilder.class,
-            "beforeLevel");
-        DocumentReplicationSenderMessageBuilder messageBuilder2 = mock(DocumentReplicationSenderMessageBuilder.class,
-            "afterLevel");
-        when(this.entityReplicationBuilders.documentMessageBuilder(
-            any(EntityReplicationSenderMessageBuilderProducer.class),
-            eq(crDocReference))
-        ).then(invocationOnMock -> {
-            EntityReplicationSenderMessageBuilderProducer producer = invocationOnMock.getArgument(0);
-            producer.produce(null, null, null, null);
-            return messageBuilder1;
-        });
-        when(messageBuilder1.minimumLevel(DocumentReplicationLevel.ALL)).thenReturn(messageBuilder2);
+    @Test
+    void coalesce()
+    {
+        ChangeRequestRebasedRecordableEvent previousEvent = new ChangeRequestRebasedRecordableEvent("cr", false, null);
+        ChangeRequestRebasedRecordableEvent nextEvent = new ChangeRequestRebasedRecordableEvent("cr", false, null);
+        assertSame(nextEvent, this.listener.coalesce(previousEvent, nextEvent));
 
-        this.listener.onEvent(event, null, data);
-        verify(senderMessage).initialize(event, dataDocRef);
-        verify(messageBuilder1).minimumLevel(DocumentReplicationLevel.ALL);
-        verify(this.documentReplicationController).send(messageBuilder2);
+        previousEvent = new ChangeRequestRebasedRecordableEvent("cr", true, "fc1");
+        nextEvent = new ChangeRequestRebasedRecordableEvent("cr", true, "fc1");
+        assertSame(nextEvent, this.listener.coalesce(previousEvent, nextEvent));
+
+        nextEvent = new ChangeRequestRebasedRecordableEvent("cr", true, "fc2");
+        assertNull(this.listener.coalesce(previousEvent, nextEvent));
+
+        nextEvent = new ChangeRequestRebasedRecordableEvent("cr", false, "fc1");
+        assertNull(this.listener.coalesce(previousEvent, nextEvent));
+
+        nextEvent = new ChangeRequestRebasedRecordableEvent("cr", false, null);
+        assertNull(this.listener.coalesce(previousEvent, nextEvent));
     }
-}
\ No newline at end of file
+}
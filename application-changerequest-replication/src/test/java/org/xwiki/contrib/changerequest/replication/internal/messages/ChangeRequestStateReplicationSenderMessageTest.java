@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.changerequest.replication.internal.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.changerequest.ChangeRequest;
+import org.xwiki.contrib.changerequest.ChangeRequestStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ChangeRequestStateReplicationSenderMessage}
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ChangeRequestStateReplicationSenderMessageTest
+{
+    private static final String CONTEXT_USER = "XWiki.ContextUser";
+
+    @InjectMockComponents
+    private ChangeRequestStateReplicationSenderMessage senderMessage;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ConverterManager converter;
+
+    private XWikiContext context;
+
+    @BeforeEach
+    void setup()
+    {
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        DocumentReference documentReference = mock(DocumentReference.class, "contextUserRef");
+        when(this.entityReferenceSerializer.serialize(documentReference)).thenReturn(CONTEXT_USER);
+        when(this.context.getUserReference()).thenReturn(documentReference);
+
+        when(this.converter.convert(eq(String.class), any())).then(invocation -> {
+            Object argument = invocation.getArgument(1);
+            return argument.toString();
+        });
+    }
+
+    @Test
+    void initialize()
+    {
+        String crId = "fooBarCr";
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn(crId);
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_MERGING);
+
+        DocumentReference crDocReference = mock(DocumentReference.class, "crDocReference");
+        String serializedCrDoc = "CrDocReference";
+        when(this.entityReferenceSerializer.serialize(crDocReference)).thenReturn(serializedCrDoc);
+
+        this.senderMessage.initialize(changeRequest, null, crDocReference);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("CONTEXT_USER", Collections.singleton(CONTEXT_USER));
+        parameters.put("DATA_DOCUMENT", Collections.singleton(serializedCrDoc));
+        parameters.put("CHANGE_REQUEST_ID", Collections.singleton(crId));
+        parameters.put("STATUS", Collections.singleton("READY_FOR_MERGING"));
+
+        assertEquals(parameters, this.senderMessage.getCustomMetadata());
+    }
+
+    @Test
+    void initializeWithStatusChange()
+    {
+        String crId = "fooBarCr";
+        ChangeRequest changeRequest = mock(ChangeRequest.class);
+        when(changeRequest.getId()).thenReturn(crId);
+        when(changeRequest.getStatus()).thenReturn(ChangeRequestStatus.READY_FOR_MERGING);
+
+        DocumentReference crDocReference = mock(DocumentReference.class, "crDocReference");
+        String serializedCrDoc = "CrDocReference";
+        when(this.entityReferenceSerializer.serialize(crDocReference)).thenReturn(serializedCrDoc);
+
+        this.senderMessage.initialize(changeRequest, ChangeRequestStatus.DRAFT, crDocReference);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("CONTEXT_USER", Collections.singleton(CONTEXT_USER));
+        parameters.put("DATA_DOCUMENT", Collections.singleton(serializedCrDoc));
+        parameters.put("CHANGE_REQUEST_ID", Collections.singleton(crId));
+        parameters.put("STATUS", Collections.singleton("READY_FOR_MERGING"));
+        parameters.put("PREVIOUS_STATUS", Collections.singleton("DRAFT"));
+
+        assertEquals(parameters, this.senderMessage.getCustomMetadata());
+    }
+
+    @Test
+    void getType()
+    {
+        assertEquals("changerequest.state", senderMessage.getType());
+    }
+}
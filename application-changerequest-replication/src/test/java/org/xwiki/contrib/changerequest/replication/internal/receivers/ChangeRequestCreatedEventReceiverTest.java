@@ -159,9 +159,8 @@ class ChangeRequestCreatedEventReceiverTest
         verify(this.context).setUserReference(originalUserRef);
         verify(this.recordableEventNotifier)
             .notifyChangeRequestRecordableEvent(any(ChangeRequestCreatedRecordableEvent.class), eq(dataDoc));
-        verify(autoWatchHandler).watchChangeRequest(changeRequest, creator);
-        verify(autoWatchHandler).watchChangeRequest(changeRequest, approver1);
-        verify(autoWatchHandler).watchChangeRequest(changeRequest, approver3);
-        verify(autoWatchHandler, never()).watchChangeRequest(changeRequest, approver2);
+        // All the users are watching the change request in a single operation.
+        verify(autoWatchHandler).watchChangeRequest(changeRequest, Set.of(creator, approver1, approver3));
+        verify(autoWatchHandler, never()).watchChangeRequest(eq(changeRequest), any(UserReference.class));
     }
 }
\ No newline at end of file